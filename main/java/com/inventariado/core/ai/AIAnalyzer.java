@@ -5,6 +5,10 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.logging.Logger;
 
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.Service;
+import com.inventariado.core.model.Services;
+
 /**
  * Clase para análisis inteligente de dispositivos y red.
  * Equivalente Java de ai_analyzer.py
@@ -91,10 +95,10 @@ public class AIAnalyzer {
 
     /**
      * Analiza un dispositivo y genera recomendaciones.
-     * @param deviceData Mapa con los datos del dispositivo
+     * @param deviceData Dispositivo a analizar
      * @return Mapa con los resultados del análisis
      */
-    public Map<String, Object> analyzeDevice(Map<String, Object> deviceData) {
+    public Map<String, Object> analyzeDevice(Device deviceData) {
         try {
             // Detectar tipo de dispositivo
             String deviceType = detectDeviceType(deviceData);
@@ -120,26 +124,18 @@ public class AIAnalyzer {
         }
     }
 
-    private String detectDeviceType(Map<String, Object> deviceData) {
+    private String detectDeviceType(Device deviceData) {
         Map<String, Integer> scores = new HashMap<>();
         for (String dtype : deviceRules.keySet()) {
             scores.put(dtype, 0);
         }
 
         // Analizar puertos abiertos
-        Map<String, Map<String, String>> services = (Map<String, Map<String, String>>) deviceData.getOrDefault("services", new HashMap<>());
-        List<Integer> openPorts = new ArrayList<>();
-        for (String portStr : services.keySet()) {
-            try {
-                openPorts.add(Integer.parseInt(portStr));
-            } catch (NumberFormatException e) {
-                logger.warning("Puerto no válido: " + portStr);
-            }
-        }
+        Services openPorts = deviceData.services();
 
         // Analizar información del sistema
-        String osInfo = ((String) deviceData.getOrDefault("os", "")).toLowerCase();
-        String hostname = ((String) deviceData.getOrDefault("hostname", "")).toLowerCase();
+        String osInfo = deviceData.os() != null ? deviceData.os().toLowerCase() : "";
+        String hostname = deviceData.hostname() != null ? deviceData.hostname().toLowerCase() : "";
 
         for (Map.Entry<String, Map<String, Object>> entry : deviceRules.entrySet()) {
             String deviceType = entry.getKey();
@@ -179,19 +175,18 @@ public class AIAnalyzer {
         return maxScore > 0 ? bestType : "unknown";
     }
 
-    private int calculateSecurityScore(Map<String, Object> deviceData) {
+    private int calculateSecurityScore(Device deviceData) {
         int score = 100; // Puntuación inicial
-        Map<String, Map<String, String>> services = (Map<String, Map<String, String>>) deviceData.getOrDefault("services", new HashMap<>());
+        Services services = deviceData.services();
 
         // Penalización por puertos abiertos
         score += services.size() * securityWeights.get("open_ports");
 
-        for (Map.Entry<String, Map<String, String>> entry : services.entrySet()) {
-            String port = entry.getKey();
-            Map<String, String> service = entry.getValue();
+        for (int i = 0; i < services.size(); i++) {
+            Service service = services.service(i);
 
-            String serviceName = service.getOrDefault("name", "").toLowerCase();
-            String serviceVersion = service.getOrDefault("version", "");
+            String serviceName = service.nameOrEmpty();
+            String serviceVersion = service.version() != null ? service.version() : "";
 
             // Bonificación por servicios seguros
             if (serviceName.contains("ssh") || serviceName.contains("https")) {
@@ -232,21 +227,20 @@ public class AIAnalyzer {
         return Math.max(0, Math.min(100, score));
     }
 
-    private List<String> generateRecommendations(Map<String, Object> deviceData, String deviceType, int securityScore) {
+    private List<String> generateRecommendations(Device deviceData, String deviceType, int securityScore) {
         Set<String> recommendations = new HashSet<>();
-        Map<String, Map<String, String>> services = (Map<String, Map<String, String>>) deviceData.getOrDefault("services", new HashMap<>());
+        Services services = deviceData.services();
 
         // Recomendaciones basadas en servicios inseguros
-        for (Map.Entry<String, Map<String, String>> entry : services.entrySet()) {
-            String port = entry.getKey();
-            Map<String, String> service = entry.getValue();
-            String serviceName = service.getOrDefault("name", "").toLowerCase();
+        for (int i = 0; i < services.size(); i++) {
+            int port = services.port(i);
+            String serviceName = services.service(i).nameOrEmpty();
 
             if (serviceName.contains("telnet")) {
                 recommendations.add("Reemplazar Telnet con SSH para acceso remoto seguro");
             } else if (serviceName.contains("ftp")) {
                 recommendations.add("Migrar de FTP a SFTP o FTPS para transferencia segura de archivos");
-            } else if (port.equals("80") && !services.containsKey("443")) {
+            } else if (port == 80 && !services.contains(443)) {
                 recommendations.add("Implementar HTTPS para cifrar el tráfico web");
             }
         }
@@ -298,7 +292,7 @@ public class AIAnalyzer {
      * @param devices Lista de dispositivos a analizar
      * @return Mapa con los resultados del análisis de red
      */
-    public Map<String, Object> analyzeNetwork(List<Map<String, Object>> devices) {
+    public Map<String, Object> analyzeNetwork(List<Device> devices) {
         try {
             Map<String, Object> networkAnalysis = new HashMap<>();
             Map<String, Integer> deviceTypesCount = new HashMap<>();
@@ -307,7 +301,7 @@ public class AIAnalyzer {
 
             int totalScore = 0;
 
-            for (Map<String, Object> device : devices) {
+            for (Device device : devices) {
                 Map<String, Object> analysis = analyzeDevice(device);
 
                 // Contabilizar tipos de dispositivos
@@ -321,8 +315,8 @@ public class AIAnalyzer {
                 // Identificar dispositivos críticos
                 if (score < 50) {
                     Map<String, Object> criticalDevice = new HashMap<>();
-                    criticalDevice.put("ip", device.get("ip"));
-                    criticalDevice.put("hostname", device.get("hostname"));
+                    criticalDevice.put("ip", device.address());
+                    criticalDevice.put("hostname", device.hostname());
                     criticalDevice.put("score", score);
                     criticalDevice.put("type", deviceType);
                     criticalDevices.add(criticalDevice);
@@ -5,6 +5,8 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.inventariado.core.model.Device;
+
 public class AlertSystem {
     private static final Logger logger = Logger.getLogger(AlertSystem.class.getName());
 
@@ -39,7 +41,7 @@ public class AlertSystem {
         }
     }
 
-    public void checkDevice(Map<String, Object> deviceData) {
+    public void checkDevice(Device deviceData) {
         try {
             for (Map<String, Object> rule : alertRules) {
                 if (evaluateRule(rule, deviceData)) {
@@ -64,7 +66,7 @@ public class AlertSystem {
         return rule.containsKey("id") && rule.containsKey("name") && rule.containsKey("condition") && rule.containsKey("notification_type");
     }
 
-    private boolean evaluateRule(Map<String, Object> rule, Map<String, Object> deviceData) {
+    private boolean evaluateRule(Map<String, Object> rule, Device deviceData) {
         Map<String, Object> condition = (Map<String, Object>) rule.get("condition");
         String type = (String) condition.get("type");
 
@@ -72,7 +74,7 @@ public class AlertSystem {
             case "new_device":
                 return checkNewDevice(deviceData);
             case "port_open":
-                return checkPortOpen(deviceData, (int) condition.get("port"));
+                return checkPortOpen(deviceData, ((Number) condition.get("port")).intValue());
             case "service_down":
                 return !checkServiceStatus(deviceData, (String) condition.get("service"));
             case "snmp_public":
@@ -82,12 +84,12 @@ public class AlertSystem {
         }
     }
 
-    private void triggerAlert(Map<String, Object> rule, Map<String, Object> deviceData) {
+    private void triggerAlert(Map<String, Object> rule, Device deviceData) {
         Map<String, Object> alertData = new HashMap<>();
         alertData.put("timestamp", LocalDateTime.now().toString());
         alertData.put("rule_name", rule.get("name"));
-        alertData.put("device_ip", deviceData.get("ip"));
-        alertData.put("device_name", deviceData.getOrDefault("hostname", "Desconocido"));
+        alertData.put("device_ip", deviceData.address());
+        alertData.put("device_name", deviceData.hostname() != null ? deviceData.hostname() : "Desconocido");
         alertData.put("message", generateAlertMessage(rule, deviceData));
 
         String type = (String) rule.get("notification_type");
@@ -109,38 +111,28 @@ public class AlertSystem {
                 alertData.get("message"));
     }
 
-    private boolean checkNewDevice(Map<String, Object> deviceData) {
+    private boolean checkNewDevice(Device deviceData) {
         // Placeholder
         return false;
     }
 
-    private boolean checkPortOpen(Map<String, Object> deviceData, int port) {
-        Map<String, Map<String, Object>> services = (Map<String, Map<String, Object>>) deviceData.get("services");
-        return services != null && services.containsKey(String.valueOf(port));
+    private boolean checkPortOpen(Device deviceData, int port) {
+        return deviceData.services().contains(port);
     }
 
-    private boolean checkServiceStatus(Map<String, Object> deviceData, String service) {
-        Map<String, Map<String, Object>> services = (Map<String, Map<String, Object>>) deviceData.get("services");
-        if (services == null) return false;
-        for (Map<String, Object> s : services.values()) {
-            String name = (String) s.get("name");
-            if (name != null && name.toLowerCase().contains(service.toLowerCase())) {
-                return true;
-            }
-        }
-        return false;
+    private boolean checkServiceStatus(Device deviceData, String service) {
+        return deviceData.services().anyNameContains(service);
     }
 
-    private boolean checkSnmpPublic(Map<String, Object> deviceData) {
-        Map<String, Map<String, Object>> services = (Map<String, Map<String, Object>>) deviceData.get("services");
-        return services != null && services.containsKey("161");
+    private boolean checkSnmpPublic(Device deviceData) {
+        return deviceData.services().contains(161);
     }
 
-    private String generateAlertMessage(Map<String, Object> rule, Map<String, Object> deviceData) {
+    private String generateAlertMessage(Map<String, Object> rule, Device deviceData) {
         Map<String, Object> condition = (Map<String, Object>) rule.get("condition");
         String type = (String) condition.get("type");
-        String hostname = (String) deviceData.getOrDefault("hostname", "Desconocido");
-        String ip = (String) deviceData.get("ip");
+        String hostname = deviceData.hostname() != null ? deviceData.hostname() : "Desconocido";
+        String ip = deviceData.address();
 
         switch (type) {
             case "new_device":
@@ -1,5 +1,8 @@
 package com.inventariado.core.exporter;
 
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.DeviceMaps;
+import com.inventariado.core.model.Services;
 import org.json.*;
 
 import java.io.BufferedWriter;
@@ -12,7 +15,7 @@ import java.util.*;
 public class DataExporter {
 
     // Método para exportar a CSV
-    public static boolean exportToCSV(List<Map<String, Object>> devices, String filename) {
+    public static boolean exportToCSV(List<Device> devices, String filename) {
         try {
             // Asegurarse de que el directorio exista
             Path filePath = Paths.get(filename);
@@ -30,41 +33,41 @@ public class DataExporter {
                 writer.newLine();
 
                 // Escribir los datos de los dispositivos
-                for (Map<String, Object> device : devices) {
-                    String servicesStr = new JSONObject(device.get("services")).toString();
-                    String usersStr = new JSONArray((List<?>) device.get("users")).toString();
+                for (Device device : devices) {
+                    String servicesStr = new JSONObject(DeviceMaps.servicesToMap(device.services())).toString();
+                    String usersStr = new JSONArray((List<?>) device.attribute("users")).toString();
 
-                    Map<String, Object> hardware = (Map<String, Object>) device.get("hardware");
+                    Map<?, ?> hardware = device.attribute("hardware") instanceof Map<?, ?> map ? map : Map.of();
                     String cpuInfo = new JSONObject(hardware.get("cpu")).toString();
                     String memoryInfo = new JSONObject(hardware.get("memory")).toString();
                     String storageInfo = new JSONArray((List<?>) hardware.get("storage")).toString();
 
                     StringBuilder portsStr = new StringBuilder();
-                    Map<String, Object> services = (Map<String, Object>) device.get("services");
-                    for (String port : services.keySet()) {
+                    Services services = device.services();
+                    for (int i = 0; i < services.size(); i++) {
                         if (portsStr.length() > 0) portsStr.append(", ");
-                        portsStr.append(port);
+                        portsStr.append(services.port(i));
                     }
 
-                    String geoStr = new JSONObject(device.get("geolocation")).toString();
+                    String geoStr = new JSONObject(device.attribute("geolocation")).toString();
 
                     // Escribir los valores
                     writer.write(String.join(",", Arrays.asList(
-                            String.valueOf(device.get("ip")),
-                            String.valueOf(device.get("hostname")),
-                            String.valueOf(device.get("mac")),
-                            String.valueOf(device.get("vendor")),
-                            String.valueOf(device.get("os")),
+                            device.address(),
+                            String.valueOf(device.hostname()),
+                            String.valueOf(device.macAddress()),
+                            String.valueOf(device.vendor()),
+                            String.valueOf(device.os()),
                             portsStr.toString(),
-                            String.valueOf(device.get("serial")),
-                            String.valueOf(device.get("model")),
+                            String.valueOf(device.attribute("serial")),
+                            String.valueOf(device.attribute("model")),
                             servicesStr,
                             usersStr,
                             cpuInfo,
                             memoryInfo,
                             storageInfo,
                             geoStr,
-                            String.valueOf(device.get("ttl"))
+                            String.valueOf(device.attribute("ttl"))
                     )));
                     writer.newLine();
                 }
@@ -80,14 +83,15 @@ public class DataExporter {
     }
 
     // Método para exportar a JSON
-    public static boolean exportToJSON(List<Map<String, Object>> devices, String filename) {
+    public static boolean exportToJSON(List<Device> devices, String filename) {
         try {
             // Asegurarse de que el directorio exista
             Path filePath = Paths.get(filename);
             Files.createDirectories(filePath.getParent());
 
             try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
-                writer.write(new JSONArray(devices).toString(4));
+                // Formato del escáner
+                writer.write(new JSONArray(DeviceMaps.toMaps(devices)).toString(4));
             }
 
             System.out.println("Datos exportados exitosamente a " + filename);
@@ -100,8 +104,8 @@ public class DataExporter {
     }
 
     // Método para importar desde CSV
-    public static List<Map<String, Object>> importFromCSV(String filename) {
-        List<Map<String, Object>> devices = new ArrayList<>();
+    public static List<Device> importFromCSV(String filename) {
+        List<Map<String, Object>> rows = new ArrayList<>();
         try {
             List<String> lines = Files.readAllLines(Paths.get(filename));
             String header = lines.get(0);
@@ -123,10 +127,7 @@ public class DataExporter {
                 String[] ports = values[5].split(",");
                 for (String port : ports) {
                     if (port.trim().matches("\\d+")) {
-                        services.put(port.trim(), new JSONObject()
-                                .put("name", "unknown")
-                                .put("product", "")
-                                .put("version", ""));
+                        services.put(port.trim(), Map.of("name", "unknown"));
                     }
                 }
                 device.put("services", services);
@@ -147,39 +148,41 @@ public class DataExporter {
                                 .put("slots", new JSONArray()))
                         .put("storage", new JSONArray()));
 
-                devices.add(device);
+                rows.add(device);
             }
 
+            List<Device> devices = DeviceMaps.fromMaps(rows);
             System.out.println("Se importaron " + devices.size() + " dispositivos desde " + filename);
             return devices;
         } catch (IOException | JSONException e) {
             System.err.println("Error al importar desde CSV: " + e.getMessage());
             e.printStackTrace();
-            return devices;
+            return DeviceMaps.fromMaps(rows);
         }
     }
 
     // Método para importar desde JSON
-    public static List<Map<String, Object>> importFromJSON(String filename) {
-        List<Map<String, Object>> devices = new ArrayList<>();
+    public static List<Device> importFromJSON(String filename) {
+        List<Map<String, Object>> rows = new ArrayList<>();
         try {
             String content = new String(Files.readAllBytes(Paths.get(filename)));
             JSONArray jsonArray = new JSONArray(content);
-            devices.clear();  // si ya existe y quieres reemplazar contenido anterior
 
-            for (Object obj : jsonArray) {
-                if (obj instanceof Map<?, ?>) {
-                    devices.add((Map<String, Object>) obj);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject obj = jsonArray.optJSONObject(i);
+                if (obj != null) {
+                    rows.add(obj.toMap());
                 }
             }
 
-
+            // DeviceMaps acepta claves de puerto como texto y variantes antiguas ("mac", "os")
+            List<Device> devices = DeviceMaps.fromMaps(rows);
             System.out.println("Se importaron " + devices.size() + " dispositivos desde " + filename);
             return devices;
         } catch (IOException | JSONException e) {
             System.err.println("Error al importar desde JSON: " + e.getMessage());
             e.printStackTrace();
-            return devices;
+            return DeviceMaps.fromMaps(rows);
         }
     }
 }
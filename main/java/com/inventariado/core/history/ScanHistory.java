@@ -5,7 +5,11 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import org.slf4j.*;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.DeviceMaps;
+import com.inventariado.core.model.Services;
 
 
 /**
@@ -14,6 +18,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class ScanHistory {
     private static final Logger logger = LoggerFactory.getLogger(ScanHistory.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
 
     private final String dbPath;
     private final ObjectMapper objectMapper;
@@ -75,11 +80,11 @@ public class ScanHistory {
             ResultSet rs = pstmt.getGeneratedKeys();
             int scanId = rs.next() ? rs.getInt(1) : 0;
 
-            // Save devices
-            List<Map<String, Object>> devices = (List<Map<String, Object>>)
-                    scanData.getOrDefault("devices", new ArrayList<>());
+            // Save devices: los del escáner llegan como Device, los importados como mapas
+            List<?> devices = scanData.get("devices") instanceof List<?> list ? list : List.of();
 
-            for (Map<String, Object> device : devices) {
+            for (Object entry : devices) {
+                Map<?, ?> device = entry instanceof Device typed ? DeviceMaps.toMap(typed) : (Map<?, ?>) entry;
                 String ip = (String) device.get("ip");
                 String status = getLastDeviceStatus(conn, ip);
 
@@ -89,7 +94,7 @@ public class ScanHistory {
                 pstmt = conn.prepareStatement(sql);
                 pstmt.setInt(1, scanId);
                 pstmt.setString(2, ip);
-                pstmt.setString(3, (String) device.getOrDefault("hostname", ""));
+                pstmt.setString(3, device.get("hostname") instanceof String hostname ? hostname : "");
                 pstmt.setString(4, objectMapper.writeValueAsString(device));
                 pstmt.setString(5, status);
                 pstmt.executeUpdate();
@@ -124,52 +129,41 @@ LIMIT 1
                 return null;
             }
 
-            List<Map<String, Object>> devices1 = getScanDevices(conn, scanId1);
-            List<Map<String, Object>> devices2 = getScanDevices(conn, scanId2);
+            Map<Integer, Device> devices1 = indexScanDevices(conn, scanId1);
+            Map<Integer, Device> devices2 = indexScanDevices(conn, scanId2);
 
+            List<String> newDevices = new ArrayList<>();
+            List<String> removedDevices = new ArrayList<>();
+            List<Map<String, Object>> modifiedDevices = new ArrayList<>();
             Map<String, Object> changes = new HashMap<>();
-            changes.put("new_devices", new ArrayList<>());
-            changes.put("removed_devices", new ArrayList<>());
-            changes.put("modified_devices", new ArrayList<>());
+            changes.put("new_devices", newDevices);
+            changes.put("removed_devices", removedDevices);
+            changes.put("modified_devices", modifiedDevices);
             changes.put("port_changes", new ArrayList<>());
             changes.put("service_changes", new ArrayList<>());
             changes.put("status_changes", new ArrayList<>());
 
-            // Detectar dispositivos nuevos y eliminados
-            Set<String> ips1 = new HashSet<>();
-            Set<String> ips2 = new HashSet<>();
-
-            for (Map<String, Object> device : devices1) {
-                ips1.add((String) device.get("ip"));
-            }
-
-            for (Map<String, Object> device : devices2) {
-                ips2.add((String) device.get("ip"));
+            // Dispositivos nuevos
+            for (Device device : devices2.values()) {
+                if (!devices1.containsKey(device.ip())) {
+                    newDevices.add(device.address());
+                }
             }
 
-            // Dispositivos nuevos
-            Set<String> newIps = new HashSet<>(ips2);
-            newIps.removeAll(ips1);
-            ((List<String>) changes.get("new_devices")).addAll(newIps);
-
-            // Dispositivos eliminados
-            Set<String> removedIps = new HashSet<>(ips1);
-            removedIps.removeAll(ips2);
-            ((List<String>) changes.get("removed_devices")).addAll(removedIps);
-
-            // Comparar dispositivos existentes
-            for (Map<String, Object> device1 : devices1) {
-                for (Map<String, Object> device2 : devices2) {
-                    if (device1.get("ip").equals(device2.get("ip"))) {
-                        List<Map<String, Object>> deviceChanges = compareDevices(device1, device2);
-                        if (!deviceChanges.isEmpty()) {
-                            Map<String, Object> modifiedDevice = new HashMap<>();
-                            modifiedDevice.put("ip", device1.get("ip"));
-                            modifiedDevice.put("changes", deviceChanges);
-                            modifiedDevice.put("current_status", device2.getOrDefault("status", "pending"));
-                            ((List<Map<String, Object>>) changes.get("modified_devices")).add(modifiedDevice);
-                        }
-                    }
+            // Dispositivos eliminados y cambios en los existentes
+            for (Device device1 : devices1.values()) {
+                Device device2 = devices2.get(device1.ip());
+                if (device2 == null) {
+                    removedDevices.add(device1.address());
+                    continue;
+                }
+                List<Map<String, Object>> deviceChanges = compareDevices(device1, device2);
+                if (!deviceChanges.isEmpty()) {
+                    Map<String, Object> modifiedDevice = new HashMap<>();
+                    modifiedDevice.put("ip", device1.address());
+                    modifiedDevice.put("changes", deviceChanges);
+                    modifiedDevice.put("current_status", device2.status() != null ? device2.status() : "pending");
+                    modifiedDevices.add(modifiedDevice);
                 }
             }
 
@@ -188,6 +182,27 @@ LIMIT 1
         return rs.next();
     }
 
+    /**
+     * Dispositivos de un escaneo indexados por IP. Las filas sin IPv4 válida no
+     * caben en el modelo: se omiten y se avisa de cuántas fueron.
+     */
+    private Map<Integer, Device> indexScanDevices(Connection conn, int scanId) throws Exception {
+        Map<Integer, Device> byIp = new LinkedHashMap<>();
+        int skipped = 0;
+        for (Map<String, Object> row : getScanDevices(conn, scanId)) {
+            try {
+                Device device = DeviceMaps.fromMap(row);
+                byIp.putIfAbsent(device.ip(), device);
+            } catch (IllegalArgumentException e) {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Escaneo {}: {} dispositivos sin IPv4 válida omitidos en la comparación", scanId, skipped);
+        }
+        return byIp;
+    }
+
     private List<Map<String, Object>> getScanDevices(Connection conn, int scanId) throws Exception {
         String sql = "SELECT device_data FROM devices WHERE scan_id = ?";
         PreparedStatement pstmt = conn.prepareStatement(sql);
@@ -195,62 +210,79 @@ LIMIT 1
         ResultSet rs = pstmt.executeQuery();
         List<Map<String, Object>> devices = new ArrayList<>();
         while (rs.next()) {
-            devices.add(objectMapper.readValue(rs.getString("device_data"), Map.class));
+            devices.add(objectMapper.readValue(rs.getString("device_data"), MAP_TYPE));
         }
         return devices;
     }
 
-    private List<Map<String, Object>> compareDevices(Map<String, Object> device1, Map<String, Object> device2) {
+    private List<Map<String, Object>> compareDevices(Device device1, Device device2) {
         List<Map<String, Object>> changes = new ArrayList<>();
-        // Comparar servicios
-        Map<String, Map<String, Object>> services1 = (Map<String, Map<String, Object>>)
-                device1.getOrDefault("services", new HashMap<>());
-        Map<String, Map<String, Object>> services2 = (Map<String, Map<String, Object>>)
-                device2.getOrDefault("services", new HashMap<>());
+        Services services1 = device1.services();
+        Services services2 = device2.services();
 
         // Nuevos servicios
-        for (String port : services2.keySet()) {
-            if (!services1.containsKey(port)) {
+        for (int i = 0; i < services2.size(); i++) {
+            int port = services2.port(i);
+            if (!services1.contains(port)) {
                 Map<String, Object> change = new HashMap<>();
                 change.put("type", "new_service");
                 change.put("port", port);
-                change.put("service", services2.get(port));
+                change.put("service", DeviceMaps.serviceToMap(port, services2.service(i)));
                 changes.add(change);
             }
         }
 
         // Servicios eliminados
-        for (String port : services1.keySet()) {
-            if (!services2.containsKey(port)) {
+        for (int i = 0; i < services1.size(); i++) {
+            int port = services1.port(i);
+            if (!services2.contains(port)) {
                 Map<String, Object> change = new HashMap<>();
                 change.put("type", "removed_service");
                 change.put("port", port);
-                change.put("service", services1.get(port));
+                change.put("service", DeviceMaps.serviceToMap(port, services1.service(i)));
                 changes.add(change);
             }
         }
 
         // Cambios en sistema operativo
-        if (!Objects.equals(device1.get("os"), device2.get("os"))) {
+        if (!Objects.equals(device1.os(), device2.os())) {
             Map<String, Object> change = new HashMap<>();
             change.put("type", "os_change");
-            change.put("old", device1.get("os"));
-            change.put("new", device2.get("os"));
+            change.put("old", device1.os());
+            change.put("new", device2.os());
             changes.add(change);
         }
 
         // Cambios en hostname
-        if (!Objects.equals(device1.get("hostname"), device2.get("hostname"))) {
+        if (!Objects.equals(device1.hostname(), device2.hostname())) {
             Map<String, Object> change = new HashMap<>();
             change.put("type", "hostname_change");
-            change.put("old", device1.get("hostname"));
-            change.put("new", device2.get("hostname"));
+            change.put("old", device1.hostname());
+            change.put("new", device2.hostname());
             changes.add(change);
         }
 
         return changes;
     }
 
+    /**
+     * Devuelve los dispositivos del último escaneo guardado, base del modo delta.
+     */
+    public List<Map<String, Object>> getLatestSnapshot() {
+        try (Connection conn = getConnection()) {
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT MAX(id) AS id FROM scans");
+            int scanId = rs.next() ? rs.getInt("id") : 0;
+            if (scanId == 0) {
+                return Collections.emptyList();
+            }
+            return getScanDevices(conn, scanId);
+        } catch (Exception e) {
+            logger.error("Error al obtener el último escaneo: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
     public boolean updateDeviceStatus(String ip, String status) {
         if (!List.of("approved", "pending", "review", "inactive").contains(status)) {
             logger.error("Estado inválido: {}", status);
@@ -6,6 +6,8 @@ import java.util.*;
 import java.util.logging.Logger;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.DeviceMaps;
 
 /**
  * Clase para gestionar el inventario de activos IT.
@@ -78,7 +80,7 @@ public class InventoryManager {
         }
     }
 
-    public int storeScanResults(String networkRange, List<Map<String, Object>> devices) {
+    public int storeScanResults(String networkRange, List<Device> devices) {
         try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
 
@@ -95,7 +97,7 @@ public class InventoryManager {
                 int scanId = rs.next() ? rs.getInt(1) : -1;
 
                 // Insertar dispositivos
-                for (Map<String, Object> device : devices) {
+                for (Device device : devices) {
                     storeDevice(conn, scanId, device);
                 }
 
@@ -109,10 +111,11 @@ public class InventoryManager {
         }
     }
 
-    private void storeDevice(Connection conn, int scanId, Map<String, Object> device) throws SQLException {
+    private void storeDevice(Connection conn, int scanId, Device device) throws SQLException {
         // Buscar dispositivo existente por MAC o IP
-        String mac = (String) device.get("mac");
-        String ip = (String) device.get("ip");
+        String mac = device.macAddress();
+        String ip = device.address();
+        String services = servicesJson(device);
 
         try (PreparedStatement stmt = conn.prepareStatement(
                 "SELECT id, hostname, os, services FROM devices WHERE mac = ? OR (mac IS NULL AND ip = ?)")) {
@@ -128,16 +131,16 @@ public class InventoryManager {
                 String oldServices = rs.getString("services");
 
                 // Registrar cambios
-                registerChanges(conn, deviceId, oldHostname, oldOs, oldServices, device);
+                registerChanges(conn, deviceId, oldHostname, oldOs, oldServices, device, services);
 
                 // Actualizar dispositivo
                 try (PreparedStatement updateStmt = conn.prepareStatement(
                         "UPDATE devices SET scan_id = ?, hostname = ?, os = ?, vendor = ?, services = ?, last_seen = ? WHERE id = ?")) {
                     updateStmt.setInt(1, scanId);
-                    updateStmt.setString(2, (String) device.get("hostname"));
-                    updateStmt.setString(3, (String) device.get("os"));
-                    updateStmt.setString(4, (String) device.get("vendor"));
-                    updateStmt.setString(5, gson.toJson(device.get("services")));
+                    updateStmt.setString(2, device.hostname());
+                    updateStmt.setString(3, device.os());
+                    updateStmt.setString(4, device.vendor());
+                    updateStmt.setString(5, services);
                     updateStmt.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
                     updateStmt.setInt(7, deviceId);
                     updateStmt.executeUpdate();
@@ -148,11 +151,11 @@ public class InventoryManager {
                         "INSERT INTO devices (scan_id, ip, hostname, mac, vendor, os, services, last_seen) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
                     insertStmt.setInt(1, scanId);
                     insertStmt.setString(2, ip);
-                    insertStmt.setString(3, (String) device.get("hostname"));
+                    insertStmt.setString(3, device.hostname());
                     insertStmt.setString(4, mac);
-                    insertStmt.setString(5, (String) device.get("vendor"));
-                    insertStmt.setString(6, (String) device.get("os"));
-                    insertStmt.setString(7, gson.toJson(device.get("services")));
+                    insertStmt.setString(5, device.vendor());
+                    insertStmt.setString(6, device.os());
+                    insertStmt.setString(7, services);
                     insertStmt.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
                     insertStmt.executeUpdate();
                 }
@@ -160,11 +163,15 @@ public class InventoryManager {
         }
     }
 
+    // Servicios por puerto en orden ascendente, para que la comparación entre escaneos sea estable
+    private static String servicesJson(Device device) {
+        return gson.toJson(DeviceMaps.servicesToMap(device.services()));
+    }
+
     private void registerChanges(Connection conn, int deviceId, String oldHostname, String oldOs,
-                                 String oldServices, Map<String, Object> newDevice) throws SQLException {
-        String newHostname = (String) newDevice.get("hostname");
-        String newOs = (String) newDevice.get("os");
-        String newServices = gson.toJson(newDevice.get("services"));
+                                 String oldServices, Device newDevice, String newServices) throws SQLException {
+        String newHostname = newDevice.hostname();
+        String newOs = newDevice.os();
 
         // Comparar y registrar cambios
         if (!Objects.equals(oldHostname, newHostname)) {
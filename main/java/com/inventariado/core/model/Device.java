@@ -0,0 +1,138 @@
+package com.inventariado.core.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.inventariado.core.oui.OuiRegistry;
+import com.inventariado.core.scanner.HostRangeSet;
+
+/**
+ * Dispositivo del inventario en forma tipada e inmutable.
+ *
+ * La IP va empaquetada en un int y la MAC en un long; fabricante, sistema
+ * operativo, estado y nivel de riesgo se internan porque se repiten en todo el
+ * inventario. Lo que no tiene campo propio (hardware, vulnerabilidades, fechas,
+ * datos del modo delta...) se conserva en {@link #attributes()} para que el
+ * paso por el modelo no pierda información. Esos valores se copian en
+ * profundidad a mapas y listas inmutables compactos, sin orden garantizado ni
+ * valores null, con las cadenas internadas y los valores anidados iguales
+ * compartidos (ver {@link SharedValues}): las vulnerabilidades, las
+ * recomendaciones y el hardware se repiten en todo el inventario.
+ *
+ * {@link DeviceMaps} convierte desde y hacia los mapas que usan el escáner,
+ * el diario y la exportación JSON.
+ *
+ * @param ip         IPv4 empaquetada (ver {@link #address()})
+ * @param hostname   Nombre, o null si no se conoce
+ * @param mac        MAC en los 48 bits bajos, o {@link #NO_MAC}
+ * @param vendor     Fabricante, o null si no se conoce
+ * @param os         Sistema operativo, o null si no se conoce
+ * @param status     "up", "down"...; null si no se indicó
+ * @param riskLevel  Nivel de la auditoría de seguridad, o null si no se evaluó
+ * @param riskScore  Puntuación de la auditoría (0 si no se evaluó)
+ * @param attributes Resto de datos del dispositivo, sin modificar
+ */
+public record Device(int ip, String hostname, long mac, String vendor, String os, Services services,
+                     String status, String riskLevel, int riskScore, Map<String, Object> attributes) {
+
+    public static final long NO_MAC = -1;
+
+    public Device {
+        if (mac < NO_MAC || mac > 0xFFFF_FFFF_FFFFL) {
+            throw new IllegalArgumentException("MAC fuera de rango: " + mac);
+        }
+        vendor = intern(vendor);
+        os = intern(os);
+        services = services != null ? services : Services.EMPTY;
+        status = intern(status);
+        riskLevel = intern(riskLevel);
+        attributes = compactAttributes(attributes);
+    }
+
+    /**
+     * @return IP en notación decimal
+     */
+    public String address() {
+        return HostRangeSet.toIpString(ip);
+    }
+
+    public boolean hasMac() {
+        return mac != NO_MAC;
+    }
+
+    /**
+     * @return MAC como "AA:BB:CC:DD:EE:FF" (formato de Nmap), o null si no se conoce
+     */
+    public String macAddress() {
+        return hasMac() ? formatMac(mac) : null;
+    }
+
+    public Object attribute(String key) {
+        return attributes.get(key);
+    }
+
+    /**
+     * @return MAC en los 48 bits bajos, o {@link #NO_MAC} si no es una MAC
+     */
+    public static long parseMac(String mac) {
+        long value = OuiRegistry.parseMac(mac);
+        return value >= 0 ? value : NO_MAC;
+    }
+
+    public static String formatMac(long mac) {
+        char[] text = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int octet = (int) (mac >>> (40 - 8 * i)) & 0xFF;
+            text[i * 3] = Character.toUpperCase(Character.forDigit(octet >> 4, 16));
+            text[i * 3 + 1] = Character.toUpperCase(Character.forDigit(octet & 0x0F, 16));
+            if (i < 5) text[i * 3 + 2] = ':';
+        }
+        return new String(text);
+    }
+
+    private static Map<String, Object> compactAttributes(Map<String, Object> attributes) {
+        if (attributes == null || attributes.isEmpty()) return Map.of();
+        Map<String, Object> copy = new HashMap<>(attributes.size() * 2);
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                copy.put(entry.getKey(), compact(entry.getValue()));
+            }
+        }
+        return Map.copyOf(copy);
+    }
+
+    // Map.copyOf y List.copyOf guardan los elementos en un array, sin nodos ni tabla de sobra;
+    // los valores anidados iguales entre dispositivos comparten instancia
+    private static Object compact(Object value) {
+        if (value instanceof String text) {
+            return text.intern();
+        }
+        if (value instanceof Map<?, ?> map) {
+            if (map.isEmpty()) return Map.of();
+            Map<Object, Object> copy = new HashMap<>(map.size() * 2);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    copy.put(compact(entry.getKey()), compact(entry.getValue()));
+                }
+            }
+            return SharedValues.share(Map.copyOf(copy));
+        }
+        if (value instanceof List<?> list) {
+            if (list.isEmpty()) return List.of();
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                if (element != null) {
+                    copy.add(compact(element));
+                }
+            }
+            return SharedValues.share(List.copyOf(copy));
+        }
+        return value;
+    }
+
+    static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+}
@@ -0,0 +1,247 @@
+package com.inventariado.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.inventariado.core.scanner.HostRangeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Conversión entre {@link Device} y los mapas de dispositivo que circulan por
+ * la aplicación (salida del escáner, diario de escaneo, JSON exportado,
+ * filas de la base de datos).
+ *
+ * Al leer se aceptan todas las variantes de claves en uso: "mac_info" o "mac"
+ * y "vendor" sueltos, "os_info" u "os", y puertos de "services" como enteros
+ * (escáner) o como texto (JSON y base de datos). Los marcadores "Desconocido"
+ * pasan a null. Al escribir se produce el formato del escáner.
+ */
+public final class DeviceMaps {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceMaps.class);
+
+    private static final String UNKNOWN_MAC = "Desconocida";
+    private static final String UNKNOWN = "Desconocido";
+
+    // Claves con campo propio en Device; "open_ports" se deriva de los servicios
+    private static final Set<String> TYPED_KEYS = Set.of(
+            "ip", "hostname", "mac_info", "mac", "vendor", "os_info", "os", "services",
+            "status", "risk_level", "risk_score", "open_ports");
+
+    private DeviceMaps() {
+    }
+
+    /**
+     * @throws IllegalArgumentException si el mapa no tiene una IPv4 válida
+     */
+    public static Device fromMap(Map<String, ?> map) {
+        return fromMap(map, servicesFrom(map.get("services")));
+    }
+
+    /**
+     * Como {@link #fromMap(Map)}, con los servicios del mapa ya convertidos.
+     * @throws IllegalArgumentException si el mapa no tiene una IPv4 válida
+     */
+    public static Device fromMap(Map<String, ?> map, Services services) {
+        Object ip = map.get("ip");
+        if (ip == null) {
+            throw new IllegalArgumentException("Dispositivo sin IP");
+        }
+        Map<?, ?> macInfo = map.get("mac_info") instanceof Map<?, ?> info ? info : Map.of();
+        String mac = known(macInfo.get("mac"), map.get("mac"));
+        String vendor = known(macInfo.get("vendor"), map.get("vendor"));
+        String os = known(map.get("os_info"), map.get("os"));
+
+        Map<String, Object> attributes = null;
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            if (!TYPED_KEYS.contains(entry.getKey())) {
+                if (attributes == null) {
+                    attributes = new LinkedHashMap<>();
+                }
+                attributes.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return new Device(
+                HostRangeSet.parseIp(ip.toString().trim()),
+                text(map.get("hostname")),
+                mac != null ? Device.parseMac(mac) : Device.NO_MAC,
+                vendor,
+                os,
+                services,
+                text(map.get("status")),
+                text(map.get("risk_level")),
+                map.get("risk_score") instanceof Number score ? score.intValue() : 0,
+                attributes);
+    }
+
+    /**
+     * Convierte una lista descartando (con un aviso) los dispositivos sin IPv4 válida.
+     */
+    public static List<Device> fromMaps(List<? extends Map<String, ?>> maps) {
+        List<Device> devices = new ArrayList<>(maps.size());
+        for (Map<String, ?> map : maps) {
+            try {
+                devices.add(fromMap(map));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Dispositivo descartado: {}", e.getMessage());
+            }
+        }
+        return devices;
+    }
+
+    /**
+     * Mapa con el formato del escáner: ip, hostname, mac_info, os_info,
+     * services por puerto entero, open_ports y el resto de atributos.
+     */
+    public static Map<String, Object> toMap(Device device) {
+        Map<String, Object> map = new HashMap<>(device.attributes());
+        map.put("ip", device.address());
+        map.put("hostname", device.hostname() != null ? device.hostname() : device.address());
+        Map<String, Object> macInfo = new HashMap<>(4);
+        macInfo.put("mac", device.hasMac() ? device.macAddress() : UNKNOWN_MAC);
+        macInfo.put("vendor", device.vendor() != null ? device.vendor() : UNKNOWN);
+        map.put("mac_info", macInfo);
+        map.put("os_info", device.os() != null ? device.os() : UNKNOWN);
+        map.put("services", servicesToMap(device.services()));
+        map.put("open_ports", device.services().size());
+        if (device.status() != null) {
+            map.put("status", device.status());
+        }
+        if (device.riskLevel() != null) {
+            map.put("risk_level", device.riskLevel());
+            map.put("risk_score", device.riskScore());
+        }
+        return map;
+    }
+
+    public static List<Map<String, Object>> toMaps(List<Device> devices) {
+        List<Map<String, Object>> maps = new ArrayList<>(devices.size());
+        for (Device device : devices) {
+            maps.add(toMap(device));
+        }
+        return maps;
+    }
+
+    /**
+     * @return Servicios por puerto, en orden ascendente, con las claves de Nmap
+     */
+    public static Map<Integer, Map<String, Object>> servicesToMap(Services services) {
+        Map<Integer, Map<String, Object>> map = new LinkedHashMap<>();
+        for (int i = 0; i < services.size(); i++) {
+            map.put(services.port(i), serviceToMap(services.port(i), services.service(i)));
+        }
+        return map;
+    }
+
+    public static Map<String, Object> serviceToMap(int port, Service service) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("port", port);
+        map.put("protocol", service.protocol());
+        map.put("state", "open");
+        putIfPresent(map, "name", service.name());
+        putIfPresent(map, "product", service.product());
+        putIfPresent(map, "version", service.version());
+        putIfPresent(map, "extrainfo", service.extraInfo());
+        putIfPresent(map, "ostype", service.osType());
+        putIfPresent(map, "tunnel", service.tunnel());
+        putIfPresent(map, "method", service.method());
+        putIfPresent(map, "cpe", service.cpe());
+        if (!service.scripts().isEmpty()) {
+            map.put("scripts", new HashMap<>(service.scripts()));
+        }
+        return map;
+    }
+
+    /**
+     * Lee un mapa "services" con claves enteras o de texto. Se descartan los
+     * puertos que no estén abiertos y las claves que no sean números de puerto.
+     */
+    public static Services servicesFrom(Object value) {
+        if (!(value instanceof Map<?, ?> map) || map.isEmpty()) return Services.EMPTY;
+        int[] ports = new int[map.size()];
+        Service[] services = new Service[map.size()];
+        int n = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            int port = portOf(entry.getKey());
+            if (port < 0) continue;
+            Map<?, ?> info = entry.getValue() instanceof Map<?, ?> m ? m : Map.of();
+            Object state = info.get("state");
+            if (state != null && !"open".equals(state)) continue;
+            ports[n] = port;
+            services[n] = serviceFrom(info);
+            n++;
+        }
+        if (n < ports.length) {
+            ports = Arrays.copyOf(ports, n);
+            services = Arrays.copyOf(services, n);
+        }
+        return Services.of(ports, services);
+    }
+
+    private static Service serviceFrom(Map<?, ?> info) {
+        if (info.isEmpty()) return Service.UNKNOWN;
+        Map<String, String> scripts = null;
+        if (info.get("scripts") instanceof Map<?, ?> raw && !raw.isEmpty()) {
+            scripts = new HashMap<>();
+            for (Map.Entry<?, ?> script : raw.entrySet()) {
+                if (script.getKey() != null && script.getValue() != null) {
+                    scripts.put(script.getKey().toString(), script.getValue().toString());
+                }
+            }
+        }
+        return SharedValues.share(new Service(
+                text(info.get("protocol")),
+                text(info.get("name")),
+                text(info.get("product")),
+                text(info.get("version")),
+                text(info.get("extrainfo")),
+                text(info.get("ostype")),
+                text(info.get("tunnel")),
+                text(info.get("method")),
+                text(info.get("cpe")),
+                scripts));
+    }
+
+    private static int portOf(Object key) {
+        if (key instanceof Number number) {
+            int port = number.intValue();
+            return port >= 0 && port <= 65535 && number.doubleValue() == port ? port : -1;
+        }
+        if (key == null) return -1;
+        try {
+            int port = Integer.parseInt(key.toString().trim());
+            return port >= 0 && port <= 65535 ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String text(Object value) {
+        if (value == null) return null;
+        String text = value.toString();
+        return text.isBlank() ? null : text;
+    }
+
+    // Primer valor que no sea un marcador de desconocido, de la variante de clave preferida a la alternativa
+    private static String known(Object preferred, Object fallback) {
+        for (Object value : new Object[]{preferred, fallback}) {
+            String text = text(value);
+            if (text != null && !text.equals(UNKNOWN) && !text.equals(UNKNOWN_MAC) && !text.equals("Unknown")) {
+                return text;
+            }
+        }
+        return null;
+    }
+
+    private static void putIfPresent(Map<String, Object> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+}
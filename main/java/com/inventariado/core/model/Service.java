@@ -0,0 +1,44 @@
+package com.inventariado.core.model;
+
+import java.util.Map;
+
+/**
+ * Servicio detectado en un puerto abierto, con los campos que da Nmap en
+ * {@code <service>}. Las cadenas se internan: nombres, productos y versiones se
+ * repiten en cientos de hosts de un mismo inventario.
+ *
+ * @param method  "probed", "table" (nombre deducido del puerto) o "syn"
+ * @param scripts Salida de los scripts NSE del puerto por id
+ */
+public record Service(String protocol, String name, String product, String version, String extraInfo,
+                      String osType, String tunnel, String method, String cpe, Map<String, String> scripts) {
+
+    public static final Service UNKNOWN = new Service("tcp", null, null, null, null, null, null, null, null, null);
+
+    public Service {
+        protocol = Device.intern(protocol != null ? protocol : "tcp");
+        name = Device.intern(name);
+        product = Device.intern(product);
+        version = Device.intern(version);
+        extraInfo = Device.intern(extraInfo);
+        osType = Device.intern(osType);
+        tunnel = Device.intern(tunnel);
+        method = Device.intern(method);
+        cpe = Device.intern(cpe);
+        scripts = scripts == null || scripts.isEmpty() ? Map.of() : Map.copyOf(scripts);
+    }
+
+    /**
+     * @return Nombre del servicio en minúsculas, o "" si Nmap no lo identificó
+     */
+    public String nameOrEmpty() {
+        return name != null ? name.toLowerCase() : "";
+    }
+
+    /**
+     * @return true si el servicio va cifrado con SSL/TLS ("https" o tunnel="ssl")
+     */
+    public boolean isTls() {
+        return "ssl".equals(tunnel) || (name != null && (name.equals("https") || name.startsWith("ssl/")));
+    }
+}
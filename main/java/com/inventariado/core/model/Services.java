@@ -0,0 +1,127 @@
+package com.inventariado.core.model;
+
+import java.util.Arrays;
+
+/**
+ * Puertos abiertos de un dispositivo: un array ordenado de números de puerto y
+ * otro paralelo con su servicio. Ocupa una fracción de un
+ * {@code Map<Integer, Map<String, Object>>} y la consulta por puerto es una
+ * búsqueda binaria sin conversiones ni casts.
+ */
+public final class Services {
+    public static final Services EMPTY = new Services(new int[0], new Service[0]);
+
+    private final int[] ports;
+    private final Service[] services;
+
+    private Services(int[] ports, Service[] services) {
+        this.ports = ports;
+        this.services = services;
+    }
+
+    /**
+     * @param ports    Puertos, en cualquier orden; si se repite uno, gana el primero
+     * @param services Servicio de cada puerto, en el mismo orden (null = desconocido)
+     */
+    public static Services of(int[] ports, Service[] services) {
+        if (ports.length != services.length) {
+            throw new IllegalArgumentException("Se esperaban " + ports.length + " servicios y hay " + services.length);
+        }
+        if (ports.length == 0) return EMPTY;
+
+        // Ordenar índices por puerto sin cajas Integer: puerto en los bits altos, posición en los bajos
+        long[] order = new long[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            if (ports[i] < 0 || ports[i] > 65535) {
+                throw new IllegalArgumentException("Puerto inválido: " + ports[i]);
+            }
+            order[i] = (long) ports[i] << 32 | i;
+        }
+        Arrays.sort(order);
+
+        int[] sortedPorts = new int[ports.length];
+        Service[] sortedServices = new Service[ports.length];
+        int n = 0;
+        for (long entry : order) {
+            int port = (int) (entry >>> 32);
+            if (n > 0 && sortedPorts[n - 1] == port) continue;
+            Service service = services[(int) entry];
+            sortedPorts[n] = port;
+            sortedServices[n] = service != null ? service : Service.UNKNOWN;
+            n++;
+        }
+        return n == ports.length
+                ? new Services(sortedPorts, sortedServices)
+                : new Services(Arrays.copyOf(sortedPorts, n), Arrays.copyOf(sortedServices, n));
+    }
+
+    public int size() {
+        return ports.length;
+    }
+
+    public boolean isEmpty() {
+        return ports.length == 0;
+    }
+
+    /**
+     * @return Puerto en la posición {@code index}, en orden ascendente
+     */
+    public int port(int index) {
+        return ports[index];
+    }
+
+    public Service service(int index) {
+        return services[index];
+    }
+
+    public boolean contains(int port) {
+        return Arrays.binarySearch(ports, port) >= 0;
+    }
+
+    /**
+     * @return Servicio del puerto, o null si no está abierto
+     */
+    public Service get(int port) {
+        int index = Arrays.binarySearch(ports, port);
+        return index >= 0 ? services[index] : null;
+    }
+
+    /**
+     * @return true si algún servicio tiene un nombre que contiene {@code fragment} (sin distinguir mayúsculas)
+     */
+    public boolean anyNameContains(String fragment) {
+        String lower = fragment.toLowerCase();
+        for (Service service : services) {
+            if (service.nameOrEmpty().contains(lower)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Copia de los puertos, en orden ascendente
+     */
+    public int[] ports() {
+        return ports.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Services that
+                && Arrays.equals(ports, that.ports) && Arrays.equals(services, that.services);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(ports) + Arrays.hashCode(services);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < ports.length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(ports[i]).append('/').append(services[i].protocol());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.inventariado.core.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tabla de valores inmutables compartidos entre dispositivos, al estilo de
+ * {@link String#intern()}: servicios, vulnerabilidades, recomendaciones y
+ * hardware vacío se repiten iguales en cientos de hosts y basta una instancia.
+ *
+ * La tabla tiene un tope; una vez lleno, los valores nuevos se devuelven sin
+ * compartir, de modo que un monitor de larga duración no crece sin límite.
+ */
+final class SharedValues {
+    static final int MAX_ENTRIES = 65_536;
+
+    private static final Map<Object, Object> VALUES = new ConcurrentHashMap<>();
+
+    private SharedValues() {
+    }
+
+    /**
+     * @param value Valor inmutable con equals/hashCode por contenido
+     * @return Instancia compartida igual a {@code value}, o el propio valor si la tabla está llena
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T share(T value) {
+        Object shared = VALUES.get(value);
+        if (shared != null) {
+            return (T) shared;
+        }
+        if (VALUES.size() >= MAX_ENTRIES) {
+            return value;
+        }
+        shared = VALUES.putIfAbsent(value, value);
+        return shared != null ? (T) shared : value;
+    }
+}
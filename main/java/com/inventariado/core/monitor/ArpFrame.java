@@ -0,0 +1,124 @@
+package com.inventariado.core.monitor;
+
+/**
+ * Decodificador de tramas ARP sobre los bytes capturados, sin construir
+ * objetos de pcap4j.
+ *
+ * Lee los campos a desplazamiento fijo y deja el resultado en campos
+ * primitivos (MAC en los 48 bits bajos de un long, IPv4 en un int), de modo
+ * que una misma instancia se reutiliza para todas las tramas de un hilo. Las
+ * cadenas solo se construyen con {@link #formatMac(long)} y
+ * {@link #formatIp(int)} cuando hacen falta para una alerta.
+ */
+final class ArpFrame {
+    // Tipos de enlace de libpcap (DLT_*)
+    static final int DLT_EN10MB = 1;
+    static final int DLT_LINUX_SLL = 113;
+
+    static final int OPERATION_REQUEST = 1;
+    static final int OPERATION_REPLY = 2;
+
+    private static final int ETHERTYPE_ARP = 0x0806;
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+    private static final int ETHERNET_HEADER = 14;
+    private static final int SLL_HEADER = 16;
+    private static final int VLAN_TAG = 4;
+    private static final int ARP_IPV4_LENGTH = 28;
+
+    private int operation;
+    private long senderMac;
+    private int senderIp;
+
+    boolean decode(byte[] frame, int length, int linkType) {
+        return decode(frame, 0, length, linkType);
+    }
+
+    /**
+     * Decodifica una trama y, si es una petición o respuesta ARP de Ethernet/IPv4,
+     * deja sus campos en esta instancia.
+     * @param frame Bytes capturados
+     * @param start Posición de la trama dentro de {@code frame}
+     * @param length Bytes válidos de la trama
+     * @param linkType Tipo de enlace de la captura (DLT_*)
+     * @return true si la trama es un ARP válido
+     */
+    boolean decode(byte[] frame, int start, int length, int linkType) {
+        int end = start + length;
+        int offset;
+        int etherType;
+        if (linkType == DLT_EN10MB) {
+            if (length < ETHERNET_HEADER) return false;
+            offset = start + ETHERNET_HEADER;
+            etherType = readShort(frame, start + 12);
+            // Etiquetas 802.1Q / 802.1ad (como mucho dos)
+            for (int tags = 0; tags < 2 && (etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ); tags++) {
+                if (end < offset + VLAN_TAG) return false;
+                etherType = readShort(frame, offset + 2);
+                offset += VLAN_TAG;
+            }
+        } else if (linkType == DLT_LINUX_SLL) {
+            if (length < SLL_HEADER) return false;
+            offset = start + SLL_HEADER;
+            etherType = readShort(frame, start + 14);
+        } else {
+            return false;
+        }
+        if (etherType != ETHERTYPE_ARP || end < offset + ARP_IPV4_LENGTH) {
+            return false;
+        }
+
+        // htype 1 (Ethernet), ptype IPv4, hlen 6, plen 4
+        if (readShort(frame, offset) != 1 || readShort(frame, offset + 2) != ETHERTYPE_IPV4
+                || frame[offset + 4] != 6 || frame[offset + 5] != 4) {
+            return false;
+        }
+        int op = readShort(frame, offset + 6);
+        if (op != OPERATION_REQUEST && op != OPERATION_REPLY) {
+            return false;
+        }
+        operation = op;
+        senderMac = (long) readShort(frame, offset + 8) << 32 | readInt(frame, offset + 10) & 0xFFFFFFFFL;
+        senderIp = readInt(frame, offset + 14);
+        return true;
+    }
+
+    int operation() {
+        return operation;
+    }
+
+    long senderMac() {
+        return senderMac;
+    }
+
+    int senderIp() {
+        return senderIp;
+    }
+
+    /**
+     * @return MAC en minúsculas separada por dos puntos, como "aa:bb:cc:dd:ee:ff"
+     */
+    static String formatMac(long mac) {
+        char[] text = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int octet = (int) (mac >>> (40 - 8 * i)) & 0xFF;
+            text[i * 3] = Character.forDigit(octet >>> 4, 16);
+            text[i * 3 + 1] = Character.forDigit(octet & 0xF, 16);
+            if (i < 5) text[i * 3 + 2] = ':';
+        }
+        return new String(text);
+    }
+
+    static String formatIp(int ip) {
+        return (ip >>> 24) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    private static int readShort(byte[] b, int i) {
+        return (b[i] & 0xFF) << 8 | b[i + 1] & 0xFF;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) << 24 | (b[i + 1] & 0xFF) << 16 | (b[i + 2] & 0xFF) << 8 | b[i + 3] & 0xFF;
+    }
+}
@@ -0,0 +1,167 @@
+package com.inventariado.core.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Anillo de tramas capturadas con un único productor (el hilo de captura) y
+ * un único consumidor (el detector), al estilo de Disruptor.
+ *
+ * Toda la memoria se reserva al crearlo: cada trama se copia en un hueco de
+ * tamaño fijo y solo se publican las secuencias de productor y consumidor. El
+ * productor nunca espera: si el anillo está lleno la trama se descarta y se
+ * cuenta, para no retrasar la lectura de libpcap y provocar pérdidas en el
+ * kernel; las fuentes que sí pueden esperar (un fichero) usan
+ * {@link #put(byte[], int, BooleanSupplier)}. El consumidor procesa las tramas
+ * por lotes y libera el lote entero de una vez.
+ */
+final class CaptureRing {
+
+    /**
+     * Recibe cada trama de un lote. Los bytes solo son válidos durante la llamada.
+     */
+    interface FrameHandler {
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long FULL_PARK_NANOS = 50_000;
+
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private final byte[] data;
+    private final int[] lengths;
+
+    // Siguiente secuencia a escribir (productor) y a leer (consumidor)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    // Copias locales de la secuencia del otro extremo, para no leerla en cada trama
+    private long cachedTail;
+    private long cachedHead;
+
+    // Escritos por un único hilo cada uno; los demás solo los leen
+    private volatile long dropped;
+    private volatile long truncated;
+    private volatile long batches;
+    private volatile long maxBacklog;
+
+    /**
+     * @param capacity Huecos del anillo (se redondea a potencia de dos)
+     * @param slotSize Bytes por hueco; las tramas más largas se truncan
+     */
+    CaptureRing(int capacity, int slotSize) {
+        if (capacity <= 0 || slotSize <= 0) {
+            throw new IllegalArgumentException("Capacidad y tamaño de hueco deben ser positivos");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slotSize = slotSize;
+        this.data = new byte[size * slotSize];
+        this.lengths = new int[size];
+    }
+
+    /**
+     * Copia una trama al anillo. Solo desde el hilo productor.
+     * @return false si el anillo estaba lleno y la trama se descartó
+     */
+    boolean offer(byte[] frame, int length) {
+        if (!publish(frame, length)) {
+            dropped++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copia una trama al anillo esperando a que haya hueco. Solo desde el hilo productor.
+     * @param active Mientras devuelva true se sigue esperando
+     * @return false si se dejó de esperar sin copiar la trama
+     */
+    boolean put(byte[] frame, int length, BooleanSupplier active) {
+        int spins = 0;
+        while (!publish(frame, length)) {
+            if (!active.getAsBoolean()) return false;
+            if (++spins < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    private boolean publish(byte[] frame, int length) {
+        long sequence = head.get();
+        if (sequence - cachedTail >= capacity) {
+            cachedTail = tail.getAcquire();
+            if (sequence - cachedTail >= capacity) {
+                return false;
+            }
+        }
+        int slot = (int) sequence & mask;
+        int n = Math.min(length, slotSize);
+        if (n < length) truncated++;
+        System.arraycopy(frame, 0, data, slot * slotSize, n);
+        lengths[slot] = n;
+        head.setRelease(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Entrega al handler hasta {@code maxBatch} tramas pendientes y las libera.
+     * Solo desde el hilo consumidor.
+     * @return Tramas entregadas (0 si no había ninguna)
+     */
+    int drain(FrameHandler handler, int maxBatch) {
+        long sequence = tail.get();
+        if (cachedHead == sequence) {
+            cachedHead = head.getAcquire();
+            if (cachedHead == sequence) return 0;
+        }
+        long available = cachedHead - sequence;
+        if (available > maxBacklog) maxBacklog = available;
+        int n = (int) Math.min(available, maxBatch);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (sequence + i) & mask;
+            handler.onFrame(data, slot * slotSize, lengths[slot]);
+        }
+        tail.setRelease(sequence + n);
+        batches++;
+        return n;
+    }
+
+    /**
+     * @return Tramas copiadas y aún no consumidas
+     */
+    long backlog() {
+        return Math.max(0, head.get() - tail.get());
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    Map<String, Object> getMetrics() {
+        long published = head.get();
+        long consumed = tail.get();
+        long batchCount = batches;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("capacity", capacity);
+        metrics.put("slot_size", slotSize);
+        metrics.put("frames_queued", published);
+        metrics.put("frames_consumed", consumed);
+        metrics.put("frames_dropped", dropped);
+        metrics.put("frames_truncated", truncated);
+        metrics.put("backlog", Math.max(0, published - consumed));
+        metrics.put("max_backlog", maxBacklog);
+        metrics.put("batches", batchCount);
+        metrics.put("mean_batch", batchCount > 0 ? Math.round(consumed * 100.0 / batchCount) / 100.0 : 0.0);
+        return metrics;
+    }
+}
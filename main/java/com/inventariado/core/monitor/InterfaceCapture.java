@@ -0,0 +1,268 @@
+package com.inventariado.core.monitor;
+
+import java.io.EOFException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import org.pcap4j.core.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Captura ARP de una interfaz: su hilo abre el manejador de pcap y copia cada
+ * trama a su propio {@link CaptureRing}, del que solo lee el detector
+ * compartido de {@link NetworkMonitor}. Guarda además las métricas de la
+ * interfaz (anillo, tramas ARP, dispositivos nuevos y pcap_stats).
+ *
+ * Con {@link #offline(Path, double, int, int, FrameSink)} la fuente es un
+ * fichero .pcap/.pcapng leído con el manejador offline de pcap4j: las tramas
+ * se entregan al ritmo original, N veces más rápido o sin pausas, y el anillo
+ * lleno frena la lectura en lugar de descartar.
+ */
+final class InterfaceCapture {
+    private static final Logger logger = LoggerFactory.getLogger(InterfaceCapture.class);
+
+    private static final int READ_TIMEOUT_MILLIS = 50;
+    private static final long KERNEL_STATS_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long MAX_PACING_SLEEP_NANOS = 100_000_000L;
+
+    /**
+     * Destino de las tramas de todas las capturas, con la interfaz de origen.
+     */
+    interface FrameSink {
+        void onFrame(InterfaceCapture source, byte[] buffer, int offset, int length);
+    }
+
+    private final String name;
+    // Fichero a reproducir, o null si es una interfaz en vivo
+    private final Path replayFile;
+    private final double speed;
+    private final int snapshotLength;
+    private final CaptureRing ring;
+    private final CaptureRing.FrameHandler handler;
+    private volatile PcapHandle handle;
+    private volatile Thread thread;
+    private volatile int linkType = ArpFrame.DLT_EN10MB;
+    private volatile boolean capturing;
+
+    private final LongAdder arpFrames = new LongAdder();
+    private final LongAdder newDevices = new LongAdder();
+    // Estadísticas de pcap_stats, muestreadas por el hilo de captura (-1 si no hay)
+    private volatile long kernelReceived = -1;
+    private volatile long kernelDropped = -1;
+    private volatile long interfaceDropped = -1;
+
+    /**
+     * @param snapshotLength Bytes capturados por trama; también el tamaño de hueco del anillo
+     */
+    InterfaceCapture(String name, int ringCapacity, int snapshotLength, FrameSink sink) {
+        this(name, null, 0, ringCapacity, snapshotLength, sink);
+    }
+
+    /**
+     * @param speed 1 para el ritmo original, N para ir N veces más rápido, 0 o menos para no esperar
+     */
+    static InterfaceCapture offline(Path file, double speed, int ringCapacity, int snapshotLength, FrameSink sink) {
+        return new InterfaceCapture(file.toString(), file, speed, ringCapacity, snapshotLength, sink);
+    }
+
+    private InterfaceCapture(String name, Path replayFile, double speed, int ringCapacity, int snapshotLength,
+                             FrameSink sink) {
+        this.name = name;
+        this.replayFile = replayFile;
+        this.speed = speed;
+        this.snapshotLength = snapshotLength;
+        this.ring = new CaptureRing(ringCapacity, snapshotLength);
+        this.handler = (buffer, offset, length) -> sink.onFrame(this, buffer, offset, length);
+    }
+
+    /**
+     * Arranca el hilo de captura.
+     * @param active Mientras devuelva true se sigue capturando
+     * @param onExit Se ejecuta en el hilo de captura al terminar, por error o por parada
+     */
+    void start(BooleanSupplier active, Runnable onExit) {
+        capturing = true;
+        Thread capture = new Thread(() -> {
+            try {
+                capture(active);
+            } finally {
+                capturing = false;
+                onExit.run();
+            }
+        }, "monitor-capture-" + name);
+        capture.setDaemon(true);
+        this.thread = capture;
+        capture.start();
+    }
+
+    private void capture(BooleanSupplier active) {
+        PcapHandle opened = null;
+        try {
+            if (replayFile != null) {
+                opened = Pcaps.openOffline(replayFile.toString());
+            } else {
+                PcapNetworkInterface nif = Pcaps.getDevByName(name);
+                if (nif == null) {
+                    logger.error("No existe la interfaz {}", name);
+                    return;
+                }
+                opened = nif.openLive(snapshotLength, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, READ_TIMEOUT_MILLIS);
+            }
+            this.handle = opened;
+            // Filtro para capturar solo paquetes ARP
+            opened.setFilter("arp", BpfProgram.BpfCompileMode.OPTIMIZE);
+            linkType = opened.getDlt().value();
+            long nextStats = System.nanoTime();
+            long firstPacketNanos = -1;
+            long replayStart = 0;
+
+            // Aquí solo se copian las tramas al anillo; el detector hace el resto
+            while (active.getAsBoolean()) {
+                if (replayFile == null && System.nanoTime() - nextStats >= 0) {
+                    sampleKernelStats(opened);
+                    nextStats = System.nanoTime() + KERNEL_STATS_INTERVAL_NANOS;
+                }
+                try {
+                    byte[] frame = opened.getNextRawPacketEx();
+                    if (frame == null) continue;
+                    if (replayFile == null) {
+                        ring.offer(frame, frame.length);
+                        continue;
+                    }
+                    if (speed > 0) {
+                        // Esperar hasta el instante de la trama, escalado por la velocidad
+                        long packetNanos = timestampNanos(opened.getTimestamp());
+                        if (firstPacketNanos < 0) {
+                            firstPacketNanos = packetNanos;
+                            replayStart = System.nanoTime();
+                        }
+                        long due = replayStart + (long) ((packetNanos - firstPacketNanos) / speed);
+                        // A trozos, para notar la parada aunque el fichero tenga huecos largos
+                        long wait;
+                        while ((wait = due - System.nanoTime()) > 0 && active.getAsBoolean()) {
+                            long slice = Math.min(wait, MAX_PACING_SLEEP_NANOS);
+                            Thread.sleep(slice / 1_000_000, (int) (slice % 1_000_000));
+                        }
+                    }
+                    if (!ring.put(frame, frame.length, active)) break;
+                } catch (TimeoutException e) {
+                    // Timeout esperado, continuar
+                } catch (EOFException e) {
+                    if (replayFile != null) {
+                        logger.info("Fin del fichero {}", name);
+                    } else {
+                        logger.warn("Fin de la captura en {}", name);
+                    }
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (PcapNativeException | NotOpenException e) {
+            if (active.getAsBoolean()) {
+                logger.error("Error al capturar en {}: {}", name, e.getMessage());
+            }
+        } finally {
+            if (opened != null && opened.isOpen()) {
+                opened.close();
+            }
+        }
+    }
+
+    private static long timestampNanos(Timestamp timestamp) {
+        if (timestamp == null) return 0;
+        return Math.floorDiv(timestamp.getTime(), 1000) * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    private void sampleKernelStats(PcapHandle opened) {
+        try {
+            PcapStat stats = opened.getStats();
+            kernelReceived = stats.getNumPacketsReceived();
+            kernelDropped = stats.getNumPacketsDropped();
+            try {
+                interfaceDropped = stats.getNumPacketsDroppedByIf();
+            } catch (UnsupportedOperationException e) {
+                interfaceDropped = -1;
+            }
+        } catch (PcapNativeException | NotOpenException | RuntimeException e) {
+            logger.debug("No se pudieron leer las estadísticas de pcap de {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Entrega al detector un lote de tramas del anillo. Solo desde el hilo detector.
+     */
+    int drain(int maxBatch) {
+        return ring.drain(handler, maxBatch);
+    }
+
+    /**
+     * Cierra el manejador para desbloquear la lectura en curso.
+     */
+    void close() {
+        PcapHandle current = handle;
+        if (current != null && current.isOpen()) {
+            current.close();
+        }
+    }
+
+    void join(long millis) throws InterruptedException {
+        Thread current = thread;
+        if (current != null) {
+            current.join(millis);
+        }
+    }
+
+    boolean hasPending() {
+        return capturing || ring.backlog() > 0;
+    }
+
+    void recordArpFrame() {
+        arpFrames.increment();
+    }
+
+    void recordNewDevice() {
+        newDevices.increment();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isOffline() {
+        return replayFile != null;
+    }
+
+    int getLinkType() {
+        return linkType;
+    }
+
+    boolean isCapturing() {
+        return capturing;
+    }
+
+    Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("source", replayFile != null ? "offline" : "live");
+        if (replayFile != null) {
+            metrics.put("speed", speed > 0 ? speed : "max");
+        }
+        metrics.put("capturing", capturing);
+        metrics.put("link_type", linkType);
+        metrics.put("arp_frames", arpFrames.sum());
+        metrics.put("new_devices", newDevices.sum());
+        metrics.put("ring", ring.getMetrics());
+        Map<String, Object> pcapStats = new LinkedHashMap<>();
+        pcapStats.put("received", kernelReceived);
+        pcapStats.put("dropped", kernelDropped);
+        pcapStats.put("dropped_by_interface", interfaceDropped);
+        metrics.put("pcap_stats", pcapStats);
+        return metrics;
+    }
+}
@@ -0,0 +1,233 @@
+package com.inventariado.core.monitor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tabla MAC -&gt; último instante visto (segundos) con direccionamiento abierto
+ * sobre arrays de long, sin objetos por entrada.
+ *
+ * Las MAC del inventario se fijan con {@link #pin(long)} y no caducan nunca.
+ * El resto caduca si no se ve durante {@code ttlSeconds}, y la tabla no pasa de
+ * {@code maxEntries}: al llegar al límite se descarta la mitad más antigua (por
+ * instante visto) de las entradas no fijadas. Cada hueco ocupa 16 bytes y la
+ * ocupación llega al 75 % antes de crecer, así que la memoria queda acotada
+ * por {@code maxEntries} (unos 32 MB para un millón de MAC).
+ *
+ * Los métodos están sincronizados: el escritor habitual es un único hilo de
+ * captura y el bloqueo sin contención cuesta menos que la búsqueda.
+ */
+final class MacTable {
+    /** Valor devuelto por {@link #get(long)} si la MAC no está */
+    static final long MISSING = -1;
+    /** Valor de las entradas fijadas: nunca caducan */
+    static final long PINNED = Long.MAX_VALUE;
+
+    private static final long EMPTY = -1;
+    private static final int MIN_CAPACITY = 64;
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+
+    private final int maxEntries;
+    private final long ttlSeconds;
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int pinned;
+    private long nextSweep;
+    private long evictions;
+
+    /**
+     * @param maxEntries Entradas como máximo (techo de memoria)
+     * @param ttlSeconds Tiempo sin ver una MAC tras el que se olvida
+     */
+    MacTable(int maxEntries, long ttlSeconds) {
+        if (maxEntries <= 0 || ttlSeconds <= 0) {
+            throw new IllegalArgumentException("Límite de entradas y caducidad deben ser positivos");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlSeconds = ttlSeconds;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return Último instante visto, {@link #PINNED} o {@link #MISSING}
+     */
+    synchronized long get(long mac) {
+        int slot = find(mac);
+        return slot >= 0 ? values[slot] : MISSING;
+    }
+
+    synchronized boolean contains(long mac) {
+        return find(mac) >= 0;
+    }
+
+    /**
+     * Registra que se ha visto la MAC.
+     * @param now Instante actual en segundos
+     * @return true si no estaba en la tabla (dispositivo nuevo)
+     */
+    synchronized boolean touch(long mac, long now) {
+        if (now >= nextSweep) {
+            nextSweep = now + SWEEP_INTERVAL_SECONDS;
+            evictOlderThan(now - ttlSeconds);
+        }
+        int slot = find(mac);
+        if (slot >= 0) {
+            if (values[slot] != PINNED) {
+                values[slot] = now;
+            }
+            return false;
+        }
+        insert(mac, now);
+        return true;
+    }
+
+    /**
+     * Añade una MAC que no caduca, o fija una ya presente.
+     */
+    synchronized void pin(long mac) {
+        int slot = find(mac);
+        if (slot >= 0) {
+            if (values[slot] != PINNED) {
+                values[slot] = PINNED;
+                pinned++;
+            }
+            return;
+        }
+        insert(mac, PINNED);
+        pinned++;
+    }
+
+    /**
+     * Descarta las entradas no fijadas vistas antes de {@code cutoff}.
+     * @return Entradas descartadas
+     */
+    synchronized int evictOlderThan(long cutoff) {
+        int removed = 0;
+        for (int i = 0; i < keys.length; i++) {
+            // Tras borrar, el hueco puede recibir otra entrada que también haya que mirar
+            while (keys[i] != EMPTY && values[i] != PINNED && values[i] < cutoff) {
+                remove(i);
+                removed++;
+            }
+        }
+        evictions += removed;
+        return removed;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+        pinned = 0;
+    }
+
+    synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", size);
+        metrics.put("pinned", pinned);
+        metrics.put("max_entries", maxEntries);
+        metrics.put("capacity", keys.length);
+        metrics.put("footprint_bytes", (long) keys.length * 2 * Long.BYTES);
+        metrics.put("evictions", evictions);
+        return metrics;
+    }
+
+    private void insert(long mac, long value) {
+        if (size >= maxEntries) {
+            makeRoom();
+            if (size >= maxEntries) {
+                // Todo fijado: el inventario manda sobre el techo
+                if (value != PINNED) return;
+            }
+        }
+        if ((size + 1) * 4L > keys.length * 3L) {
+            grow();
+        }
+        int slot = slotOf(mac);
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = mac;
+        values[slot] = value;
+        size++;
+    }
+
+    // Al llegar al techo: fuera la mitad más antigua de lo no fijado
+    private void makeRoom() {
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && values[i] != PINNED) {
+                oldest = Math.min(oldest, values[i]);
+                newest = Math.max(newest, values[i]);
+            }
+        }
+        if (oldest == Long.MAX_VALUE) return;
+        evictOlderThan(oldest + (newest - oldest) / 2 + 1);
+    }
+
+    private int find(long mac) {
+        int slot = slotOf(mac);
+        long key;
+        while ((key = keys[slot]) != EMPTY) {
+            if (key == mac) return slot;
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    // Borrado con desplazamiento hacia atrás: sin lápidas, las búsquedas no se alargan
+    private void remove(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = slotOf(keys[next]);
+            // La entrada puede ocupar el hueco si su posición ideal no está entre el hueco y ella
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == EMPTY) continue;
+            int slot = slotOf(key);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private int slotOf(long mac) {
+        // Mezcla de bits (fmix64 de MurmurHash3): los prefijos OUI se repiten mucho
+        long h = mac;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & (keys.length - 1);
+    }
+}
@@ -0,0 +1,182 @@
+package com.inventariado.core.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compara {@link MacTable} con las estructuras que usaba antes NetworkMonitor
+ * (conjunto de cadenas MAC en minúsculas y mapa MAC -&gt; última alerta) con N
+ * MAC distintas: coste de inserción y de búsqueda por operación y memoria
+ * retenida tras una recolección.
+ *
+ * Uso:
+ * <pre>
+ *   java com.inventariado.core.monitor.MacTableBenchmark [--macs 1000000] [--rounds 5] [--seed 42]
+ * </pre>
+ */
+public final class MacTableBenchmark {
+
+    private MacTableBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int macs = 1_000_000;
+        int rounds = 5;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--macs" -> macs = Integer.parseInt(args[++i]);
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+
+        long[] addresses = new long[macs];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < macs; i++) {
+            addresses[i] = random.nextLong() & 0xFFFF_FFFF_FFFFL;
+        }
+        // Búsquedas en otro orden que las inserciones, para no favorecer a la caché
+        long[] probes = addresses.clone();
+        for (int i = probes.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = probes[i];
+            probes[i] = probes[j];
+            probes[j] = swap;
+        }
+
+        System.out.printf("MACs: %d, rondas: %d, semilla %d%n", macs, rounds, seed);
+        for (Candidate candidate : new Candidate[] {new TableCandidate(macs), new StringSetCandidate(), new BoxedMapCandidate()}) {
+            print(candidate.name(), measure(candidate, addresses, probes, rounds));
+        }
+    }
+
+    private static Map<String, Object> measure(Candidate candidate, long[] addresses, long[] probes, int rounds) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        long start = System.nanoTime();
+        for (long mac : addresses) {
+            candidate.insert(mac);
+        }
+        double insertNanos = (System.nanoTime() - start) / (double) addresses.length;
+
+        System.gc();
+        long retained = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+
+        // La primera ronda calienta el compilador; se toma la mejor de las demás
+        double lookupNanos = Double.MAX_VALUE;
+        long hits = 0;
+        for (int round = 0; round <= rounds; round++) {
+            start = System.nanoTime();
+            for (long mac : probes) {
+                if (candidate.contains(mac)) hits++;
+            }
+            double nanos = (System.nanoTime() - start) / (double) probes.length;
+            if (round > 0) lookupNanos = Math.min(lookupNanos, nanos);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("insert_ns_per_op", round(insertNanos));
+        result.put("lookup_ns_per_op", round(lookupNanos));
+        result.put("retained_mb", round(retained / 1048576.0));
+        result.put("retained_bytes_per_mac", retained / addresses.length);
+        result.put("hits", hits);
+        candidate.release();
+        return result;
+    }
+
+    private static void print(String name, Map<String, Object> result) {
+        System.out.println(name + ":");
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private interface Candidate {
+        String name();
+
+        void insert(long mac);
+
+        boolean contains(long mac);
+
+        void release();
+    }
+
+    private static final class TableCandidate implements Candidate {
+        private MacTable table;
+
+        TableCandidate(int macs) {
+            table = new MacTable(macs, Long.MAX_VALUE / 2);
+        }
+
+        public String name() {
+            return "mac_table";
+        }
+
+        public void insert(long mac) {
+            table.touch(mac, 1);
+        }
+
+        public boolean contains(long mac) {
+            return table.contains(mac);
+        }
+
+        public void release() {
+            table = null;
+        }
+    }
+
+    // Lo que hacía NetworkMonitor con knownDevices
+    private static final class StringSetCandidate implements Candidate {
+        private Set<String> set = ConcurrentHashMap.newKeySet();
+
+        public String name() {
+            return "string_set";
+        }
+
+        public void insert(long mac) {
+            set.add(ArpFrame.formatMac(mac));
+        }
+
+        public boolean contains(long mac) {
+            return set.contains(ArpFrame.formatMac(mac));
+        }
+
+        public void release() {
+            set = null;
+        }
+    }
+
+    // Lo que hacía NetworkMonitor con lastAlertTime, con la MAC ya como long
+    private static final class BoxedMapCandidate implements Candidate {
+        private Map<Long, Long> map = new ConcurrentHashMap<>();
+
+        public String name() {
+            return "boxed_map";
+        }
+
+        public void insert(long mac) {
+            map.put(mac, 1L);
+        }
+
+        public boolean contains(long mac) {
+            return map.containsKey(mac);
+        }
+
+        public void release() {
+            map = null;
+        }
+    }
+}
@@ -1,16 +1,16 @@
 package com.inventariado.core.monitor;
 
-import java.io.EOFException;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
+import com.inventariado.core.oui.OuiRegistry;
 import org.pcap4j.core.*;
-import org.pcap4j.packet.*;
-import org.pcap4j.packet.namednumber.ArpOperation;
-import org.pcap4j.util.MacAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,22 +18,57 @@ import org.slf4j.LoggerFactory;
 
  Clase para monitorear la red en tiempo real.
  Implementa la detección de nuevos dispositivos y el sistema de alertas.
+
+ Cada interfaz tiene su propio hilo de captura ({@link InterfaceCapture}) que
+ solo copia tramas a su {@link CaptureRing}. Un único hilo detector vacía todos
+ los anillos por lotes sobre una tabla de dispositivos común, de modo que un
+ equipo visto en varias VLAN alerta una sola vez, y otro hilo ejecuta los
+ callbacks: un callback lento no frena la lectura de libpcap.
  */
 public class NetworkMonitor {
     private static final Logger logger = LoggerFactory.getLogger(NetworkMonitor.class);
 
-    private final Set<String> knownDevices = ConcurrentHashMap.newKeySet();
+    // MAC (48 bits bajos) -> último instante visto; las del inventario no caducan
+    private final MacTable knownDevices;
     private final List<Consumer<Map<String, String>>> alertCallbacks = new CopyOnWriteArrayList<>();
     private volatile boolean isMonitoring = false;
-    private Thread monitorThread;
-    private final Map<String, Long> lastAlertTime = new ConcurrentHashMap<>();
     private static final long MIN_ALERT_INTERVAL = 300; // 5 minutos en segundos
-
-    private PcapHandle handle;
-    private String interfaceName;
+    private static final int DEFAULT_MAX_DEVICES = 1 << 20;
+    private static final long DEFAULT_DEVICE_TTL = 24 * 3600; // segundos
+    private volatile long startedAt;
+
+    // Pipeline: capturas -> anillos -> detector (por lotes) -> cola de alertas -> despachador
+    private static final int RING_CAPACITY = 1 << 14;
+    private static final int RING_SLOT_SIZE = 128; // un ARP con dos etiquetas VLAN ocupa 50 bytes
+    private static final int DETECT_BATCH = 256;
+    private static final int ALERT_BATCH = 64;
+    private static final int ALERT_QUEUE_CAPACITY = 1024;
+    private static final long IDLE_PARK_NANOS = 200_000;
+
+    private final List<InterfaceCapture> captures = new CopyOnWriteArrayList<>();
+    // Solo lo usa el hilo detector
+    private final ArpFrame decoder = new ArpFrame();
+    private volatile boolean detecting;
+    private Thread detectorThread;
+    private Thread alertThread;
+    private final BlockingQueue<Map<String, String>> pendingAlerts = new ArrayBlockingQueue<>(ALERT_QUEUE_CAPACITY);
+    private final LongAdder arpFrames = new LongAdder();
+    private final LongAdder alertsGenerated = new LongAdder();
+    private final LongAdder alertsDropped = new LongAdder();
+
+    private volatile OuiRegistry vendors;
 
     public NetworkMonitor() {
-// Constructor vacío
+        this(DEFAULT_MAX_DEVICES, Duration.ofSeconds(DEFAULT_DEVICE_TTL));
+    }
+
+    /**
+
+     @param maxDevices Dispositivos detectados que se recuerdan como máximo
+     @param deviceTtl Tiempo sin ver un dispositivo tras el que vuelve a alertar (mínimo 5 minutos)
+     */
+    public NetworkMonitor(int maxDevices, Duration deviceTtl) {
+        this.knownDevices = new MacTable(maxDevices, Math.max(MIN_ALERT_INTERVAL, deviceTtl.getSeconds()));
     }
 
     /**
@@ -43,25 +78,162 @@ public class NetworkMonitor {
      @return true si el monitoreo se inició correctamente
      */
     public boolean startMonitoring(String interfaceName) {
-        if (isMonitoring) {
-            logger.warn("El monitoreo ya está activo");
+        return startMonitoring(Collections.singletonList(interfaceName));
+    }
+
+    /**
+
+     Inicia el monitoreo en varias interfaces (p.ej. las subinterfaces VLAN de un
+     troncal). Si ya está activo, añade las interfaces que aún no se capturan.
+     @param interfaceNames Nombres de las interfaces
+     @return true si se empezó a capturar en alguna interfaz
+     */
+    public synchronized boolean startMonitoring(Collection<String> interfaceNames) {
+        if (interfaceNames == null || interfaceNames.isEmpty()) {
+            logger.warn("No se indicó ninguna interfaz para monitorear");
             return false;
         }
+        List<InterfaceCapture> sources = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(interfaceNames)) {
+            if (name != null && !name.isBlank()) {
+                sources.add(new InterfaceCapture(name, RING_CAPACITY, RING_SLOT_SIZE, this::processFrame));
+            }
+        }
+        return startCaptures(sources);
+    }
+
+    /**
+
+     Reproduce ficheros .pcap/.pcapng por el mismo pipeline que la captura en
+     vivo, sin privilegios ni interfaz de red. El monitoreo termina solo al
+     acabar todos los ficheros (ver {@link #awaitCompletion(Duration)}).
+     @param files Ficheros de captura; cada uno es una fuente, como una interfaz
+     @param speed 1 para el ritmo original, N para ir N veces más rápido, 0 para ir lo más rápido posible
+     @return true si se empezó a reproducir algún fichero
+     */
+    public synchronized boolean startReplay(Collection<Path> files, double speed) {
+        if (files == null || files.isEmpty()) {
+            logger.warn("No se indicó ningún fichero para reproducir");
+            return false;
+        }
+        List<InterfaceCapture> sources = new ArrayList<>();
+        for (Path file : new LinkedHashSet<>(files)) {
+            sources.add(InterfaceCapture.offline(file, speed, RING_CAPACITY, RING_SLOT_SIZE, this::processFrame));
+        }
+        return startCaptures(sources);
+    }
+
+    /**
+
+     Espera a que termine el monitoreo (p.ej. al acabar una reproducción) y a
+     que se hayan despachado todas las alertas pendientes.
+     @return true si terminó dentro del plazo
+     */
+    public boolean awaitCompletion(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (isMonitoring) {
+            if (System.nanoTime() - deadline >= 0) return false;
+            Thread.sleep(10);
+        }
+        for (Thread thread : new Thread[] {detectorThread, alertThread}) {
+            if (thread == null) continue;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return !thread.isAlive();
+            thread.join(Math.max(1, remaining / 1_000_000));
+            if (thread.isAlive()) return false;
+        }
+        return true;
+    }
 
+    private boolean startCaptures(List<InterfaceCapture> sources) {
         try {
-            this.interfaceName = interfaceName;
-            this.isMonitoring = true;
-            this.monitorThread = new Thread(this::monitorNetwork);
-            this.monitorThread.setDaemon(true);
-            this.monitorThread.start();
-
-            logger.info("Monitoreo de red iniciado");
-            return true;
+            if (!isMonitoring) {
+                // El detector de un monitoreo anterior puede seguir vaciando sus anillos
+                Thread previous = detectorThread;
+                if (previous != null && previous.isAlive()) {
+                    previous.join(2000);
+                    if (previous.isAlive()) {
+                        logger.warn("El monitoreo anterior aún no ha terminado");
+                        return false;
+                    }
+                }
+                if (vendors == null) {
+                    vendors = OuiRegistry.shared();
+                }
+                captures.clear();
+                this.isMonitoring = true;
+                this.startedAt = System.currentTimeMillis() / 1000;
+                this.detecting = true;
+                this.alertThread = startThread(this::dispatchAlerts, "monitor-alerts");
+                this.detectorThread = startThread(this::detectDevices, "monitor-detector");
+            }
+
+            int started = 0;
+            for (InterfaceCapture capture : sources) {
+                InterfaceCapture existing = findCapture(capture.getName());
+                if (existing != null) {
+                    if (existing.isCapturing()) {
+                        logger.warn("Ya se está monitoreando {}", capture.getName());
+                        continue;
+                    }
+                    captures.remove(existing);
+                }
+                captures.add(capture);
+                capture.start(() -> isMonitoring, this::captureEnded);
+                started++;
+            }
+
+            if (started == 0 && getMonitoredInterfaces().isEmpty()) {
+                this.isMonitoring = false;
+                return false;
+            }
+            logger.info("Monitoreo de red iniciado en {} fuentes", started);
+            return started > 0;
         } catch (Exception e) {
             logger.error("Error al iniciar el monitoreo: {}", e.getMessage());
-            this.isMonitoring = false;
+            if (captures.isEmpty()) {
+                this.isMonitoring = false;
+            }
+            return false;
+        }
+    }
+
+    /**
+
+     Inicia el monitoreo en todas las interfaces activas que no son de loopback.
+     @return true si se empezó a capturar en alguna interfaz
+     */
+    public boolean startMonitoringAllInterfaces() {
+        List<String> names = new ArrayList<>();
+        try {
+            for (PcapNetworkInterface nif : Pcaps.findAllDevs()) {
+                if (nif.isUp() && !nif.isLoopBack()) {
+                    names.add(nif.getName());
+                }
+            }
+        } catch (PcapNativeException e) {
+            logger.error("No se pudieron listar las interfaces: {}", e.getMessage());
             return false;
         }
+        if (names.isEmpty()) {
+            logger.warn("No hay interfaces activas para monitorear");
+            return false;
+        }
+        return startMonitoring(names);
+    }
+
+    /**
+
+     @return Interfaces en las que se está capturando
+     */
+    public List<String> getMonitoredInterfaces() {
+        List<String> names = new ArrayList<>();
+        for (InterfaceCapture capture : captures) {
+            if (capture.isCapturing()) {
+                names.add(capture.getName());
+            }
+        }
+        return names;
     }
 
     /**
@@ -71,30 +243,69 @@ public class NetworkMonitor {
     public void stopMonitoring() {
         this.isMonitoring = false;
 
-        if (handle != null && handle.isOpen()) {
-            handle.close();
+        for (InterfaceCapture capture : captures) {
+            capture.close();
         }
 
-        if (monitorThread != null) {
-            try {
-                monitorThread.join(1000);
-            } catch (InterruptedException e) {
-                logger.warn("Interrupción al detener el hilo de monitoreo");
-                Thread.currentThread().interrupt();
+        // En orden: las capturas dejan de producir y el detector y las alertas vacían lo pendiente
+        try {
+            for (InterfaceCapture capture : captures) {
+                capture.join(1000);
             }
+            for (Thread thread : new Thread[] {detectorThread, alertThread}) {
+                if (thread != null) {
+                    thread.join(1000);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupción al detener el hilo de monitoreo");
+            Thread.currentThread().interrupt();
         }
 
         logger.info("Monitoreo de red detenido");
     }
 
+    private InterfaceCapture findCapture(String name) {
+        for (InterfaceCapture capture : captures) {
+            if (capture.getName().equals(name)) {
+                return capture;
+            }
+        }
+        return null;
+    }
+
+    // Si ya no captura ninguna fuente (errores de pcap o fin de los ficheros) el monitoreo se da por terminado
+    private void captureEnded() {
+        if (!isMonitoring) return;
+        for (InterfaceCapture capture : captures) {
+            if (capture.isCapturing()) return;
+        }
+        synchronized (this) {
+            if (isMonitoring && captures.stream().noneMatch(InterfaceCapture::isCapturing)) {
+                logger.info("Ninguna fuente sigue capturando; fin del monitoreo");
+                isMonitoring = false;
+            }
+        }
+    }
+
+    private static Thread startThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
     /**
 
      Añade un dispositivo conocido.
      @param mac Dirección MAC del dispositivo
      */
     public void addKnownDevice(String mac) {
-        if (mac != null) {
-            knownDevices.add(mac.toLowerCase());
+        long value = OuiRegistry.parseMac(mac);
+        if (value >= 0) {
+            knownDevices.pin(value);
+        } else if (mac != null) {
+            logger.debug("MAC no válida ignorada: {}", mac);
         }
     }
     /**
@@ -109,6 +320,14 @@ public class NetworkMonitor {
                     .forEach(device -> addKnownDevice(device.get("mac")));
         }
     }
+    /**
+
+     Sustituye la base de fabricantes MAC; por defecto se usa la compartida.
+     @param registry Base de fabricantes
+     */
+    public void setOuiRegistry(OuiRegistry registry) {
+        this.vendors = registry;
+    }
     /**
 
      Registra una función de callback para alertas.
@@ -119,91 +338,94 @@ public class NetworkMonitor {
             alertCallbacks.add(callback);
         }
     }
-    private void monitorNetwork() {
+    // Hilo detector: vacía los anillos de todas las interfaces por lotes hasta que no queda nada
+    private void detectDevices() {
         try {
-// Configurar el manejador de captura
-            PcapNetworkInterface nif = Pcaps.getDevByName(interfaceName);
-            int snapshotLength = 65536;
-            int timeout = 50;
-            handle = nif.openLive(snapshotLength, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, timeout);
-            // Filtro para capturar solo paquetes ARP
-            String filter = "arp";
-            handle.setFilter(filter, BpfProgram.BpfCompileMode.OPTIMIZE);
-
-            // Capturar paquetes mientras isMonitoring sea true
-            while (isMonitoring) {
-                try {
-                    Packet packet = handle.getNextPacketEx();
-                    processPacket(packet);
-                } catch (PcapNativeException | NotOpenException e) {
-                    if (isMonitoring) {
-                        logger.error("Error al capturar paquete: {}", e.getMessage());
-                    }
-                    break;
-                } catch (TimeoutException e) {
-                    // Timeout esperado, continuar
-                    continue;
-                } catch (EOFException e) {
-                    throw new RuntimeException(e);
+            while (isMonitoring || hasPendingFrames()) {
+                int drained = 0;
+                for (InterfaceCapture capture : captures) {
+                    drained += capture.drain(DETECT_BATCH);
+                }
+                if (drained == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
                 }
             }
-        } catch (PcapNativeException | NotOpenException e) {
-            logger.error("Error en el monitoreo de red: {}", e.getMessage());
-            isMonitoring = false;
         } finally {
-            if (handle != null && handle.isOpen()) {
-                handle.close();
-            }
+            detecting = false;
         }
     }
 
-    private void processPacket(Packet packet) {
-        if (packet == null) return;
-        try {
-            ArpPacket arpPacket = packet.get(ArpPacket.class);
-            if (arpPacket == null) return;
-
-            ArpOperation operation = arpPacket.getHeader().getOperation();
-            if (operation.equals(ArpOperation.REQUEST) || operation.equals(ArpOperation.REPLY)) {
-                MacAddress macAddress = arpPacket.getHeader().getSrcHardwareAddr();
-                String mac = macAddress.toString().toLowerCase();
-                String ip = arpPacket.getHeader().getSrcProtocolAddr().toString();
-
-                // Verificar si es un dispositivo nuevo
-                if (mac != null && !knownDevices.contains(mac) && shouldAlert(mac)) {
-                    Map<String, String> deviceInfo = new HashMap<>();
-                    deviceInfo.put("mac", mac);
-                    deviceInfo.put("ip", ip);
-                    deviceInfo.put("first_seen", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
-                    deviceInfo.put("detection_type", "arp");
-
-                    // Generar alerta
-                    generateAlert(deviceInfo);
+    private boolean hasPendingFrames() {
+        for (InterfaceCapture capture : captures) {
+            if (capture.hasPending()) return true;
+        }
+        return false;
+    }
 
-                    // Actualizar tiempo de última alerta
-                    lastAlertTime.put(mac, System.currentTimeMillis() / 1000);
+    // Hilo de alertas: ejecuta los callbacks por lotes, fuera del camino de captura
+    private void dispatchAlerts() {
+        List<Map<String, String>> batch = new ArrayList<>(ALERT_BATCH);
+        while (detecting || !pendingAlerts.isEmpty()) {
+            try {
+                Map<String, String> first = pendingAlerts.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                pendingAlerts.drainTo(batch, ALERT_BATCH - 1);
+                for (Map<String, String> deviceInfo : batch) {
+                    generateAlert(deviceInfo);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
 
-                    // Añadir a dispositivos conocidos
-                    knownDevices.add(mac);
+    private void processFrame(InterfaceCapture source, byte[] buffer, int offset, int length) {
+        ArpFrame arp = decoder;
+        try {
+            if (!arp.decode(buffer, offset, length, source.getLinkType())) return;
+            arpFrames.increment();
+            source.recordArpFrame();
+
+            // Verificar si es un dispositivo nuevo en cualquier interfaz; las cadenas solo se crean si hay alerta
+            long mac = arp.senderMac();
+            if (knownDevices.touch(mac, System.currentTimeMillis() / 1000)) {
+                source.recordNewDevice();
+                Map<String, String> deviceInfo = new HashMap<>();
+                deviceInfo.put("mac", ArpFrame.formatMac(mac));
+                deviceInfo.put("ip", ArpFrame.formatIp(arp.senderIp()));
+                String vendor = vendors.lookup(mac);
+                deviceInfo.put("vendor", vendor != null ? vendor : "Desconocido");
+                deviceInfo.put("first_seen", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+                deviceInfo.put("detection_type", "arp");
+                deviceInfo.put("interface", source.getName());
+
+                // Generar alerta en el hilo de alertas; si va muy retrasado se descarta,
+                // salvo al reproducir un fichero, donde se espera para no perder ninguna
+                alertsGenerated.increment();
+                if (source.isOffline()) {
+                    pendingAlerts.put(deviceInfo);
+                } else if (!pendingAlerts.offer(deviceInfo)) {
+                    alertsDropped.increment();
+                    logger.warn("Cola de alertas llena; se descarta la alerta de {}", deviceInfo.get("mac"));
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("Error al procesar paquete ARP: {}", e.getMessage());
         }
     }
 
-    private boolean shouldAlert(String mac) {
-        long currentTime = System.currentTimeMillis() / 1000;
-        long lastAlert = lastAlertTime.getOrDefault(mac, 0L);
-        return (currentTime - lastAlert) >= MIN_ALERT_INTERVAL;
-    }
-
     private void generateAlert(Map<String, String> deviceInfo) {
         try {
 // Crear mensaje de alerta
             String title = "¡Nuevo dispositivo detectado!";
-            String message = String.format("IP: %s\nMAC: %s",
-                    deviceInfo.get("ip"), deviceInfo.get("mac"));
+            String message = String.format("IP: %s\nMAC: %s\nFabricante: %s",
+                    deviceInfo.get("ip"), deviceInfo.get("mac"), deviceInfo.get("vendor"));
 
             // Mostrar notificación del sistema (requiere integración con sistema de notificaciones)
             // Notificaciones del sistema podrían implementarse con:
@@ -237,9 +459,19 @@ public class NetworkMonitor {
         status.put("active", isMonitoring);
         status.put("known_devices", knownDevices.size());
 
-        if (isMonitoring && !lastAlertTime.isEmpty()) {
-            long startTime = lastAlertTime.values().stream().min(Long::compare).orElse(0L);
-            status.put("uptime", (System.currentTimeMillis() / 1000) - startTime);
+        status.put("device_table", knownDevices.getMetrics());
+        status.put("arp_frames", arpFrames.sum());
+        status.put("alerts_generated", alertsGenerated.sum());
+        status.put("alerts_dropped", alertsDropped.sum());
+        status.put("alerts_pending", pendingAlerts.size());
+        Map<String, Object> interfaces = new LinkedHashMap<>();
+        for (InterfaceCapture capture : captures) {
+            interfaces.put(capture.getName(), capture.getMetrics());
+        }
+        status.put("interfaces", interfaces);
+
+        if (isMonitoring) {
+            status.put("uptime", (System.currentTimeMillis() / 1000) - startedAt);
         } else {
             status.put("uptime", 0);
         }
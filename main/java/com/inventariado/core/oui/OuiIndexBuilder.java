@@ -0,0 +1,187 @@
+package com.inventariado.core.oui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compila los registros de prefijos MAC al índice binario que mapea
+ * {@link OuiRegistry}.
+ *
+ * Acepta los CSV del registro IEEE (oui.csv, mam.csv, oui36.csv, iab.csv) y el
+ * fichero nmap-mac-prefixes. El tamaño del prefijo se deduce del número de
+ * dígitos de la asignación: 6 (MA-L, 24 bits), 7 (MA-M, 28 bits) o 9 (MA-S e
+ * IAB, 36 bits). Si un mismo prefijo aparece en varias fuentes, gana la primera.
+ *
+ * Formato del índice (big-endian):
+ * <pre>
+ *   cabecera    magic, versión, nº de entradas, offset de nombres (int) y sello de las fuentes (long)
+ *   directorio  65537 ints: primera entrada de cada valor de los 16 bits altos de la MAC
+ *   entradas    (inicio del bloque &lt;&lt; 8 | bits) long + offset del nombre int, ordenadas
+ *   nombres     longitud u16 + UTF-8, sin repetir
+ * </pre>
+ */
+final class OuiIndexBuilder {
+    static final int MAGIC = 0x4F554958; // "OUIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int DIRECTORY_SLOTS = 1 << 16;
+    static final int DIRECTORY_SIZE = (DIRECTORY_SLOTS + 1) * Integer.BYTES;
+    static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private final Map<Long, String> entries = new HashMap<>(64_000);
+
+    /**
+     * Añade las asignaciones de un fichero; el formato se detecta por la cabecera.
+     * @return Número de asignaciones nuevas
+     */
+    int addFile(Path file) throws IOException {
+        int added = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            boolean csv = line != null && line.startsWith("Registry,");
+            if (csv) {
+                line = reader.readLine();
+            }
+            for (; line != null; line = reader.readLine()) {
+                if (csv ? addCsvLine(line) : addPrefixLine(line)) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Registry,Assignment,"Organization Name","Organization Address"
+    private boolean addCsvLine(String line) {
+        int first = line.indexOf(',');
+        if (first < 0) return false;
+        int second = line.indexOf(',', first + 1);
+        if (second < 0) return false;
+        String registry = line.substring(0, first);
+        // Los CID no se usan en direcciones universales
+        if (registry.equals("CID")) return false;
+        return add(line.substring(first + 1, second), csvField(line, second + 1));
+    }
+
+    // 001A2B	Nombre corto (nmap-mac-prefixes)
+    private boolean addPrefixLine(String line) {
+        if (line.isEmpty() || line.charAt(0) == '#') return false;
+        int space = 0;
+        while (space < line.length() && !Character.isWhitespace(line.charAt(space))) {
+            space++;
+        }
+        if (space == line.length()) return false;
+        return add(line.substring(0, space), line.substring(space).trim());
+    }
+
+    private boolean add(String assignment, String name) {
+        int bits = assignment.length() * 4;
+        if ((bits != 24 && bits != 28 && bits != 36) || name == null || name.isBlank()) return false;
+        long prefix;
+        try {
+            prefix = Long.parseLong(assignment, 16);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long key = (prefix << (48 - bits)) << 8 | bits;
+        return entries.putIfAbsent(key, name.strip()) == null;
+    }
+
+    private static String csvField(String line, int start) {
+        if (start >= line.length()) return null;
+        if (line.charAt(start) != '"') {
+            int end = line.indexOf(',', start);
+            return line.substring(start, end < 0 ? line.length() : end);
+        }
+        StringBuilder field = new StringBuilder();
+        for (int i = start + 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    break;
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return field.toString();
+    }
+
+    /**
+     * Serializa el índice en memoria.
+     * @param sourceStamp Sello de las fuentes, para detectar que el índice quedó obsoleto
+     */
+    ByteBuffer build(long sourceStamp) {
+        long[] keys = new long[entries.size()];
+        int n = 0;
+        for (long key : entries.keySet()) {
+            keys[n++] = key;
+        }
+        Arrays.sort(keys);
+
+        // Nombres sin repetir: muchos fabricantes tienen decenas de bloques
+        Map<String, Integer> nameOffsets = new HashMap<>();
+        List<byte[]> names = new ArrayList<>();
+        int[] offsets = new int[keys.length];
+        int namesSize = 0;
+        for (int i = 0; i < keys.length; i++) {
+            String name = entries.get(keys[i]);
+            Integer offset = nameOffsets.get(name);
+            if (offset == null) {
+                byte[] bytes = truncate(name.getBytes(StandardCharsets.UTF_8));
+                offset = namesSize;
+                nameOffsets.put(name, offset);
+                names.add(bytes);
+                namesSize += 2 + bytes.length;
+            }
+            offsets[i] = offset;
+        }
+
+        int entriesStart = HEADER_SIZE + DIRECTORY_SIZE;
+        int namesStart = entriesStart + keys.length * ENTRY_SIZE;
+        ByteBuffer out = ByteBuffer.allocate(namesStart + namesSize);
+        out.putInt(MAGIC).putInt(VERSION).putInt(keys.length).putInt(namesStart).putLong(sourceStamp);
+
+        int entry = 0;
+        for (int slot = 0; slot <= DIRECTORY_SLOTS; slot++) {
+            while (entry < keys.length && slot(keys[entry]) < slot) {
+                entry++;
+            }
+            out.putInt(entry);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            out.putLong(keys[i]).putInt(offsets[i]);
+        }
+        for (byte[] bytes : names) {
+            out.putShort((short) bytes.length).put(bytes);
+        }
+        return out.flip();
+    }
+
+    // 16 bits altos de la MAC de inicio del bloque
+    static int slot(long key) {
+        return (int) (key >>> 40);
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length <= MAX_NAME_BYTES ? bytes : Arrays.copyOf(bytes, MAX_NAME_BYTES);
+    }
+}
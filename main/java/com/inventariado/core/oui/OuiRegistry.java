@@ -0,0 +1,291 @@
+package com.inventariado.core.oui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base de datos de fabricantes por prefijo MAC (OUI, MA-M y MA-S).
+ *
+ * Los registros del IEEE se compilan una sola vez a un índice binario ordenado
+ * ("oui.idx") que después se mapea en memoria: arrancar no supone leer las
+ * decenas de miles de líneas del registro ni crear un objeto por fabricante.
+ * Un directorio por los 16 bits altos de la MAC acota cada búsqueda a los pocos
+ * bloques que comparten esos bits, y el prefijo más específico gana.
+ *
+ * El índice no cambia una vez mapeado y las lecturas son absolutas, así que
+ * cualquier hilo puede consultar a la vez sin sincronización.
+ */
+public final class OuiRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(OuiRegistry.class);
+
+    public static final String INDEX_FILE = "oui.idx";
+
+    /** Registros IEEE que se buscan en el directorio de trabajo, en orden de preferencia. */
+    public static final List<String> IEEE_FILES = List.of("oui36.csv", "mam.csv", "oui.csv", "iab.csv");
+
+    // Copia que acompaña a Nmap, para cuando no se ha descargado el registro IEEE
+    private static final List<String> NMAP_PREFIX_FILES = List.of(
+            "/usr/share/nmap/nmap-mac-prefixes",
+            "/usr/local/share/nmap/nmap-mac-prefixes",
+            "C:\\Program Files (x86)\\Nmap\\nmap-mac-prefixes",
+            "C:\\Program Files\\Nmap\\nmap-mac-prefixes");
+
+    private static final int[] PREFIX_BITS = {36, 28, 24};
+    private static final long MAC_MASK = 0xFFFF_FFFF_FFFFL;
+
+    private static final OuiRegistry EMPTY = new OuiRegistry(new OuiIndexBuilder().build(0));
+
+    private final ByteBuffer index;
+    private final int entryCount;
+    private final int entriesStart;
+    private final int namesStart;
+    private final long sourceStamp;
+
+    private OuiRegistry(ByteBuffer index) {
+        if (index.limit() < OuiIndexBuilder.HEADER_SIZE + OuiIndexBuilder.DIRECTORY_SIZE
+                || index.getInt(0) != OuiIndexBuilder.MAGIC
+                || index.getInt(4) != OuiIndexBuilder.VERSION) {
+            throw new IllegalArgumentException("Índice OUI no reconocido");
+        }
+        this.index = index;
+        this.entryCount = index.getInt(8);
+        this.entriesStart = OuiIndexBuilder.HEADER_SIZE + OuiIndexBuilder.DIRECTORY_SIZE;
+        this.namesStart = index.getInt(12);
+        this.sourceStamp = index.getLong(16);
+        if (entryCount < 0 || namesStart != entriesStart + entryCount * OuiIndexBuilder.ENTRY_SIZE
+                || namesStart > index.limit()) {
+            throw new IllegalArgumentException("Índice OUI truncado");
+        }
+    }
+
+    /**
+     * Instancia compartida por el escáner, el monitor y la topología. Se carga
+     * la primera vez que se pide con {@link #loadDefault()}.
+     */
+    public static OuiRegistry shared() {
+        return Shared.INSTANCE;
+    }
+
+    private static final class Shared {
+        static final OuiRegistry INSTANCE = loadDefault();
+    }
+
+    public static OuiRegistry empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Mapea el índice del directorio de trabajo, recompilándolo antes si los
+     * registros IEEE (o, en su defecto, el fichero de Nmap) son más recientes.
+     * Sin registros ni índice devuelve una base vacía.
+     */
+    public static OuiRegistry loadDefault() {
+        List<Path> sources = new ArrayList<>();
+        for (String name : IEEE_FILES) {
+            Path file = Paths.get(name);
+            if (Files.isRegularFile(file)) {
+                sources.add(file);
+            }
+        }
+        if (sources.isEmpty()) {
+            for (String name : NMAP_PREFIX_FILES) {
+                Path file = Paths.get(name);
+                if (Files.isRegularFile(file)) {
+                    sources.add(file);
+                    break;
+                }
+            }
+        }
+        try {
+            return load(Paths.get(INDEX_FILE), sources);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("No se pudo cargar la base de fabricantes MAC: {}", e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Mapea {@code indexFile}; si falta o no corresponde a {@code sources}, lo
+     * compila antes. Si no se puede escribir, el índice queda solo en memoria.
+     */
+    public static OuiRegistry load(Path indexFile, List<Path> sources) throws IOException {
+        long stamp = stamp(sources);
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                OuiRegistry mapped = map(indexFile);
+                if (sources.isEmpty() || mapped.sourceStamp == stamp) {
+                    logger.debug("Base de fabricantes MAC mapeada: {} prefijos", mapped.size());
+                    return mapped;
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warn("Índice {} no válido, se recompila: {}", indexFile, e.getMessage());
+            }
+        }
+        if (sources.isEmpty()) {
+            logger.info("Sin registro IEEE de prefijos MAC; los fabricantes quedarán como los da Nmap");
+            return EMPTY;
+        }
+
+        OuiIndexBuilder builder = new OuiIndexBuilder();
+        for (Path source : sources) {
+            builder.addFile(source);
+        }
+        ByteBuffer built = builder.build(stamp);
+        logger.info("Base de fabricantes MAC compilada: {} prefijos de {}", builder.size(), sources);
+        try {
+            write(indexFile, built.duplicate());
+            return map(indexFile);
+        } catch (IOException e) {
+            logger.warn("No se pudo guardar {}, se usa el índice en memoria: {}", indexFile, e.getMessage());
+            return new OuiRegistry(built);
+        }
+    }
+
+    /**
+     * Mapea un índice ya compilado sin comprobar sus fuentes.
+     */
+    public static OuiRegistry map(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return new OuiRegistry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Escribe a un temporal y lo renombra para no dejar nunca un índice a medias
+    private static void write(Path indexFile, ByteBuffer data) throws IOException {
+        Path parent = indexFile.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(parent, INDEX_FILE, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+            try {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static long stamp(List<Path> sources) throws IOException {
+        long stamp = 17;
+        for (Path source : sources) {
+            stamp = stamp * 31 + source.toAbsolutePath().toString().hashCode();
+            stamp = stamp * 31 + Files.size(source);
+            stamp = stamp * 31 + Files.getLastModifiedTime(source).toMillis();
+        }
+        return stamp;
+    }
+
+    /**
+     * @param mac MAC en los 48 bits bajos, p.ej. de {@link #parseMac(String)}
+     * @return Fabricante del prefijo más específico, o null si no está registrado
+     */
+    public String lookup(long mac) {
+        if (mac < 0 || mac > MAC_MASK) return null;
+        int slot = (int) (mac >>> 32);
+        int low = index.getInt(OuiIndexBuilder.HEADER_SIZE + slot * Integer.BYTES);
+        int high = index.getInt(OuiIndexBuilder.HEADER_SIZE + (slot + 1) * Integer.BYTES);
+        if (low == high) return null;
+        for (int bits : PREFIX_BITS) {
+            long start = mac & (MAC_MASK << (48 - bits)) & MAC_MASK;
+            int entry = find(low, high, start << 8 | bits);
+            if (entry >= 0) {
+                return name(index.getInt(entriesStart + entry * OuiIndexBuilder.ENTRY_SIZE + Long.BYTES));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Fabricante, o null si la MAC no es válida o su prefijo no está registrado
+     */
+    public String lookup(String mac) {
+        long value = parseMac(mac);
+        return value < 0 ? null : lookup(value);
+    }
+
+    /**
+     * @param address 6 bytes de la MAC, como los de pcap4j
+     */
+    public String lookup(byte[] address) {
+        return address == null || address.length != 6 ? null : lookup(toLong(address));
+    }
+
+    private int find(int low, int high, long key) {
+        high--;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = index.getLong(entriesStart + mid * OuiIndexBuilder.ENTRY_SIZE);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String name(int offset) {
+        int position = namesStart + offset;
+        int length = index.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        index.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    public boolean isEmpty() {
+        return entryCount == 0;
+    }
+
+    public static long toLong(byte[] address) {
+        long value = 0;
+        for (int i = 0; i < 6; i++) {
+            value = value << 8 | (address[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Acepta "aa:bb:cc:dd:ee:ff", "AA-BB-CC-DD-EE-FF", "aabb.ccdd.eeff" y "aabbccddeeff".
+     * @return MAC en los 48 bits bajos, o -1 si no es una MAC
+     */
+    public static long parseMac(String mac) {
+        if (mac == null) return -1;
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < mac.length(); i++) {
+            char c = mac.charAt(i);
+            int digit = Character.digit(c, 16);
+            if (digit >= 0) {
+                if (++digits > 12) return -1;
+                value = value << 4 | digit;
+            } else if (c != ':' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return digits == 12 ? value : -1;
+    }
+}
@@ -0,0 +1,206 @@
+package com.inventariado.core.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.inventariado.core.monitor.NetworkMonitor;
+import com.inventariado.core.oui.OuiRegistry;
+
+/**
+ * Prueba de rendimiento y de regresión de {@link NetworkMonitor} sin root ni
+ * interfaz: reproduce ficheros .pcap/.pcapng con
+ * {@link NetworkMonitor#startReplay(Collection, double)} por el pipeline
+ * completo (anillo, detector y alertas) y mide paquetes por segundo y alertas.
+ *
+ * Uso:
+ * <pre>
+ *   java com.inventariado.core.replay.MonitorReplayBenchmark [--speed 0] fichero.pcap ...
+ *   java com.inventariado.core.replay.MonitorReplayBenchmark [--speed 0] --synthetic 1000000 [--macs 50000]
+ *        [--pps 10000] [--seed 42]
+ * </pre>
+ * --speed 1 respeta los tiempos originales, N va N veces más rápido y 0 (por
+ * defecto) no espera. Con --synthetic se genera una captura de N peticiones
+ * ARP de --macs equipos distintos a --pps paquetes por segundo: en ese caso
+ * el número de alertas esperado es exactamente --macs (o N si es menor) y el
+ * programa termina con código 1 si se entregan otras o se descarta alguna.
+ */
+public final class MonitorReplayBenchmark {
+    // Formato pcap clásico: microsegundos, Ethernet
+    private static final int PCAP_MAGIC = 0xA1B2C3D4;
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int ARP_FRAME_LENGTH = 60;
+
+    private MonitorReplayBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        double speed = 0;
+        long synthetic = 0;
+        int macs = 50_000;
+        long pps = 10_000;
+        long seed = 42;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed" -> speed = Double.parseDouble(args[++i]);
+                case "--synthetic" -> synthetic = Long.parseLong(args[++i]);
+                case "--macs" -> macs = Integer.parseInt(args[++i]);
+                case "--pps" -> pps = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                    }
+                    files.add(Path.of(args[i]));
+                }
+            }
+        }
+
+        Path generated = null;
+        if (synthetic > 0) {
+            generated = Files.createTempFile("arp-replay-", ".pcap");
+            writeSyntheticCapture(generated, synthetic, macs, pps, seed);
+            files.add(generated);
+            System.out.printf("Captura sintética: %d paquetes ARP, %d MAC, %d pps, semilla %d%n",
+                    synthetic, macs, pps, seed);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("Indique ficheros de captura o --synthetic N");
+        }
+
+        boolean ok = true;
+        try {
+            Map<String, Object> result = run(files, speed);
+            for (Map.Entry<String, Object> entry : result.entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+            }
+            if (generated != null) {
+                ok = checkSyntheticAlerts(result, Math.min(synthetic, macs));
+            }
+        } finally {
+            if (generated != null) {
+                Files.deleteIfExists(generated);
+            }
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    // En la captura sintética cada MAC debe producir exactamente una alerta entregada
+    private static boolean checkSyntheticAlerts(Map<String, Object> result, long expected) {
+        long delivered = ((Number) result.get("alerts_delivered")).longValue();
+        long dropped = result.get("alerts_dropped") instanceof Number n ? n.longValue() : 0;
+        if (delivered == expected && dropped == 0) {
+            return true;
+        }
+        System.err.printf("ERROR: se esperaban %d alertas entregadas y 0 descartadas; entregadas %d, descartadas %d%n",
+                expected, delivered, dropped);
+        return false;
+    }
+
+    /**
+     * Reproduce los ficheros hasta el final.
+     * @param speed 1 para el ritmo original, N para N veces más rápido, 0 sin esperas
+     * @return Métricas de la reproducción
+     */
+    public static Map<String, Object> run(List<Path> files, double speed) throws InterruptedException {
+        NetworkMonitor monitor = new NetworkMonitor();
+        // Sin base de fabricantes: el resultado no depende de los ficheros del IEEE instalados
+        monitor.setOuiRegistry(OuiRegistry.empty());
+        LongAdder delivered = new LongAdder();
+        monitor.registerAlertCallback(alert -> delivered.increment());
+
+        long start = System.nanoTime();
+        if (!monitor.startReplay(files, speed)) {
+            throw new IllegalStateException("No se pudo iniciar la reproducción");
+        }
+        monitor.awaitCompletion(Duration.ofDays(1));
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        Map<String, Object> status = monitor.getMonitoringStatus();
+
+        long packets = 0;
+        long dropped = 0;
+        if (status.get("interfaces") instanceof Map<?, ?> interfaces) {
+            for (Object metrics : interfaces.values()) {
+                if (metrics instanceof Map<?, ?> source && source.get("ring") instanceof Map<?, ?> ring) {
+                    packets += ((Number) ring.get("frames_queued")).longValue();
+                    dropped += ((Number) ring.get("frames_dropped")).longValue();
+                }
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("files", files.size());
+        result.put("speed", speed > 0 ? speed : "max");
+        result.put("packets", packets);
+        result.put("seconds", round(seconds));
+        result.put("packets_per_second", round(packets / seconds));
+        result.put("arp_frames", status.get("arp_frames"));
+        result.put("alerts_generated", status.get("alerts_generated"));
+        result.put("alerts_delivered", delivered.sum());
+        result.put("alerts_dropped", status.get("alerts_dropped"));
+        result.put("frames_dropped", dropped);
+        result.put("device_table", status.get("device_table"));
+        return result;
+    }
+
+    /**
+     * Escribe una captura pcap de peticiones ARP: cada MAC aparece por primera
+     * vez en orden y después se repite al azar.
+     */
+    static void writeSyntheticCapture(Path file, long packets, int macs, long pps, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long intervalMicros = Math.max(1, 1_000_000 / Math.max(1, pps));
+        ByteBuffer record = ByteBuffer.allocate(16 + ARP_FRAME_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(PCAP_MAGIC).putShort((short) 2).putShort((short) 4)
+                    .putInt(0).putInt(0).putInt(65535).putInt(LINKTYPE_ETHERNET);
+            out.write(header.array());
+
+            long micros = 1_700_000_000L * 1_000_000L;
+            for (long i = 0; i < packets; i++) {
+                int device = i < macs ? (int) i : random.nextInt(macs);
+                // MAC administrada localmente y IP 10.x.y.z derivadas del índice
+                long mac = 0x02_00_00_00_00_00L | device;
+                int ip = 0x0A00_0000 | (device & 0x00FF_FFFF);
+
+                record.clear();
+                record.putInt((int) (micros / 1_000_000)).putInt((int) (micros % 1_000_000))
+                        .putInt(ARP_FRAME_LENGTH).putInt(ARP_FRAME_LENGTH);
+                record.order(ByteOrder.BIG_ENDIAN);
+                putMac(record, 0xFFFF_FFFF_FFFFL);
+                putMac(record, mac);
+                record.putShort((short) 0x0806);
+                record.putShort((short) 1).putShort((short) 0x0800).put((byte) 6).put((byte) 4).putShort((short) 1);
+                putMac(record, mac);
+                record.putInt(ip);
+                putMac(record, 0);
+                record.putInt(0x0A00_0001);
+                while (record.position() < record.capacity()) {
+                    record.put((byte) 0);
+                }
+                record.order(ByteOrder.LITTLE_ENDIAN);
+                out.write(record.array());
+                micros += intervalMicros;
+            }
+        }
+    }
+
+    private static void putMac(ByteBuffer buffer, long mac) {
+        buffer.putShort((short) (mac >>> 32)).putInt((int) mac);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,267 @@
+package com.inventariado.core.replay;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.inventariado.core.scanner.HostRangeSet;
+import com.inventariado.core.scanner.NmapXmlParser;
+
+/**
+ * Compara {@link NmapXmlParser} (StAX sobre "-oX -") con el parser de
+ * expresiones regulares que usaba antes NetworkScanner sobre la salida normal
+ * de Nmap, con los mismos hosts: tiempo por host, MB/s y bytes reservados por
+ * host.
+ *
+ * El fixture es una salida XML grabada (--recorded) o la red sintética de
+ * {@link SyntheticNetwork}. La salida normal equivalente se genera a partir
+ * de los hosts ya parseados, y el parser antiguo la lee host a host, como
+ * hacía con un proceso de Nmap por host.
+ *
+ * Uso:
+ * <pre>
+ *   java com.inventariado.core.replay.NmapParserBenchmark [--hosts 10000] [--rounds 10] [--seed 42]
+ *        [--recorded fichero.xml ...]
+ * </pre>
+ */
+public final class NmapParserBenchmark {
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE nmaprun>\n"
+            + "<nmaprun scanner=\"nmap\" version=\"7.94\" xmloutputversion=\"1.05\">\n";
+    private static final String XML_FOOTER = "<runstats><finished exit=\"success\"/></runstats>\n</nmaprun>\n";
+
+    // Expresiones del parser antiguo, tal como estaban en NetworkScanner
+    private static final Pattern HOST_PATTERN = Pattern.compile("Nmap scan report for (.*?) \\[(.*?)\\]");
+    private static final Pattern SERVICE_PATTERN = Pattern.compile("(\\d+)/(\\w+)\\s+(\\w+)\\s+(.*?)\\s+(.*)");
+    private static final Pattern OS_PATTERN = Pattern.compile("OS details?: (.*)");
+    private static final Pattern MAC_PATTERN = Pattern.compile("MAC Address: (.*?) \\((.*?)\\)");
+
+    private NmapParserBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hosts = 10_000;
+        int rounds = 10;
+        long seed = 42;
+        List<Path> recorded = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hosts" -> hosts = Integer.parseInt(args[++i]);
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--recorded" -> {
+                    while (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        recorded.add(Path.of(args[++i]));
+                    }
+                }
+                default -> throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+
+        List<String> hostElements = new ArrayList<>();
+        if (recorded.isEmpty()) {
+            // Todos activos: solo interesa el coste de parsear
+            SyntheticNetwork network = SyntheticNetwork.ofSize(hosts, 1.0, seed);
+            HostRangeSet.Cursor cursor = network.getRange().cursor();
+            for (long address = cursor.next(); address >= 0; address = cursor.next()) {
+                String xml = network.hostXml(HostRangeSet.toIpString((int) address));
+                if (xml != null) hostElements.add(xml);
+            }
+        } else {
+            RecordedNetwork network = RecordedNetwork.load(recorded);
+            for (String ip : network.getAddresses()) {
+                hostElements.add(network.hostXml(ip));
+            }
+        }
+
+        Fixture fixture = Fixture.of(hostElements);
+        System.out.printf("Hosts: %d, XML: %d bytes, texto: %d bytes, rondas: %d%n",
+                fixture.hosts(), fixture.xml().length, fixture.textBytes(), rounds);
+        print("stax", measure(rounds, fixture.xml().length, fixture::parseXml));
+        print("regex", measure(rounds, fixture.textBytes(), fixture::parseText));
+    }
+
+    /**
+     * Mismos hosts en XML (un documento) y en salida normal (un bloque por host).
+     */
+    private record Fixture(byte[] xml, List<String> texts, int hosts) {
+
+        static Fixture of(List<String> hostElements) throws Exception {
+            StringBuilder document = new StringBuilder(XML_HEADER);
+            hostElements.forEach(document::append);
+            document.append(XML_FOOTER);
+            byte[] xml = document.toString().getBytes(StandardCharsets.UTF_8);
+
+            List<String> texts = new ArrayList<>();
+            new NmapXmlParser(() -> false).parse(new ByteArrayInputStream(xml), host -> texts.add(toNormalOutput(host)));
+            return new Fixture(xml, texts, texts.size());
+        }
+
+        long textBytes() {
+            long bytes = 0;
+            for (String text : texts) bytes += text.length();
+            return bytes;
+        }
+
+        long parseXml() throws Exception {
+            long[] services = new long[1];
+            new NmapXmlParser(() -> false).parse(new ByteArrayInputStream(xml),
+                    host -> services[0] += ((Map<?, ?>) host.get("services")).size());
+            return services[0];
+        }
+
+        long parseText() throws IOException {
+            long services = 0;
+            for (String text : texts) {
+                services += ((Map<?, ?>) parseLegacy(new BufferedReader(new StringReader(text))).get("services")).size();
+            }
+            return services;
+        }
+    }
+
+    private interface Parse {
+        long run() throws Exception;
+    }
+
+    private static Map<String, Object> measure(int rounds, long bytes, Parse parse) throws Exception {
+        com.sun.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                ? t : null;
+        // La primera ronda calienta el compilador; se toma la mejor de las demás
+        double best = Double.MAX_VALUE;
+        long allocated = -1;
+        long services = 0;
+        for (int round = 0; round <= rounds; round++) {
+            long allocatedBefore = threads != null ? threads.getCurrentThreadAllocatedBytes() : -1;
+            long start = System.nanoTime();
+            services = parse.run();
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            if (round > 0 && seconds < best) {
+                best = seconds;
+                if (threads != null) allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            }
+        }
+        return Map.of("seconds", best, "bytes", bytes, "allocated", allocated, "services", services);
+    }
+
+    private static void print(String name, Map<String, Object> result) {
+        double seconds = (Double) result.get("seconds");
+        long bytes = (Long) result.get("bytes");
+        long allocated = (Long) result.get("allocated");
+        long services = (Long) result.get("services");
+        System.out.println(name + ":");
+        System.out.println("  services: " + services);
+        System.out.println("  ms: " + round(seconds * 1000));
+        System.out.println("  mb_per_second: " + round(bytes / 1048576.0 / seconds));
+        System.out.println("  allocated_mb: " + (allocated >= 0 ? round(allocated / 1048576.0) : "n/d"));
+    }
+
+    /**
+     * Salida normal de Nmap ("-oN") de un host ya parseado.
+     */
+    @SuppressWarnings("unchecked")
+    private static String toNormalOutput(Map<String, Object> host) {
+        StringBuilder text = new StringBuilder(512);
+        String ip = (String) host.get("ip");
+        String hostname = (String) host.get("hostname");
+        text.append("Nmap scan report for ");
+        if (hostname != null && !hostname.equals(ip)) {
+            text.append(hostname).append(" (").append(ip).append(")\n");
+        } else {
+            text.append(ip).append('\n');
+        }
+        text.append("Host is up (0.00042s latency).\n");
+        text.append("PORT     STATE SERVICE       VERSION\n");
+        Map<Integer, Map<String, Object>> services = (Map<Integer, Map<String, Object>>) host.get("services");
+        for (Map<String, Object> service : new TreeMap<>(services).values()) {
+            String version = String.join(" ", Objects.toString(service.get("product"), ""),
+                    Objects.toString(service.get("version"), "")).trim();
+            text.append(String.format("%-8s %-5s %-13s %s%n",
+                    service.get("port") + "/" + service.get("protocol"), service.get("state"),
+                    service.getOrDefault("name", "unknown"), version));
+        }
+        Map<String, Object> macInfo = (Map<String, Object>) host.get("mac_info");
+        text.append("MAC Address: ").append(macInfo.get("mac")).append(" (").append(macInfo.get("vendor")).append(")\n");
+        text.append("OS details: ").append(host.get("os_info")).append('\n');
+        return text.toString();
+    }
+
+    // Bucle del parser antiguo de NetworkScanner.scanHostFullPorts, sin el proceso
+    private static Map<String, Object> parseLegacy(BufferedReader reader) throws IOException {
+        Map<Integer, Map<String, Object>> services = new HashMap<>();
+        String line;
+        String currentIp = null;
+        String hostname = null;
+        Map<String, Object> macInfo = new HashMap<>();
+        macInfo.put("mac", "Desconocida");
+        macInfo.put("vendor", "Desconocido");
+        String osInfo = "Desconocido";
+
+        while ((line = reader.readLine()) != null) {
+            Matcher hostMatcher = HOST_PATTERN.matcher(line);
+            if (hostMatcher.find()) {
+                hostname = hostMatcher.group(1);
+                currentIp = hostMatcher.group(2);
+                continue;
+            }
+
+            Matcher macMatcher = MAC_PATTERN.matcher(line);
+            if (macMatcher.find()) {
+                macInfo.put("mac", macMatcher.group(1));
+                macInfo.put("vendor", macMatcher.group(2));
+                continue;
+            }
+
+            Matcher osMatcher = OS_PATTERN.matcher(line);
+            if (osMatcher.find()) {
+                osInfo = osMatcher.group(1);
+                continue;
+            }
+
+            Matcher serviceMatcher = SERVICE_PATTERN.matcher(line);
+            if (serviceMatcher.find()) {
+                int port = Integer.parseInt(serviceMatcher.group(1));
+                String protocol = serviceMatcher.group(2);
+                String state = serviceMatcher.group(3);
+                String serviceName = serviceMatcher.group(4);
+                String serviceInfo = serviceMatcher.groupCount() > 4 ? serviceMatcher.group(5) : "";
+
+                if ("open".equalsIgnoreCase(state)) {
+                    Map<String, Object> service = new HashMap<>();
+                    service.put("port", port);
+                    service.put("protocol", protocol);
+                    service.put("state", state);
+                    service.put("name", serviceName);
+                    if (serviceInfo != null && !serviceInfo.isEmpty()) {
+                        String[] versionParts = serviceInfo.split(" ");
+                        if (versionParts.length > 0) {
+                            service.put("product", versionParts[0]);
+                            if (versionParts.length > 1) {
+                                service.put("version", versionParts[1]);
+                            }
+                        }
+                    }
+                    services.put(port, service);
+                }
+            }
+        }
+
+        Map<String, Object> device = new HashMap<>();
+        device.put("ip", currentIp);
+        device.put("hostname", hostname);
+        device.put("mac_info", macInfo);
+        device.put("os_info", osInfo);
+        device.put("services", services);
+        return device;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.inventariado.core.replay;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Red reproducida a partir de salidas XML reales de Nmap ("nmap -oX fichero"),
+ * para repetir un escaneo de producción de forma determinista.
+ *
+ * De cada fichero se toman los elementos &lt;host&gt; tal cual, indexados por su
+ * dirección IPv4; los hosts con estado "up" responden al descubrimiento.
+ */
+public class RecordedNetwork implements ReplayNetwork {
+    private static final Pattern IPV4 = Pattern.compile("<address addr=\"([^\"]+)\" addrtype=\"ipv4\"");
+    private static final Pattern UP = Pattern.compile("<status state=\"up\"");
+
+    private final Map<String, String> hosts = new LinkedHashMap<>();
+    private final Set<String> up = new HashSet<>();
+
+    /**
+     * Carga uno o varios ficheros; si una IP se repite, gana el último registro.
+     */
+    public static RecordedNetwork load(List<Path> files) throws IOException {
+        RecordedNetwork network = new RecordedNetwork();
+        for (Path file : files) {
+            network.add(Files.readString(file, StandardCharsets.UTF_8));
+        }
+        return network;
+    }
+
+    private void add(String xml) {
+        int from = 0;
+        while (true) {
+            int start = xml.indexOf("<host", from);
+            if (start < 0) break;
+            // "<hostnames>", "<hostscript>"... no son elementos <host>
+            char next = start + 5 < xml.length() ? xml.charAt(start + 5) : ' ';
+            if (next != ' ' && next != '>') {
+                from = start + 5;
+                continue;
+            }
+            int end = xml.indexOf("</host>", start);
+            if (end < 0) break;
+            end += "</host>".length();
+            String element = xml.substring(start, end);
+            Matcher address = IPV4.matcher(element);
+            if (address.find()) {
+                String ip = address.group(1);
+                hosts.put(ip, element);
+                if (UP.matcher(element).find()) {
+                    up.add(ip);
+                } else {
+                    up.remove(ip);
+                }
+            }
+            from = end;
+        }
+    }
+
+    /**
+     * @return Direcciones grabadas, en el orden de los ficheros
+     */
+    public List<String> getAddresses() {
+        return new ArrayList<>(hosts.keySet());
+    }
+
+    /**
+     * @return Especificación de objetivos para {@code scanNetwork}
+     */
+    public String getTargetSpec() {
+        return String.join(",", hosts.keySet());
+    }
+
+    @Override
+    public boolean isUp(String ip) {
+        return up.contains(ip);
+    }
+
+    @Override
+    public String hostXml(String ip) {
+        return hosts.get(ip);
+    }
+}
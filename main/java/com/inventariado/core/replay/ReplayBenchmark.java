@@ -0,0 +1,164 @@
+package com.inventariado.core.replay;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.inventariado.core.model.Device;
+import com.inventariado.core.oui.OuiRegistry;
+import com.inventariado.core.scanner.HostRangeSet;
+import com.inventariado.core.scanner.NetworkScanner;
+
+/**
+ * Prueba de rendimiento de extremo a extremo de {@link NetworkScanner} contra
+ * {@link ReplayNmap}: ejecuta scanNetwork completo (descubrimiento, lotes,
+ * parser XML, análisis de seguridad) y mide hosts por segundo, latencia por
+ * host (p50/p99, desde que su escaneo profundo arranca hasta que se publica)
+ * y memoria.
+ *
+ * Uso:
+ * <pre>
+ *   java com.inventariado.core.replay.ReplayBenchmark [--hosts 10000] [--up 0.3]
+ *        [--latency-ms 50] [--jitter-ms 20] [--seed 42] [--recorded fichero.xml ...]
+ * </pre>
+ * Con --recorded se reproducen salidas reales de Nmap en lugar de la red sintética.
+ */
+public final class ReplayBenchmark {
+
+    private ReplayBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hosts = 10_000;
+        double up = 0.3;
+        long latencyMillis = 50;
+        long jitterMillis = 20;
+        long seed = 42;
+        List<Path> recorded = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hosts" -> hosts = Integer.parseInt(args[++i]);
+                case "--up" -> up = Double.parseDouble(args[++i]);
+                case "--latency-ms" -> latencyMillis = Long.parseLong(args[++i]);
+                case "--jitter-ms" -> jitterMillis = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--recorded" -> {
+                    while (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        recorded.add(Path.of(args[++i]));
+                    }
+                }
+                default -> throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+
+        // Un mensaje por host falsearía la medida
+        Logger.getLogger("com.inventariado").setLevel(Level.WARNING);
+
+        ReplayNetwork network;
+        String targets;
+        if (recorded.isEmpty()) {
+            SyntheticNetwork synthetic = SyntheticNetwork.ofSize(hosts, up, seed);
+            network = synthetic;
+            targets = synthetic.getTargetSpec();
+        } else {
+            RecordedNetwork replayed = RecordedNetwork.load(recorded);
+            network = replayed;
+            targets = replayed.getTargetSpec();
+            hosts = replayed.getAddresses().size();
+        }
+        ReplayNmap nmap = new ReplayNmap(network, Duration.ofMillis(latencyMillis), Duration.ofMillis(jitterMillis), seed);
+
+        Map<String, Object> result = run(nmap, targets);
+        System.out.printf("Objetivos: %d, latencia %d±%d ms, semilla %d%n", hosts, latencyMillis, jitterMillis, seed);
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    /**
+     * Ejecuta un escaneo completo contra el Nmap simulado.
+     * @param targets Especificación de objetivos para scanNetwork
+     * @return Métricas del escaneo
+     */
+    public static Map<String, Object> run(ReplayNmap nmap, String targets) throws InterruptedException {
+        NetworkScanner scanner = new NetworkScanner();
+        scanner.setProcessLauncher(nmap);
+        // Solo lo que pasa por Nmap: sin DNS, SNMP, banners reales ni diario en disco
+        scanner.setNameResolutionEnabled(false);
+        scanner.setVersionCacheEnabled(false);
+        scanner.setCheckpointDirectory(null);
+        scanner.setOuiRegistry(OuiRegistry.empty());
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        scanner.registerDeviceCallback(device -> {
+            Long start = nmap.getDeepScanStart(device.address());
+            if (start != null) {
+                latencies.add(System.nanoTime() - start);
+            }
+        });
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        AtomicLong heapPeak = new AtomicLong(heapBefore);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(
+                () -> heapPeak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 20, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        List<Device> devices;
+        try {
+            devices = scanner.scanNetwork(targets, "-T4", false, null);
+        } finally {
+            sampler.shutdownNow();
+            sampler.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.gc();
+        long heapRetained = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        long targetCount = HostRangeSet.parse(targets).size();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("devices", devices.size());
+        result.put("seconds", round(seconds));
+        result.put("hosts_per_second", round(targetCount / seconds));
+        result.put("devices_per_second", round(devices.size() / seconds));
+        result.put("latency_p50_ms", round(percentile(sorted, 0.50) / 1_000_000.0));
+        result.put("latency_p99_ms", round(percentile(sorted, 0.99) / 1_000_000.0));
+        result.put("heap_peak_mb", round((heapPeak.get() - heapBefore) / 1048576.0));
+        result.put("heap_retained_mb", round(heapRetained / 1048576.0));
+        result.put("retained_bytes_per_device", devices.isEmpty() ? 0 : heapRetained / devices.size());
+        result.putAll(nmap.getMetrics());
+        result.put("concurrency", scanner.getConcurrencyMetrics());
+        result.put("scan_stats", scanner.getScanStats().snapshot().toMap());
+        return result;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
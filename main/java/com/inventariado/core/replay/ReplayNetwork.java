@@ -0,0 +1,20 @@
+package com.inventariado.core.replay;
+
+/**
+ * Red que sirve {@link ReplayNmap}: qué direcciones responden al descubrimiento
+ * y qué elemento &lt;host&gt; de Nmap devuelve el escaneo profundo de cada una.
+ */
+public interface ReplayNetwork {
+
+    /**
+     * @return true si la dirección responde a "nmap -sn"
+     */
+    boolean isUp(String ip);
+
+    /**
+     * @return Elemento &lt;host&gt;...&lt;/host&gt; de la salida XML de Nmap, o null
+     *         si no hay registro (el host no aparece en la salida, como si
+     *         agotara --host-timeout)
+     */
+    String hostXml(String ip);
+}
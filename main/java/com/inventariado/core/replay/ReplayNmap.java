@@ -0,0 +1,292 @@
+package com.inventariado.core.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.inventariado.core.scanner.ProcessLauncher;
+
+/**
+ * Sustituto de Nmap para {@link com.inventariado.core.scanner.NetworkScanner}:
+ * responde a los mismos comandos que lanza el escáner con la salida de una
+ * {@link ReplayNetwork}, sin red ni privilegios.
+ *
+ * <ul>
+ *   <li>"nmap --version": termina con código 0.</li>
+ *   <li>"nmap -sn ... -oG -": líneas "Host: ... Status: Up" de los objetivos
+ *       activos, tras una latencia.</li>
+ *   <li>"nmap ... -oX -": XML con un &lt;host&gt; por objetivo grabado. Cada
+ *       objetivo tarda su propia latencia (base más jitter uniforme) y los hosts
+ *       salen en orden de finalización, como en un grupo de hosts de Nmap.</li>
+ * </ul>
+ *
+ * La latencia de cada objetivo depende solo de la semilla y de su IP, de modo
+ * que dos ejecuciones con la misma semilla son comparables.
+ */
+public class ReplayNmap implements ProcessLauncher {
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE nmaprun>\n"
+            + "<nmaprun scanner=\"nmap\" version=\"7.94\" xmloutputversion=\"1.05\">\n";
+    private static final String XML_FOOTER = "<runstats><finished exit=\"success\"/></runstats>\n</nmaprun>\n";
+
+    private final ReplayNetwork network;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final long seed;
+    // Inicio del primer escaneo profundo de cada objetivo, para medir la latencia por host
+    private final Map<String, Long> deepScanStarts = new ConcurrentHashMap<>();
+
+    private final LongAdder discoveryProcesses = new LongAdder();
+    private final LongAdder scanProcesses = new LongAdder();
+    private final LongAdder hostsServed = new LongAdder();
+
+    /**
+     * @param latency Duración base de cada host (y de cada barrido de descubrimiento)
+     * @param jitter Variación máxima, en más o en menos, sobre la latencia base
+     */
+    public ReplayNmap(ReplayNetwork network, Duration latency, Duration jitter, long seed) {
+        if (latency.isNegative() || jitter.isNegative()) {
+            throw new IllegalArgumentException("Latencia o jitter negativos");
+        }
+        this.network = network;
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.seed = seed;
+    }
+
+    @Override
+    public Process launch(List<String> command) throws IOException {
+        if (command.isEmpty() || !"nmap".equals(command.get(0))) {
+            throw new IOException("Comando no soportado en reproducción: " + command);
+        }
+        if (command.contains("--version")) {
+            return new ReplayProcess(pipe -> pipe.write("Nmap version 7.94 ( replay )\n"));
+        }
+
+        int output = Math.max(command.indexOf("-oX"), command.indexOf("-oG"));
+        if (output < 0 || output + 2 > command.size()) {
+            throw new IOException("Comando sin salida por stdout: " + command);
+        }
+        List<String> targets = List.copyOf(command.subList(output + 2, command.size()));
+
+        if (command.contains("-sn")) {
+            discoveryProcesses.increment();
+            return new ReplayProcess(pipe -> discover(targets, pipe));
+        }
+        scanProcesses.increment();
+        long start = System.nanoTime();
+        for (String target : targets) {
+            deepScanStarts.putIfAbsent(target, start);
+        }
+        return new ReplayProcess(pipe -> scan(targets, start, pipe));
+    }
+
+    /**
+     * @return Instante (System.nanoTime) en que empezó el primer escaneo profundo del host, o null
+     */
+    public Long getDeepScanStart(String ip) {
+        return deepScanStarts.get(ip);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("discovery_processes", discoveryProcesses.sum());
+        metrics.put("scan_processes", scanProcesses.sum());
+        metrics.put("hosts_served", hostsServed.sum());
+        return metrics;
+    }
+
+    private void discover(List<String> targets, Pipe pipe) throws InterruptedException {
+        long delay = targets.isEmpty() ? 0 : latencyOf(targets.get(0));
+        Thread.sleep(Duration.ofNanos(delay));
+        StringBuilder lines = new StringBuilder();
+        for (String target : targets) {
+            if (network.isUp(target)) {
+                lines.append("Host: ").append(target).append(" ()\tStatus: Up\n");
+            }
+        }
+        pipe.write(lines.toString());
+    }
+
+    private void scan(List<String> targets, long start, Pipe pipe) throws InterruptedException {
+        long[] order = new long[targets.size()];
+        for (int i = 0; i < order.length; i++) {
+            // Latencia en los bits altos y posición en los bajos: ordenar es ordenar por finalización
+            order[i] = (latencyOf(targets.get(i)) / 1000) << 20 | i;
+        }
+        Arrays.sort(order);
+
+        pipe.write(XML_HEADER);
+        long startSeconds = System.currentTimeMillis() / 1000;
+        for (long entry : order) {
+            long deadline = start + (entry >>> 20) * 1000;
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(Duration.ofNanos(wait));
+            }
+            String target = targets.get((int) (entry & 0xFFFFF));
+            String xml = network.hostXml(target);
+            if (xml != null) {
+                pipe.write(withTimes(xml, startSeconds, System.currentTimeMillis() / 1000));
+                hostsServed.increment();
+            }
+        }
+        pipe.write(XML_FOOTER);
+    }
+
+    // Los registros sintéticos no traen starttime/endtime: se añaden al servirlos
+    private static String withTimes(String xml, long startSeconds, long endSeconds) {
+        if (!xml.startsWith("<host>")) {
+            return xml + "\n";
+        }
+        return "<host starttime=\"" + startSeconds + "\" endtime=\"" + endSeconds + "\">"
+                + xml.substring("<host>".length()) + "\n";
+    }
+
+    private long latencyOf(String target) {
+        if (jitterNanos == 0) return latencyNanos;
+        SplittableRandom random = new SplittableRandom(seed ^ (target.hashCode() * 0x9E3779B97F4A7C15L));
+        long delta = random.nextLong(-jitterNanos, jitterNanos + 1);
+        return Math.max(0, latencyNanos + delta);
+    }
+
+    private interface Script {
+        void run(Pipe pipe) throws InterruptedException;
+    }
+
+    /**
+     * Salida estándar del proceso simulado: trozos de texto en una cola que el
+     * lector consume como un InputStream normal.
+     */
+    private static final class Pipe extends InputStream {
+        private static final byte[] EOF = new byte[0];
+
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        private byte[] current;
+        private int position;
+        private volatile boolean closed;
+
+        void write(String text) {
+            if (!closed) {
+                chunks.add(text.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void finish() {
+            chunks.add(EOF);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            while (current != EOF && (current == null || position == current.length)) {
+                if (closed) return -1;
+                try {
+                    current = chunks.take();
+                    position = 0;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Lectura interrumpida");
+                }
+            }
+            if (current == EOF) return -1;
+            int n = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            chunks.add(EOF);
+        }
+    }
+
+    private static final class ReplayProcess extends Process {
+        private final Pipe stdout = new Pipe();
+        private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+        private final Thread worker;
+
+        ReplayProcess(Script script) {
+            this.worker = Thread.ofVirtual().name("replay-nmap").start(() -> {
+                try {
+                    script.run(stdout);
+                    exit.complete(0);
+                } catch (InterruptedException e) {
+                    exit.complete(137);
+                } catch (RuntimeException e) {
+                    exit.complete(1);
+                } finally {
+                    stdout.finish();
+                }
+            });
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return stdout;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            try {
+                return exit.get();
+            } catch (ExecutionException e) {
+                return 1;
+            }
+        }
+
+        @Override
+        public int exitValue() {
+            Integer code = exit.getNow(null);
+            if (code == null) {
+                throw new IllegalThreadStateException("El proceso sigue en marcha");
+            }
+            return code;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return !exit.isDone();
+        }
+
+        @Override
+        public void destroy() {
+            worker.interrupt();
+            stdout.close();
+        }
+
+        @Override
+        public Stream<ProcessHandle> descendants() {
+            return Stream.empty();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.inventariado.core.replay;
+
+import java.util.SplittableRandom;
+
+import com.inventariado.core.scanner.HostRangeSet;
+
+/**
+ * Red sintética reproducible para pruebas de rendimiento del escáner.
+ *
+ * Cada dirección del rango se decide a partir de la semilla y de la propia IP,
+ * sin guardar nada por host: si está activa, qué tipo de equipo es (puesto
+ * Windows, servidor Linux, impresora, switch, cámara IP...), su MAC, su
+ * sistema operativo y sus servicios. Así una red de 100.000 hosts no ocupa
+ * memoria y dos ejecuciones con la misma semilla ven exactamente la misma red.
+ */
+public class SyntheticNetwork implements ReplayNetwork {
+
+    private record Archetype(String os, String vendor, int oui, String[] services) {
+    }
+
+    // Servicios como "puerto/nombre/producto/versión"
+    private static final Archetype[] ARCHETYPES = {
+            new Archetype("Microsoft Windows 10", "Dell", 0x001422, new String[]{
+                    "135/msrpc/Microsoft Windows RPC/", "139/netbios-ssn/Microsoft Windows netbios-ssn/",
+                    "445/microsoft-ds//", "3389/ms-wbt-server/Microsoft Terminal Services/"}),
+            new Archetype("Linux 5.4 - 5.15", "Supermicro", 0x003048, new String[]{
+                    "22/ssh/OpenSSH/8.9p1 Ubuntu 3ubuntu0.6", "80/http/nginx/1.18.0", "443/https/nginx/1.18.0"}),
+            new Archetype("Linux 4.15 - 5.8", "Hewlett Packard", 0x001B78, new String[]{
+                    "22/ssh/OpenSSH/7.4", "3306/mysql/MySQL/5.7.42", "8080/http-proxy/Apache Tomcat/9.0.71"}),
+            new Archetype("HP embedded", "Hewlett Packard", 0x3CD92B, new String[]{
+                    "80/http/HP HTTP Server/", "515/printer//", "631/ipp/HP HTTP Server/", "9100/jetdirect//"}),
+            new Archetype("Cisco IOS 15.X", "Cisco Systems", 0x00000C, new String[]{
+                    "22/ssh/Cisco SSH/1.25", "23/telnet/Cisco router telnetd/", "80/http/Cisco IOS http config/"}),
+            new Archetype("Linux 3.X (embedded)", "Hikvision", 0x4CBD8F, new String[]{
+                    "80/http/Hikvision IP camera httpd/", "554/rtsp/Hikvision 7513 POE IP camera rtspd/",
+                    "8000/http-alt//"}),
+    };
+
+    private final HostRangeSet range;
+    private final double upRatio;
+    private final long seed;
+
+    /**
+     * @param range Direcciones de la red
+     * @param upRatio Fracción de direcciones activas (0-1)
+     * @param seed Semilla: misma semilla, misma red
+     */
+    public SyntheticNetwork(HostRangeSet range, double upRatio, long seed) {
+        if (upRatio < 0 || upRatio > 1) {
+            throw new IllegalArgumentException("Fracción de hosts activos inválida: " + upRatio);
+        }
+        this.range = range;
+        this.upRatio = upRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * Red de {@code hosts} direcciones consecutivas a partir de 10.0.0.1.
+     */
+    public static SyntheticNetwork ofSize(int hosts, double upRatio, long seed) {
+        if (hosts < 1) {
+            throw new IllegalArgumentException("Número de hosts inválido: " + hosts);
+        }
+        int first = HostRangeSet.parseIp("10.0.0.1");
+        String spec = HostRangeSet.toIpString(first) + "-" + HostRangeSet.toIpString(first + hosts - 1);
+        return new SyntheticNetwork(HostRangeSet.parse(spec), upRatio, seed);
+    }
+
+    public HostRangeSet getRange() {
+        return range;
+    }
+
+    /**
+     * @return Especificación de objetivos para {@code scanNetwork}
+     */
+    public String getTargetSpec() {
+        return range.toString();
+    }
+
+    @Override
+    public boolean isUp(String ip) {
+        int address = parse(ip);
+        return address != -1 && range.contains(address) && random(address).nextDouble() < upRatio;
+    }
+
+    @Override
+    public String hostXml(String ip) {
+        int address = parse(ip);
+        if (address == -1 || !range.contains(address)) return null;
+        SplittableRandom random = random(address);
+        if (random.nextDouble() >= upRatio) return null;
+
+        Archetype type = ARCHETYPES[random.nextInt(ARCHETYPES.length)];
+        long mac = (long) type.oui() << 24 | (address & 0xFFFFFFL);
+        StringBuilder xml = new StringBuilder(1024);
+        xml.append("<host><status state=\"up\" reason=\"arp-response\" reason_ttl=\"0\"/>")
+                .append("<address addr=\"").append(ip).append("\" addrtype=\"ipv4\"/>")
+                .append("<address addr=\"").append(formatMac(mac)).append("\" addrtype=\"mac\" vendor=\"")
+                .append(type.vendor()).append("\"/><hostnames/><ports>");
+        for (String spec : type.services()) {
+            // Algunos equipos del mismo tipo tienen servicios cerrados
+            if (random.nextInt(8) == 0) continue;
+            String[] parts = spec.split("/", -1);
+            xml.append("<port protocol=\"tcp\" portid=\"").append(parts[0]).append("\">")
+                    .append("<state state=\"open\" reason=\"syn-ack\" reason_ttl=\"64\"/>")
+                    .append("<service name=\"").append(parts[1]).append('"');
+            if (!parts[2].isEmpty()) xml.append(" product=\"").append(parts[2]).append('"');
+            if (!parts[3].isEmpty()) xml.append(" version=\"").append(parts[3]).append('"');
+            xml.append(" method=\"probed\" conf=\"10\"/></port>");
+        }
+        xml.append("</ports><os><osmatch name=\"").append(type.os()).append("\" accuracy=\"")
+                .append(85 + random.nextInt(15)).append("\" line=\"0\"/></os></host>");
+        return xml.toString();
+    }
+
+    private SplittableRandom random(int address) {
+        return new SplittableRandom(seed ^ (address * 0x9E3779B97F4A7C15L));
+    }
+
+    private static int parse(String ip) {
+        try {
+            return HostRangeSet.parseIp(ip);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static String formatMac(long mac) {
+        StringBuilder text = new StringBuilder(17);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            int octet = (int) (mac >>> shift) & 0xFF;
+            text.append(Character.toUpperCase(Character.forDigit(octet >> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(octet & 0x0F, 16)));
+            if (shift > 0) text.append(':');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.inventariado.core.resolver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché LRU de nombres por IP que respeta el TTL de cada respuesta.
+ *
+ * Los TTL se acotan para no volver a preguntar cada pocos segundos por nombres
+ * con TTL mínimo ni conservar indefinidamente los de TTL enorme. Los fallos
+ * (sin nombre por ningún mecanismo) también se guardan, con un TTL corto, para
+ * no repetir en cada escaneo los timeouts de los hosts sin nombre.
+ */
+public class NameCache {
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    private static final long MIN_TTL_SECONDS = 60;
+    private static final long MAX_TTL_SECONDS = 86_400;
+    private static final long NEGATIVE_TTL_SECONDS = 300;
+
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public NameCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public NameCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacity);
+        }
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return Resultado vigente (resuelto o no), o null si no hay entrada o caducó
+     */
+    public ResolvedName get(String ip) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(ip);
+            if (entry != null && now - entry.expiresAt < 0) {
+                hits.incrementAndGet();
+                return entry.result;
+            }
+            if (entry != null) {
+                entries.remove(ip);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @param ttlSeconds TTL de la respuesta; se ignora para resultados sin nombre
+     */
+    public void put(String ip, ResolvedName result, long ttlSeconds) {
+        long ttl = result.isResolved()
+                ? Math.max(MIN_TTL_SECONDS, Math.min(MAX_TTL_SECONDS, ttlSeconds))
+                : NEGATIVE_TTL_SECONDS;
+        Entry entry = new Entry(result, System.nanoTime() + ttl * 1_000_000_000L);
+        synchronized (entries) {
+            entries.put(ip, entry);
+        }
+    }
+
+    public void invalidate(String ip) {
+        synchronized (entries) {
+            entries.remove(ip);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private record Entry(ResolvedName result, long expiresAt) {
+    }
+}
@@ -0,0 +1,503 @@
+package com.inventariado.core.resolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolución asíncrona de nombres por IP con un único socket UDP.
+ *
+ * Para cada IP se prueba, en orden: PTR al servidor DNS configurado, estado de
+ * nodo NetBIOS (NBNS, puerto 137) y PTR por mDNS unicast (puerto 5353). Los dos
+ * últimos solo se intentan en direcciones privadas, de enlace local o loopback,
+ * que es donde responden los equipos Windows, macOS o Linux con Avahi. Todas las
+ * consultas se encadenan por el mismo socket y se emparejan por id de
+ * transacción y dirección de origen, así que miles de nombres se resuelven en
+ * paralelo sin un hilo por consulta.
+ *
+ * Los resultados (también los fallidos) se guardan en un {@link NameCache} que
+ * sobrevive entre escaneos, y las consultas simultáneas de una misma IP se agrupan.
+ */
+public class NameResolver implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(NameResolver.class);
+
+    private static final int DNS_PORT = 53;
+    private static final int NBNS_PORT = 137;
+    private static final int MDNS_PORT = 5353;
+    private static final long DNS_TIMEOUT_MILLIS = 1000;
+    private static final int DNS_RETRIES = 1;
+    private static final long LOCAL_TIMEOUT_MILLIS = 400;
+    // NBNS suele responder con TTL 0 en el estado de nodo
+    private static final long DEFAULT_LOCAL_TTL_SECONDS = 3600;
+    // Ids de transacción de 16 bits: margen amplio para elegirlos al azar
+    private static final int MAX_IN_FLIGHT = 1024;
+    private static final Pattern NAMESERVER = Pattern.compile("^\\s*nameserver\\s+([0-9.]+)\\s*$");
+
+    private enum Stage { DNS, SYSTEM, NBNS, MDNS }
+
+    private static NameResolver shared;
+
+    private final InetSocketAddress dnsServer;
+    private final NameCache cache;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final Executor callbackExecutor = Thread::startVirtualThread;
+    private final ConcurrentLinkedQueue<Lookup> submissions = new ConcurrentLinkedQueue<>();
+    private final Map<String, CompletableFuture<ResolvedName>> inFlight = new ConcurrentHashMap<>();
+    private volatile boolean localFallbacks = true;
+    private volatile boolean closed;
+
+    // Estado del hilo de E/S
+    private final Map<Integer, Lookup> pending = new HashMap<>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(Deadline::at));
+    private final ArrayDeque<Lookup> backlog = new ArrayDeque<>();
+    private final ArrayDeque<Outbound> outbound = new ArrayDeque<>();
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(4096);
+    private final Random random = new Random();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong queriesSent = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final Map<String, AtomicLong> resolvedBySource = new ConcurrentHashMap<>();
+    private final AtomicLong unresolved = new AtomicLong();
+
+    /**
+     * Resolutor con el servidor DNS del sistema (/etc/resolv.conf) y una caché nueva.
+     * Sin servidor configurado se recurre al resolutor del sistema en hilos virtuales.
+     */
+    public static NameResolver createDefault() throws IOException {
+        return new NameResolver(systemDnsServer(), new NameCache());
+    }
+
+    /**
+     * Resolutor del proceso, compartido por todos los escáneres: un solo socket,
+     * un solo hilo de E/S y una caché que se conserva de un escaneo a otro. Se
+     * crea en el primer uso; quien lo obtiene no debe cerrarlo (si se cierra, el
+     * siguiente uso abre otro con la misma caché).
+     */
+    public static synchronized NameResolver shared() throws IOException {
+        if (shared == null || shared.closed) {
+            NameCache cache = shared != null ? shared.cache : new NameCache();
+            shared = new NameResolver(systemDnsServer(), cache);
+        }
+        return shared;
+    }
+
+    /**
+     * @param dnsServer Servidor para las consultas PTR, o null para usar el resolutor del sistema
+     * @param cache Caché compartida; puede reutilizarse entre resolutores
+     */
+    public NameResolver(InetSocketAddress dnsServer, NameCache cache) throws IOException {
+        this.dnsServer = dnsServer;
+        this.cache = Objects.requireNonNull(cache, "cache");
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 1024);
+        this.channel.bind(null);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+        this.ioThread = new Thread(this::ioLoop, "name-resolver");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+        logger.info("Resolución de nombres con {}", dnsServer != null ? "DNS " + dnsServer : "el resolutor del sistema");
+    }
+
+    /**
+     * Primer servidor IPv4 de /etc/resolv.conf.
+     * @return Dirección del servidor, o null si no hay ninguno (p.ej. en Windows)
+     */
+    public static InetSocketAddress systemDnsServer() {
+        Path resolvConf = Paths.get("/etc/resolv.conf");
+        if (!Files.isReadable(resolvConf)) {
+            return null;
+        }
+        try {
+            for (String line : Files.readAllLines(resolvConf)) {
+                Matcher m = NAMESERVER.matcher(line);
+                if (m.matches()) {
+                    return new InetSocketAddress(InetAddress.getByName(m.group(1)), DNS_PORT);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudo leer {}: {}", resolvConf, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Activa o desactiva los intentos por NBNS y mDNS en direcciones locales.
+     */
+    public void setLocalFallbacks(boolean enabled) {
+        this.localFallbacks = enabled;
+    }
+
+    public NameCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Resuelve el nombre de una IPv4. El futuro nunca falla: si ningún mecanismo
+     * da nombre se completa con un resultado sin nombre.
+     */
+    public CompletableFuture<ResolvedName> resolve(String ip) {
+        lookups.incrementAndGet();
+        ResolvedName cached = cache.get(ip);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (closed || !isIpv4(ip)) {
+            return CompletableFuture.completedFuture(ResolvedName.unresolved());
+        }
+        return inFlight.computeIfAbsent(ip, key -> {
+            Lookup lookup = new Lookup(key, dnsServer != null ? Stage.DNS : Stage.SYSTEM);
+            lookup.future.whenComplete((result, error) -> inFlight.remove(key));
+            submissions.add(lookup);
+            selector.wakeup();
+            return lookup.future;
+        });
+    }
+
+    /**
+     * @return Consultas, aciertos de caché y nombres resueltos por mecanismo
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        metrics.put("lookups", lookups.get());
+        metrics.put("cache_hits", hits);
+        metrics.put("cache_hit_rate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        metrics.put("cache_size", cache.size());
+        metrics.put("queries_sent", queriesSent.get());
+        for (Stage stage : Stage.values()) {
+            String source = sourceOf(stage);
+            AtomicLong count = resolvedBySource.get(source);
+            metrics.put("resolved_" + source, count != null ? count.get() : 0L);
+        }
+        metrics.put("unresolved", unresolved.get());
+        metrics.put("timeouts", timeouts.get());
+        metrics.put("discarded_datagrams", discarded.get());
+        metrics.put("in_flight", inFlight.size());
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Hilo de E/S ---
+
+    private void ioLoop() {
+        try {
+            while (!closed) {
+                long wait = 0;
+                Deadline next = deadlines.peek();
+                if (next != null) {
+                    wait = Math.max(1, (next.at() - System.nanoTime()) / 1_000_000);
+                }
+                selector.select(wait);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isReadable()) receiveAll();
+                    if (key.isValid() && key.isWritable()) flushOutbound();
+                }
+                selector.selectedKeys().clear();
+
+                Lookup submitted;
+                while ((submitted = submissions.poll()) != null) {
+                    dispatch(submitted);
+                }
+                expireDeadlines();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                logger.error("Error en el hilo de resolución de nombres: {}", e.getMessage(), e);
+            }
+        } finally {
+            closed = true;
+            shutdown();
+        }
+    }
+
+    private void dispatch(Lookup lookup) {
+        if (lookup.stage == Stage.SYSTEM) {
+            resolveWithSystem(lookup);
+            return;
+        }
+        if (pending.size() >= MAX_IN_FLIGHT) {
+            backlog.add(lookup);
+            return;
+        }
+        int id;
+        do {
+            id = random.nextInt(0x10000);
+        } while (pending.containsKey(id));
+        lookup.id = id;
+        lookup.attempts = 0;
+        lookup.target = switch (lookup.stage) {
+            case DNS -> dnsServer;
+            case NBNS -> new InetSocketAddress(lookup.address, NBNS_PORT);
+            default -> new InetSocketAddress(lookup.address, MDNS_PORT);
+        };
+        pending.put(id, lookup);
+        transmit(lookup);
+    }
+
+    private void transmit(Lookup lookup) {
+        byte[] query = switch (lookup.stage) {
+            case DNS -> NameWire.ptrQuery(lookup.id, lookup.ip, true);
+            case NBNS -> NameWire.nbstatQuery(lookup.id);
+            default -> NameWire.ptrQuery(lookup.id, lookup.ip, false);
+        };
+        long timeout = lookup.stage == Stage.DNS ? DNS_TIMEOUT_MILLIS : LOCAL_TIMEOUT_MILLIS;
+        lookup.sends++;
+        deadlines.add(new Deadline(System.nanoTime() + timeout * 1_000_000L, lookup, lookup.sends));
+        queriesSent.incrementAndGet();
+
+        Outbound datagram = new Outbound(lookup.target, ByteBuffer.wrap(query));
+        if (!outbound.isEmpty()) {
+            outbound.add(datagram);
+            return;
+        }
+        try {
+            if (channel.send(datagram.buffer, datagram.target) == 0) {
+                outbound.add(datagram);
+                channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            // Host o red inalcanzable: el plazo pasará al siguiente mecanismo
+            logger.debug("Error enviando consulta de nombre a {}: {}", lookup.target, e.getMessage());
+        }
+    }
+
+    private void flushOutbound() throws IOException {
+        while (!outbound.isEmpty()) {
+            Outbound datagram = outbound.peek();
+            try {
+                if (channel.send(datagram.buffer, datagram.target) == 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                logger.debug("Error enviando consulta de nombre a {}: {}", datagram.target, e.getMessage());
+            }
+            outbound.poll();
+        }
+        channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+    }
+
+    private void receiveAll() throws IOException {
+        byte[] data = new byte[receiveBuffer.capacity()];
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress from = channel.receive(receiveBuffer);
+            if (from == null) return;
+            receiveBuffer.flip();
+            int length = receiveBuffer.remaining();
+            receiveBuffer.get(data, 0, length);
+            handleResponse(from, data, length);
+        }
+    }
+
+    private void handleResponse(SocketAddress from, byte[] data, int length) {
+        int id = NameWire.responseId(data, length);
+        Lookup lookup = id >= 0 ? pending.get(id) : null;
+        if (lookup == null || !lookup.target.equals(from)) {
+            discarded.incrementAndGet();
+            return;
+        }
+        NameWire.Answer answer;
+        try {
+            answer = lookup.stage == Stage.NBNS
+                    ? NameWire.parseNbstat(data, length)
+                    : NameWire.parsePtr(data, length);
+        } catch (IllegalArgumentException e) {
+            discarded.incrementAndGet();
+            return;
+        }
+        pending.remove(id);
+        if (answer.name != null && !answer.name.isEmpty()) {
+            long ttl = answer.ttlSeconds > 0 || lookup.stage == Stage.DNS
+                    ? answer.ttlSeconds : DEFAULT_LOCAL_TTL_SECONDS;
+            finish(lookup, ResolvedName.of(answer.name, sourceOf(lookup.stage)), ttl);
+        } else {
+            advance(lookup);
+        }
+        drainBacklog();
+    }
+
+    private void expireDeadlines() {
+        long now = System.nanoTime();
+        Deadline expired;
+        while ((expired = deadlines.peek()) != null && expired.at() <= now) {
+            deadlines.poll();
+            Lookup lookup = expired.lookup();
+            if (pending.get(lookup.id) != lookup || lookup.sends != expired.send()) continue;
+            if (lookup.stage == Stage.DNS && lookup.attempts < DNS_RETRIES) {
+                lookup.attempts++;
+                transmit(lookup);
+                continue;
+            }
+            pending.remove(lookup.id);
+            timeouts.incrementAndGet();
+            advance(lookup);
+        }
+        drainBacklog();
+    }
+
+    private void drainBacklog() {
+        while (!backlog.isEmpty() && pending.size() < MAX_IN_FLIGHT) {
+            dispatch(backlog.poll());
+        }
+    }
+
+    // Pasa al siguiente mecanismo o da la IP por no resuelta
+    private void advance(Lookup lookup) {
+        boolean local = localFallbacks && isLocal(lookup.address);
+        Stage next = switch (lookup.stage) {
+            case DNS, SYSTEM -> local ? Stage.NBNS : null;
+            case NBNS -> Stage.MDNS;
+            case MDNS -> null;
+        };
+        if (next == null) {
+            finish(lookup, ResolvedName.unresolved(), 0);
+            return;
+        }
+        lookup.stage = next;
+        dispatch(lookup);
+    }
+
+    // Sin servidor DNS conocido: getCanonicalHostName bloquea, pero en un hilo virtual propio
+    private void resolveWithSystem(Lookup lookup) {
+        Thread.startVirtualThread(() -> {
+            String name = lookup.address.getCanonicalHostName();
+            if (name != null && !name.equals(lookup.ip)) {
+                finish(lookup, ResolvedName.of(name, ResolvedName.SOURCE_SYSTEM), DEFAULT_LOCAL_TTL_SECONDS);
+            } else {
+                // Volver al hilo de E/S para los mecanismos locales
+                if (localFallbacks && isLocal(lookup.address)) {
+                    lookup.stage = Stage.NBNS;
+                    submissions.add(lookup);
+                    selector.wakeup();
+                } else {
+                    finish(lookup, ResolvedName.unresolved(), 0);
+                }
+            }
+        });
+    }
+
+    private void finish(Lookup lookup, ResolvedName result, long ttlSeconds) {
+        cache.put(lookup.ip, result, ttlSeconds);
+        if (result.isResolved()) {
+            resolvedBySource.computeIfAbsent(result.getSource(), k -> new AtomicLong()).incrementAndGet();
+        } else {
+            unresolved.incrementAndGet();
+        }
+        callbackExecutor.execute(() -> lookup.future.complete(result));
+    }
+
+    private void shutdown() {
+        List<Lookup> abandoned = new ArrayList<>(pending.values());
+        abandoned.addAll(backlog);
+        Lookup submitted;
+        while ((submitted = submissions.poll()) != null) abandoned.add(submitted);
+        for (Lookup lookup : abandoned) {
+            callbackExecutor.execute(() -> lookup.future.complete(ResolvedName.unresolved()));
+        }
+        pending.clear();
+        backlog.clear();
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error cerrando el socket de resolución: {}", e.getMessage());
+        }
+    }
+
+    private static String sourceOf(Stage stage) {
+        return switch (stage) {
+            case DNS -> ResolvedName.SOURCE_DNS;
+            case SYSTEM -> ResolvedName.SOURCE_SYSTEM;
+            case NBNS -> ResolvedName.SOURCE_NBNS;
+            case MDNS -> ResolvedName.SOURCE_MDNS;
+        };
+    }
+
+    private static boolean isLocal(InetAddress address) {
+        return address.isSiteLocalAddress() || address.isLinkLocalAddress() || address.isLoopbackAddress();
+    }
+
+    private static boolean isIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) return false;
+        for (String part : parts) {
+            if (part.isEmpty() || part.length() > 3) return false;
+            for (int i = 0; i < part.length(); i++) {
+                if (!Character.isDigit(part.charAt(i))) return false;
+            }
+            if (Integer.parseInt(part) > 255) return false;
+        }
+        return true;
+    }
+
+    // --- Estado ---
+
+    private static final class Lookup {
+        final String ip;
+        final InetAddress address;
+        final CompletableFuture<ResolvedName> future = new CompletableFuture<>();
+        Stage stage;
+        InetSocketAddress target;
+        int id;
+        int attempts;
+        int sends;
+
+        Lookup(String ip, Stage stage) {
+            this.ip = ip;
+            this.stage = stage;
+            try {
+                // Literal IPv4 ya validado: no hay consulta DNS
+                this.address = InetAddress.getByName(ip);
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    private record Deadline(long at, Lookup lookup, int send) {
+    }
+
+    private record Outbound(InetSocketAddress target, ByteBuffer buffer) {
+    }
+}
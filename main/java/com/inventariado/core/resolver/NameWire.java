@@ -0,0 +1,222 @@
+package com.inventariado.core.resolver;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato de mensaje DNS (RFC 1035), que comparten las consultas PTR unicast,
+ * mDNS (RFC 6762) y el estado de nodo NetBIOS (RFC 1002).
+ */
+final class NameWire {
+    static final int TYPE_PTR = 12;
+    static final int TYPE_NBSTAT = 0x21;
+    static final int CLASS_IN = 1;
+    static final int RCODE_NXDOMAIN = 3;
+
+    private static final int FLAG_RESPONSE = 0x8000;
+    private static final int FLAG_RECURSION_DESIRED = 0x0100;
+    private static final int MAX_POINTER_JUMPS = 32;
+
+    private NameWire() {
+    }
+
+    /**
+     * Respuesta decodificada: el primer nombre encontrado y su TTL.
+     */
+    static final class Answer {
+        int id;
+        int rcode;
+        String name;
+        long ttlSeconds;
+    }
+
+    /**
+     * @return Nombre inverso de una IPv4: "4.3.2.1.in-addr.arpa"
+     */
+    static String reverseName(String ip) {
+        String[] octets = ip.split("\\.");
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("IPv4 inválida: " + ip);
+        }
+        return octets[3] + "." + octets[2] + "." + octets[1] + "." + octets[0] + ".in-addr.arpa";
+    }
+
+    /**
+     * Consulta PTR; {@code recursive} solo para el servidor DNS configurado, no para mDNS.
+     */
+    static byte[] ptrQuery(int id, String ip, boolean recursive) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeHeader(out, id, recursive ? FLAG_RECURSION_DESIRED : 0);
+        for (String label : reverseName(ip).split("\\.")) {
+            byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes.length);
+            out.writeBytes(bytes);
+        }
+        out.write(0);
+        writeShort(out, TYPE_PTR);
+        writeShort(out, CLASS_IN);
+        return out.toByteArray();
+    }
+
+    /**
+     * Consulta de estado de nodo NetBIOS por el nombre comodín "*".
+     */
+    static byte[] nbstatQuery(int id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(50);
+        writeHeader(out, id, 0);
+        // Codificación de primer nivel: 16 bytes ("*" y relleno a ceros) -> 32 letras
+        out.write(32);
+        for (int i = 0; i < 16; i++) {
+            int b = i == 0 ? '*' : 0;
+            out.write('A' + (b >> 4));
+            out.write('A' + (b & 0x0F));
+        }
+        out.write(0);
+        writeShort(out, TYPE_NBSTAT);
+        writeShort(out, CLASS_IN);
+        return out.toByteArray();
+    }
+
+    /**
+     * Lee el id de transacción sin decodificar el resto.
+     * @return id, o -1 si el datagrama es demasiado corto o no es una respuesta
+     */
+    static int responseId(byte[] data, int length) {
+        if (length < 12 || (readShort(data, 2) & FLAG_RESPONSE) == 0) return -1;
+        return readShort(data, 0);
+    }
+
+    /**
+     * Busca el primer registro PTR de la sección de respuestas.
+     * @throws IllegalArgumentException si el mensaje está mal formado
+     */
+    static Answer parsePtr(byte[] data, int length) {
+        Answer answer = header(data, length);
+        int pos = skipQuestions(data, length);
+        int answers = readShort(data, 6);
+        for (int i = 0; i < answers; i++) {
+            pos = skipName(data, length, pos);
+            require(length, pos, 10);
+            int type = readShort(data, pos);
+            long ttl = readInt(data, pos + 4) & 0xFFFFFFFFL;
+            int rdLength = readShort(data, pos + 8);
+            pos += 10;
+            require(length, pos, rdLength);
+            if (type == TYPE_PTR) {
+                answer.name = stripDot(readName(data, length, pos));
+                answer.ttlSeconds = ttl;
+                return answer;
+            }
+            pos += rdLength;
+        }
+        return answer;
+    }
+
+    /**
+     * Extrae de una respuesta NBSTAT el nombre de estación: el primer nombre
+     * único (no de grupo) con sufijo 0x00.
+     */
+    static Answer parseNbstat(byte[] data, int length) {
+        Answer answer = header(data, length);
+        int pos = skipQuestions(data, length);
+        if (readShort(data, 6) == 0) return answer;
+        pos = skipName(data, length, pos);
+        require(length, pos, 11);
+        int type = readShort(data, pos);
+        answer.ttlSeconds = readInt(data, pos + 4) & 0xFFFFFFFFL;
+        pos += 10;
+        if (type != TYPE_NBSTAT) return answer;
+        int names = data[pos++] & 0xFF;
+        for (int i = 0; i < names; i++) {
+            require(length, pos, 18);
+            int suffix = data[pos + 15] & 0xFF;
+            boolean group = (data[pos + 16] & 0x80) != 0;
+            if (suffix == 0x00 && !group) {
+                answer.name = new String(data, pos, 15, StandardCharsets.US_ASCII).trim();
+                return answer;
+            }
+            pos += 18;
+        }
+        return answer;
+    }
+
+    private static Answer header(byte[] data, int length) {
+        require(length, 0, 12);
+        Answer answer = new Answer();
+        answer.id = readShort(data, 0);
+        answer.rcode = readShort(data, 2) & 0x0F;
+        return answer;
+    }
+
+    private static int skipQuestions(byte[] data, int length) {
+        int pos = 12;
+        int questions = readShort(data, 4);
+        for (int i = 0; i < questions; i++) {
+            pos = skipName(data, length, pos) + 4;
+        }
+        return pos;
+    }
+
+    private static int skipName(byte[] data, int length, int pos) {
+        while (true) {
+            require(length, pos, 1);
+            int len = data[pos] & 0xFF;
+            if ((len & 0xC0) == 0xC0) return pos + 2;
+            if (len == 0) return pos + 1;
+            pos += 1 + len;
+        }
+    }
+
+    private static String readName(byte[] data, int length, int pos) {
+        StringBuilder name = new StringBuilder();
+        int jumps = 0;
+        while (true) {
+            require(length, pos, 1);
+            int len = data[pos] & 0xFF;
+            if ((len & 0xC0) == 0xC0) {
+                require(length, pos, 2);
+                if (++jumps > MAX_POINTER_JUMPS) {
+                    throw new IllegalArgumentException("Bucle de punteros en nombre DNS");
+                }
+                pos = ((len & 0x3F) << 8) | (data[pos + 1] & 0xFF);
+                continue;
+            }
+            if (len == 0) return name.toString();
+            require(length, pos + 1, len);
+            name.append(new String(data, pos + 1, len, StandardCharsets.UTF_8)).append('.');
+            pos += 1 + len;
+        }
+    }
+
+    private static String stripDot(String name) {
+        return name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, int id, int flags) {
+        writeShort(out, id);
+        writeShort(out, flags);
+        writeShort(out, 1); // QDCOUNT
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, 0);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >> 8);
+        out.write(value);
+    }
+
+    private static int readShort(byte[] data, int pos) {
+        return ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return (readShort(data, pos) << 16) | readShort(data, pos + 2);
+    }
+
+    private static void require(int length, int pos, int bytes) {
+        if (pos < 0 || bytes < 0 || pos + bytes > length) {
+            throw new IllegalArgumentException("Mensaje DNS truncado");
+        }
+    }
+}
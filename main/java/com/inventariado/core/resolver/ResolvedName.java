@@ -0,0 +1,52 @@
+package com.inventariado.core.resolver;
+
+/**
+ * Resultado de resolver el nombre de una IP y el mecanismo que lo obtuvo.
+ */
+public final class ResolvedName {
+    public static final String SOURCE_DNS = "dns";
+    public static final String SOURCE_NBNS = "nbns";
+    public static final String SOURCE_MDNS = "mdns";
+    public static final String SOURCE_SYSTEM = "system";
+
+    private static final ResolvedName UNRESOLVED = new ResolvedName(null, null);
+
+    private final String name;
+    private final String source;
+
+    private ResolvedName(String name, String source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    static ResolvedName of(String name, String source) {
+        return name == null || name.isBlank() ? UNRESOLVED : new ResolvedName(name, source);
+    }
+
+    static ResolvedName unresolved() {
+        return UNRESOLVED;
+    }
+
+    public boolean isResolved() {
+        return name != null;
+    }
+
+    /**
+     * @return Nombre de host, o null si ningún mecanismo lo resolvió
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return "dns", "nbns", "mdns" o "system"; null si no se resolvió
+     */
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return isResolved() ? name + " (" + source + ")" : "sin nombre";
+    }
+}
@@ -1,13 +1,14 @@
 package com.inventariado.core.risk;
 
 import com.inventariado.core.ai.AIAnalyzer;
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.Services;
 import com.inventariado.core.security.SecurityAuditor;
 import org.slf4j.*;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -50,10 +51,10 @@ public class RiskAnalyzer {
     /**
 
      Analiza el riesgo de un dispositivo y genera recomendaciones.
-     @param deviceData Datos del dispositivo
+     @param deviceData Dispositivo a analizar
      @return Mapa con resultados del análisis
      */
-    public Map<String, Object> analyzeDeviceRisk(Map<String, Object> deviceData) {
+    public Map<String, Object> analyzeDeviceRisk(Device deviceData) {
         try {
             Map<String, Object> securityAnalysis = securityAuditor.analyzeDevice(deviceData);
             Map<String, Object> aiAnalysis = aiAnalyzer.analyzeDevice(deviceData);
@@ -80,8 +81,8 @@ public class RiskAnalyzer {
     }
 
     private double calculateRiskScore(Map<String, Object> securityAnalysis, Map<String, Object> aiAnalysis) {
-        double securityScore = (double) securityAnalysis.getOrDefault("total_score", 0);
-        double aiScore = (double) aiAnalysis.getOrDefault("security_score", 0);
+        double securityScore = number(securityAnalysis, "total_score");
+        double aiScore = number(aiAnalysis, "security_score");
         // Normalizar puntuaciones a escala 0-10
         double normalizedScore = (securityScore + aiScore) / 2;
         return Math.min(Math.max(normalizedScore, 0), 10);
@@ -107,22 +108,25 @@ public class RiskAnalyzer {
         };
     }
 
-    private List<String> generateRecommendations(Map<String, Object> deviceData, Map<String, Object> securityAnalysis) {
+    // Los análisis devuelven int o double según el caso
+    private static double number(Map<String, Object> analysis, String key) {
+        return analysis.get(key) instanceof Number value ? value.doubleValue() : 0;
+    }
+
+    private List<String> generateRecommendations(Device deviceData, Map<String, Object> securityAnalysis) {
         List<String> recommendations = new ArrayList<>();
-        Map<String, Map<String, Object>> services = (Map<String, Map<String, Object>>)
-                deviceData.getOrDefault("services", new HashMap<>());
+        Services services = deviceData.services();
         // Analizar servicios y generar recomendaciones
-        for (Map.Entry<String, Map<String, Object>> entry : services.entrySet()) {
-            String port = entry.getKey();
-            Map<String, Object> serviceInfo = entry.getValue();
-            String serviceName = (String) serviceInfo.getOrDefault("name", "desconocido");
+        for (int i = 0; i < services.size(); i++) {
+            int port = services.port(i);
+            String name = services.service(i).name();
+            String serviceName = name != null ? name : "desconocido";
 
             // Verificar servicios inseguros
-            int portNumber = Integer.parseInt(port);
-            if (securityAuditor.getInsecureServices().containsKey(portNumber)) {
+            if (securityAuditor.getInsecureServices().containsKey(port)) {
                 recommendations.add(
                         recommendationTemplates.get("close_port")
-                                .replace("{port}", port)
+                                .replace("{port}", String.valueOf(port))
                                 .replace("{service}", serviceName)
                 );
             }
@@ -138,7 +142,7 @@ public class RiskAnalyzer {
         }
 
         // Recomendaciones generales basadas en el análisis de seguridad
-        if ((double) securityAnalysis.getOrDefault("total_score", 0) > 5) {
+        if (number(securityAnalysis, "total_score") > 5) {
             recommendations.add(recommendationTemplates.get("enable_firewall"));
         }
 
@@ -0,0 +1,68 @@
+package com.inventariado.core.scanner;
+
+/**
+ * Ajusta cuántos hosts se agrupan en una misma invocación de Nmap.
+ *
+ * El tamaño se calcula a partir de la latencia media por host observada
+ * (media móvil exponencial) para que cada lote dure aproximadamente
+ * {@code targetBatchMillis}, y se limita según la cola pendiente para no dejar
+ * workers ociosos cuando quedan pocos hosts.
+ */
+public class AdaptiveBatchSizer {
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final int minBatch;
+    private final int maxBatch;
+    private final long targetBatchMillis;
+    private double perHostMillis;
+    private boolean hasSamples;
+
+    public AdaptiveBatchSizer(int minBatch, int maxBatch, long targetBatchMillis) {
+        if (minBatch < 1 || maxBatch < minBatch) {
+            throw new IllegalArgumentException("Límites de lote inválidos: " + minBatch + "-" + maxBatch);
+        }
+        this.minBatch = minBatch;
+        this.maxBatch = maxBatch;
+        this.targetBatchMillis = targetBatchMillis;
+    }
+
+    /**
+     * Registra la duración de un lote terminado.
+     * @param hosts Hosts incluidos en el lote
+     * @param elapsedMillis Duración total del proceso Nmap
+     */
+    public synchronized void record(int hosts, long elapsedMillis) {
+        if (hosts <= 0) return;
+        double sample = elapsedMillis / (double) hosts;
+        if (!hasSamples) {
+            perHostMillis = sample;
+            hasSamples = true;
+        } else {
+            perHostMillis = EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * perHostMillis;
+        }
+    }
+
+    /**
+     * Calcula el tamaño del siguiente lote.
+     * @param queued Hosts esperando en la cola de escaneo
+     * @param workers Workers de escaneo activos
+     */
+    public synchronized int nextBatchSize(int queued, int workers) {
+        int byLatency;
+        if (!hasSamples) {
+            // Sin mediciones empezamos con lotes pequeños
+            byLatency = minBatch;
+        } else {
+            byLatency = (int) Math.max(1, targetBatchMillis / Math.max(1.0, perHostMillis));
+        }
+
+        // Repartir la cola entre los workers para mantenerlos ocupados
+        int fairShare = Math.max(1, (queued + workers - 1) / Math.max(1, workers));
+        int size = Math.min(byLatency, fairShare);
+        return Math.max(minBatch, Math.min(maxBatch, size));
+    }
+
+    public synchronized double getPerHostMillis() {
+        return perHostMillis;
+    }
+}
@@ -0,0 +1,262 @@
+package com.inventariado.core.scanner;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Control adaptativo de la concurrencia de escaneo (AIMD).
+ *
+ * Al cerrar cada ventana de resultados (tantos hosts como el límite actual) se
+ * evalúan la tasa de timeouts, la tasa de salidas erróneas de Nmap y la mediana
+ * de latencia por host de la ventana frente a una referencia. Si alguna supera
+ * su umbral el límite se reduce a la mitad; si no, crece en uno. Cada decisión
+ * queda registrada con su motivo para poder explicar por qué un escaneo se
+ * ralentizó.
+ *
+ * La referencia de latencia es la menor mediana de las últimas ventanas, no la
+ * mínima de todo el escaneo: así caduca, y unos pocos hosts rápidos al principio
+ * de una red heterogénea no dejan el límite clavado en el mínimo.
+ */
+public class ConcurrencyController {
+    private static final Logger logger = Logger.getLogger(ConcurrencyController.class.getName());
+
+    private static final double TIMEOUT_RATE_THRESHOLD = 0.10;
+    private static final double ERROR_RATE_THRESHOLD = 0.20;
+    private static final double LATENCY_INFLATION_THRESHOLD = 2.0;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double EWMA_ALPHA = 0.2;
+    private static final int BASELINE_WINDOWS = 32;
+    private static final int MAX_DECISIONS = 50;
+
+    private final AdjustableSemaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private int limit;
+
+    // Ventana actual
+    private int windowHosts;
+    private int windowTimeouts;
+    private int windowProcesses;
+    private int windowErrors;
+
+    // Latencia por host: muestras de la ventana y medianas de las últimas ventanas
+    private double latencyEwma = -1;
+    private double[] windowLatencies = new double[16];
+    private int windowSamples;
+    private final double[] recentMedians = new double[BASELINE_WINDOWS];
+    private long windowsWithLatency;
+
+    private int increases;
+    private int decreases;
+    private long hostsObserved;
+    private long timeoutsObserved;
+    private long errorsObserved;
+    private final Deque<Map<String, Object>> decisions = new ArrayDeque<>();
+
+    public ConcurrencyController(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Límites de concurrencia inválidos: " + minLimit + "-" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.permits = new AdjustableSemaphore(limit);
+    }
+
+    /**
+     * Intenta ocupar un hueco de escaneo.
+     * @return true si se obtuvo; debe devolverse con {@link #release()}
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (permits.tryAcquire(timeout, unit)) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+
+    /**
+     * Espera a que no quede ningún escaneo en curso.
+     * @return true si se vació antes del timeout
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) return false;
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Registra el resultado de un host.
+     * @param durationSeconds Duración del escaneo del host (scan_duration)
+     * @param timedOut Si el host agotó --host-timeout o no produjo resultado
+     */
+    public synchronized void recordHost(double durationSeconds, boolean timedOut) {
+        hostsObserved++;
+        windowHosts++;
+        if (timedOut) {
+            timeoutsObserved++;
+            windowTimeouts++;
+        } else if (durationSeconds > 0) {
+            latencyEwma = latencyEwma < 0 ? durationSeconds
+                    : EWMA_ALPHA * durationSeconds + (1 - EWMA_ALPHA) * latencyEwma;
+            if (windowSamples == windowLatencies.length) {
+                windowLatencies = Arrays.copyOf(windowLatencies, windowSamples * 2);
+            }
+            windowLatencies[windowSamples++] = durationSeconds;
+        }
+        if (windowHosts >= limit) {
+            evaluateWindow();
+        }
+    }
+
+    /**
+     * Registra el código de salida de un proceso Nmap.
+     */
+    public synchronized void recordExit(int exitCode) {
+        windowProcesses++;
+        if (exitCode != 0) {
+            errorsObserved++;
+            windowErrors++;
+        }
+    }
+
+    private void evaluateWindow() {
+        double timeoutRate = windowTimeouts / (double) windowHosts;
+        double errorRate = windowProcesses > 0 ? windowErrors / (double) windowProcesses : 0;
+        double median = windowMedian();
+        double baseline = latencyBaseline();
+        double inflation = (median > 0 && baseline > 0) ? median / baseline : 1.0;
+
+        String reason;
+        int newLimit;
+        if (timeoutRate > TIMEOUT_RATE_THRESHOLD) {
+            reason = String.format("tasa de timeouts %.0f%%", timeoutRate * 100);
+            newLimit = (int) (limit * DECREASE_FACTOR);
+        } else if (errorRate > ERROR_RATE_THRESHOLD) {
+            reason = String.format("tasa de errores de Nmap %.0f%%", errorRate * 100);
+            newLimit = (int) (limit * DECREASE_FACTOR);
+        } else if (inflation > LATENCY_INFLATION_THRESHOLD) {
+            reason = String.format("latencia por host x%.1f sobre la referencia", inflation);
+            newLimit = (int) (limit * DECREASE_FACTOR);
+        } else {
+            reason = "ventana sin congestión";
+            newLimit = limit + 1;
+        }
+        newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        if (newLimit != limit) {
+            applyLimit(newLimit, reason, timeoutRate, errorRate, inflation);
+        }
+
+        if (median > 0) {
+            recentMedians[(int) (windowsWithLatency++ % BASELINE_WINDOWS)] = median;
+        }
+        windowHosts = 0;
+        windowTimeouts = 0;
+        windowProcesses = 0;
+        windowErrors = 0;
+        windowSamples = 0;
+    }
+
+    private double windowMedian() {
+        if (windowSamples == 0) return -1;
+        Arrays.sort(windowLatencies, 0, windowSamples);
+        int middle = windowSamples / 2;
+        return (windowSamples & 1) != 0 ? windowLatencies[middle]
+                : (windowLatencies[middle - 1] + windowLatencies[middle]) / 2;
+    }
+
+    // Menor mediana de las últimas BASELINE_WINDOWS ventanas, o -1 si aún no hay ninguna
+    private double latencyBaseline() {
+        int count = (int) Math.min(windowsWithLatency, BASELINE_WINDOWS);
+        double baseline = -1;
+        for (int i = 0; i < count; i++) {
+            if (baseline < 0 || recentMedians[i] < baseline) {
+                baseline = recentMedians[i];
+            }
+        }
+        return baseline;
+    }
+
+    private void applyLimit(int newLimit, String reason, double timeoutRate, double errorRate, double inflation) {
+        int oldLimit = limit;
+        if (newLimit > oldLimit) {
+            increases++;
+            permits.release(newLimit - oldLimit);
+        } else {
+            decreases++;
+            // Los permisos pueden quedar negativos: los escaneos en curso terminan y no se reponen
+            permits.reduce(oldLimit - newLimit);
+            logger.info(String.format("Concurrencia de escaneo reducida de %d a %d: %s", oldLimit, newLimit, reason));
+        }
+        limit = newLimit;
+
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+        decision.put("old_limit", oldLimit);
+        decision.put("new_limit", newLimit);
+        decision.put("reason", reason);
+        decision.put("timeout_rate", timeoutRate);
+        decision.put("error_rate", errorRate);
+        decision.put("latency_inflation", inflation);
+        decisions.addLast(decision);
+        while (decisions.size() > MAX_DECISIONS) {
+            decisions.removeFirst();
+        }
+    }
+
+    /**
+     * @return Estado actual y últimas decisiones del controlador
+     */
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("current_limit", limit);
+        metrics.put("min_limit", minLimit);
+        metrics.put("max_limit", maxLimit);
+        metrics.put("in_flight", inFlight.get());
+        metrics.put("increases", increases);
+        metrics.put("decreases", decreases);
+        metrics.put("hosts_observed", hostsObserved);
+        metrics.put("timeouts_observed", timeoutsObserved);
+        metrics.put("nmap_errors_observed", errorsObserved);
+        metrics.put("latency_ewma_seconds", latencyEwma < 0 ? 0.0 : latencyEwma);
+        metrics.put("latency_baseline_seconds", Math.max(0.0, latencyBaseline()));
+        metrics.put("decisions", new ArrayList<>(decisions));
+        return metrics;
+    }
+
+    // Semaphore expone reducePermits solo a subclases
+    private static final class AdjustableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        AdjustableSemaphore(int permits) {
+            super(permits);
+        }
+
+        void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+}
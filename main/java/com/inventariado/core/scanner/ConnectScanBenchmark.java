@@ -0,0 +1,133 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mide puertos por segundo de {@link ConnectScanEngine} sin red ni root:
+ * escanea un rango de puertos en varias direcciones de loopback (127.0.0.x),
+ * donde los puertos cerrados responden con RST al momento, y abre antes
+ * algunos puertos en 127.0.0.1 para comprobar que se detectan todos.
+ *
+ * Uso:
+ * <pre>
+ *   java com.inventariado.core.scanner.ConnectScanBenchmark [--hosts 4] [--ports 20000-29999]
+ *        [--open 20] [--selectors 2] [--in-flight 2048] [--per-host 256] [--pps 0] [--seed 42]
+ * </pre>
+ * Con --pps se aplica un {@link ProbeRateLimiter} con ese presupuesto global.
+ */
+public final class ConnectScanBenchmark {
+
+    private ConnectScanBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hosts = 4;
+        int firstPort = 20_000;
+        int lastPort = 29_999;
+        int open = 20;
+        int selectors = 2;
+        int inFlight = 2048;
+        int perHost = 256;
+        int pps = 0;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hosts" -> hosts = Integer.parseInt(args[++i]);
+                case "--ports" -> {
+                    String[] range = args[++i].split("-");
+                    firstPort = Integer.parseInt(range[0]);
+                    lastPort = Integer.parseInt(range[range.length - 1]);
+                }
+                case "--open" -> open = Integer.parseInt(args[++i]);
+                case "--selectors" -> selectors = Integer.parseInt(args[++i]);
+                case "--in-flight" -> inFlight = Integer.parseInt(args[++i]);
+                case "--per-host" -> perHost = Integer.parseInt(args[++i]);
+                case "--pps" -> pps = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+        if (hosts < 1 || hosts > 254 || firstPort < 1 || lastPort > 65535 || firstPort > lastPort) {
+            throw new IllegalArgumentException("Hosts o rango de puertos inválidos");
+        }
+
+        int[] ports = new int[lastPort - firstPort + 1];
+        for (int i = 0; i < ports.length; i++) {
+            ports[i] = firstPort + i;
+        }
+        List<ServerSocketChannel> listeners = listen(ports, open, seed);
+        try (ConnectScanEngine engine = ConnectScanEngine.open(selectors, inFlight, perHost)) {
+            if (pps > 0) {
+                engine.setRateLimiter(new ProbeRateLimiter(pps, 0, Math.max(1, pps / 100)));
+            }
+            Map<String, Object> result = run(engine, hosts, ports);
+            result.put("open_expected", listeners.size());
+            System.out.printf("Hosts: %d, puertos por host: %d, selectores: %d, en vuelo: %d (%d por host), semilla %d%n",
+                    hosts, ports.length, selectors, inFlight, perHost, seed);
+            for (Map.Entry<String, Object> entry : result.entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+            }
+        } finally {
+            for (ServerSocketChannel listener : listeners) {
+                listener.close();
+            }
+        }
+    }
+
+    /**
+     * Escanea {@code ports} en 127.0.0.1 .. 127.0.0.{hosts} a la vez.
+     * @return Métricas del escaneo
+     */
+    public static Map<String, Object> run(ConnectScanEngine engine, int hosts, int[] ports) throws Exception {
+        long start = System.nanoTime();
+        List<CompletableFuture<Map<Integer, Map<String, Object>>>> scans = new ArrayList<>(hosts);
+        for (int i = 1; i <= hosts; i++) {
+            scans.add(engine.scan("127.0.0." + i, ports));
+        }
+        long openFound = 0;
+        for (CompletableFuture<Map<Integer, Map<String, Object>>> scan : scans) {
+            openFound += scan.get().size();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long probes = (long) hosts * ports.length;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("probes", probes);
+        result.put("probes_completed", engine.getProbesCompleted());
+        result.put("seconds", round(seconds));
+        result.put("ports_per_second", round(probes / seconds));
+        result.put("engine_ports_per_second", round(engine.getPortsPerSecond()));
+        result.put("open_found", openFound);
+        return result;
+    }
+
+    // Abre hasta "count" puertos del rango en 127.0.0.1; se saltan los que ya estén en uso
+    private static List<ServerSocketChannel> listen(int[] ports, int count, long seed) {
+        List<ServerSocketChannel> listeners = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int attempt = 0; listeners.size() < count && attempt < count * 4; attempt++) {
+            int port = ports[random.nextInt(ports.length)];
+            try {
+                ServerSocketChannel listener = ServerSocketChannel.open();
+                try {
+                    listener.bind(new InetSocketAddress("127.0.0.1", port), 4096);
+                    listeners.add(listener);
+                } catch (IOException e) {
+                    listener.close();
+                }
+            } catch (IOException e) {
+                // Sin descriptores: seguir con los que haya
+                break;
+            }
+        }
+        return listeners;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,434 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Escáner TCP connect no bloqueante basado en {@link Selector}.
+ *
+ * Unos pocos hilos selectores mantienen miles de conexiones en curso a la vez.
+ * Cada host tiene un límite propio de conexiones simultáneas y un timeout que
+ * se adapta al RTT medido (estimador de Jacobson, como TCP), y el total de
+ * conexiones abiertas se reparte entre los selectores. No necesita Nmap ni
+ * privilegios de root.
+ */
+public class ConnectScanEngine implements PortScanEngine {
+    private static final Logger logger = Logger.getLogger(ConnectScanEngine.class.getName());
+
+    private static final long INITIAL_TIMEOUT_MILLIS = 1000;
+    private static final long MIN_TIMEOUT_MILLIS = 100;
+    private static final long MAX_TIMEOUT_MILLIS = 3000;
+    private static final long IDLE_SELECT_MILLIS = 50;
+
+    // Nombres de servicio por puerto (equivalente al método "table" de Nmap)
+    private static final Map<Integer, String> WELL_KNOWN_SERVICES = Map.ofEntries(
+            Map.entry(21, "ftp"), Map.entry(22, "ssh"), Map.entry(23, "telnet"),
+            Map.entry(25, "smtp"), Map.entry(53, "domain"), Map.entry(80, "http"),
+            Map.entry(110, "pop3"), Map.entry(135, "msrpc"), Map.entry(139, "netbios-ssn"),
+            Map.entry(143, "imap"), Map.entry(161, "snmp"), Map.entry(389, "ldap"),
+            Map.entry(443, "https"), Map.entry(445, "microsoft-ds"), Map.entry(515, "printer"),
+            Map.entry(554, "rtsp"), Map.entry(631, "ipp"), Map.entry(993, "imaps"),
+            Map.entry(995, "pop3s"), Map.entry(1433, "ms-sql-s"), Map.entry(1883, "mqtt"),
+            Map.entry(3306, "mysql"), Map.entry(3389, "ms-wbt-server"), Map.entry(5432, "postgresql"),
+            Map.entry(5900, "vnc"), Map.entry(8000, "http-alt"), Map.entry(8080, "http-proxy"),
+            Map.entry(8443, "https-alt"), Map.entry(9100, "jetdirect")
+    );
+
+    private final int perHostMaxInFlight;
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile ProbeRateLimiter rateLimiter;
+    private final LongAdder probesCompleted = new LongAdder();
+    private volatile long firstSubmitNanos;
+
+    /**
+     * Crea el motor con los valores por defecto y arranca sus hilos selectores.
+     */
+    public static ConnectScanEngine open() {
+        return open(2, 2048, 256);
+    }
+
+    /**
+     * Crea el motor y arranca sus hilos selectores.
+     * @param selectorThreads Hilos selectores
+     * @param globalMaxInFlight Conexiones simultáneas máximas en total
+     * @param perHostMaxInFlight Conexiones simultáneas máximas por host
+     */
+    public static ConnectScanEngine open(int selectorThreads, int globalMaxInFlight, int perHostMaxInFlight) {
+        if (selectorThreads < 1 || globalMaxInFlight < selectorThreads || perHostMaxInFlight < 1) {
+            throw new IllegalArgumentException("Parámetros de concurrencia inválidos");
+        }
+        ConnectScanEngine engine = new ConnectScanEngine(selectorThreads, perHostMaxInFlight);
+        engine.start(globalMaxInFlight);
+        return engine;
+    }
+
+    private ConnectScanEngine(int selectorThreads, int perHostMaxInFlight) {
+        this.perHostMaxInFlight = perHostMaxInFlight;
+        this.loops = new SelectorLoop[selectorThreads];
+    }
+
+    // Fuera del constructor: los hilos selectores no deben ver el motor a medio construir
+    private void start(int globalMaxInFlight) {
+        for (int i = 0; i < loops.length; i++) {
+            try {
+                loops[i] = new SelectorLoop(globalMaxInFlight / loops.length, "connect-scan-" + i);
+            } catch (IOException e) {
+                close();
+                throw new IllegalStateException("No se pudo abrir el selector: " + e.getMessage(), e);
+            }
+            loops[i].start();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Map<String, Object>>> scan(String host, int[] ports) throws IOException {
+        if (firstSubmitNanos == 0) {
+            firstSubmitNanos = System.nanoTime();
+        }
+        HostJob job = new HostJob(InetAddress.getByName(host), ports);
+        if (ports.length == 0) {
+            job.future.complete(job.services);
+            return job.future;
+        }
+        loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].submit(job);
+        return job.future;
+    }
+
+    @Override
+    public String getName() {
+        return "connect";
+    }
+
+    /**
+     * Limita el ritmo de nuevas conexiones con el presupuesto compartido del escaneo.
+     * @param rateLimiter Limitador o null para no limitar
+     */
+    public void setRateLimiter(ProbeRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public long getProbesCompleted() {
+        return probesCompleted.sum();
+    }
+
+    /**
+     * @return Puertos comprobados por segundo desde el primer escaneo
+     */
+    public double getPortsPerSecond() {
+        long start = firstSubmitNanos;
+        if (start == 0) return 0;
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return seconds > 0 ? probesCompleted.sum() / seconds : 0;
+    }
+
+    @Override
+    public void close() {
+        for (SelectorLoop loop : loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Estado de escaneo de un host: puertos pendientes, conexiones en curso
+     * y estimación de RTT. Solo lo modifica el hilo selector que lo atiende.
+     */
+    private static final class HostJob {
+        final InetAddress address;
+        final int ipKey;
+        final int[] ports;
+        final Map<Integer, Map<String, Object>> services = new HashMap<>();
+        final CompletableFuture<Map<Integer, Map<String, Object>>> future = new CompletableFuture<>();
+        int next;
+        int inFlight;
+        double srttMillis = -1;
+        double rttvarMillis;
+
+        HostJob(InetAddress address, int[] ports) {
+            this.address = address;
+            this.ports = ports;
+            byte[] raw = address.getAddress();
+            this.ipKey = raw.length == 4
+                    ? (raw[0] & 0xFF) << 24 | (raw[1] & 0xFF) << 16 | (raw[2] & 0xFF) << 8 | (raw[3] & 0xFF)
+                    : Arrays.hashCode(raw);
+        }
+
+        boolean hasPending() {
+            return next < ports.length && !future.isDone();
+        }
+
+        boolean isFinished() {
+            return inFlight == 0 && (next >= ports.length || future.isDone());
+        }
+
+        long timeoutMillis() {
+            if (srttMillis < 0) return INITIAL_TIMEOUT_MILLIS;
+            long rto = (long) (srttMillis + 4 * rttvarMillis);
+            return Math.max(MIN_TIMEOUT_MILLIS, Math.min(MAX_TIMEOUT_MILLIS, rto));
+        }
+
+        void recordRtt(double sampleMillis) {
+            if (srttMillis < 0) {
+                srttMillis = sampleMillis;
+                rttvarMillis = sampleMillis / 2;
+            } else {
+                rttvarMillis = 0.75 * rttvarMillis + 0.25 * Math.abs(srttMillis - sampleMillis);
+                srttMillis = 0.875 * srttMillis + 0.125 * sampleMillis;
+            }
+        }
+
+        void markOpen(int port) {
+            Map<String, Object> service = new HashMap<>(8);
+            service.put("port", port);
+            service.put("protocol", "tcp");
+            service.put("state", "open");
+            service.put("name", WELL_KNOWN_SERVICES.getOrDefault(port, "unknown"));
+            service.put("method", "table");
+            services.put(port, service);
+        }
+    }
+
+    private static final class Probe {
+        final HostJob job;
+        final int port;
+        final SocketChannel channel;
+        final long startNanos;
+        final long deadlineNanos;
+        boolean done;
+
+        Probe(HostJob job, int port, SocketChannel channel, long startNanos, long deadlineNanos) {
+            this.job = job;
+            this.port = port;
+            this.channel = channel;
+            this.startNanos = startNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final int maxInFlight;
+        private final Queue<HostJob> submitted = new ConcurrentLinkedQueue<>();
+        private final List<HostJob> active = new ArrayList<>();
+        private final PriorityQueue<Probe> deadlines =
+                new PriorityQueue<>(Comparator.comparingLong((Probe p) -> p.deadlineNanos));
+        private final Thread thread;
+        private volatile boolean running = true;
+        private int inFlight;
+        private int cursor;
+        private boolean throttled;
+
+        SelectorLoop(int maxInFlight, String name) throws IOException {
+            this.selector = Selector.open();
+            this.maxInFlight = Math.max(1, maxInFlight);
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void submit(HostJob job) {
+            submitted.add(job);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    HostJob job;
+                    while ((job = submitted.poll()) != null) {
+                        active.add(job);
+                    }
+
+                    launchProbes();
+                    selector.select(selectWaitMillis());
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        onConnectable(key);
+                    }
+
+                    expireProbes(System.nanoTime());
+                    retireFinishedJobs();
+                }
+            } catch (IOException e) {
+                logger.severe("Error en el selector de escaneo: " + e.getMessage());
+            } finally {
+                abortAll();
+            }
+        }
+
+        // Reparte las conexiones libres en turno rotatorio entre los hosts activos
+        private void launchProbes() {
+            ProbeRateLimiter limiter = rateLimiter;
+            throttled = false;
+            boolean progress = true;
+            while (progress && inFlight < maxInFlight && !active.isEmpty()) {
+                progress = false;
+                for (int i = 0; i < active.size() && inFlight < maxInFlight; i++) {
+                    cursor = (cursor + 1) % active.size();
+                    HostJob job = active.get(cursor);
+                    if (job.hasPending() && job.inFlight < perHostMaxInFlight) {
+                        if (limiter != null && !limiter.tryAcquire(job.ipKey)) {
+                            // Sin tokens para este host o su /24: reintentar en la próxima vuelta
+                            throttled = true;
+                            continue;
+                        }
+                        if (!launch(job)) {
+                            // Sin descriptores disponibles: esperar a que se liberen
+                            return;
+                        }
+                        progress = true;
+                    }
+                }
+            }
+        }
+
+        private boolean launch(HostJob job) {
+            int port = job.ports[job.next];
+            SocketChannel channel;
+            try {
+                channel = SocketChannel.open();
+            } catch (IOException e) {
+                logger.warning("No se pudo abrir socket: " + e.getMessage());
+                return false;
+            }
+            job.next++;
+
+            long now = System.nanoTime();
+            try {
+                channel.configureBlocking(false);
+                if (channel.connect(new InetSocketAddress(job.address, port))) {
+                    job.markOpen(port);
+                    closeQuietly(channel);
+                    probesCompleted.increment();
+                    return true;
+                }
+                Probe probe = new Probe(job, port, channel, now, now + job.timeoutMillis() * 1_000_000L);
+                channel.register(selector, SelectionKey.OP_CONNECT, probe);
+                deadlines.add(probe);
+                job.inFlight++;
+                inFlight++;
+            } catch (IOException e) {
+                // Red inalcanzable o rechazo inmediato: puerto no abierto
+                closeQuietly(channel);
+                probesCompleted.increment();
+            }
+            return true;
+        }
+
+        private void onConnectable(SelectionKey key) {
+            Probe probe = (Probe) key.attachment();
+            if (probe.done) return;
+            try {
+                if (probe.channel.finishConnect()) {
+                    probe.job.recordRtt((System.nanoTime() - probe.startNanos) / 1_000_000.0);
+                    probe.job.markOpen(probe.port);
+                } else {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // RST: puerto cerrado, pero la respuesta sirve como muestra de RTT
+                probe.job.recordRtt((System.nanoTime() - probe.startNanos) / 1_000_000.0);
+            } catch (IOException e) {
+                // Host inalcanzable o filtrado
+            }
+            finish(probe, key);
+        }
+
+        private void expireProbes(long now) {
+            Probe probe;
+            while ((probe = deadlines.peek()) != null && (probe.done || probe.deadlineNanos <= now)) {
+                deadlines.poll();
+                if (!probe.done) {
+                    finish(probe, probe.channel.keyFor(selector));
+                }
+            }
+        }
+
+        private void finish(Probe probe, SelectionKey key) {
+            probe.done = true;
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(probe.channel);
+            probe.job.inFlight--;
+            inFlight--;
+            probesCompleted.increment();
+        }
+
+        private void retireFinishedJobs() {
+            for (int i = active.size() - 1; i >= 0; i--) {
+                HostJob job = active.get(i);
+                if (job.isFinished()) {
+                    active.remove(i);
+                    job.future.complete(job.services);
+                }
+            }
+        }
+
+        private long selectWaitMillis() {
+            if (throttled) return 1;
+            Probe first = deadlines.peek();
+            if (first == null) return IDLE_SELECT_MILLIS;
+            long waitMillis = (first.deadlineNanos - System.nanoTime()) / 1_000_000L;
+            return Math.max(1, Math.min(IDLE_SELECT_MILLIS, waitMillis));
+        }
+
+        private void abortAll() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Probe probe) {
+                    closeQuietly(probe.channel);
+                }
+            }
+            for (HostJob job : active) {
+                job.future.completeExceptionally(new IOException("Motor de escaneo cerrado"));
+            }
+            HostJob job;
+            while ((job = submitted.poll()) != null) {
+                job.future.completeExceptionally(new IOException("Motor de escaneo cerrado"));
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.warning("Error al cerrar el selector: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignorar
+        }
+    }
+}
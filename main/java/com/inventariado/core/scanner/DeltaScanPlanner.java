@@ -0,0 +1,222 @@
+package com.inventariado.core.scanner;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Modo delta: decide qué hosts necesitan un escaneo profundo comparando una
+ * huella barata ({@link HostFingerprinter}) con el último snapshot guardado.
+ *
+ * Un host se escala al escaneo profundo si no estaba en el snapshot, si su
+ * último escaneo profundo es más antiguo que la edad máxima configurada, o si
+ * cambió su conjunto de puertos abiertos o el banner de alguno. En caso
+ * contrario se reutiliza el registro anterior, de modo que compareScans sigue
+ * viendo el dispositivo completo y sin cambios.
+ *
+ * A todos los hosts, también a los nuevos y caducados, se les toma la huella
+ * antes de escalarlos: así cada escaneo profundo deja la huella de referencia
+ * para la noche siguiente.
+ */
+public class DeltaScanPlanner {
+    private static final Logger logger = Logger.getLogger(DeltaScanPlanner.class.getName());
+
+    /** Campo del dispositivo con la fecha de su último escaneo profundo */
+    public static final String LAST_DEEP_SCAN = "last_deep_scan";
+    /** Campo del dispositivo con su huella barata */
+    public static final String FINGERPRINT = "fingerprint";
+
+    private final Map<String, Map<String, Object>> baseline = new HashMap<>();
+    private final Duration maxDeepScanAge;
+    private final HostFingerprinter fingerprinter;
+    // Huellas tomadas a hosts escalados, para adjuntarlas cuando termine su escaneo profundo
+    private final Map<String, Map<String, Object>> pendingFingerprints = new ConcurrentHashMap<>();
+
+    private final LongAdder hostsReused = new LongAdder();
+    private final LongAdder escalatedNew = new LongAdder();
+    private final LongAdder escalatedStale = new LongAdder();
+    private final LongAdder escalatedChanged = new LongAdder();
+
+    /**
+     * @param lastSnapshot Dispositivos del último escaneo guardado
+     * @param maxDeepScanAge Antigüedad máxima de un escaneo profundo antes de repetirlo
+     */
+    public DeltaScanPlanner(List<Map<String, Object>> lastSnapshot, Duration maxDeepScanAge) {
+        this(lastSnapshot, maxDeepScanAge, new HostFingerprinter());
+    }
+
+    public DeltaScanPlanner(List<Map<String, Object>> lastSnapshot, Duration maxDeepScanAge,
+                            HostFingerprinter fingerprinter) {
+        this.maxDeepScanAge = maxDeepScanAge;
+        this.fingerprinter = fingerprinter;
+        for (Map<String, Object> device : lastSnapshot) {
+            if (device.get("ip") instanceof String ip) {
+                baseline.put(ip, device);
+            }
+        }
+    }
+
+    /**
+     * Comprueba un host frente al snapshot.
+     * @return Registro reutilizado si el host no cambió, o null si necesita escaneo profundo
+     */
+    public Map<String, Object> check(String host) throws InterruptedException {
+        Map<String, Object> previous = baseline.get(host);
+        long start = System.nanoTime();
+        Set<Integer> knownOpen = previous != null ? openPorts(previous) : Collections.emptySet();
+        Map<String, Object> current = fingerprinter.fingerprint(host, knownOpen);
+        if (previous == null) {
+            escalatedNew.increment();
+            pendingFingerprints.put(host, current);
+            return null;
+        }
+        if (!isDeepScanFresh(previous)) {
+            escalatedStale.increment();
+            pendingFingerprints.put(host, current);
+            return null;
+        }
+
+        String change = describeChange(previous, knownOpen, current);
+        if (change != null) {
+            logger.fine("Host " + host + " escalado a escaneo profundo: " + change);
+            escalatedChanged.increment();
+            pendingFingerprints.put(host, current);
+            return null;
+        }
+
+        hostsReused.increment();
+        return reuse(previous, current, (System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * Adjunta a un dispositivo recién escaneado en profundidad la huella tomada
+     * al escalarlo, para la comparación de la próxima noche.
+     */
+    public void annotate(Map<String, Object> device) {
+        Map<String, Object> fingerprint = pendingFingerprints.remove(device.get("ip"));
+        if (fingerprint != null) {
+            device.put(FINGERPRINT, fingerprint);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("baseline_hosts", baseline.size());
+        metrics.put("hosts_reused", hostsReused.sum());
+        metrics.put("escalated_new", escalatedNew.sum());
+        metrics.put("escalated_stale", escalatedStale.sum());
+        metrics.put("escalated_changed", escalatedChanged.sum());
+        return metrics;
+    }
+
+    private boolean isDeepScanFresh(Map<String, Object> previous) {
+        if (maxDeepScanAge == null) {
+            return true;
+        }
+        Object value = previous.get(LAST_DEEP_SCAN);
+        if (!(value instanceof String text)) {
+            // Registros anteriores al modo delta: tratarlos como caducados
+            return false;
+        }
+        try {
+            LocalDateTime lastDeep = LocalDateTime.parse(text, DateTimeFormatter.ISO_DATE_TIME);
+            return lastDeep.plus(maxDeepScanAge).isAfter(LocalDateTime.now());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Motivo del cambio, o null si la huella coincide con el snapshot
+     */
+    private static String describeChange(Map<String, Object> previous, Set<Integer> knownOpen,
+                                         Map<String, Object> current) {
+        // Solo se comparan los puertos que se han comprobado ahora
+        Set<Integer> probed = toPortSet(current.get("probed"));
+        Set<Integer> expected = new TreeSet<>(knownOpen);
+        expected.retainAll(probed);
+        Set<Integer> actual = toPortSet(current.get("ports"));
+        if (!expected.equals(actual)) {
+            return "puertos " + expected + " -> " + actual;
+        }
+
+        // Banners: solo donde el snapshot tiene huella previa
+        if (previous.get(FINGERPRINT) instanceof Map<?, ?> oldFingerprint
+                && oldFingerprint.get("banners") instanceof Map<?, ?> oldBanners
+                && current.get("banners") instanceof Map<?, ?> newBanners) {
+            for (Map.Entry<?, ?> entry : oldBanners.entrySet()) {
+                String port = String.valueOf(entry.getKey());
+                try {
+                    if (!actual.contains(Integer.parseInt(port))) continue;
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (!Objects.equals(entry.getValue(), newBanners.get(port))) {
+                    return "banner del puerto " + port;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> reuse(Map<String, Object> previous, Map<String, Object> fingerprint,
+                                             double checkSeconds) {
+        Map<String, Object> device = new HashMap<>(previous);
+        device.put("services", normalizeServices(previous.get("services")));
+        device.put(FINGERPRINT, fingerprint);
+        device.put("detection_method", "delta");
+        device.put("status", "up");
+        device.put("last_seen", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+        device.put("scan_duration", checkSeconds);
+        return device;
+    }
+
+    /**
+     * Puertos abiertos de un registro; admite claves enteras (en memoria) o de
+     * texto (leídas de la base de datos).
+     */
+    static Set<Integer> openPorts(Map<String, Object> device) {
+        Set<Integer> open = new TreeSet<>();
+        if (device.get("services") instanceof Map<?, ?> services) {
+            for (Map.Entry<?, ?> entry : services.entrySet()) {
+                Object state = entry.getValue() instanceof Map<?, ?> service ? service.get("state") : null;
+                if (state != null && !"open".equals(state)) continue;
+                try {
+                    open.add(Integer.parseInt(String.valueOf(entry.getKey())));
+                } catch (NumberFormatException e) {
+                    // Clave no numérica: ignorar
+                }
+            }
+        }
+        return open;
+    }
+
+    private static Map<Integer, Object> normalizeServices(Object services) {
+        Map<Integer, Object> typed = new HashMap<>();
+        if (services instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                try {
+                    typed.put(Integer.parseInt(String.valueOf(entry.getKey())), entry.getValue());
+                } catch (NumberFormatException e) {
+                    // Clave no numérica: ignorar
+                }
+            }
+        }
+        return typed;
+    }
+
+    private static Set<Integer> toPortSet(Object value) {
+        Set<Integer> ports = new TreeSet<>();
+        if (value instanceof Collection<?> collection) {
+            for (Object port : collection) {
+                if (port instanceof Number n) ports.add(n.intValue());
+            }
+        }
+        return ports;
+    }
+}
@@ -0,0 +1,106 @@
+package com.inventariado.core.scanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.inventariado.core.snmp.SnmpClient;
+import com.inventariado.core.snmp.SnmpCredentials;
+import com.inventariado.core.snmp.SnmpHardwareCollector;
+
+/**
+ * Etapa del pipeline de escaneo que completa el hardware de cada dispositivo por SNMP.
+ *
+ * Los workers de escaneo entregan el dispositivo y siguen con el siguiente host
+ * sin esperar: las consultas de todos los hosts comparten un único socket UDP y
+ * el dispositivo se publica cuando llega la respuesta o se agota el timeout, así
+ * que un agente que no responde nunca retiene un hueco de escaneo.
+ */
+public class HardwareCollectionStage implements Closeable {
+    private static final Logger logger = Logger.getLogger(HardwareCollectionStage.class.getName());
+
+    private final SnmpClient client;
+    private final SnmpHardwareCollector collector;
+    private final SnmpCredentials credentials;
+    private final Object lock = new Object();
+    private int outstanding;
+
+    /**
+     * @param port Puerto de los agentes (161 salvo en pruebas con un agente local)
+     */
+    public HardwareCollectionStage(SnmpCredentials credentials, int port) throws IOException {
+        this.client = new SnmpClient();
+        this.collector = new SnmpHardwareCollector(client, port);
+        this.credentials = credentials;
+    }
+
+    /**
+     * Lanza la consulta del dispositivo y vuelve de inmediato. Al terminar se
+     * sustituye su campo "hardware" y se entrega a {@code publisher}.
+     */
+    public void submit(Map<String, Object> device, Consumer<Map<String, Object>> publisher) {
+        synchronized (lock) {
+            outstanding++;
+        }
+        collector.collect((String) device.get("ip"), credentials).whenComplete((hardware, error) -> {
+            try {
+                if (hardware != null) {
+                    device.put("hardware", hardware);
+                }
+                publisher.accept(device);
+            } finally {
+                synchronized (lock) {
+                    outstanding--;
+                    lock.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Espera a que se publiquen todos los dispositivos entregados.
+     * @return false si aún quedan consultas en curso al agotar la espera
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (outstanding > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) return false;
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    public int getOutstanding() {
+        synchronized (lock) {
+            return outstanding;
+        }
+    }
+
+    /**
+     * @return Contadores del cliente SNMP (peticiones, timeouts, fallos de seguridad...)
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = client.getMetrics();
+        metrics.put("outstanding_hosts", getOutstanding());
+        return metrics;
+    }
+
+    /**
+     * Cierra el socket. Las consultas pendientes fallan y sus dispositivos se
+     * publican con el hardware vacío.
+     */
+    @Override
+    public void close() {
+        int pending = getOutstanding();
+        if (pending > 0) {
+            logger.warning("Se cierra la etapa SNMP con " + pending + " consultas pendientes");
+        }
+        client.close();
+    }
+}
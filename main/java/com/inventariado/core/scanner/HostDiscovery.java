@@ -0,0 +1,102 @@
+package com.inventariado.core.scanner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Fase de descubrimiento: barrido rápido de hosts activos (ARP/ICMP/TCP-ping)
+ * con "nmap -sn" sobre bloques de direcciones. Solo los hosts que responden
+ * pasan a la fase de escaneo profundo de puertos.
+ */
+public class HostDiscovery {
+    private static final Logger logger = Logger.getLogger(HostDiscovery.class.getName());
+
+    // Sondas de ping: ARP en la red local, eco ICMP y SYN/ACK a puertos habituales
+    private static final String TCP_SYN_PORTS = "-PS21,22,23,25,80,135,139,443,445,3389,8080";
+    private static final String TCP_ACK_PORTS = "-PA80,443";
+
+    private final BooleanSupplier cancelled;
+    private final ProcessTracker processes;
+
+    public HostDiscovery(BooleanSupplier cancelled, ProcessTracker processes) {
+        this.cancelled = cancelled;
+        this.processes = processes;
+    }
+
+    /**
+     * Descubre qué direcciones de un bloque están activas.
+     * @param targets Direcciones IPv4 del bloque
+     * @param timing Plantilla de temporización de Nmap (p.ej. "-T4")
+     * @param rateArgs Límite de ritmo para Nmap (p.ej. "--max-rate 500"); puede estar vacío
+     * @return Direcciones que respondieron a alguna sonda
+     */
+    public List<String> discover(List<String> targets, String timing, List<String> rateArgs) throws IOException, InterruptedException {
+        List<String> alive = new ArrayList<>();
+        if (targets.isEmpty()) {
+            return alive;
+        }
+
+        Process process = processes.start(buildDiscoveryCommand(targets, timing, rateArgs));
+        try {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(processes.output(process)))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (cancelled.getAsBoolean()) {
+                        ProcessTracker.destroyTree(process);
+                        return alive;
+                    }
+                    String ip = parseGrepableUp(line);
+                    if (ip != null) {
+                        alive.add(ip);
+                    }
+                }
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0 && !cancelled.getAsBoolean()) {
+                logger.warning("Nmap (descubrimiento) terminó con código de salida: " + exitCode);
+            }
+            return alive;
+        } catch (InterruptedException e) {
+            ProcessTracker.destroyTree(process);
+            throw e;
+        } finally {
+            processes.release(process);
+        }
+    }
+
+    private String[] buildDiscoveryCommand(List<String> targets, String timing, List<String> rateArgs) {
+        List<String> command = new ArrayList<>(targets.size() + 12);
+        command.add("nmap");
+        command.add("-sn");
+        command.add("-n");
+        command.add("-PR");
+        command.add("-PE");
+        command.add(TCP_SYN_PORTS);
+        command.add(TCP_ACK_PORTS);
+        command.add("--max-retries");
+        command.add("1");
+        if (timing != null && !timing.isBlank()) {
+            command.add(timing);
+        }
+        command.addAll(rateArgs);
+        command.add("-oG");
+        command.add("-");
+        command.addAll(targets);
+        return command.toArray(new String[0]);
+    }
+
+    // Formato grepable: "Host: 10.0.0.1 ()	Status: Up"
+    private static String parseGrepableUp(String line) {
+        if (!line.startsWith("Host: ") || !line.endsWith("Status: Up")) {
+            return null;
+        }
+        int end = line.indexOf(' ', 6);
+        return end > 6 ? line.substring(6, end) : null;
+    }
+}
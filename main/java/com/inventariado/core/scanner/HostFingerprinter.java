@@ -0,0 +1,212 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Huella barata de un host para el modo delta: qué puertos de un conjunto
+ * reducido están abiertos y un hash del banner de cada uno.
+ *
+ * Se comprueban los puertos abiertos conocidos del último escaneo más una lista
+ * corta de puertos habituales, con TCP connect y un timeout corto, en hilos
+ * virtuales. En los servicios que hablan primero (SSH, FTP, SMTP...) se lee el
+ * banner; en HTTP se envía un HEAD y se usan la línea de estado y la cabecera
+ * Server.
+ *
+ * Como mucho {@link #MAX_PROBES_PER_HOST} conexiones por host están abiertas a
+ * la vez, y cada una pasa antes por el {@link ProbeRateLimiter} del escaneo si
+ * hay uno: un host que acepta todo (tarpit, cortafuegos) no recibe miles de
+ * conexiones simultáneas ni se salta el presupuesto por /24.
+ */
+public class HostFingerprinter {
+    // Puertos que se comprueban siempre para detectar servicios nuevos
+    static final int[] QUICK_PORTS = {
+            21, 22, 23, 25, 53, 80, 110, 135, 139, 143, 443, 445, 993, 995,
+            1433, 3306, 3389, 5432, 5900, 8000, 8080, 8443
+    };
+    private static final Set<Integer> HTTP_PORTS = Set.of(80, 8000, 8008, 8080, 8888);
+    private static final int MAX_BANNER_BYTES = 512;
+    static final int MAX_PROBES_PER_HOST = 8;
+
+    private final int connectTimeoutMillis;
+    private final int bannerTimeoutMillis;
+    private volatile ProbeRateLimiter rateLimiter;
+
+    public HostFingerprinter() {
+        this(1000, 500);
+    }
+
+    public HostFingerprinter(int connectTimeoutMillis, int bannerTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.bannerTimeoutMillis = bannerTimeoutMillis;
+    }
+
+    /**
+     * @param limiter Limitador compartido del escaneo, o null para no limitar
+     */
+    public void setRateLimiter(ProbeRateLimiter limiter) {
+        this.rateLimiter = limiter;
+    }
+
+    /**
+     * Toma la huella de un host.
+     * @param host Dirección IP
+     * @param knownPorts Puertos abiertos en el escaneo anterior
+     * @return Mapa con "probed" (puertos comprobados), "ports" (abiertos) y
+     *         "banners" (puerto -> hash del banner, solo si hubo banner)
+     */
+    public Map<String, Object> fingerprint(String host, Collection<Integer> knownPorts) throws InterruptedException {
+        SortedSet<Integer> probed = new TreeSet<>(knownPorts);
+        for (int port : QUICK_PORTS) {
+            probed.add(port);
+        }
+
+        List<Integer> open = new ArrayList<>();
+        Map<String, Object> banners = new TreeMap<>();
+        for (Map.Entry<Integer, String> entry : probeAll(host, probed).entrySet()) {
+            String banner = entry.getValue();
+            if (banner == null) continue;
+            open.add(entry.getKey());
+            if (!banner.isEmpty()) {
+                banners.put(String.valueOf(entry.getKey()), hash(banner));
+            }
+        }
+
+        Map<String, Object> fingerprint = new LinkedHashMap<>();
+        fingerprint.put("probed", new ArrayList<>(probed));
+        fingerprint.put("ports", open);
+        fingerprint.put("banners", banners);
+        return fingerprint;
+    }
+
+    /**
+     * Sondea varios puertos de un host con {@link #probe}, con a lo sumo
+     * {@link #MAX_PROBES_PER_HOST} conexiones a la vez.
+     * @return Resultado de {@link #probe} por puerto, en el orden de {@code ports}
+     */
+    Map<Integer, String> probeAll(String host, Collection<Integer> ports) throws InterruptedException {
+        Semaphore slots = new Semaphore(MAX_PROBES_PER_HOST);
+        Map<Integer, Future<String>> probes = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int port : ports) {
+                slots.acquire();
+                probes.put(port, executor.submit(() -> {
+                    try {
+                        return probe(host, port);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+        }
+
+        Map<Integer, String> results = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Future<String>> entry : probes.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                results.put(entry.getKey(), null);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Conecta a un puerto y lee su banner (primera línea) o, en HTTP, la línea
+     * de estado y la cabecera Server de una petición HEAD.
+     * @return null si el puerto no acepta conexión; cadena vacía si no hubo banner
+     */
+    String probe(String host, int port) {
+        ProbeRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            try {
+                limiter.acquire(ipKey(host), 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+            socket.setSoTimeout(bannerTimeoutMillis);
+            InputStream in = socket.getInputStream();
+            String banner = read(in, true);
+            if (banner.isEmpty() && HTTP_PORTS.contains(port)) {
+                socket.getOutputStream().write(
+                        ("HEAD / HTTP/1.0\r\nHost: " + host + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                banner = httpSignature(read(in, false));
+            }
+            return banner;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Misma clave que usan los motores para el cubo por /24
+    private static int ipKey(String host) {
+        try {
+            return HostRangeSet.parseIp(host);
+        } catch (IllegalArgumentException e) {
+            return host.hashCode();
+        }
+    }
+
+    private String read(InputStream in, boolean firstLineOnly) throws IOException {
+        byte[] buffer = new byte[MAX_BANNER_BYTES];
+        int total = 0;
+        try {
+            int n;
+            while (total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) > 0) {
+                total += n;
+                if (firstLineOnly && indexOf(buffer, total, (byte) '\n') >= 0) break;
+            }
+        } catch (SocketTimeoutException e) {
+            // Servicio que espera al cliente o respuesta ya completa
+        }
+        String text = new String(buffer, 0, total, StandardCharsets.ISO_8859_1);
+        int newline = text.indexOf('\n');
+        return (firstLineOnly && newline >= 0 ? text.substring(0, newline) : text).trim();
+    }
+
+    // Línea de estado y cabecera Server: lo estable de una respuesta HTTP
+    private static String httpSignature(String response) {
+        StringBuilder signature = new StringBuilder();
+        for (String line : response.split("\r?\n")) {
+            if (line.startsWith("HTTP/") || line.regionMatches(true, 0, "Server:", 0, 7)) {
+                signature.append(line.trim()).append('\n');
+            }
+        }
+        return signature.toString();
+    }
+
+    private static int indexOf(byte[] data, int length, byte value) {
+        for (int i = 0; i < length; i++) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+
+    // FNV-1a de 64 bits en hexadecimal: suficiente para detectar cambios, no es criptográfico
+    static String hash(String text) {
+        return Long.toHexString(hash64(text));
+    }
+
+    static long hash64(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
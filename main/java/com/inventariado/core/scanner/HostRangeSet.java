@@ -0,0 +1,403 @@
+package com.inventariado.core.scanner;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conjunto inmutable de direcciones IPv4 almacenado como rangos empaquetados.
+ *
+ * Acepta notación CIDR ("10.0.0.0/16"), rangos con guion ("10.0.0.1-10.0.0.50"
+ * o "10.0.0.1-50"), direcciones o nombres de host sueltos y listas separadas por
+ * comas de cualquiera de ellos. Los rangos se guardan ordenados y fusionados en
+ * dos arrays de int (inicio/fin, sin signo), de modo que una /16 ocupa unos pocos
+ * bytes en lugar de 65k cadenas.
+ */
+public final class HostRangeSet {
+    private static final HostRangeSet EMPTY = new HostRangeSet(new int[0], new int[0]);
+
+    private final int[] starts;
+    private final int[] ends;
+    // Suma acumulada de tamaños: offsets[i] = número de hosts anteriores al rango i
+    private final long[] offsets;
+    private final long size;
+
+    private HostRangeSet(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+        this.offsets = new long[starts.length];
+        long total = 0;
+        for (int i = 0; i < starts.length; i++) {
+            offsets[i] = total;
+            total += rangeSize(starts[i], ends[i]);
+        }
+        this.size = total;
+    }
+
+    public static HostRangeSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Interpreta una especificación de objetivos.
+     * @param spec Lista separada por comas de CIDR, rangos, IPs o nombres de host
+     * @return Conjunto de hosts resultante
+     * @throws IllegalArgumentException si algún elemento no es válido
+     */
+    public static HostRangeSet parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return EMPTY;
+        }
+
+        String[] tokens = spec.split("[,\\s]+");
+        int[] s = new int[tokens.length];
+        int[] e = new int[tokens.length];
+        int count = 0;
+
+        for (String token : tokens) {
+            if (token.isEmpty()) continue;
+            long range = parseToken(token);
+            s[count] = (int) (range >>> 32);
+            e[count] = (int) range;
+            count++;
+        }
+
+        return normalize(s, e, count);
+    }
+
+    /**
+     * Construye un conjunto a partir de direcciones sueltas; las consecutivas se fusionan.
+     * @param addresses Direcciones IPv4 (sin signo), en cualquier orden
+     * @param count Número de posiciones válidas de {@code addresses}
+     */
+    public static HostRangeSet of(int[] addresses, int count) {
+        return normalize(addresses, addresses, count);
+    }
+
+    /**
+     * Devuelve un nuevo conjunto sin las direcciones de {@code excluded}.
+     */
+    public HostRangeSet exclude(HostRangeSet excluded) {
+        if (excluded == null || excluded.isEmpty() || isEmpty()) {
+            return this;
+        }
+
+        int[] s = new int[starts.length + excluded.starts.length];
+        int[] e = new int[s.length];
+        int count = 0;
+        int j = 0;
+
+        for (int i = 0; i < starts.length; i++) {
+            long lo = Integer.toUnsignedLong(starts[i]);
+            long hi = Integer.toUnsignedLong(ends[i]);
+
+            // Saltar exclusiones que terminan antes de este rango
+            while (j < excluded.starts.length && Integer.toUnsignedLong(excluded.ends[j]) < lo) {
+                j++;
+            }
+
+            int k = j;
+            while (lo <= hi && k < excluded.starts.length) {
+                long exLo = Integer.toUnsignedLong(excluded.starts[k]);
+                long exHi = Integer.toUnsignedLong(excluded.ends[k]);
+                if (exLo > hi) break;
+                if (exLo > lo) {
+                    if (count == s.length) {
+                        s = Arrays.copyOf(s, count * 2);
+                        e = Arrays.copyOf(e, count * 2);
+                    }
+                    s[count] = (int) lo;
+                    e[count] = (int) (exLo - 1);
+                    count++;
+                }
+                lo = Math.max(lo, exHi + 1);
+                k++;
+            }
+
+            if (lo <= hi) {
+                if (count == s.length) {
+                    s = Arrays.copyOf(s, count * 2);
+                    e = Arrays.copyOf(e, count * 2);
+                }
+                s[count] = (int) lo;
+                e[count] = (int) hi;
+                count++;
+            }
+        }
+
+        return new HostRangeSet(Arrays.copyOf(s, count), Arrays.copyOf(e, count));
+    }
+
+    public boolean contains(int address) {
+        int idx = findRange(address);
+        return idx >= 0;
+    }
+
+    /**
+     * Devuelve la dirección en la posición {@code index} (0 &lt;= index &lt; size).
+     */
+    public int addressAt(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Índice fuera de rango: " + index);
+        }
+        int lo = 0;
+        int hi = offsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return starts[lo] + (int) (index - offsets[lo]);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int rangeCount() {
+        return starts.length;
+    }
+
+    /**
+     * Crea un cursor que reparte las direcciones bajo demanda entre varios hilos.
+     */
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    /**
+     * Cursor sin bloqueos sobre el conjunto: cada llamada a {@link #next()} entrega
+     * una dirección distinta sin materializar la lista completa de hosts.
+     */
+    public static final class Cursor {
+        private final HostRangeSet set;
+        private final AtomicLong position = new AtomicLong();
+
+        private Cursor(HostRangeSet set) {
+            this.set = set;
+        }
+
+        /**
+         * @return Siguiente dirección como long sin signo, o -1 si no quedan hosts
+         */
+        public long next() {
+            long index = position.getAndIncrement();
+            if (index >= set.size) {
+                return -1;
+            }
+            return Integer.toUnsignedLong(set.addressAt(index));
+        }
+
+        public long remaining() {
+            return Math.max(0, set.size - position.get());
+        }
+    }
+
+    public static String toIpString(int address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    /**
+     * Convierte una IPv4 en notación decimal a int, o lanza IllegalArgumentException.
+     */
+    public static int parseIp(String ip) {
+        int result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) throw new IllegalArgumentException("IP inválida: " + ip);
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                throw new IllegalArgumentException("IP inválida: " + ip);
+            }
+        }
+        if (octets != 3 || value < 0) {
+            throw new IllegalArgumentException("IP inválida: " + ip);
+        }
+        return (result << 8) | value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(toIpString(starts[i]));
+            if (starts[i] != ends[i]) {
+                sb.append('-').append(toIpString(ends[i]));
+            }
+        }
+        return sb.toString();
+    }
+
+    // Devuelve el rango empaquetado como (inicio << 32) | fin
+    private static long parseToken(String token) {
+        int slash = token.indexOf('/');
+        if (slash >= 0) {
+            int base = resolve(token.substring(0, slash));
+            int prefix;
+            try {
+                prefix = Integer.parseInt(token.substring(slash + 1));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Prefijo CIDR inválido: " + token);
+            }
+            if (prefix < 0 || prefix > 32) {
+                throw new IllegalArgumentException("Prefijo CIDR inválido: " + token);
+            }
+            int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+            int start = base & mask;
+            int end = start | ~mask;
+            // Excluir dirección de red y broadcast salvo en /31 y /32
+            if (prefix <= 30) {
+                start++;
+                end--;
+            }
+            return pack(start, end);
+        }
+
+        // Solo es un rango si lo que precede al guion es una IP: "3com-sw1" es un nombre
+        int dash = token.indexOf('-');
+        Integer rangeStart = dash > 0 ? tryParseIp(token.substring(0, dash)) : null;
+        if (rangeStart != null) {
+            int start = rangeStart;
+            String tail = token.substring(dash + 1);
+            int end;
+            if (tail.indexOf('.') < 0) {
+                // Forma corta: 10.0.0.1-50 sustituye el último octeto
+                int last;
+                try {
+                    last = Integer.parseInt(tail);
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Rango inválido: " + token);
+                }
+                if (last < 0 || last > 255) {
+                    throw new IllegalArgumentException("Rango inválido: " + token);
+                }
+                end = (start & 0xFFFFFF00) | last;
+            } else {
+                end = parseIp(tail);
+            }
+            if (Integer.compareUnsigned(start, end) > 0) {
+                throw new IllegalArgumentException("Rango invertido: " + token);
+            }
+            return pack(start, end);
+        }
+
+        int address = resolve(token);
+        return pack(address, address);
+    }
+
+    private static int resolve(String hostOrIp) {
+        Integer ip = tryParseIp(hostOrIp);
+        if (ip != null) {
+            return ip;
+        }
+        if (isNumeric(hostOrIp)) {
+            // Solo dígitos y puntos no es un nombre válido: error de IP, sin consultar el DNS
+            return parseIp(hostOrIp);
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(hostOrIp)) {
+                if (address instanceof Inet4Address) {
+                    byte[] b = address.getAddress();
+                    return ((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF);
+                }
+            }
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Host desconocido: " + hostOrIp, e);
+        }
+        throw new IllegalArgumentException("Sin dirección IPv4 para: " + hostOrIp);
+    }
+
+    private static Integer tryParseIp(String text) {
+        try {
+            return parseIp(text);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumeric(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && c != '.') return false;
+        }
+        return true;
+    }
+
+    private static long pack(int start, int end) {
+        return ((long) start << 32) | Integer.toUnsignedLong(end);
+    }
+
+    private static long rangeSize(int start, int end) {
+        return Integer.toUnsignedLong(end) - Integer.toUnsignedLong(start) + 1;
+    }
+
+    // Ordena y fusiona rangos solapados o contiguos
+    private static HostRangeSet normalize(int[] s, int[] e, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = pack(s[i], e[i]);
+        }
+        // Ordenar por inicio sin signo: invertir el bit de signo permite usar sort con signo
+        for (int i = 0; i < count; i++) packed[i] ^= Long.MIN_VALUE;
+        Arrays.sort(packed);
+        for (int i = 0; i < count; i++) packed[i] ^= Long.MIN_VALUE;
+
+        int[] outS = new int[count];
+        int[] outE = new int[count];
+        int n = 0;
+        for (long range : packed) {
+            long lo = range >>> 32;
+            long hi = range & 0xFFFFFFFFL;
+            if (n > 0 && lo <= Integer.toUnsignedLong(outE[n - 1]) + 1) {
+                if (hi > Integer.toUnsignedLong(outE[n - 1])) {
+                    outE[n - 1] = (int) hi;
+                }
+            } else {
+                outS[n] = (int) lo;
+                outE[n] = (int) hi;
+                n++;
+            }
+        }
+
+        return new HostRangeSet(Arrays.copyOf(outS, n), Arrays.copyOf(outE, n));
+    }
+
+    private int findRange(int address) {
+        long a = Integer.toUnsignedLong(address);
+        int lo = 0;
+        int hi = starts.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Integer.toUnsignedLong(starts[mid]) > a) {
+                hi = mid - 1;
+            } else if (Integer.toUnsignedLong(ends[mid]) < a) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
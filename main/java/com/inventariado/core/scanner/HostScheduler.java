@@ -0,0 +1,62 @@
+package com.inventariado.core.scanner;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola acotada entre el descubrimiento y el escaneo profundo que decide en qué
+ * orden se escanean los hosts activos. El descubrimiento añade hosts con
+ * {@link #offer} y el despachador los saca con {@link #poll} y {@link #drainTo};
+ * los resultados de cada host se notifican con {@link #recordOutcome} para que
+ * el planificador pueda reordenar lo pendiente.
+ */
+public interface HostScheduler {
+
+    /**
+     * Crea un planificador por escaneo.
+     */
+    @FunctionalInterface
+    interface Factory {
+        /**
+         * @param capacity Hosts pendientes como máximo antes de bloquear al descubrimiento
+         */
+        HostScheduler create(int capacity);
+    }
+
+    /**
+     * Añade un host, esperando hasta {@code timeout} si la cola está llena.
+     * @return false si no hubo hueco a tiempo
+     */
+    boolean offer(String host, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Saca el siguiente host, esperando hasta {@code timeout} si no hay ninguno.
+     * @return Host o null si no llegó ninguno a tiempo
+     */
+    String poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Saca sin esperar hasta {@code maxHosts} hosts en orden de planificación.
+     * @return Número de hosts añadidos a {@code batch}
+     */
+    int drainTo(Collection<String> batch, int maxHosts);
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Resultado del escaneo profundo de un host.
+     * @param durationSeconds Duración del escaneo del host
+     * @param timedOut Si agotó el timeout o no produjo resultado
+     */
+    void recordOutcome(String host, double durationSeconds, boolean timedOut);
+
+    /**
+     * @return Estado interno para diagnóstico
+     */
+    Map<String, Object> getMetrics();
+}
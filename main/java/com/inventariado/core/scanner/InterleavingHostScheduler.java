@@ -0,0 +1,261 @@
+package com.inventariado.core.scanner;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Planificador por defecto: tres niveles de prioridad y, dentro de cada nivel,
+ * turno rotatorio entre subredes /24.
+ *
+ * <ol>
+ *   <li>Hosts que estaban activos en el último escaneo.</li>
+ *   <li>Resto de hosts.</li>
+ *   <li>Cola de baja prioridad: hosts lentos o con timeout en el historial y
+ *       subredes que acumulan timeouts durante este escaneo.</li>
+ * </ol>
+ *
+ * Alternar subredes evita que todos los escaneos golpeen a la vez el mismo
+ * switch o cortafuegos, y adelantar los hosts conocidos da resultados útiles
+ * antes al operador.
+ */
+public class InterleavingHostScheduler implements HostScheduler {
+    private static final Logger logger = Logger.getLogger(InterleavingHostScheduler.class.getName());
+
+    private static final int KNOWN_ALIVE = 0;
+    private static final int NORMAL = 1;
+    private static final int SLOW = 2;
+
+    // Timeouts en una /24 a partir de los cuales lo pendiente de esa subred pasa a la cola lenta
+    private static final int SUBNET_TIMEOUTS_TO_DEMOTE = 2;
+    // Un host del historial es lento si tardó más que este múltiplo de la mediana
+    private static final double SLOW_FACTOR = 3.0;
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Tier[] tiers = {new Tier(), new Tier(), new Tier()};
+    private int count;
+
+    private final Set<String> knownAlive = new HashSet<>();
+    private final Set<String> knownSlow = new HashSet<>();
+    private final Map<Integer, Integer> subnetTimeouts = new HashMap<>();
+    private final Set<Integer> demotedSubnets = new HashSet<>();
+    private long scheduled;
+
+    public InterleavingHostScheduler(int capacity) {
+        this(capacity, Collections.emptyList());
+    }
+
+    /**
+     * @param capacity Hosts pendientes como máximo
+     * @param lastSnapshot Dispositivos del último escaneo, para priorizar y relegar hosts
+     */
+    public InterleavingHostScheduler(int capacity, List<Map<String, Object>> lastSnapshot) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacity);
+        }
+        this.capacity = capacity;
+        loadHints(lastSnapshot);
+    }
+
+    private void loadHints(List<Map<String, Object>> lastSnapshot) {
+        List<Double> durations = new ArrayList<>();
+        for (Map<String, Object> device : lastSnapshot) {
+            if (device.get("scan_duration") instanceof Number n && !"delta".equals(device.get("detection_method"))) {
+                durations.add(n.doubleValue());
+            }
+        }
+        Collections.sort(durations);
+        double median = durations.isEmpty() ? 0 : durations.get(durations.size() / 2);
+
+        for (Map<String, Object> device : lastSnapshot) {
+            if (!(device.get("ip") instanceof String ip)) continue;
+            boolean timedOut = Boolean.TRUE.equals(device.get("timed_out"));
+            boolean slow = median > 0 && device.get("scan_duration") instanceof Number n
+                    && !"delta".equals(device.get("detection_method"))
+                    && n.doubleValue() > median * SLOW_FACTOR;
+            if (timedOut || slow) {
+                knownSlow.add(ip);
+            } else {
+                knownAlive.add(ip);
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(String host, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                if (nanos <= 0) return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            int subnet = subnetOf(host);
+            tiers[tierFor(host, subnet)].add(subnet, host);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<String> batch, int maxHosts) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxHosts && count > 0) {
+                batch.add(take());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void recordOutcome(String host, double durationSeconds, boolean timedOut) {
+        if (!timedOut) return;
+        int subnet = subnetOf(host);
+        lock.lock();
+        try {
+            int timeouts = subnetTimeouts.merge(subnet, 1, Integer::sum);
+            if (timeouts >= SUBNET_TIMEOUTS_TO_DEMOTE && demotedSubnets.add(subnet)) {
+                // Mover lo pendiente de la subred al final: probablemente filtra o está saturada
+                int moved = 0;
+                for (int tier = KNOWN_ALIVE; tier < SLOW; tier++) {
+                    Deque<String> hosts = tiers[tier].removeSubnet(subnet);
+                    if (hosts != null) {
+                        for (String pending : hosts) {
+                            tiers[SLOW].add(subnet, pending);
+                            moved++;
+                        }
+                    }
+                }
+                logger.info(String.format("Subred %s/24 relegada tras %d timeouts (%d hosts pendientes movidos)",
+                        HostRangeSet.toIpString(subnet << 8), timeouts, moved));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        lock.lock();
+        try {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("queued_known_alive", tiers[KNOWN_ALIVE].size);
+            metrics.put("queued_normal", tiers[NORMAL].size);
+            metrics.put("queued_slow", tiers[SLOW].size);
+            metrics.put("known_alive_hints", knownAlive.size());
+            metrics.put("known_slow_hints", knownSlow.size());
+            metrics.put("demoted_subnets", demotedSubnets.size());
+            metrics.put("hosts_scheduled", scheduled);
+            return metrics;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Debe llamarse con el cerrojo tomado y count > 0
+    private String take() {
+        for (Tier tier : tiers) {
+            if (tier.size > 0) {
+                count--;
+                scheduled++;
+                notFull.signal();
+                return tier.poll();
+            }
+        }
+        throw new IllegalStateException("Contador de hosts inconsistente");
+    }
+
+    private int tierFor(String host, int subnet) {
+        if (knownSlow.contains(host) || demotedSubnets.contains(subnet)) return SLOW;
+        if (knownAlive.contains(host)) return KNOWN_ALIVE;
+        return NORMAL;
+    }
+
+    private static int subnetOf(String host) {
+        try {
+            return HostRangeSet.parseIp(host) >>> 8;
+        } catch (IllegalArgumentException e) {
+            return host.hashCode();
+        }
+    }
+
+    /**
+     * Nivel de prioridad: una cola por /24 y un turno rotatorio entre ellas.
+     */
+    private static final class Tier {
+        final Map<Integer, Deque<String>> bySubnet = new HashMap<>();
+        final Deque<Integer> rotation = new ArrayDeque<>();
+        int size;
+
+        void add(int subnet, String host) {
+            Deque<String> hosts = bySubnet.get(subnet);
+            if (hosts == null) {
+                hosts = new ArrayDeque<>();
+                bySubnet.put(subnet, hosts);
+                rotation.addLast(subnet);
+            }
+            hosts.addLast(host);
+            size++;
+        }
+
+        String poll() {
+            int subnet = rotation.pollFirst();
+            Deque<String> hosts = bySubnet.get(subnet);
+            String host = hosts.pollFirst();
+            if (hosts.isEmpty()) {
+                bySubnet.remove(subnet);
+            } else {
+                rotation.addLast(subnet);
+            }
+            size--;
+            return host;
+        }
+
+        Deque<String> removeSubnet(int subnet) {
+            Deque<String> hosts = bySubnet.remove(subnet);
+            if (hosts != null) {
+                rotation.remove(subnet);
+                size -= hosts.size();
+            }
+            return hosts;
+        }
+    }
+}
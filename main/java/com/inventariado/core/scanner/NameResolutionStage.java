@@ -0,0 +1,106 @@
+package com.inventariado.core.scanner;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.inventariado.core.resolver.NameResolver;
+import com.inventariado.core.resolver.ResolvedName;
+
+/**
+ * Etapa del pipeline de escaneo que pone nombre a los dispositivos.
+ *
+ * La resolución de cada host empieza en cuanto el descubrimiento lo da por
+ * activo, en paralelo con su escaneo profundo, de modo que al terminar este el
+ * nombre suele estar ya disponible. Si no lo está, el worker entrega el
+ * dispositivo y sigue: se publica cuando llega el nombre.
+ */
+public class NameResolutionStage {
+    private final NameResolver resolver;
+    private final Map<String, CompletableFuture<ResolvedName>> prefetched = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private int outstanding;
+
+    public NameResolutionStage(NameResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Lanza la resolución de un host activo antes de su escaneo profundo.
+     */
+    public void prefetch(String ip) {
+        prefetched.computeIfAbsent(ip, resolver::resolve);
+    }
+
+    /**
+     * Añade el nombre al dispositivo y lo pasa a {@code next}; si la resolución
+     * aún no ha terminado, lo hace al completarse sin bloquear al llamante.
+     */
+    public void submit(Map<String, Object> device, Consumer<Map<String, Object>> next) {
+        String ip = (String) device.get("ip");
+        CompletableFuture<ResolvedName> name = prefetched.remove(ip);
+        if (name == null) {
+            name = resolver.resolve(ip);
+        }
+        if (name.isDone()) {
+            merge(device, name.join());
+            next.accept(device);
+            return;
+        }
+        synchronized (lock) {
+            outstanding++;
+        }
+        name.whenComplete((result, error) -> {
+            try {
+                merge(device, result);
+                next.accept(device);
+            } finally {
+                synchronized (lock) {
+                    outstanding--;
+                    lock.notifyAll();
+                }
+            }
+        });
+    }
+
+    // Un nombre que ya trajo Nmap (p.ej. con un perfil personalizado) se respeta
+    private static void merge(Map<String, Object> device, ResolvedName result) {
+        if (result == null || !result.isResolved()) return;
+        Object current = device.get("hostname");
+        if (current == null || current.equals(device.get("ip"))) {
+            device.put("hostname", result.getName());
+            device.put("hostname_source", result.getSource());
+        }
+    }
+
+    /**
+     * @return false si aún quedan dispositivos esperando nombre al agotar la espera
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (outstanding > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) return false;
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    public int getOutstanding() {
+        synchronized (lock) {
+            return outstanding;
+        }
+    }
+
+    /**
+     * Olvida las resoluciones anticipadas de hosts que no llegaron a publicarse.
+     * El resolutor y su caché siguen vivos para el próximo escaneo.
+     */
+    public void clear() {
+        prefetched.clear();
+    }
+}
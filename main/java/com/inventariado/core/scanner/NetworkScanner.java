@@ -1,19 +1,29 @@
 package com.inventariado.core.scanner;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.xml.stream.XMLStreamException;
 
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.DeviceMaps;
+import com.inventariado.core.model.Services;
+import com.inventariado.core.oui.OuiRegistry;
+import com.inventariado.core.resolver.NameResolver;
 import com.inventariado.core.security.SecurityAuditor;
+import com.inventariado.core.snmp.SnmpClient;
+import com.inventariado.core.snmp.SnmpCredentials;
+import com.inventariado.core.snmp.SnmpHardwareCollector;
 import com.google.gson.Gson;
 
 /**
@@ -23,39 +33,333 @@ public class NetworkScanner {
     private static final Logger logger = Logger.getLogger(NetworkScanner.class.getName());
     private static final Gson gson = new Gson();
 
-    private final List<Map<String, Object>> devices;
-    private final BlockingQueue<Map<String, Object>> scanQueue;
-    private final BlockingQueue<Map<String, Object>> resultQueue;
+    private final List<Device> devices;
+    private final BlockingQueue<Device> resultQueue;
+    private final AtomicLong discardedDevices;
     private volatile boolean isScanning;
-    private volatile double scanProgress;
-    private volatile int totalHosts;
-    private volatile int scannedHosts;
+    private final ScanStats stats;
     private final List<DeviceFoundCallback> deviceCallbacks;
     private volatile boolean stopScan;
     private final SecurityAuditor securityAuditor;
+    private final ProcessTracker processes;
+    private final HostDiscovery hostDiscovery;
+    private final NmapXmlParser nmapParser;
+    private volatile boolean hostDiscoveryEnabled;
+    private volatile boolean batchingEnabled;
+    private final AdaptiveBatchSizer batchSizer;
+    private volatile PortScanEngine portScanEngine;
+    // Motor de respaldo creado por el propio escáner (sin Nmap); se cierra al terminar cada escaneo
+    private ConnectScanEngine fallbackEngine;
+    private volatile Boolean nmapAvailable;
+    private volatile ExecutorService activeExecutor;
+    private volatile ConcurrencyController concurrency;
+    private volatile Duration scanDeadline;
+    private volatile int socketBudget;
+    private volatile ProbeRateLimiter rateLimiter;
+    private volatile Path checkpointDirectory;
+    private volatile ScanJournal journal;
+    private volatile DeltaScanPlanner deltaPlanner;
+    private volatile HostScheduler.Factory schedulerFactory;
+    private volatile List<Map<String, Object>> schedulingHints;
+    private volatile HostScheduler scheduler;
+    private final ScanProfiles scanProfiles;
+    private volatile SnmpCredentials snmpV3Credentials;
+    private volatile int snmpPort;
+    private volatile HardwareCollectionStage hardwareStage;
+    private volatile boolean nameResolutionEnabled;
+    private volatile NameResolver nameResolver;
+    private volatile NameResolutionStage nameStage;
+    private volatile OuiRegistry ouiRegistry;
+    private volatile boolean versionCacheEnabled;
+    private volatile ServiceVersionStage versionStage;
+    // Conexiones propias de la caché de versiones y del modo delta; comparte el limitador del escaneo
+    private final HostFingerprinter fingerprinter;
 
-    // Patrones regex para parsear salida de Nmap
-    private static final Pattern HOST_PATTERN = Pattern.compile("Nmap scan report for (.*?) \\[(.*?)\\]");
-    private static final Pattern PORT_PATTERN = Pattern.compile("(\\d+)/(\\w+)\\s+(\\w+)\\s+(.*)");
-    private static final Pattern SERVICE_PATTERN = Pattern.compile("(\\d+)/(\\w+)\\s+(\\w+)\\s+(.*?)\\s+(.*)");
-    private static final Pattern OS_PATTERN = Pattern.compile("OS details?: (.*)");
-    private static final Pattern MAC_PATTERN = Pattern.compile("MAC Address: (.*?) \\((.*?)\\)");
+    // Parámetros del pipeline de dos fases (descubrimiento -> escaneo profundo)
+    private static final int DISCOVERY_CHUNK_SIZE = 256;
+    private static final int DISCOVERY_THREADS = 4;
+    private static final int SCAN_QUEUE_PER_WORKER = 4;
+
+    // Límite de escaneos profundos simultáneos: por núcleo y por presupuesto de sockets
+    private static final int SCANS_PER_CORE = 4;
+    private static final int SOCKETS_PER_SCAN = 64;
+    private static final int DEFAULT_SOCKET_BUDGET = 4096;
+
+    // Lotes de varios hosts por invocación de Nmap
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final long TARGET_BATCH_MILLIS = 120_000;
+
+    // Orden numérico de IPv4 (la IP empaquetada se compara sin signo)
+    private static final Comparator<Device> BY_IP = (d1, d2) -> Integer.compareUnsigned(d1.ip(), d2.ip());
 
     public interface DeviceFoundCallback {
-        void onDeviceFound(Map<String, Object> deviceInfo);
+        void onDeviceFound(Device device);
     }
 
     public NetworkScanner() {
         this.devices = new ArrayList<>();
-        this.scanQueue = new LinkedBlockingQueue<>();
         this.resultQueue = new LinkedBlockingQueue<>();
+        this.discardedDevices = new AtomicLong();
         this.isScanning = false;
-        this.scanProgress = 0;
-        this.totalHosts = 0;
-        this.scannedHosts = 0;
+        this.stats = new ScanStats();
         this.deviceCallbacks = new ArrayList<>();
         this.stopScan = false;
         this.securityAuditor = new SecurityAuditor();
+        this.processes = new ProcessTracker(stats);
+        this.hostDiscovery = new HostDiscovery(() -> stopScan, processes);
+        this.nmapParser = new NmapXmlParser(() -> stopScan);
+        this.hostDiscoveryEnabled = true;
+        this.batchingEnabled = true;
+        this.batchSizer = new AdaptiveBatchSizer(1, MAX_BATCH_SIZE, TARGET_BATCH_MILLIS);
+        this.socketBudget = DEFAULT_SOCKET_BUDGET;
+        this.checkpointDirectory = Paths.get(ScanJournal.DEFAULT_DIRECTORY);
+        this.scanProfiles = ScanProfiles.loadDefault();
+        this.snmpPort = SnmpClient.DEFAULT_PORT;
+        this.nameResolutionEnabled = true;
+        this.versionCacheEnabled = true;
+        this.fingerprinter = new HostFingerprinter();
+    }
+
+    /**
+     * Activa o desactiva la etapa de resolución de nombres. Desactivada, el nombre
+     * de cada host es el que obtenga Nmap por su cuenta.
+     */
+    public void setNameResolutionEnabled(boolean enabled) {
+        this.nameResolutionEnabled = enabled;
+    }
+
+    /**
+     * Sustituye el resolutor de nombres (p.ej. para usar otro servidor DNS).
+     * Por defecto se usa {@link NameResolver#shared()}. El escáner no lo cierra.
+     */
+    public void setNameResolver(NameResolver resolver) {
+        this.nameResolver = resolver;
+    }
+
+    /**
+     * @return Consultas, aciertos de caché y nombres por mecanismo, o mapa vacío si no se ha usado
+     */
+    public Map<String, Object> getNameResolutionMetrics() {
+        NameResolver resolver = nameResolver;
+        return resolver != null ? resolver.getMetrics() : Collections.emptyMap();
+    }
+
+    /**
+     * Sustituye la base de fabricantes MAC; por defecto, {@link OuiRegistry#shared()}.
+     */
+    public void setOuiRegistry(OuiRegistry registry) {
+        this.ouiRegistry = registry;
+    }
+
+    /**
+     * Activa o desactiva la caché de versiones. Activada, los perfiles con
+     * detección de versiones escanean primero sin "-sV", leen el banner de cada
+     * servicio y solo sondean con "-sV" los que no estaban en la caché.
+     */
+    public void setVersionCacheEnabled(boolean enabled) {
+        this.versionCacheEnabled = enabled;
+    }
+
+    /**
+     * Sustituye la caché de versiones; por defecto, la persistida en
+     * {@link ServiceFingerprintCache#DEFAULT_FILE}.
+     */
+    public synchronized void setServiceFingerprintCache(ServiceFingerprintCache cache) {
+        this.versionStage = cache != null ? new ServiceVersionStage(cache, fingerprinter) : null;
+    }
+
+    /**
+     * @return Entradas, aciertos, fallos y tasa de aciertos de la caché de versiones,
+     *         o mapa vacío si no se ha usado
+     */
+    public Map<String, Object> getVersionCacheMetrics() {
+        ServiceVersionStage stage = versionStage;
+        return stage != null ? stage.getMetrics() : Collections.emptyMap();
+    }
+
+    /**
+     * Usa SNMPv3 para el inventario de hardware en lugar de la comunidad v2c
+     * que se pasa a {@link #scanNetwork}.
+     * @param credentials Usuario USM, o null para volver a v2c
+     */
+    public void setSnmpV3Credentials(SnmpCredentials credentials) {
+        this.snmpV3Credentials = credentials;
+    }
+
+    /**
+     * Puerto UDP de los agentes SNMP; solo cambia al probar contra un agente local.
+     */
+    public void setSnmpPort(int port) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Puerto SNMP inválido: " + port);
+        }
+        this.snmpPort = port;
+    }
+
+    /**
+     * @return Contadores de la etapa SNMP del escaneo en curso, o mapa vacío si no hay ninguna
+     */
+    public Map<String, Object> getSnmpMetrics() {
+        HardwareCollectionStage stage = hardwareStage;
+        return stage != null ? stage.getMetrics() : Collections.emptyMap();
+    }
+
+    /**
+     * Selecciona el perfil de escaneo profundo para los hosts sin asignación por subred.
+     * @param profileName Nombre de un perfil de {@link #getAvailableProfiles()}
+     */
+    public void setScanProfile(String profileName) {
+        scanProfiles.setDefaultProfile(profileName);
+    }
+
+    /**
+     * Asigna un perfil a una subred (p.ej. escaneo completo en la VLAN de servidores
+     * y rápido en la de usuarios). Las asignaciones se evalúan en orden.
+     */
+    public void assignProfile(String subnet, String profileName) {
+        scanProfiles.assign(subnet, profileName);
+    }
+
+    public List<String> getAvailableProfiles() {
+        return scanProfiles.getProfileNames();
+    }
+
+    /**
+     * Catálogo de perfiles, para registrar perfiles personalizados o revisar asignaciones.
+     */
+    public ScanProfiles getScanProfiles() {
+        return scanProfiles;
+    }
+
+    /**
+     * Activa el modo delta: antes del escaneo profundo se toma una huella barata
+     * (puertos abiertos y banners) de cada host activo y solo se escalan los que
+     * cambiaron respecto al snapshot o cuyo último escaneo profundo es antiguo.
+     * @param lastSnapshot Dispositivos del último escaneo (p.ej. ScanHistory.getLatestSnapshot()),
+     *                     o null para desactivar el modo delta
+     * @param maxDeepScanAge Antigüedad máxima del escaneo profundo de un host, o null para no caducar
+     */
+    public void setDeltaBaseline(List<Map<String, Object>> lastSnapshot, Duration maxDeepScanAge) {
+        this.deltaPlanner = lastSnapshot != null
+                ? new DeltaScanPlanner(lastSnapshot, maxDeepScanAge, fingerprinter) : null;
+    }
+
+    /**
+     * @return Hosts reutilizados y escalados por el modo delta, o mapa vacío si está desactivado
+     */
+    public Map<String, Object> getDeltaMetrics() {
+        DeltaScanPlanner delta = deltaPlanner;
+        return delta != null ? delta.getMetrics() : Collections.emptyMap();
+    }
+
+    /**
+     * Sustituye el planificador que ordena los hosts activos antes del escaneo profundo.
+     * @param factory Fábrica de planificadores, o null para usar {@link InterleavingHostScheduler}
+     */
+    public void setHostSchedulerFactory(HostScheduler.Factory factory) {
+        this.schedulerFactory = factory;
+    }
+
+    /**
+     * Historial que usa el planificador por defecto: los hosts activos en él se
+     * escanean primero y los lentos o con timeout al final.
+     * @param lastSnapshot Dispositivos del último escaneo (p.ej. ScanHistory.getLatestSnapshot())
+     */
+    public void setSchedulingHints(List<Map<String, Object>> lastSnapshot) {
+        this.schedulingHints = lastSnapshot;
+    }
+
+    /**
+     * @return Estado del planificador del escaneo en curso, o mapa vacío si no hay ninguno
+     */
+    public Map<String, Object> getSchedulerMetrics() {
+        HostScheduler current = scheduler;
+        return current != null ? current.getMetrics() : Collections.emptyMap();
+    }
+
+    /**
+     * Directorio donde se guarda el diario de cada escaneo para poder reanudarlo.
+     * @param directory Directorio, o null para desactivar los puntos de control
+     */
+    public void setCheckpointDirectory(Path directory) {
+        this.checkpointDirectory = directory;
+    }
+
+    /**
+     * Fija una duración máxima para cada escaneo. Al agotarse se cancelan los
+     * procesos en curso y se devuelven los dispositivos encontrados hasta entonces.
+     * @param maxDuration Duración máxima, o null para no limitar
+     */
+    public void setScanDeadline(Duration maxDuration) {
+        this.scanDeadline = maxDuration;
+    }
+
+    /**
+     * Número aproximado de sockets que el escaneo puede mantener abiertos a la vez;
+     * junto con los núcleos disponibles determina cuántos escaneos corren en paralelo.
+     */
+    public void setSocketBudget(int sockets) {
+        if (sockets < 1) {
+            throw new IllegalArgumentException("Presupuesto de sockets inválido: " + sockets);
+        }
+        this.socketBudget = sockets;
+    }
+
+    /**
+     * Limita el ritmo de sondas de todo el escaneo: se comparte con los motores
+     * propios y con las conexiones de banners y huellas del modo delta, y al
+     * lanzar Nmap se traduce a "--max-rate" repartido entre los procesos que
+     * pueden correr a la vez.
+     * @param limiter Limitador compartido, o null para no limitar
+     */
+    public void setRateLimiter(ProbeRateLimiter limiter) {
+        this.rateLimiter = limiter;
+        fingerprinter.setRateLimiter(limiter);
+        if (portScanEngine instanceof ConnectScanEngine connect) {
+            connect.setRateLimiter(limiter);
+        }
+    }
+
+    /**
+     * Usa un motor propio de descubrimiento de puertos en lugar de Nmap.
+     * Si no se configura ninguno y Nmap no está instalado, se usa
+     * {@link ConnectScanEngine} automáticamente y se cierra al terminar cada
+     * escaneo. Un motor configurado aquí lo cierra quien lo creó.
+     * @param engine Motor a usar, o null para volver a Nmap
+     */
+    public void setPortScanEngine(PortScanEngine engine) {
+        closeFallbackEngine();
+        if (engine instanceof ConnectScanEngine connect && rateLimiter != null) {
+            connect.setRateLimiter(rateLimiter);
+        }
+        this.portScanEngine = engine;
+    }
+
+    /**
+     * Sustituye el lanzador de los procesos Nmap, p.ej. por
+     * {@link com.inventariado.core.replay.ReplayNmap} para reproducir salidas
+     * grabadas o una red sintética.
+     * @param launcher Lanzador, o null para ejecutar Nmap real
+     */
+    public void setProcessLauncher(ProcessLauncher launcher) {
+        processes.setLauncher(launcher);
+        this.nmapAvailable = null;
+    }
+
+    /**
+     * Activa o desactiva el modo por lotes. Con lotes, varios hosts comparten una
+     * misma invocación de Nmap y el tamaño se ajusta según la latencia observada.
+     */
+    public void setBatchingEnabled(boolean enabled) {
+        this.batchingEnabled = enabled;
+    }
+
+    /**
+     * Activa o desactiva la fase de descubrimiento. Si se desactiva, todas las
+     * direcciones pasan directamente al escaneo profundo (equivalente a -Pn).
+     */
+    public void setHostDiscoveryEnabled(boolean enabled) {
+        this.hostDiscoveryEnabled = enabled;
     }
 
     public void registerDeviceCallback(DeviceFoundCallback callback) {
@@ -64,99 +368,344 @@ public class NetworkScanner {
         }
     }
 
-    private void notifyDeviceFound(Map<String, Object> deviceInfo) {
+    private void notifyDeviceFound(Device device) {
         for (DeviceFoundCallback callback : deviceCallbacks) {
             try {
-                callback.onDeviceFound(deviceInfo);
+                callback.onDeviceFound(device);
             } catch (Exception e) {
                 logger.severe("Error en callback: " + e.getMessage());
             }
         }
     }
 
-    public List<Map<String, Object>> scanNetwork(String networkRange, String intensity,
-                                                 boolean performRiskAnalysis, String snmpCommunity) {
-        this.devices.clear();
-        this.isScanning = true;
-        this.scanProgress = 0;
-        this.stopScan = false;
-        long startTime = System.currentTimeMillis();
+    public List<Device> scanNetwork(String networkRange, String intensity,
+                                    boolean performRiskAnalysis, String snmpCommunity) {
+        return scanNetwork(networkRange, null, intensity, performRiskAnalysis, snmpCommunity);
+    }
 
+    /**
+     * Escanea un conjunto de objetivos omitiendo las direcciones excluidas.
+     * @param networkRange CIDR, rangos con guion, IPs o nombres separados por comas
+     * @param excludeRange Objetivos a omitir con la misma sintaxis (puede ser null)
+     */
+    public List<Device> scanNetwork(String networkRange, String excludeRange, String intensity,
+                                    boolean performRiskAnalysis, String snmpCommunity) {
+        beginScan();
         try {
             // Validar el rango de red
-            List<String> hosts = expandHosts(networkRange);
+            HostRangeSet hosts = expandHosts(networkRange, excludeRange);
             if (hosts.isEmpty()) {
                 logger.severe("Rango de red inválido: " + networkRange);
                 return Collections.emptyList();
             }
 
             logger.info("Escaneando " + hosts.size() + " hosts en la red " + networkRange);
-            this.totalHosts = hosts.size();
+            stats.start(hosts.size());
+            this.journal = createJournal(networkRange, excludeRange, intensity);
+            return runScan(hosts, intensity, snmpCommunity);
 
-            // Configurar cola de trabajo
-            for (String host : hosts) {
-                Map<String, Object> task = new HashMap<>();
-                task.put("host", host);
-                task.put("snmpCommunity", snmpCommunity);
-                scanQueue.put(task);
+        } catch (Exception e) {
+            logger.severe("Error durante escaneo de red: " + e.getMessage());
+            return Collections.emptyList();
+        } finally {
+            endScan();
+        }
+    }
+
+    /**
+     * Reanuda un escaneo interrumpido a partir de su diario: los hosts ya
+     * terminados no se vuelven a escanear y sus dispositivos se incluyen en el
+     * resultado.
+     * @param scanId Identificador devuelto por {@link #getCurrentScanId()} o {@link #listCheckpointedScans()}
+     */
+    public List<Device> resumeScan(String scanId, boolean performRiskAnalysis, String snmpCommunity) {
+        Path directory = checkpointDirectory;
+        if (directory == null) {
+            logger.severe("No se puede reanudar: los puntos de control están desactivados");
+            return Collections.emptyList();
+        }
+
+        beginScan();
+        try {
+            ScanJournal resumed = ScanJournal.open(directory, scanId);
+            List<Device> restored = new ArrayList<>();
+            for (Map<String, Object> record : resumed.getRestoredDevices()) {
+                Device device = toDevice(record, DeviceMaps.servicesFrom(record.get("services")));
+                if (device != null) {
+                    restored.add(device);
+                }
+            }
+            if (resumed.isCompleted()) {
+                logger.info("El escaneo " + scanId + " ya había terminado");
+                restored.sort(BY_IP);
+                return restored;
             }
+            this.journal = resumed;
 
-            // Crear y ejecutar hilos de trabajo
-            int threadCount = Math.min(32, hosts.size());
-            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            HostRangeSet all = expandHosts(resumed.getNetworkRange(), resumed.getExcludeRange());
+            HostRangeSet remaining = all.exclude(resumed.getRestoredDone());
+            stats.start(all.size(), all.size() - remaining.size());
+            logger.info(String.format("Reanudando escaneo %s: %d hosts terminados, %d pendientes",
+                    scanId, all.size() - remaining.size(), remaining.size()));
 
-            for (int i = 0; i < threadCount; i++) {
-                executor.execute(() -> scanWorker(intensity));
+            for (Device device : restored) {
+                resultQueue.add(device);
+                notifyDeviceFound(device);
             }
+            return runScan(remaining, resumed.getIntensity(), snmpCommunity);
 
-            // Esperar a que terminen todos los escaneos
-            executor.shutdown();
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            logger.severe("Error al reanudar el escaneo " + scanId + ": " + e.getMessage());
+            return Collections.emptyList();
+        } finally {
+            endScan();
+        }
+    }
 
-            // Recolectar resultados
-            while (!resultQueue.isEmpty()) {
-                Map<String, Object> device = resultQueue.poll();
-                if (device != null) {
-                    devices.add(device);
-                }
+    private void beginScan() {
+        this.devices.clear();
+        this.discardedDevices.set(0);
+        this.isScanning = true;
+        this.stats.reset();
+        this.stopScan = false;
+        this.processes.reset();
+    }
+
+    private void endScan() {
+        ScanJournal finished = journal;
+        if (finished != null) {
+            finished.close();
+            this.journal = null;
+        }
+        closeFallbackEngine();
+        this.isScanning = false;
+        this.stopScan = true;
+        this.stats.finish();
+    }
+
+    // Sus selectores y sus hilos no deben sobrevivir al escaneo; el siguiente abre otro
+    private synchronized void closeFallbackEngine() {
+        ConnectScanEngine engine = fallbackEngine;
+        if (engine == null) return;
+        fallbackEngine = null;
+        if (portScanEngine == engine) {
+            portScanEngine = null;
+        }
+        engine.close();
+    }
+
+    private ScanJournal createJournal(String networkRange, String excludeRange, String intensity) {
+        Path directory = checkpointDirectory;
+        if (directory == null) {
+            return null;
+        }
+        try {
+            ScanJournal created = ScanJournal.create(directory, networkRange, excludeRange, intensity);
+            logger.info("Puntos de control del escaneo en " + directory + " (id " + created.getScanId() + ")");
+            return created;
+        } catch (IOException e) {
+            logger.warning("No se pudo crear el diario del escaneo, no será reanudable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private List<Device> runScan(HostRangeSet hosts, String intensity, String snmpCommunity)
+            throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        HardwareCollectionStage stage = hosts.isEmpty() ? null : openHardwareStage(snmpCommunity);
+        this.hardwareStage = stage;
+        NameResolutionStage names = hosts.isEmpty() ? null : openNameStage();
+        this.nameStage = names;
+        if (!hosts.isEmpty()) {
+            // Mapea (o compila la primera vez) la base de fabricantes antes que los workers
+            vendorRegistry();
+        }
+        ServiceVersionStage versions = hosts.isEmpty() ? null : openVersionStage();
+
+        try {
+            if (!hosts.isEmpty()) {
+                scanAll(hosts, intensity);
             }
+        } finally {
+            if (names != null) {
+                // Las resoluciones terminan siempre por timeout; basta con esperarlas
+                names.awaitDrained(5, TimeUnit.SECONDS);
+                names.clear();
+                this.nameStage = null;
+            }
+            if (stage != null) {
+                // Las consultas que queden fallan al cerrar y publican su dispositivo sin hardware
+                stage.close();
+                stage.awaitDrained(5, TimeUnit.SECONDS);
+                this.hardwareStage = null;
+            }
+            if (versions != null) {
+                versions.save();
+            }
+        }
 
-            // Ordenar dispositivos por IP
-            devices.sort((d1, d2) -> {
-                String ip1 = (String) d1.get("ip");
-                String ip2 = (String) d2.get("ip");
-                return compareIps(ip1, ip2);
-            });
+        // Solo un escaneo que no se detuvo ni agotó su tiempo deja de ser reanudable
+        ScanJournal current = journal;
+        if (current != null && !stopScan) {
+            current.markCompleted();
+        }
 
-            double scanDuration = (System.currentTimeMillis() - startTime) / 1000.0;
-            logger.info(String.format("Escaneo completado en %.2f segundos. Encontrados %d dispositivos.",
-                    scanDuration, devices.size()));
+        // Recolectar resultados
+        resultQueue.drainTo(devices);
 
-            return new ArrayList<>(devices);
+        // Ordenar dispositivos por IP
+        devices.sort(BY_IP);
 
-        } catch (Exception e) {
-            logger.severe("Error durante escaneo de red: " + e.getMessage());
-            return Collections.emptyList();
+        double scanDuration = (System.currentTimeMillis() - startTime) / 1000.0;
+        logger.info(String.format("Escaneo completado en %.2f segundos. Encontrados %d dispositivos.",
+                scanDuration, devices.size()));
+        long discarded = discardedDevices.get();
+        if (discarded > 0) {
+            logger.warning(discarded + " hosts sin IPv4 descartados del resultado");
+        }
+
+        return new ArrayList<>(devices);
+    }
+
+    private void scanAll(HostRangeSet hosts, String intensity)
+            throws InterruptedException {
+        // Los hosts se reparten bajo demanda, sin construir la lista completa; los que
+        // estaban activos en el último escaneo se descubren antes que el resto del rango
+        HostRangeSet known = knownAliveIn(hosts);
+        HostRangeSet.Cursor[] cursors = known.isEmpty()
+                ? new HostRangeSet.Cursor[] {hosts.cursor()}
+                : new HostRangeSet.Cursor[] {known.cursor(), hosts.exclude(known).cursor()};
+
+        // Límite de escaneos profundos simultáneos, ajustado en caliente por AIMD
+        int maxConcurrency = (int) Math.min(computeConcurrencyLimit(), hosts.size());
+        ConcurrencyController scanSlots = new ConcurrencyController(
+                Math.max(1, maxConcurrency / 2), 1, maxConcurrency);
+        this.concurrency = scanSlots;
+        int perSlot = batchingEnabled ? MAX_BATCH_SIZE : SCAN_QUEUE_PER_WORKER;
+        HostScheduler scanQueue = createScheduler(maxConcurrency * perSlot);
+        this.scheduler = scanQueue;
+        Duration deadline = scanDeadline;
+        long deadlineNanos = deadline != null ? System.nanoTime() + deadline.toNanos() : 0;
+
+        // Todas las tareas del escaneo viven dentro de este bloque: al salir no queda ninguna
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            this.activeExecutor = executor;
+
+            // Fase 1: descubrimiento de hosts activos por bloques
+            int discoveryTasks = (int) Math.min(DISCOVERY_THREADS,
+                    (hosts.size() + DISCOVERY_CHUNK_SIZE - 1) / DISCOVERY_CHUNK_SIZE);
+            AtomicInteger pendingDiscovery = new AtomicInteger(discoveryTasks);
+            for (int i = 0; i < discoveryTasks; i++) {
+                executor.execute(() -> {
+                    try {
+                        discoveryWorker(cursors, scanQueue, intensity);
+                    } finally {
+                        pendingDiscovery.decrementAndGet();
+                    }
+                });
+            }
+
+            // Fase 2: escaneo profundo de los hosts activos
+            dispatchScans(executor, scanQueue, pendingDiscovery, scanSlots, deadlineNanos, intensity);
+
+            // Esperar a que terminen los escaneos en curso sin rebasar el tiempo límite
+            while (!scanSlots.awaitIdle(200, TimeUnit.MILLISECONDS)) {
+                checkDeadline(deadlineNanos);
+            }
         } finally {
-            this.isScanning = false;
-            this.stopScan = true;
+            this.activeExecutor = null;
+        }
+
+        // Fase 3: nombres y consultas SNMP que aún estén en vuelo
+        NameResolutionStage names = nameStage;
+        while (names != null && !stopScan && !names.awaitDrained(200, TimeUnit.MILLISECONDS)) {
+            checkDeadline(deadlineNanos);
+        }
+        HardwareCollectionStage stage = hardwareStage;
+        while (stage != null && !stopScan && !stage.awaitDrained(200, TimeUnit.MILLISECONDS)) {
+            checkDeadline(deadlineNanos);
+        }
+    }
+
+    private NameResolutionStage openNameStage() {
+        if (!nameResolutionEnabled) {
+            return null;
+        }
+        NameResolver resolver = nameResolver;
+        if (resolver == null) {
+            synchronized (this) {
+                if (nameResolver == null) {
+                    try {
+                        // Compartido: la GUI crea un escáner por escaneo y no debe abrir un socket cada vez
+                        nameResolver = NameResolver.shared();
+                    } catch (IOException e) {
+                        logger.warning("No se pudo abrir el socket de resolución de nombres: " + e.getMessage());
+                        return null;
+                    }
+                }
+                resolver = nameResolver;
+            }
+        }
+        return new NameResolutionStage(resolver);
+    }
+
+    private ServiceVersionStage openVersionStage() {
+        if (!versionCacheEnabled) {
+            return null;
+        }
+        synchronized (this) {
+            if (versionStage == null) {
+                versionStage = new ServiceVersionStage(ServiceFingerprintCache.loadDefault(), fingerprinter);
+            }
+            return versionStage;
+        }
+    }
+
+    private HardwareCollectionStage openHardwareStage(String snmpCommunity) {
+        SnmpCredentials credentials = snmpV3Credentials;
+        if (credentials == null && snmpCommunity != null && !snmpCommunity.isBlank()) {
+            credentials = SnmpCredentials.v2c(snmpCommunity.trim());
+        }
+        if (credentials == null) {
+            return null;
+        }
+        try {
+            logger.info("Inventario de hardware por " + credentials);
+            return new HardwareCollectionStage(credentials, snmpPort);
+        } catch (IOException e) {
+            logger.warning("No se pudo abrir el socket SNMP, se omite el inventario de hardware: " + e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * @return Identificador del escaneo en curso para {@link #resumeScan}, o null si no tiene diario
+     */
+    public String getCurrentScanId() {
+        ScanJournal current = journal;
+        return current != null ? current.getScanId() : null;
+    }
+
+    /**
+     * @return Escaneos con diario en el directorio de puntos de control, terminados o no
+     */
+    public List<Map<String, Object>> listCheckpointedScans() {
+        Path directory = checkpointDirectory;
+        return directory != null ? ScanJournal.listScans(directory) : Collections.emptyList();
+    }
+
     public void stopScan() {
         try {
             logger.info("Deteniendo escaneo...");
-            this.stopScan = true;
+            cancelRunningScan();
             this.isScanning = false;
 
-            // Limpiar las colas
-            scanQueue.clear();
+            // Limpiar la cola de resultados
             resultQueue.clear();
 
-            // Resetear contadores
-            this.scanProgress = 0;
-            this.scannedHosts = 0;
-            this.totalHosts = 0;
+            // Resetear contadores, tras entregar la última instantánea a los listeners
+            stats.finish();
+            stats.reset();
 
             logger.info("Escaneo detenido correctamente");
         } catch (Exception e) {
@@ -164,228 +713,750 @@ public class NetworkScanner {
         }
     }
 
-    private void scanWorker(String intensity) {
+    // Recorre los cursores en orden; un bloque nunca mezcla direcciones de dos cursores
+    private void discoveryWorker(HostRangeSet.Cursor[] cursors, HostScheduler scanQueue, String intensity) {
+        List<String> chunk = new ArrayList<>(DISCOVERY_CHUNK_SIZE);
+        int current = 0;
         while (!stopScan) {
-            Map<String, Object> task = null;
-            try {
-                // Intentar obtener un host de la cola con timeout
-                task = scanQueue.poll(1, TimeUnit.SECONDS);
-                if (task == null) {
-                    if (stopScan) break;
-                    continue;
-                }
+            chunk.clear();
+            long address;
+            while (chunk.size() < DISCOVERY_CHUNK_SIZE && (address = cursors[current].next()) >= 0) {
+                chunk.add(HostRangeSet.toIpString((int) address));
+            }
+            if (chunk.isEmpty()) {
+                if (++current == cursors.length) break;
+                continue;
+            }
 
-                String host = (String) task.get("host");
-                String snmpCommunity = (String) task.get("snmpCommunity");
+            try {
+                List<String> alive = hostDiscoveryEnabled
+                        ? hostDiscovery.discover(chunk, intensity, rateLimitArgs())
+                        : chunk;
 
-                logger.info("Escaneando " + host + "...");
-                Map<String, Object> device = scanHostFullPorts(host, intensity, snmpCommunity);
+                // Los hosts inactivos cuentan como escaneados en cuanto se descartan
+                recordSkipped(chunk.size() - alive.size());
+                recordInactive(chunk, alive);
 
-                if (device != null) {
-                    resultQueue.put(device);
-                    notifyDeviceFound(device);
+                NameResolutionStage names = nameStage;
+                for (String host : alive) {
+                    if (names != null) names.prefetch(host);
+                    if (!enqueue(scanQueue, host)) return;
                 }
-
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                logger.warning("Hilo de escaneo interrumpido");
-                break;
-            } catch (Exception e) {
-                logger.severe("Error en worker de escaneo: " + e.getMessage());
-            } finally {
-                if (task != null && !stopScan) {
-                    scannedHosts++;
-                    if (totalHosts > 0) {
-                        scanProgress = (scannedHosts / (double) totalHosts) * 100;
+                logger.warning("Hilo de descubrimiento interrumpido");
+                return;
+            } catch (IOException e) {
+                if (stopScan) return;
+                // Sin descubrimiento disponible: escanear el bloque completo
+                logger.warning("Error en descubrimiento de hosts, se escanea el bloque completo: " + e.getMessage());
+                try {
+                    for (String host : chunk) {
+                        if (!enqueue(scanQueue, host)) return;
                     }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
                 }
             }
         }
     }
 
-    private Map<String, Object> scanHostFullPorts(String host, String intensity, String snmpCommunity) {
+    // Cancela el escaneo actual: detiene las tareas y mata los procesos Nmap con sus hijos
+    private void cancelRunningScan() {
+        this.stopScan = true;
+        processes.killAll();
+        ExecutorService executor = activeExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean checkDeadline(long deadlineNanos) {
+        if (deadlineNanos != 0 && !stopScan && System.nanoTime() - deadlineNanos >= 0) {
+            logger.warning("Se alcanzó el tiempo límite del escaneo; se cancelan los escaneos en curso");
+            cancelRunningScan();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Saca lotes de la cola de escaneo y lanza cada uno en un hilo virtual en cuanto
+     * hay un hueco libre en el semáforo de concurrencia.
+     */
+    private void dispatchScans(ExecutorService executor, HostScheduler scanQueue,
+                               AtomicInteger pendingDiscovery, ConcurrencyController scanSlots, long deadlineNanos,
+                               String intensity) throws InterruptedException {
+        while (!stopScan && !checkDeadline(deadlineNanos)) {
+            if (!scanSlots.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+
+            String host = scanQueue.poll(200, TimeUnit.MILLISECONDS);
+            if (host == null) {
+                scanSlots.release();
+                if (pendingDiscovery.get() == 0 && scanQueue.isEmpty()) break;
+                continue;
+            }
+
+            List<String> batch = new ArrayList<>();
+            batch.add(host);
+            if (batchingEnabled) {
+                int batchSize = batchSizer.nextBatchSize(scanQueue.size() + 1, scanSlots.getLimit());
+                scanQueue.drainTo(batch, batchSize - 1);
+            }
+
+            stats.recordStarted(batch.size());
+            try {
+                executor.execute(() -> {
+                    try {
+                        logger.info("Escaneando " + (batch.size() == 1 ? host : batch.size() + " hosts") + "...");
+                        scanHostFullPorts(batch, intensity);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        logger.severe("Error en escaneo de " + batch + ": " + e.getMessage());
+                    } finally {
+                        scanSlots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Ejecutor cerrado por cancelación
+                scanSlots.release();
+                break;
+            }
+        }
+    }
+
+    private int computeConcurrencyLimit() {
+        int cpuBound = Runtime.getRuntime().availableProcessors() * SCANS_PER_CORE;
+        int socketBound = Math.max(1, socketBudget / SOCKETS_PER_SCAN);
+        return Math.max(1, Math.min(cpuBound, socketBound));
+    }
+
+    // Encola sin bloquear indefinidamente: si se detiene el escaneo los workers ya no consumen
+    private boolean enqueue(HostScheduler scanQueue, String host) throws InterruptedException {
+        while (!stopScan) {
+            if (scanQueue.offer(host, 1, TimeUnit.SECONDS)) {
+                stats.recordQueued();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordInactive(List<String> chunk, List<String> alive) {
+        ScanJournal current = journal;
+        if (current == null || alive.size() == chunk.size() || stopScan) {
+            return;
+        }
+        Set<String> up = new HashSet<>(alive);
+        List<String> inactive = new ArrayList<>(chunk.size() - alive.size());
+        for (String host : chunk) {
+            if (!up.contains(host)) inactive.add(host);
+        }
+        current.recordInactive(inactive);
+    }
+
+    // Tras una cancelación los contadores ya no se actualizan: stopScan() los pone a cero
+    private void recordSkipped(int hosts) {
+        if (hosts <= 0 || stopScan) return;
+        stats.recordSkipped(hosts);
+    }
+
+    private void recordFailed() {
+        if (stopScan) return;
+        stats.recordFailed();
+    }
+
+    /**
+     * Escanea un lote de hosts con una única invocación de Nmap. Cada host se
+     * publica (y avanza el progreso) en cuanto su elemento XML se completa.
+     */
+    private void scanHostFullPorts(List<String> hosts, String intensity)
+            throws InterruptedException {
+        DeltaScanPlanner delta = deltaPlanner;
+        if (delta != null) {
+            hosts = escalateChangedHosts(delta, hosts);
+            if (hosts.isEmpty()) return;
+        }
+
+        // Un lote puede mezclar subredes con perfiles distintos: una invocación por perfil
+        for (Map.Entry<ScanProfile, List<String>> group : scanProfiles.partition(hosts).entrySet()) {
+            if (stopScan) return;
+            scanProfileGroup(group.getValue(), group.getKey(), intensity);
+        }
+    }
+
+    private void scanProfileGroup(List<String> hosts, ScanProfile profile, String intensity)
+            throws InterruptedException {
+        PortScanEngine engine = resolvePortScanEngine();
+        if (engine != null) {
+            scanWithEngine(engine, hosts, profile);
+            return;
+        }
+
+        ServiceVersionStage versions = versionCacheEnabled && profile.supportsVersionCache() ? versionStage : null;
         long scanStart = System.currentTimeMillis();
-        Map<String, Object> device = new HashMap<>();
-        Map<Integer, Map<String, Object>> services = new HashMap<>();
+        Set<String> pending = new HashSet<>(hosts);
+        // Hosts con servicios que no estaban en la caché de versiones, a la espera de "-sV"
+        Map<String, Map<String, Object>> unversioned = new LinkedHashMap<>();
+        SortedSet<Integer> unversionedPorts = new TreeSet<>();
+        boolean completed = false;
 
         try {
             // Construir comando Nmap
-            String[] command = buildNmapCommand(host, intensity);
-
-            // Ejecutar proceso
-            Process process = Runtime.getRuntime().exec(command);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-            String line;
-            String currentIp = host;
-            String hostname = host;
-            Map<String, Object> macInfo = new HashMap<>();
-            macInfo.put("mac", "Desconocida");
-            macInfo.put("vendor", "Desconocido");
-            String osInfo = "Desconocido";
-
-            // Parsear salida de Nmap
-            while ((line = reader.readLine()) != null) {
-                if (stopScan) {
-                    process.destroy();
-                    return null;
-                }
+            String[] command = buildNmapCommand(hosts, profile, intensity, versions == null);
 
-                // Parsear información del host
-                Matcher hostMatcher = HOST_PATTERN.matcher(line);
-                if (hostMatcher.find()) {
-                    hostname = hostMatcher.group(1);
-                    currentIp = hostMatcher.group(2);
-                    continue;
+            // Ejecutar proceso y parsear la salida XML en streaming
+            Process process = processes.start(command);
+            try {
+                int parsed;
+                // Al cerrarse espera a que terminen las lecturas de banners en curso
+                try (ExecutorService grabs = versions != null ? Executors.newVirtualThreadPerTaskExecutor() : null;
+                     InputStream output = processes.output(process)) {
+                    parsed = nmapParser.parse(output, host -> {
+                        String ip = (String) host.get("ip");
+                        if (!pending.remove(ip)) return;
+                        if (grabs == null) {
+                            finishHost(host, scanStart);
+                            return;
+                        }
+                        // Los banners se leen aparte para no frenar la lectura de la salida de Nmap
+                        grabs.execute(() -> {
+                            SortedSet<Integer> missed;
+                            try {
+                                missed = versions.apply(host);
+                            } catch (RuntimeException e) {
+                                // Ya salió de pending: se publica sin datos de la caché
+                                logger.warning("Error al leer banners de " + ip + ": " + e.getMessage());
+                                versions.forget(ip);
+                                missed = Collections.emptySortedSet();
+                            }
+                            if (missed.isEmpty()) {
+                                try {
+                                    finishHost(host, scanStart);
+                                } catch (RuntimeException e) {
+                                    logger.severe("Error al completar " + ip + ": " + e.getMessage());
+                                    recordFailed();
+                                }
+                                return;
+                            }
+                            synchronized (unversioned) {
+                                unversioned.put(ip, host);
+                                unversionedPorts.addAll(missed);
+                            }
+                        });
+                    });
+                }
+                if (parsed < 0) {
+                    ProcessTracker.destroyTree(process);
+                    return;
                 }
 
-                // Parsear información MAC
-                Matcher macMatcher = MAC_PATTERN.matcher(line);
-                if (macMatcher.find()) {
-                    macInfo.put("mac", macMatcher.group(1));
-                    macInfo.put("vendor", macMatcher.group(2));
-                    continue;
+                // Esperar a que termine el proceso
+                int exitCode = process.waitFor();
+                if (exitCode != 0 && !stopScan) {
+                    logger.warning("Nmap terminó con código de salida: " + exitCode + " para hosts: " + hosts);
+                }
+                if (!stopScan) {
+                    recordExitOutcome(exitCode);
                 }
+                completed = !stopScan;
+            } catch (InterruptedException e) {
+                ProcessTracker.destroyTree(process);
+                throw e;
+            } finally {
+                processes.release(process);
+            }
 
-                // Parsear información del SO
-                Matcher osMatcher = OS_PATTERN.matcher(line);
-                if (osMatcher.find()) {
-                    osInfo = osMatcher.group(1);
-                    continue;
+            if (completed && !unversioned.isEmpty()) {
+                probeVersions(versions, unversioned, unversionedPorts, profile, intensity);
+            }
+            batchSizer.record(hosts.size(), System.currentTimeMillis() - scanStart);
+
+        } catch (IOException | XMLStreamException e) {
+            if (!stopScan) {
+                logger.severe("Error al escanear " + hosts + ": " + e.getMessage());
+            }
+        } finally {
+            // Con la segunda pasada hecha o no, estos hosts ya se escanearon: se publican
+            for (Map<String, Object> host : unversioned.values()) {
+                versions.forget((String) host.get("ip"));
+                finishHost(host, scanStart);
+            }
+            // Hosts sin elemento en la salida (p.ej. agotaron --host-timeout)
+            for (String host : pending) {
+                if (completed) {
+                    recordHostOutcome(host, (System.currentTimeMillis() - scanStart) / 1000.0, true);
+                    Map<String, Object> device = emptyHost(host);
+                    device.put("timed_out", true);
+                    deliverDevice(completeDevice(device, scanStart));
+                } else {
+                    recordFailed();
                 }
+            }
+        }
+    }
 
-                // Parsear puertos y servicios
-                Matcher serviceMatcher = SERVICE_PATTERN.matcher(line);
-                if (serviceMatcher.find()) {
-                    int port = Integer.parseInt(serviceMatcher.group(1));
-                    String protocol = serviceMatcher.group(2);
-                    String state = serviceMatcher.group(3);
-                    String serviceName = serviceMatcher.group(4);
-                    String serviceInfo = serviceMatcher.groupCount() > 4 ? serviceMatcher.group(5) : "";
-
-                    if ("open".equalsIgnoreCase(state)) {
-                        Map<String, Object> service = new HashMap<>();
-                        service.put("port", port);
-                        service.put("protocol", protocol);
-                        service.put("state", state);
-                        service.put("name", serviceName);
-
-                        // Parse version if available
-                        if (serviceInfo != null && !serviceInfo.isEmpty()) {
-                            String[] versionParts = serviceInfo.split(" ");
-                            if (versionParts.length > 0) {
-                                service.put("product", versionParts[0]);
-                                if (versionParts.length > 1) {
-                                    service.put("version", versionParts[1]);
-                                }
-                            }
-                        }
+    /**
+     * Segunda pasada "nmap -sV" limitada a los puertos que no estaban en la caché
+     * de versiones. Se lanza una sola vez por lote con la unión de esos puertos.
+     */
+    private void probeVersions(ServiceVersionStage versions, Map<String, Map<String, Object>> unversioned,
+                               SortedSet<Integer> ports, ScanProfile profile, String intensity)
+            throws IOException, XMLStreamException, InterruptedException {
+        StringJoiner portList = new StringJoiner(",");
+        for (int port : ports) {
+            portList.add(String.valueOf(port));
+        }
+        List<String> command = new ArrayList<>();
+        command.add("nmap");
+        command.addAll(profile.toVersionProbeArgs(intensity));
+        command.add("-p");
+        command.add(portList.toString());
+        command.add("-n");
+        command.addAll(rateLimitArgs());
+        command.add("-oX");
+        command.add("-");
+        command.addAll(unversioned.keySet());
 
-                        services.put(port, service);
+        Process process = processes.start(command.toArray(new String[0]));
+        try {
+            try (InputStream output = processes.output(process)) {
+                nmapParser.parse(output, probed -> {
+                    Map<String, Object> device = unversioned.get((String) probed.get("ip"));
+                    if (device != null) {
+                        versions.merge(device, probed);
                     }
+                });
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0 && !stopScan) {
+                logger.warning("Nmap -sV terminó con código de salida: " + exitCode + " para hosts: " + unversioned.keySet());
+            }
+        } catch (InterruptedException e) {
+            ProcessTracker.destroyTree(process);
+            throw e;
+        } finally {
+            processes.release(process);
+        }
+    }
+
+    private void finishHost(Map<String, Object> host, long scanStart) {
+        Map<String, Object> device = completeDevice(host, scanStart);
+        recordHostOutcome((String) device.get("ip"),
+                ((Number) device.get("scan_duration")).doubleValue(),
+                Boolean.TRUE.equals(device.get("timed_out")));
+        deliverDevice(device);
+    }
+
+    /**
+     * Modo delta: publica con su registro anterior los hosts cuya huella no cambió
+     * y devuelve los que necesitan escaneo profundo.
+     */
+    private List<String> escalateChangedHosts(DeltaScanPlanner delta, List<String> hosts)
+            throws InterruptedException {
+        Map<String, Future<Map<String, Object>>> checks = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String host : hosts) {
+                checks.put(host, executor.submit(() -> delta.check(host)));
+            }
+        }
+
+        List<String> escalated = new ArrayList<>();
+        for (Map.Entry<String, Future<Map<String, Object>>> check : checks.entrySet()) {
+            if (stopScan) return Collections.emptyList();
+            Map<String, Object> reused;
+            try {
+                reused = check.getValue().get();
+            } catch (ExecutionException e) {
+                reused = null;
+            }
+            if (reused != null) {
+                publishDevice(reused);
+            } else {
+                escalated.add(check.getKey());
+            }
+        }
+        return escalated;
+    }
+
+    // Ruta sin Nmap: el motor escanea todos los hosts del lote en paralelo
+    private void scanWithEngine(PortScanEngine engine, List<String> hosts, ScanProfile profile)
+            throws InterruptedException {
+        ServiceVersionStage versions = versionCacheEnabled && profile.supportsVersionCache() ? versionStage : null;
+        long scanStart = System.currentTimeMillis();
+        int[] ports = profile.enginePorts();
+        List<CompletableFuture<Map<Integer, Map<String, Object>>>> futures = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            try {
+                futures.add(engine.scan(host, ports));
+            } catch (IOException e) {
+                logger.severe("Error al escanear " + host + ": " + e.getMessage());
+                futures.add(null);
+            }
+        }
+
+        for (int i = 0; i < hosts.size(); i++) {
+            CompletableFuture<Map<Integer, Map<String, Object>>> future = futures.get(i);
+            if (future == null) {
+                recordFailed();
+                continue;
+            }
+            try {
+                Map<Integer, Map<String, Object>> services = awaitEngine(future);
+                if (services == null) {
+                    return;
+                }
+                Map<String, Object> device = emptyHost(hosts.get(i));
+                device.put("services", services);
+                device.put("detection_method", engine.getName());
+                if (versions != null) {
+                    // Sin Nmap no hay segunda pasada: solo se aprovechan los aciertos de la caché
+                    versions.apply(device);
+                    versions.forget(hosts.get(i));
                 }
+                device = completeDevice(device, scanStart);
+                recordHostOutcome(hosts.get(i), ((Number) device.get("scan_duration")).doubleValue(), false);
+                deliverDevice(device);
+            } catch (ExecutionException e) {
+                logger.severe("Error al escanear " + hosts.get(i) + ": " + e.getCause().getMessage());
+                recordFailed();
             }
+        }
+    }
 
-            // Esperar a que termine el proceso
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                logger.warning("Nmap terminó con código de salida: " + exitCode + " para host: " + host);
-            }
-
-            // Obtener información de hardware (simplificado)
-            Map<String, Object> hardwareInfo = getHardwareInfo(host, snmpCommunity);
-
-            // Construir objeto dispositivo
-            device.put("ip", currentIp);
-            device.put("hostname", hostname);
-            device.put("mac_info", macInfo);
-            device.put("os_info", osInfo);
-            device.put("services", services);
-            device.put("hardware", hardwareInfo);
-            device.put("detection_method", "nmap");
-            device.put("status", "up");
-            device.put("last_seen", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
-            device.put("scan_duration", (System.currentTimeMillis() - scanStart) / 1000.0);
-            device.put("open_ports", services.size());
-
-            // Análisis de seguridad
-            Map<String, Object> riskReport = securityAuditor.analyzeDevice(device);
-            device.put("risk_level", riskReport.getOrDefault("risk_level", "No evaluado"));
-            device.put("risk_score", riskReport.getOrDefault("risk_score", 0));
-            device.put("vulnerabilities", riskReport.getOrDefault("vulnerabilities", Collections.emptyList()));
-            device.put("recommendations", riskReport.getOrDefault("recommendations", Collections.emptyList()));
-
-            logger.info(String.format(
-                    "Escaneo de %s completado en %.2fs - Puertos abiertos: %d - Nivel de riesgo: %s",
-                    host, (System.currentTimeMillis() - scanStart) / 1000.0,
-                    services.size(), device.get("risk_level")
-            ));
-
-            return device;
-
-        } catch (IOException | InterruptedException e) {
-            logger.severe("Error al escanear " + host + ": " + e.getMessage());
-            return null;
+    // Espera el resultado comprobando periódicamente si se ha detenido el escaneo
+    private Map<Integer, Map<String, Object>> awaitEngine(CompletableFuture<Map<Integer, Map<String, Object>>> future)
+            throws InterruptedException, ExecutionException {
+        while (!stopScan) {
+            try {
+                return future.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                // Seguir esperando
+            }
+        }
+        future.cancel(true);
+        return null;
+    }
+
+    private PortScanEngine resolvePortScanEngine() {
+        PortScanEngine engine = portScanEngine;
+        if (engine != null || isNmapAvailable()) {
+            return engine;
+        }
+        synchronized (this) {
+            if (portScanEngine == null) {
+                logger.warning("Nmap no está disponible; se usa el escáner TCP connect integrado");
+                ConnectScanEngine connect = ConnectScanEngine.open();
+                connect.setRateLimiter(rateLimiter);
+                portScanEngine = connect;
+                fallbackEngine = connect;
+            }
+            return portScanEngine;
+        }
+    }
+
+    private boolean isNmapAvailable() {
+        Boolean available = nmapAvailable;
+        if (available == null) {
+            Process process = null;
+            try {
+                process = processes.start("nmap", "--version");
+                process.getInputStream().transferTo(OutputStream.nullOutputStream());
+                available = process.waitFor() == 0;
+            } catch (IOException e) {
+                if (stopScan) {
+                    // Cancelado al arrancar: no dice nada de si Nmap está instalado
+                    return false;
+                }
+                available = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                available = false;
+            } finally {
+                processes.release(process);
+            }
+            nmapAvailable = available;
         }
+        return available;
     }
 
+    private void recordHostOutcome(String host, double durationSeconds, boolean timedOut) {
+        ConcurrencyController controller = concurrency;
+        if (controller != null) {
+            controller.recordHost(durationSeconds, timedOut);
+        }
+        HostScheduler current = scheduler;
+        if (current != null) {
+            current.recordOutcome(host, durationSeconds, timedOut);
+        }
+    }
 
-    private String[] buildNmapCommand(String host, String intensity) {
-        return new String[] {
-                "nmap",
-                "-p", "1-65535",
-                "-sS",
-                "-sV",
-                "-O",
-                "-A",
-                "--osscan-guess",
-                "--max-os-tries", "2",
-                intensity,
-                "--host-timeout", "60s",
-                "--version-intensity", "7",
-                "--script=banner,http-title,ssl-cert,ssh-hostkey,snmp-info,smb-os-discovery",
-                host
-        };
+    /**
+     * Direcciones de {@code hosts} que el historial da por activas y sin timeout.
+     */
+    private HostRangeSet knownAliveIn(HostRangeSet hosts) {
+        List<Map<String, Object>> hints = schedulingHints;
+        if (hints == null || hints.isEmpty()) {
+            return HostRangeSet.empty();
+        }
+        int[] addresses = new int[hints.size()];
+        int count = 0;
+        for (Map<String, Object> device : hints) {
+            if (!(device.get("ip") instanceof String ip) || Boolean.TRUE.equals(device.get("timed_out"))) {
+                continue;
+            }
+            try {
+                int address = HostRangeSet.parseIp(ip);
+                if (hosts.contains(address)) {
+                    addresses[count++] = address;
+                }
+            } catch (IllegalArgumentException e) {
+                // Nombres de host o IPv6: siguen el orden normal del rango
+            }
+        }
+        return HostRangeSet.of(addresses, count);
     }
 
-    private Map<String, Object> getHardwareInfo(String host, String snmpCommunity) {
-        // Implementación simplificada
-        Map<String, Object> hardwareInfo = new HashMap<>();
-        hardwareInfo.put("cpu", Collections.emptyMap());
-        hardwareInfo.put("memory", Collections.emptyMap());
-        hardwareInfo.put("storage", Collections.emptyList());
-        hardwareInfo.put("network_interfaces", Collections.emptyList());
-        return hardwareInfo;
+    private HostScheduler createScheduler(int capacity) {
+        HostScheduler.Factory factory = schedulerFactory;
+        if (factory != null) {
+            return factory.create(capacity);
+        }
+        List<Map<String, Object>> hints = schedulingHints;
+        return new InterleavingHostScheduler(capacity, hints != null ? hints : Collections.emptyList());
     }
 
-    private List<String> expandHosts(String networkRange) {
-        try {
-            // Implementación simplificada - en una implementación real se expandiría el rango CIDR
-            return Collections.singletonList(networkRange);
-        } catch (Exception e) {
-            logger.severe("Rango de red inválido: " + networkRange);
-            return Collections.emptyList();
+    private void recordExitOutcome(int exitCode) {
+        ConcurrencyController controller = concurrency;
+        if (controller != null) {
+            controller.recordExit(exitCode);
         }
     }
 
-    private int compareIps(String ip1, String ip2) {
-        String[] parts1 = ip1.split("\\.");
-        String[] parts2 = ip2.split("\\.");
+    /**
+     * Publica el dispositivo, pasando antes por las etapas de nombres y de
+     * hardware SNMP que estén activas. Ninguna bloquea al worker que lo entrega.
+     */
+    private void deliverDevice(Map<String, Object> device) {
+        NameResolutionStage names = nameStage;
+        if (names != null && !stopScan) {
+            names.submit(device, this::collectHardware);
+        } else {
+            collectHardware(device);
+        }
+    }
 
-        for (int i = 0; i < 4; i++) {
-            int part1 = Integer.parseInt(parts1[i]);
-            int part2 = Integer.parseInt(parts2[i]);
+    private void collectHardware(Map<String, Object> device) {
+        HardwareCollectionStage stage = hardwareStage;
+        if (stage != null && !stopScan && !Boolean.TRUE.equals(device.get("timed_out"))) {
+            stage.submit(device, this::publishDevice);
+        } else {
+            publishDevice(device);
+        }
+    }
 
-            if (part1 != part2) {
-                return Integer.compare(part1, part2);
+    /**
+     * Último paso con el mapa: se evalúa el riesgo si aún no lo tiene (los
+     * registros reutilizados del modo delta ya lo traen), se anota en el diario
+     * y se construye el {@link Device} que reciben el resultado y los callbacks.
+     */
+    private void publishDevice(Map<String, Object> device) {
+        try {
+            Services services = DeviceMaps.servicesFrom(device.get("services"));
+            if (!device.containsKey("risk_level")) {
+                assessRisk(device, services);
+            }
+            ScanJournal current = journal;
+            if (current != null) {
+                current.recordDevice(device);
+            }
+            Device typed = toDevice(device, services);
+            if (typed != null) {
+                resultQueue.put(typed);
+                notifyDeviceFound(typed);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!stopScan) {
+                stats.recordDevice(((Number) device.getOrDefault("open_ports", 0)).intValue(),
+                        Boolean.TRUE.equals(device.get("timed_out")));
+            }
+        }
+    }
+
+    // Host sin datos en la salida de Nmap (p.ej. agotó --host-timeout)
+    private Map<String, Object> emptyHost(String host) {
+        Map<String, Object> device = new HashMap<>();
+        Map<String, Object> macInfo = new HashMap<>();
+        macInfo.put("mac", "Desconocida");
+        macInfo.put("vendor", "Desconocido");
+        device.put("ip", host);
+        device.put("hostname", host);
+        device.put("mac_info", macInfo);
+        device.put("os_info", "Desconocido");
+        device.put("services", new HashMap<Integer, Map<String, Object>>());
+        return device;
+    }
+
+    // Añade al host parseado los datos comunes; el análisis de seguridad se hace al publicarlo
+    private Map<String, Object> completeDevice(Map<String, Object> device, long scanStart) {
+        Map<?, ?> services = (Map<?, ?>) device.get("services");
+
+        // El hardware lo rellena la etapa SNMP, si está activa, antes de publicar
+        device.put("hardware", SnmpHardwareCollector.emptyHardware(null));
+        device.putIfAbsent("detection_method", "nmap");
+        fillVendor(device);
+        device.put("status", "up");
+        device.put("last_seen", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+        device.putIfAbsent("scan_duration", (System.currentTimeMillis() - scanStart) / 1000.0);
+        device.put("open_ports", services.size());
+        if (!Boolean.TRUE.equals(device.get("timed_out"))) {
+            device.put(DeltaScanPlanner.LAST_DEEP_SCAN, device.get("last_seen"));
+        }
+        DeltaScanPlanner delta = deltaPlanner;
+        if (delta != null) {
+            delta.annotate(device);
+        }
+        return device;
+    }
+
+    // Análisis de seguridad sobre los servicios ya convertidos
+    private void assessRisk(Map<String, Object> device, Services services) {
+        Map<String, Object> riskReport = securityAuditor.analyzeServices(services);
+        device.put("risk_level", riskReport.getOrDefault("risk_level", "No evaluado"));
+        device.put("risk_score", riskReport.getOrDefault("risk_score", 0));
+        device.put("vulnerabilities", riskReport.getOrDefault("vulnerabilities", Collections.emptyList()));
+        device.put("recommendations", riskReport.getOrDefault("recommendations", Collections.emptyList()));
+
+        Object duration = device.get("scan_duration");
+        logger.info(String.format(
+                "Escaneo de %s completado en %.2fs - Puertos abiertos: %d - Nivel de riesgo: %s",
+                device.get("ip"), duration instanceof Number number ? number.doubleValue() : 0.0,
+                services.size(), device.get("risk_level")
+        ));
+    }
+
+    /**
+     * El modelo solo admite IPv4. Nmap informa la IPv6 de un host que no tiene
+     * IPv4; esos hosts se quedan en el diario pero se descartan del resultado y
+     * se cuentan en {@link #getDiscardedDeviceCount()}.
+     */
+    private Device toDevice(Map<String, Object> device, Services services) {
+        try {
+            return DeviceMaps.fromMap(device, services);
+        } catch (IllegalArgumentException e) {
+            discardedDevices.incrementAndGet();
+            logger.warning("Host descartado del resultado: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Nmap solo da fabricante si su copia de prefijos lo conoce
+    @SuppressWarnings("unchecked")
+    private void fillVendor(Map<String, Object> device) {
+        if (!(device.get("mac_info") instanceof Map)) return;
+        Map<String, Object> macInfo = (Map<String, Object>) device.get("mac_info");
+        Object vendor = macInfo.get("vendor");
+        if (vendor != null && !vendor.toString().isBlank() && !"Desconocido".equals(vendor)) return;
+        Object mac = macInfo.get("mac");
+        String found = mac != null ? vendorRegistry().lookup(mac.toString()) : null;
+        if (found != null) {
+            macInfo.put("vendor", found);
+        }
+    }
+
+    private OuiRegistry vendorRegistry() {
+        OuiRegistry registry = ouiRegistry;
+        if (registry == null) {
+            registry = OuiRegistry.shared();
+            ouiRegistry = registry;
+        }
+        return registry;
+    }
+
+    private String[] buildNmapCommand(List<String> hosts, ScanProfile profile, String intensity,
+                                      boolean versionDetection) {
+        List<String> command = new ArrayList<>();
+        command.add("nmap");
+        command.addAll(profile.toNmapArgs(intensity, versionDetection));
+        if (nameStage != null) {
+            // Los nombres los resuelve la etapa propia, sin DNS bloqueante en cada proceso
+            command.add("-n");
+        }
+        command.addAll(rateLimitArgs());
+        command.add("-oX");
+        command.add("-");
+        command.addAll(hosts);
+        return command.toArray(new String[0]);
+    }
+
+    /**
+     * Parte del presupuesto de sondas que corresponde a cada proceso Nmap: se
+     * reparte entre los escaneos profundos permitidos ahora y el descubrimiento.
+     */
+    private List<String> rateLimitArgs() {
+        ProbeRateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return Collections.emptyList();
+        }
+        ConcurrencyController controller = concurrency;
+        int processes = DISCOVERY_THREADS + (controller != null ? controller.getLimit() : 1);
+        return limiter.toNmapArgs(processes);
+    }
+
+    private HostRangeSet expandHosts(String networkRange, String excludeRange) {
+        try {
+            return HostRangeSet.parse(networkRange).exclude(HostRangeSet.parse(excludeRange));
+        } catch (IllegalArgumentException e) {
+            logger.severe("Rango de red inválido: " + networkRange + " (" + e.getMessage() + ")");
+            return HostRangeSet.empty();
         }
+    }
 
-        return 0;
+    /**
+     * @return Hosts del último escaneo que no entraron en el resultado por no tener IPv4
+     */
+    public long getDiscardedDeviceCount() {
+        return discardedDevices.get();
     }
 
     public double getScanProgress() {
-        return scanProgress;
+        return stats.getProgress();
+    }
+
+    /**
+     * @return Contadores del escaneo en curso (o del último): hosts encolados, en
+     *         curso, terminados, fallidos y agotados, puertos, procesos Nmap, bytes
+     *         leídos, ritmo y tiempo restante estimado
+     */
+    public ScanStats getScanStats() {
+        return stats;
+    }
+
+    /**
+     * Recibe una instantánea de {@link #getScanStats()} cada {@code interval}
+     * mientras dura un escaneo y otra al terminar, en un hilo propio.
+     */
+    public void addStatsListener(ScanStats.Listener listener, Duration interval) {
+        stats.addListener(listener, interval);
+    }
+
+    public void removeStatsListener(ScanStats.Listener listener) {
+        stats.removeListener(listener);
+    }
+
+    /**
+     * @return Límite de concurrencia actual, contadores y últimas decisiones del
+     *         control adaptativo del escaneo en curso (o del último escaneo)
+     */
+    public Map<String, Object> getConcurrencyMetrics() {
+        ConcurrencyController controller = concurrency;
+        return controller != null ? controller.getMetrics() : Collections.emptyMap();
     }
 
     public boolean isScanInProgress() {
@@ -0,0 +1,257 @@
+package com.inventariado.core.scanner;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser en streaming (StAX) de la salida XML de Nmap ("-oX -").
+ *
+ * Emite un evento por cada elemento &lt;host&gt; en cuanto se cierra, de modo que
+ * un proceso con varios objetivos entrega cada dispositivo sin esperar al
+ * final. Cada host se entrega como mapa con las mismas claves que usa
+ * {@link NetworkScanner}: ip, hostname, mac_info, os_info, services y scripts,
+ * más scan_duration cuando Nmap informa starttime/endtime del host y timed_out
+ * si el host agotó --host-timeout.
+ */
+public class NmapXmlParser {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final BooleanSupplier cancelled;
+
+    public interface HostListener {
+        void onHost(Map<String, Object> host);
+    }
+
+    public NmapXmlParser(BooleanSupplier cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Lee el flujo XML completo notificando cada host activo.
+     * @param in Salida estándar de Nmap con "-oX -"
+     * @param listener Receptor de cada host parseado
+     * @return número de hosts emitidos, o -1 si se canceló antes de terminar
+     */
+    public int parse(InputStream in, HostListener listener) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        int emitted = 0;
+        try {
+            while (reader.hasNext()) {
+                if (cancelled.getAsBoolean()) {
+                    return -1;
+                }
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "host".equals(reader.getLocalName())) {
+                    Map<String, Object> host = parseHost(reader);
+                    if (host != null) {
+                        listener.onHost(host);
+                        emitted++;
+                    }
+                }
+            }
+            return emitted;
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Consume desde <host> hasta </host>; devuelve null si el host no está activo
+    private Map<String, Object> parseHost(XMLStreamReader reader) throws XMLStreamException {
+        long startTime = parseLong(attr(reader, "starttime"));
+        long endTime = parseLong(attr(reader, "endtime"));
+        boolean timedOut = "true".equals(attr(reader, "timedout"));
+        String status = "up";
+        String ip = null;
+        String hostname = null;
+        String osInfo = "Desconocido";
+        int osAccuracy = -1;
+        Map<String, Object> macInfo = new HashMap<>(4);
+        macInfo.put("mac", "Desconocida");
+        macInfo.put("vendor", "Desconocido");
+        Map<Integer, Map<String, Object>> services = new HashMap<>();
+        Map<String, String> hostScripts = new HashMap<>(4);
+
+        Map<String, Object> currentPort = null;
+        Map<String, String> currentPortScripts = null;
+        boolean inHostScript = false;
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                String name = reader.getLocalName();
+                if ("port".equals(name) && currentPort != null) {
+                    if ("open".equals(currentPort.get("state"))) {
+                        if (!currentPortScripts.isEmpty()) {
+                            currentPort.put("scripts", currentPortScripts);
+                        }
+                        services.put((Integer) currentPort.get("port"), currentPort);
+                    }
+                    currentPort = null;
+                    currentPortScripts = null;
+                } else if ("hostscript".equals(name)) {
+                    inHostScript = false;
+                }
+                continue;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            depth++;
+
+            switch (reader.getLocalName()) {
+                case "status" -> status = attr(reader, "state");
+                case "address" -> {
+                    String type = attr(reader, "addrtype");
+                    if ("ipv4".equals(type) || ("ipv6".equals(type) && ip == null)) {
+                        ip = attr(reader, "addr");
+                    } else if ("mac".equals(type)) {
+                        macInfo.put("mac", attr(reader, "addr"));
+                        String vendor = attr(reader, "vendor");
+                        if (vendor != null) {
+                            macInfo.put("vendor", vendor);
+                        }
+                    }
+                }
+                case "hostname" -> {
+                    if (hostname == null) {
+                        hostname = attr(reader, "name");
+                    }
+                }
+                case "port" -> {
+                    currentPort = new HashMap<>(12);
+                    currentPortScripts = new HashMap<>(4);
+                    currentPort.put("port", Integer.parseInt(attr(reader, "portid")));
+                    currentPort.put("protocol", intern(attr(reader, "protocol")));
+                }
+                case "state" -> {
+                    if (currentPort != null) {
+                        currentPort.put("state", intern(attr(reader, "state")));
+                    }
+                }
+                case "service" -> {
+                    if (currentPort != null) {
+                        readService(reader, currentPort);
+                    }
+                }
+                case "cpe" -> {
+                    if (currentPort != null) {
+                        currentPort.putIfAbsent("cpe", reader.getElementText());
+                        depth--;
+                    }
+                }
+                case "script" -> {
+                    String id = attr(reader, "id");
+                    String output = attr(reader, "output");
+                    if (id != null && output != null) {
+                        if (currentPort != null) {
+                            currentPortScripts.put(id, output);
+                        } else if (inHostScript) {
+                            hostScripts.put(id, output);
+                        }
+                    }
+                }
+                case "hostscript" -> inHostScript = true;
+                case "osmatch" -> {
+                    // Nmap ordena las coincidencias por precisión; nos quedamos con la mejor
+                    int accuracy = parseInt(attr(reader, "accuracy"));
+                    if (accuracy > osAccuracy) {
+                        osAccuracy = accuracy;
+                        osInfo = attr(reader, "name");
+                    }
+                }
+                default -> {
+                    // Elementos no utilizados (times, distance, trace...)
+                }
+            }
+        }
+
+        if (!"up".equals(status) || ip == null) {
+            return null;
+        }
+
+        Map<String, Object> host = new HashMap<>();
+        host.put("ip", ip);
+        host.put("hostname", hostname != null ? hostname : ip);
+        host.put("mac_info", macInfo);
+        host.put("os_info", osInfo);
+        if (osAccuracy >= 0) {
+            host.put("os_accuracy", osAccuracy);
+        }
+        host.put("services", services);
+        host.put("scripts", hostScripts);
+        if (startTime > 0 && endTime >= startTime) {
+            // Nmap informa inicio/fin de cada host en segundos
+            host.put("scan_duration", (double) (endTime - startTime));
+        }
+        if (timedOut) {
+            host.put("timed_out", true);
+        }
+        return host;
+    }
+
+    private static void readService(XMLStreamReader reader, Map<String, Object> port) {
+        putIfPresent(port, "name", reader, "name");
+        putIfPresent(port, "product", reader, "product");
+        putIfPresent(port, "version", reader, "version");
+        putIfPresent(port, "extrainfo", reader, "extrainfo");
+        putIfPresent(port, "ostype", reader, "ostype");
+        putIfPresent(port, "tunnel", reader, "tunnel");
+        putIfPresent(port, "method", reader, "method");
+    }
+
+    private static void putIfPresent(Map<String, Object> target, String key, XMLStreamReader reader, String attribute) {
+        String value = attr(reader, attribute);
+        if (value != null) {
+            target.put(key, value);
+        }
+    }
+
+    private static String attr(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Valores muy repetidos: evitar una cadena nueva por puerto
+    private static String intern(String value) {
+        if (value == null) return null;
+        return switch (value) {
+            case "tcp" -> "tcp";
+            case "udp" -> "udp";
+            case "open" -> "open";
+            case "closed" -> "closed";
+            case "filtered" -> "filtered";
+            default -> value;
+        };
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // La salida de Nmap declara un DOCTYPE; no se resuelven DTD ni entidades externas
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,31 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Motor de descubrimiento de puertos abiertos alternativo a Nmap.
+ *
+ * Los resultados usan el mismo formato de mapa "services" que produce el
+ * parser de Nmap (puerto -&gt; {port, protocol, state, name, method}), de modo
+ * que el resto del pipeline no distingue qué motor los generó.
+ */
+public interface PortScanEngine extends AutoCloseable {
+
+    /**
+     * Lanza el escaneo de una lista de puertos TCP de un host.
+     * @param host Dirección IPv4 del objetivo
+     * @param ports Puertos a comprobar
+     * @return Futuro con los servicios abiertos indexados por puerto
+     */
+    CompletableFuture<Map<Integer, Map<String, Object>>> scan(String host, int[] ports) throws IOException;
+
+    /**
+     * @return Nombre del motor, usado como "detection_method" del dispositivo
+     */
+    String getName();
+
+    @Override
+    void close();
+}
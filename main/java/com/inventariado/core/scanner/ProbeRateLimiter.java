@@ -0,0 +1,203 @@
+package com.inventariado.core.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limitador de ritmo de sondas compartido por todos los motores de escaneo.
+ *
+ * Aplica un presupuesto global de paquetes por segundo y otro por subred /24 de
+ * destino, ambos con ráfaga permitida. Cada cubo es un token bucket sin bloqueos
+ * implementado como GCRA: un único AtomicLong guarda el instante teórico de la
+ * siguiente sonda y se avanza con CAS. Cuando se delega en Nmap, el presupuesto
+ * se traduce a "--max-rate" repartido entre los procesos simultáneos.
+ */
+public class ProbeRateLimiter {
+    // Por encima de este número de subredes se purgan los cubos inactivos
+    private static final int MAX_SUBNET_BUCKETS = 65_536;
+
+    private final int globalPps;
+    private final int subnetPps;
+    private final Bucket global;
+    private final ConcurrentHashMap<Integer, Bucket> subnets = new ConcurrentHashMap<>();
+    private final int subnetBurst;
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder probesGranted = new LongAdder();
+
+    /**
+     * @param globalPps Sondas por segundo en total (0 = sin límite)
+     * @param subnetPps Sondas por segundo hacia cada /24 (0 = sin límite)
+     * @param burst Sondas que pueden enviarse de golpe tras un periodo inactivo
+     */
+    public ProbeRateLimiter(int globalPps, int subnetPps, int burst) {
+        if (globalPps < 0 || subnetPps < 0 || burst < 1) {
+            throw new IllegalArgumentException("Parámetros de ritmo inválidos");
+        }
+        this.globalPps = globalPps;
+        this.subnetPps = subnetPps;
+        this.subnetBurst = burst;
+        this.global = globalPps > 0 ? new Bucket(globalPps, burst) : null;
+    }
+
+    /**
+     * Reserva {@code probes} sondas hacia {@code targetIp} y espera lo necesario
+     * para respetar ambos presupuestos.
+     */
+    public void acquire(int targetIp, int probes) throws InterruptedException {
+        long wait = reserve(targetIp, probes);
+        if (wait > 0) {
+            throttledNanos.add(wait);
+            long deadline = System.nanoTime() + wait;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Intenta obtener una sonda sin esperar; pensado para bucles de selector.
+     * @return true si puede enviarse ya
+     */
+    public boolean tryAcquire(int targetIp) {
+        if (global != null && !global.tryTake()) {
+            return false;
+        }
+        Bucket subnet = subnetBucket(targetIp);
+        if (subnet != null && !subnet.tryTake()) {
+            // Devolver el token global para no penalizar a otras subredes
+            if (global != null) global.refund(1);
+            return false;
+        }
+        probesGranted.increment();
+        return true;
+    }
+
+    /**
+     * Reserva sondas sin bloquear.
+     * @return Nanosegundos que hay que esperar antes de enviarlas
+     */
+    public long reserve(int targetIp, int probes) {
+        long wait = 0;
+        if (global != null) {
+            wait = global.reserve(probes);
+        }
+        Bucket subnet = subnetBucket(targetIp);
+        if (subnet != null) {
+            wait = Math.max(wait, subnet.reserve(probes));
+        }
+        probesGranted.add(probes);
+        return wait;
+    }
+
+    /**
+     * Argumentos de Nmap equivalentes al presupuesto.
+     * @param concurrentProcesses Procesos Nmap que pueden correr a la vez
+     * @return "--max-rate N" o lista vacía si no hay límite
+     */
+    public List<String> toNmapArgs(int concurrentProcesses) {
+        List<String> args = new ArrayList<>(2);
+        int processes = Math.max(1, concurrentProcesses);
+        long rate = Long.MAX_VALUE;
+        if (globalPps > 0) {
+            rate = Math.max(1, globalPps / processes);
+        }
+        if (subnetPps > 0) {
+            // Todos los procesos simultáneos pueden estar escaneando la misma /24
+            rate = Math.min(rate, Math.max(1, subnetPps / processes));
+        }
+        if (rate != Long.MAX_VALUE) {
+            args.add("--max-rate");
+            args.add(String.valueOf(rate));
+        }
+        return args;
+    }
+
+    public int getGlobalPps() {
+        return globalPps;
+    }
+
+    public int getSubnetPps() {
+        return subnetPps;
+    }
+
+    public long getProbesGranted() {
+        return probesGranted.sum();
+    }
+
+    /**
+     * @return Tiempo total que las sondas han esperado por el limitador, en milisegundos
+     */
+    public long getThrottledMillis() {
+        return throttledNanos.sum() / 1_000_000L;
+    }
+
+    private Bucket subnetBucket(int targetIp) {
+        if (subnetPps <= 0) {
+            return null;
+        }
+        if (subnets.size() > MAX_SUBNET_BUCKETS) {
+            long now = System.nanoTime();
+            subnets.values().removeIf(bucket -> bucket.isIdle(now));
+        }
+        return subnets.computeIfAbsent(targetIp >>> 8, key -> new Bucket(subnetPps, subnetBurst));
+    }
+
+    /**
+     * Token bucket GCRA: {@code tat} avanza un intervalo por sonda y los tokens
+     * disponibles son (ahora - tat) / intervalo, con el máximo de la ráfaga.
+     */
+    private static final class Bucket {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final AtomicLong tat;
+
+        Bucket(int pps, int burst) {
+            this.intervalNanos = Math.max(1, 1_000_000_000L / pps);
+            this.burstNanos = intervalNanos * burst;
+            this.tat = new AtomicLong(System.nanoTime() - burstNanos);
+        }
+
+        long reserve(int probes) {
+            while (true) {
+                long now = System.nanoTime();
+                long current = tat.get();
+                long start = Math.max(current, now - burstNanos);
+                long next = start + probes * intervalNanos;
+                if (tat.compareAndSet(current, next)) {
+                    return Math.max(0, next - now);
+                }
+            }
+        }
+
+        boolean tryTake() {
+            while (true) {
+                long now = System.nanoTime();
+                long current = tat.get();
+                long start = Math.max(current, now - burstNanos);
+                long next = start + intervalNanos;
+                if (next - now > 0) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        void refund(int probes) {
+            tat.addAndGet(-probes * intervalNanos);
+        }
+
+        boolean isIdle(long now) {
+            return tat.get() < now - burstNanos;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Arranca los procesos externos del escaneo. La implementación por defecto
+ * lanza el ejecutable real; el modo de reproducción
+ * ({@link com.inventariado.core.replay.ReplayNmap}) la sustituye por salidas
+ * grabadas o sintéticas para medir el escáner sin red ni privilegios.
+ */
+public interface ProcessLauncher {
+
+    /** Lanza el comando con ProcessBuilder descartando su salida de error */
+    ProcessLauncher SYSTEM = command -> new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+
+    /**
+     * @param command Ejecutable y argumentos (p.ej. "nmap", "-sn", ...)
+     * @return Proceso en marcha; su salida estándar es la del comando
+     */
+    Process launch(List<String> command) throws IOException;
+}
@@ -0,0 +1,103 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Registro de los procesos externos (Nmap) lanzados por un escaneo, para poder
+ * terminarlos de inmediato junto con sus descendientes al cancelar. Si se le
+ * da un {@link ScanStats}, cuenta los procesos lanzados y los bytes de salida leídos.
+ */
+public class ProcessTracker {
+    private static final Logger logger = Logger.getLogger(ProcessTracker.class.getName());
+
+    private final Set<Process> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile ProcessLauncher launcher = ProcessLauncher.SYSTEM;
+    private final ScanStats stats;
+
+    public ProcessTracker() {
+        this(null);
+    }
+
+    public ProcessTracker(ScanStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Sustituye el lanzador de procesos (p.ej. por uno de reproducción).
+     * @param launcher Lanzador, o null para volver a {@link ProcessLauncher#SYSTEM}
+     */
+    public void setLauncher(ProcessLauncher launcher) {
+        this.launcher = launcher != null ? launcher : ProcessLauncher.SYSTEM;
+    }
+
+    /**
+     * Lanza un proceso descartando su salida de error y lo registra.
+     * Debe liberarse con {@link #release(Process)} al terminar.
+     */
+    public Process start(String... command) throws IOException {
+        Process process = launcher.launch(List.of(command));
+        running.add(process);
+        if (stats != null) {
+            stats.recordProcessStarted();
+        }
+        // Si se canceló mientras arrancaba, killAll() puede no haberlo visto
+        if (cancelled) {
+            running.remove(process);
+            destroyTree(process);
+            throw new IOException("Escaneo cancelado");
+        }
+        return process;
+    }
+
+    /**
+     * Salida estándar del proceso, contando los bytes leídos si hay estadísticas.
+     */
+    public InputStream output(Process process) {
+        InputStream in = process.getInputStream();
+        return stats != null ? stats.countBytes(in) : in;
+    }
+
+    /**
+     * Permite volver a lanzar procesos tras una cancelación (inicio de un nuevo escaneo).
+     */
+    public void reset() {
+        cancelled = false;
+    }
+
+    public void release(Process process) {
+        if (process != null) {
+            running.remove(process);
+        }
+    }
+
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Termina de forma forzosa todos los procesos registrados y sus descendientes
+     * y rechaza nuevos arranques hasta {@link #reset()}.
+     */
+    public void killAll() {
+        cancelled = true;
+        for (Process process : running) {
+            destroyTree(process);
+        }
+        running.clear();
+    }
+
+    public static void destroyTree(Process process) {
+        try {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+        } catch (UnsupportedOperationException | SecurityException e) {
+            logger.warning("No se pudieron terminar los procesos hijos: " + e.getMessage());
+        }
+        process.destroyForcibly();
+    }
+}
@@ -0,0 +1,419 @@
+package com.inventariado.core.scanner;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Diario de solo-añadir de un escaneo, para poder reanudarlo tras una caída o
+ * una parada manual.
+ *
+ * Cada línea es un registro JSON: la cabecera con los objetivos del escaneo,
+ * los dispositivos completados, los bloques de hosts descartados por inactivos y
+ * la marca de fin. Los registros se encolan sin bloquear y un hilo escritor los
+ * vuelca por lotes (con fsync) cada {@value #FLUSH_INTERVAL_MILLIS} ms o cada
+ * {@value #MAX_BATCH} registros. Una última línea truncada por una caída se ignora
+ * al leer y se corta del fichero al reanudar, para que el siguiente registro no
+ * quede pegado a ella.
+ */
+public class ScanJournal implements Closeable {
+    private static final Logger logger = Logger.getLogger(ScanJournal.class.getName());
+
+    /** Directorio por defecto, junto a network_history.db */
+    public static final String DEFAULT_DIRECTORY = "scan_journal";
+
+    private static final String EXTENSION = ".journal";
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+    private static final int MAX_BATCH = 512;
+    private static final Pattern SCAN_ID = Pattern.compile("[0-9]{8}-[0-9]{6}-[0-9a-f]{4}");
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final Gson gson = new GsonBuilder()
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .create();
+    private static final java.lang.reflect.Type RECORD_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    private final String scanId;
+    private final Path file;
+    private final String networkRange;
+    private final String excludeRange;
+    private final String intensity;
+    private final String started;
+    private final List<Map<String, Object>> restoredDevices;
+    private final HostRangeSet restoredDone;
+    private final boolean completed;
+
+    private final LinkedBlockingQueue<String> pending = new LinkedBlockingQueue<>();
+    private FileOutputStream output;
+    private Writer writer;
+    private Thread writerThread;
+    private volatile boolean closed;
+
+    private ScanJournal(String scanId, Path file, String networkRange, String excludeRange, String intensity,
+                        String started, List<Map<String, Object>> restoredDevices, HostRangeSet restoredDone,
+                        boolean completed) {
+        this.scanId = scanId;
+        this.file = file;
+        this.networkRange = networkRange;
+        this.excludeRange = excludeRange;
+        this.intensity = intensity;
+        this.started = started;
+        this.restoredDevices = restoredDevices;
+        this.restoredDone = restoredDone;
+        this.completed = completed;
+    }
+
+    /**
+     * Crea el diario de un escaneo nuevo y escribe su cabecera.
+     */
+    public static ScanJournal create(Path directory, String networkRange, String excludeRange, String intensity)
+            throws IOException {
+        Files.createDirectories(directory);
+        LocalDateTime now = LocalDateTime.now();
+        String scanId = now.format(ID_FORMAT) + "-"
+                + String.format("%04x", ThreadLocalRandom.current().nextInt(0x10000));
+        ScanJournal journal = new ScanJournal(scanId, directory.resolve(scanId + EXTENSION),
+                networkRange, excludeRange, intensity, now.format(DateTimeFormatter.ISO_DATE_TIME),
+                Collections.emptyList(), HostRangeSet.empty(), false);
+
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("type", "scan");
+        header.put("scan_id", scanId);
+        header.put("network_range", networkRange);
+        header.put("exclude_range", excludeRange);
+        header.put("intensity", intensity);
+        header.put("started", journal.started);
+        journal.openWriter();
+        journal.enqueue(header);
+        return journal;
+    }
+
+    /**
+     * Abre el diario de un escaneo anterior para reanudarlo: recupera los
+     * dispositivos y hosts ya completados y sigue añadiendo al mismo fichero.
+     */
+    public static ScanJournal open(Path directory, String scanId) throws IOException {
+        if (scanId == null || !SCAN_ID.matcher(scanId).matches()) {
+            throw new IllegalArgumentException("Identificador de escaneo inválido: " + scanId);
+        }
+        Path file = directory.resolve(scanId + EXTENSION);
+        if (!Files.exists(file)) {
+            throw new FileNotFoundException("No existe el diario del escaneo " + scanId);
+        }
+
+        Replay replay = replay(file);
+        if (replay.header == null) {
+            throw new IOException("Diario sin cabecera: " + file);
+        }
+        ScanJournal journal = new ScanJournal(scanId, file,
+                (String) replay.header.get("network_range"),
+                (String) replay.header.get("exclude_range"),
+                (String) replay.header.get("intensity"),
+                (String) replay.header.get("started"),
+                new ArrayList<>(replay.devices.values()),
+                HostRangeSet.of(replay.done, replay.doneCount),
+                replay.completed);
+        if (!replay.completed) {
+            truncateTornLine(file);
+            journal.openWriter();
+        }
+        return journal;
+    }
+
+    // Deja el fichero terminado justo después del último '\n'
+    private static void truncateTornLine(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long end = channel.size();
+            while (end > 0) {
+                int length = (int) Math.min(buffer.capacity(), end);
+                long start = end - length;
+                buffer.clear().limit(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) break;
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        long keep = start + i + 1;
+                        if (keep < channel.size()) {
+                            logger.warning("Diario " + file.getFileName() + ": se descarta una línea incompleta de "
+                                    + (channel.size() - keep) + " bytes");
+                            channel.truncate(keep);
+                        }
+                        return;
+                    }
+                }
+                end = start;
+            }
+            channel.truncate(0);
+        }
+    }
+
+    /**
+     * Resume los escaneos con diario en el directorio.
+     * @return Lista con scan_id, network_range, started, completed y hosts_done
+     */
+    public static List<Map<String, Object>> listScans(Path directory) {
+        List<Map<String, Object>> scans = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return scans;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : stream) {
+                Replay replay = replay(file);
+                if (replay.header == null) continue;
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("scan_id", replay.header.get("scan_id"));
+                summary.put("network_range", replay.header.get("network_range"));
+                summary.put("started", replay.header.get("started"));
+                summary.put("completed", replay.completed);
+                summary.put("hosts_done", replay.doneCount);
+                summary.put("devices_found", replay.devices.size());
+                scans.add(summary);
+            }
+        } catch (IOException e) {
+            logger.warning("No se pudieron listar los diarios de escaneo: " + e.getMessage());
+        }
+        scans.sort(Comparator.comparing(s -> String.valueOf(s.get("scan_id"))));
+        return scans;
+    }
+
+    public String getScanId() {
+        return scanId;
+    }
+
+    public String getNetworkRange() {
+        return networkRange;
+    }
+
+    public String getExcludeRange() {
+        return excludeRange;
+    }
+
+    public String getIntensity() {
+        return intensity;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return Dispositivos ya publicados en ejecuciones anteriores
+     */
+    public List<Map<String, Object>> getRestoredDevices() {
+        return restoredDevices;
+    }
+
+    /**
+     * @return Hosts terminados (escaneados o descartados por inactivos) en ejecuciones anteriores
+     */
+    public HostRangeSet getRestoredDone() {
+        return restoredDone;
+    }
+
+    /**
+     * Registra un dispositivo completado. No bloquea.
+     */
+    public void recordDevice(Map<String, Object> device) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "host");
+        record.put("device", device);
+        enqueue(record);
+    }
+
+    /**
+     * Registra hosts que el descubrimiento descartó por no responder. No bloquea.
+     */
+    public void recordInactive(List<String> hosts) {
+        if (hosts.isEmpty()) return;
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "inactive");
+        record.put("hosts", new ArrayList<>(hosts));
+        enqueue(record);
+    }
+
+    /**
+     * Marca el escaneo como terminado; ya no podrá reanudarse.
+     */
+    public void markCompleted() {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", "end");
+        record.put("finished", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+        enqueue(record);
+    }
+
+    /**
+     * Vuelca lo pendiente y cierra el fichero.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        Thread thread = writerThread;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void enqueue(Map<String, Object> record) {
+        if (closed || writer == null) return;
+        // La serialización ocurre en el hilo que produce el dato: el mapa puede cambiar después
+        pending.add(gson.toJson(record));
+    }
+
+    private void openWriter() throws IOException {
+        this.output = new FileOutputStream(file.toFile(), true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        this.writerThread = new Thread(this::writeLoop, "scan-journal-" + scanId);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    private void writeLoop() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (!closed || !pending.isEmpty()) {
+                String first = pending.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warning("Error al cerrar el diario " + scanId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeBatch(List<String> batch) {
+        try {
+            for (String line : batch) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            output.getChannel().force(false);
+        } catch (IOException e) {
+            logger.warning("Error al escribir el diario " + scanId + ": " + e.getMessage());
+        }
+    }
+
+    // Estado reconstruido a partir de las líneas del diario
+    private static final class Replay {
+        Map<String, Object> header;
+        final Map<String, Map<String, Object>> devices = new LinkedHashMap<>();
+        int[] done = new int[256];
+        int doneCount;
+        boolean completed;
+
+        void markDone(String ip) {
+            int address;
+            try {
+                address = HostRangeSet.parseIp(ip);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            if (doneCount == done.length) {
+                done = Arrays.copyOf(done, doneCount * 2);
+            }
+            done[doneCount++] = address;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Replay replay(Path file) throws IOException {
+        Replay replay = new Replay();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                Map<String, Object> record;
+                try {
+                    record = gson.fromJson(line, RECORD_TYPE);
+                } catch (JsonParseException e) {
+                    // Línea a medio escribir al caerse el proceso
+                    continue;
+                }
+                if (record == null) continue;
+
+                switch (String.valueOf(record.get("type"))) {
+                    case "scan" -> replay.header = record;
+                    case "host" -> {
+                        Map<String, Object> device = (Map<String, Object>) record.get("device");
+                        if (device != null && device.get("ip") instanceof String ip) {
+                            replay.devices.put(ip, restoreTypes(device));
+                            replay.markDone(ip);
+                        }
+                    }
+                    case "inactive" -> {
+                        for (Object ip : (List<Object>) record.getOrDefault("hosts", List.of())) {
+                            replay.markDone(String.valueOf(ip));
+                        }
+                    }
+                    case "end" -> replay.completed = true;
+                    default -> { }
+                }
+            }
+        }
+        return replay;
+    }
+
+    // JSON no conserva las claves enteras de "services" ni distingue int de long
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> restoreTypes(Map<String, Object> device) {
+        device.replaceAll((key, value) -> narrowNumbers(value));
+        if (device.get("services") instanceof Map<?, ?> services) {
+            Map<Integer, Object> typed = new HashMap<>();
+            for (Map.Entry<?, ?> entry : services.entrySet()) {
+                try {
+                    typed.put(Integer.parseInt(String.valueOf(entry.getKey())), entry.getValue());
+                } catch (NumberFormatException e) {
+                    // Entrada no numérica: se descarta
+                }
+            }
+            device.put("services", typed);
+        }
+        return device;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object narrowNumbers(Object value) {
+        if (value instanceof Long l && l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+            return l.intValue();
+        }
+        if (value instanceof Map<?, ?> map) {
+            ((Map<Object, Object>) map).replaceAll((key, nested) -> narrowNumbers(nested));
+        } else if (value instanceof List<?> list) {
+            ((List<Object>) list).replaceAll(ScanJournal::narrowNumbers);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,260 @@
+package com.inventariado.core.scanner;
+
+import java.util.*;
+
+/**
+ * Perfil de escaneo profundo: puertos, tipo de sonda, detección de versiones y
+ * SO, scripts NSE y timeouts. Los perfiles se definen en scan_profiles.json y
+ * se traducen a argumentos de Nmap o, con un motor propio, a la lista de puertos.
+ */
+public class ScanProfile {
+    // Opciones que chocarían con la salida XML por stdout o leerían ficheros arbitrarios
+    private static final List<String> FORBIDDEN_PREFIXES = List.of("-o", "-i", "--resume", "--stylesheet", "--datadir");
+
+    private String name;
+    private String description;
+    private String ports;
+    private int topPorts;
+    private String scanType;
+    private boolean serviceDetection;
+    private int versionIntensity;
+    private boolean osDetection;
+    private boolean aggressive;
+    private List<String> scripts;
+    private String hostTimeout;
+    private String timing;
+    private List<String> extraArgs;
+    private transient int[] enginePorts;
+
+    // Para Gson
+    private ScanProfile() {
+    }
+
+    /**
+     * Perfil personalizado a partir de argumentos de Nmap.
+     * @param name Nombre del perfil
+     * @param ports Especificación de puertos de Nmap (p.ej. "1-1024,3389")
+     * @param nmapArgs Argumentos adicionales (tipo de sonda, scripts, timeouts...)
+     */
+    public static ScanProfile custom(String name, String ports, List<String> nmapArgs) {
+        ScanProfile profile = new ScanProfile();
+        profile.name = name;
+        profile.description = "Perfil personalizado";
+        profile.ports = ports;
+        profile.extraArgs = new ArrayList<>(nmapArgs);
+        profile.validate();
+        return profile;
+    }
+
+    /**
+     * Perfil equivalente al comando fijo anterior, por si no hay fichero de perfiles.
+     */
+    static ScanProfile legacyFull() {
+        ScanProfile profile = new ScanProfile();
+        profile.name = "full";
+        profile.description = "Todos los puertos TCP con versiones, SO y scripts";
+        profile.ports = "1-65535";
+        profile.scanType = "-sS";
+        profile.serviceDetection = true;
+        profile.versionIntensity = 7;
+        profile.osDetection = true;
+        profile.aggressive = true;
+        profile.scripts = List.of("banner", "http-title", "ssl-cert", "ssh-hostkey", "snmp-info", "smb-os-discovery");
+        profile.hostTimeout = "60s";
+        return profile;
+    }
+
+    /**
+     * Comprueba que el perfil está completo y no usa opciones prohibidas.
+     * @throws IllegalArgumentException si no es válido
+     */
+    void validate() {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Perfil de escaneo sin nombre");
+        }
+        if ((ports == null || ports.isBlank()) && topPorts <= 0) {
+            throw new IllegalArgumentException("El perfil " + name + " no define puertos");
+        }
+        if (ports != null && !ports.isBlank()) {
+            parsePorts(ports);
+        }
+        for (String arg : extraArgs()) {
+            for (String prefix : FORBIDDEN_PREFIXES) {
+                if (arg.startsWith(prefix)) {
+                    throw new IllegalArgumentException("Opción no permitida en el perfil " + name + ": " + arg);
+                }
+            }
+        }
+    }
+
+    /**
+     * Argumentos de Nmap del perfil, sin objetivos ni formato de salida.
+     * @param defaultTiming Plantilla de temporización si el perfil no fija una (p.ej. "-T4")
+     */
+    public List<String> toNmapArgs(String defaultTiming) {
+        return toNmapArgs(defaultTiming, true);
+    }
+
+    /**
+     * @param versionDetection false para dejar la detección de versiones a una
+     *                         segunda pasada ({@link #toVersionProbeArgs}); "-A"
+     *                         se sustituye por sus otras partes
+     */
+    public List<String> toNmapArgs(String defaultTiming, boolean versionDetection) {
+        List<String> args = new ArrayList<>();
+        if (topPorts > 0) {
+            args.add("--top-ports");
+            args.add(String.valueOf(topPorts));
+        } else {
+            args.add("-p");
+            args.add(ports);
+        }
+        if (scanType != null && !scanType.isBlank()) {
+            args.add(scanType);
+        }
+        if (serviceDetection && versionDetection) {
+            args.add("-sV");
+        }
+        if (osDetection) {
+            args.add("-O");
+            args.add("--osscan-guess");
+            args.add("--max-os-tries");
+            args.add("2");
+        }
+        if (aggressive && versionDetection) {
+            args.add("-A");
+        } else if (aggressive) {
+            // -A equivale a -O -sV -sC --traceroute
+            if (!osDetection) {
+                args.add("-O");
+            }
+            args.add("-sC");
+            args.add("--traceroute");
+        }
+        addTiming(args, defaultTiming);
+        if (serviceDetection && versionDetection && versionIntensity > 0) {
+            args.add("--version-intensity");
+            args.add(String.valueOf(versionIntensity));
+        }
+        if (scripts != null && !scripts.isEmpty()) {
+            args.add("--script=" + String.join(",", scripts));
+        }
+        args.addAll(extraArgs());
+        return args;
+    }
+
+    /**
+     * Argumentos de la pasada de detección de versiones sobre hosts ya
+     * escaneados, sin puertos, objetivos ni formato de salida.
+     */
+    public List<String> toVersionProbeArgs(String defaultTiming) {
+        List<String> args = new ArrayList<>();
+        args.add("-sV");
+        args.add("-Pn");
+        addTiming(args, defaultTiming);
+        if (versionIntensity > 0) {
+            args.add("--version-intensity");
+            args.add(String.valueOf(versionIntensity));
+        }
+        return args;
+    }
+
+    /**
+     * La caché de versiones solo cubre servicios TCP: los perfiles que también
+     * escanean UDP mantienen "-sV" en la pasada principal.
+     */
+    public boolean supportsVersionCache() {
+        if (!serviceDetection && !aggressive) {
+            return false;
+        }
+        if (scanType != null && scanType.contains("U")) {
+            return false;
+        }
+        for (String arg : extraArgs()) {
+            if (arg.startsWith("-sU") || arg.equals("-sV") || arg.startsWith("--version")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addTiming(List<String> args, String defaultTiming) {
+        String effectiveTiming = timing != null && !timing.isBlank() ? timing : defaultTiming;
+        if (effectiveTiming != null && !effectiveTiming.isBlank()) {
+            args.add(effectiveTiming);
+        }
+        if (hostTimeout != null && !hostTimeout.isBlank()) {
+            args.add("--host-timeout");
+            args.add(hostTimeout);
+        }
+    }
+
+    /**
+     * Puertos a comprobar con un motor propio. Para perfiles "top N" se usa una
+     * aproximación: los puertos habituales de {@link HostFingerprinter} y, si N
+     * pasa de 100, además el rango 1-1024.
+     */
+    public int[] enginePorts() {
+        int[] cached = enginePorts;
+        if (cached != null) {
+            return cached;
+        }
+        if (topPorts <= 0) {
+            cached = parsePorts(ports);
+        } else {
+            SortedSet<Integer> set = new TreeSet<>();
+            for (int port : HostFingerprinter.QUICK_PORTS) set.add(port);
+            if (topPorts > 100) {
+                for (int port = 1; port <= 1024; port++) set.add(port);
+            }
+            cached = set.stream().mapToInt(Integer::intValue).toArray();
+        }
+        enginePorts = cached;
+        return cached;
+    }
+
+    /**
+     * Interpreta una lista de puertos TCP al estilo de Nmap ("22,80,1000-2000").
+     */
+    static int[] parsePorts(String spec) {
+        BitSet set = new BitSet(65536);
+        for (String token : spec.split(",")) {
+            String t = token.trim();
+            if (t.startsWith("T:")) t = t.substring(2);
+            if (t.isEmpty()) continue;
+            try {
+                int dash = t.indexOf('-');
+                int lo = dash >= 0 ? Integer.parseInt(t.substring(0, dash)) : Integer.parseInt(t);
+                int hi = dash >= 0 ? Integer.parseInt(t.substring(dash + 1)) : lo;
+                if (lo < 1 || hi > 65535 || lo > hi) {
+                    throw new IllegalArgumentException("Rango de puertos inválido: " + t);
+                }
+                set.set(lo, hi + 1);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Puerto inválido: " + t);
+            }
+        }
+        return set.stream().toArray();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getPorts() {
+        return topPorts > 0 ? "top " + topPorts : ports;
+    }
+
+    private List<String> extraArgs() {
+        return extraArgs != null ? extraArgs : Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,208 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * Catálogo de perfiles de escaneo y su asignación por subred.
+ *
+ * Los perfiles se leen de "scan_profiles.json" en el directorio de trabajo si
+ * existe y, si no, del que acompaña al código en core/config. Cada host usa el
+ * perfil de la primera subred asignada que lo contiene, o el perfil por defecto.
+ */
+public class ScanProfiles {
+    private static final Logger logger = Logger.getLogger(ScanProfiles.class.getName());
+
+    public static final String PROFILES_FILE = "scan_profiles.json";
+    private static final String PROFILES_RESOURCE = "/com/inventariado/core/config/" + PROFILES_FILE;
+
+    private static final Gson gson = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
+
+    private final Map<String, ScanProfile> profiles = new ConcurrentHashMap<>();
+    private final List<Assignment> assignments = new CopyOnWriteArrayList<>();
+    private volatile String defaultProfile;
+
+    private record Assignment(String range, HostRangeSet hosts, String profile) {
+    }
+
+    // Estructura de scan_profiles.json
+    private static final class ProfilesFile {
+        String defaultProfile;
+        List<ScanProfile> profiles;
+        List<Map<String, String>> subnetAssignments;
+    }
+
+    private ScanProfiles() {
+    }
+
+    /**
+     * Carga los perfiles del fichero del directorio de trabajo, del incluido con
+     * la aplicación o, en último caso, solo el perfil "full" equivalente al
+     * comando fijo anterior.
+     */
+    public static ScanProfiles loadDefault() {
+        Path local = Paths.get(PROFILES_FILE);
+        if (Files.isRegularFile(local)) {
+            try {
+                return load(local);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warning("No se pudo leer " + local + ", se usan los perfiles incluidos: " + e.getMessage());
+            }
+        }
+        try (InputStream in = ScanProfiles.class.getResourceAsStream(PROFILES_RESOURCE)) {
+            if (in != null) {
+                return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warning("Perfiles de escaneo incluidos no válidos: " + e.getMessage());
+        }
+
+        ScanProfiles fallback = new ScanProfiles();
+        fallback.register(ScanProfile.legacyFull());
+        fallback.defaultProfile = "full";
+        return fallback;
+    }
+
+    /**
+     * Carga los perfiles desde un fichero JSON.
+     * @throws IllegalArgumentException si algún perfil o asignación no es válido
+     */
+    public static ScanProfiles load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    private static ScanProfiles parse(Reader reader) {
+        ProfilesFile data;
+        try {
+            data = gson.fromJson(reader, ProfilesFile.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("JSON de perfiles inválido: " + e.getMessage(), e);
+        }
+        if (data == null || data.profiles == null || data.profiles.isEmpty()) {
+            throw new IllegalArgumentException("El fichero no define perfiles");
+        }
+
+        ScanProfiles result = new ScanProfiles();
+        for (ScanProfile profile : data.profiles) {
+            profile.validate();
+            result.register(profile);
+        }
+        result.setDefaultProfile(data.defaultProfile != null ? data.defaultProfile : data.profiles.get(0).getName());
+        if (data.subnetAssignments != null) {
+            for (Map<String, String> assignment : data.subnetAssignments) {
+                result.assign(assignment.get("range"), assignment.get("profile"));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Añade o sustituye un perfil.
+     */
+    public void register(ScanProfile profile) {
+        profile.validate();
+        profiles.put(profile.getName(), profile);
+    }
+
+    /**
+     * Asigna un perfil a una subred; las asignaciones se evalúan en orden.
+     * @param range CIDR, rango o lista de direcciones
+     * @param profileName Perfil registrado
+     */
+    public void assign(String range, String profileName) {
+        requireProfile(profileName);
+        assignments.add(new Assignment(range, HostRangeSet.parse(range), profileName));
+    }
+
+    public void clearAssignments() {
+        assignments.clear();
+    }
+
+    public void setDefaultProfile(String profileName) {
+        requireProfile(profileName);
+        this.defaultProfile = profileName;
+    }
+
+    public ScanProfile getDefaultProfile() {
+        return profiles.get(defaultProfile);
+    }
+
+    public ScanProfile get(String profileName) {
+        return profiles.get(profileName);
+    }
+
+    /**
+     * @return Nombres de los perfiles disponibles, ordenados
+     */
+    public List<String> getProfileNames() {
+        List<String> names = new ArrayList<>(profiles.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * @return Asignaciones subred -> perfil en orden de evaluación
+     */
+    public List<Map<String, String>> getAssignments() {
+        List<Map<String, String>> result = new ArrayList<>();
+        for (Assignment assignment : assignments) {
+            result.add(Map.of("range", assignment.range(), "profile", assignment.profile()));
+        }
+        return result;
+    }
+
+    /**
+     * Perfil que corresponde a un host según las asignaciones por subred.
+     */
+    public ScanProfile profileFor(String host) {
+        if (!assignments.isEmpty()) {
+            try {
+                int address = HostRangeSet.parseIp(host);
+                for (Assignment assignment : assignments) {
+                    if (assignment.hosts().contains(address)) {
+                        return profiles.get(assignment.profile());
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // No es una IPv4 literal: perfil por defecto
+            }
+        }
+        return getDefaultProfile();
+    }
+
+    /**
+     * Agrupa los hosts de un lote por perfil, conservando el orden.
+     */
+    public Map<ScanProfile, List<String>> partition(List<String> hosts) {
+        Map<ScanProfile, List<String>> groups = new LinkedHashMap<>();
+        for (String host : hosts) {
+            groups.computeIfAbsent(profileFor(host), p -> new ArrayList<>()).add(host);
+        }
+        return groups;
+    }
+
+    private void requireProfile(String profileName) {
+        if (profileName == null || !profiles.containsKey(profileName)) {
+            throw new IllegalArgumentException("Perfil de escaneo desconocido: " + profileName);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.inventariado.core.scanner;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Progreso y estadísticas de un escaneo, sin bloqueos.
+ *
+ * Los workers solo incrementan contadores {@link LongAdder}, que no compiten
+ * entre hilos. Las lecturas se hacen con {@link #snapshot()} (pull) o con
+ * listeners que reciben una instantánea a intervalos fijos mientras hay un
+ * escaneo en marcha, más una final al terminar (push). El ritmo es una media
+ * móvil exponencial de hosts terminados por segundo (constante de 10 s) y la
+ * estimación del tiempo restante se calcula a partir de ella.
+ */
+public class ScanStats {
+    private static final Logger logger = Logger.getLogger(ScanStats.class.getName());
+
+    private static final double RATE_TAU_SECONDS = 10.0;
+    private static final long MIN_RATE_SAMPLE_NANOS = 200_000_000L;
+
+    private final AtomicLong totalHosts = new AtomicLong();
+    private final LongAdder hostsQueued = new LongAdder();
+    private final LongAdder hostsInFlight = new LongAdder();
+    private final LongAdder hostsDone = new LongAdder();
+    private final LongAdder hostsFailed = new LongAdder();
+    private final LongAdder hostsTimedOut = new LongAdder();
+    private final LongAdder devicesFound = new LongAdder();
+    private final LongAdder portsFound = new LongAdder();
+    private final LongAdder nmapProcesses = new LongAdder();
+    private final LongAdder bytesParsed = new LongAdder();
+    private final AtomicReference<Rate> rate = new AtomicReference<>(new Rate(System.nanoTime(), 0, 0, 0));
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile boolean running;
+
+    private final List<Subscription> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Receptor de instantáneas periódicas. Se llama desde un hilo propio de
+     * ScanStats: quien actualice una interfaz debe pasar a su hilo.
+     */
+    public interface Listener {
+        void onStats(Snapshot snapshot);
+    }
+
+    /**
+     * Estado del escaneo en un instante.
+     * @param hostsQueued    Hosts activos encolados para escaneo profundo (acumulado)
+     * @param hostsInFlight  Hosts en escaneo profundo o en las etapas de nombres/SNMP
+     * @param hostsDone      Hosts terminados, incluidos los inactivos descartados
+     * @param ratePerSecond  Media móvil de hosts terminados por segundo
+     * @param etaSeconds     Tiempo restante estimado, o -1 si aún no se puede estimar
+     */
+    public record Snapshot(boolean running, long totalHosts, long hostsQueued, long hostsInFlight, long hostsDone,
+                           long hostsFailed, long hostsTimedOut, long devicesFound, long portsFound,
+                           long nmapProcesses, long bytesParsed, double elapsedSeconds, double ratePerSecond,
+                           double etaSeconds) {
+
+        /**
+         * @return Porcentaje de hosts terminados (0-100)
+         */
+        public double progress() {
+            return totalHosts > 0 ? Math.min(100.0, hostsDone * 100.0 / totalHosts) : 0.0;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("running", running);
+            map.put("progress", progress());
+            map.put("total_hosts", totalHosts);
+            map.put("hosts_queued", hostsQueued);
+            map.put("hosts_in_flight", hostsInFlight);
+            map.put("hosts_done", hostsDone);
+            map.put("hosts_failed", hostsFailed);
+            map.put("hosts_timed_out", hostsTimedOut);
+            map.put("devices_found", devicesFound);
+            map.put("ports_found", portsFound);
+            map.put("nmap_processes", nmapProcesses);
+            map.put("bytes_parsed", bytesParsed);
+            map.put("elapsed_seconds", elapsedSeconds);
+            map.put("rate_hosts_per_second", ratePerSecond);
+            map.put("eta_seconds", etaSeconds);
+            return map;
+        }
+    }
+
+    private record Rate(long nanos, long done, double perSecond, int samples) {
+    }
+
+    private static final class Subscription {
+        final Listener listener;
+        final long intervalMillis;
+        volatile ScheduledFuture<?> task;
+
+        Subscription(Listener listener, long intervalMillis) {
+            this.listener = listener;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    public void start(long total) {
+        start(total, 0);
+    }
+
+    /**
+     * Pone a cero los contadores y empieza a medir un escaneo nuevo.
+     * @param total Hosts del escaneo
+     * @param alreadyDone Hosts terminados antes de empezar (al reanudar), que no cuentan para el ritmo
+     */
+    public void start(long total, long alreadyDone) {
+        reset();
+        totalHosts.set(total);
+        hostsDone.add(alreadyDone);
+        startNanos = System.nanoTime();
+        rate.set(new Rate(startNanos, alreadyDone, 0, 0));
+        running = true;
+        for (Subscription subscription : listeners) {
+            schedule(subscription);
+        }
+    }
+
+    /**
+     * Marca el fin del escaneo: detiene los envíos periódicos, entrega a cada
+     * listener la instantánea final y cierra el hilo de envío. Los listeners
+     * siguen registrados para el próximo {@link #start(long)}, que crea otro.
+     */
+    public void finish() {
+        if (!running) return;
+        endNanos = System.nanoTime();
+        // Última muestra del ritmo antes de congelarlo
+        updateRate(endNanos, hostsDone.sum());
+        running = false;
+        Snapshot last = snapshot();
+        for (Subscription subscription : listeners) {
+            cancel(subscription);
+            deliver(subscription.listener, last);
+        }
+        stopScheduler();
+    }
+
+    public void reset() {
+        totalHosts.set(0);
+        hostsQueued.reset();
+        hostsInFlight.reset();
+        hostsDone.reset();
+        hostsFailed.reset();
+        hostsTimedOut.reset();
+        devicesFound.reset();
+        portsFound.reset();
+        nmapProcesses.reset();
+        bytesParsed.reset();
+        endNanos = 0;
+    }
+
+    public void recordQueued() {
+        hostsQueued.increment();
+    }
+
+    /**
+     * Hosts que empiezan su escaneo profundo.
+     */
+    public void recordStarted(int hosts) {
+        hostsInFlight.add(hosts);
+    }
+
+    /**
+     * Hosts que terminan sin pasar por el escaneo profundo (inactivos en el descubrimiento).
+     */
+    public void recordSkipped(long hosts) {
+        hostsDone.add(hosts);
+    }
+
+    /**
+     * Host que termina su escaneo profundo y se publica.
+     * @param openPorts Puertos abiertos encontrados
+     */
+    public void recordDevice(int openPorts, boolean timedOut) {
+        hostsInFlight.decrement();
+        hostsDone.increment();
+        devicesFound.increment();
+        portsFound.add(openPorts);
+        if (timedOut) {
+            hostsTimedOut.increment();
+        }
+    }
+
+    /**
+     * Host cuyo escaneo profundo falló y no produce dispositivo.
+     */
+    public void recordFailed() {
+        hostsInFlight.decrement();
+        hostsDone.increment();
+        hostsFailed.increment();
+    }
+
+    public void recordProcessStarted() {
+        nmapProcesses.increment();
+    }
+
+    /**
+     * Envuelve la salida de un proceso para contar los bytes que se leen de ella.
+     */
+    public InputStream countBytes(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytesParsed.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) bytesParsed.add(n);
+                return n;
+            }
+        };
+    }
+
+    /**
+     * @return Porcentaje de hosts terminados (0-100), sin calcular el resto de la instantánea
+     */
+    public double getProgress() {
+        long total = totalHosts.get();
+        return total > 0 ? Math.min(100.0, hostsDone.sum() * 100.0 / total) : 0.0;
+    }
+
+    public Snapshot snapshot() {
+        long now = System.nanoTime();
+        long done = hostsDone.sum();
+        long total = totalHosts.get();
+        double perSecond = updateRate(now, done);
+        long end = running ? now : (endNanos != 0 ? endNanos : now);
+        double elapsed = startNanos != 0 ? (end - startNanos) / 1_000_000_000.0 : 0.0;
+        double eta;
+        if (!running && startNanos != 0) {
+            eta = 0;
+        } else if (perSecond > 0) {
+            eta = Math.max(0, total - done) / perSecond;
+        } else {
+            eta = -1;
+        }
+        return new Snapshot(running, total, hostsQueued.sum(), Math.max(0, hostsInFlight.sum()), done,
+                hostsFailed.sum(), hostsTimedOut.sum(), devicesFound.sum(), portsFound.sum(),
+                nmapProcesses.sum(), bytesParsed.sum(), elapsed, perSecond, eta);
+    }
+
+    // Media móvil exponencial con peso según el tiempo transcurrido; sin bloqueos
+    private double updateRate(long now, long done) {
+        Rate previous = rate.get();
+        long elapsed = now - previous.nanos();
+        if (elapsed < MIN_RATE_SAMPLE_NANOS || !running) {
+            return previous.perSecond();
+        }
+        double seconds = elapsed / 1_000_000_000.0;
+        double instant = (done - previous.done()) / seconds;
+        double perSecond = previous.samples() == 0
+                ? instant
+                : previous.perSecond() + (1 - Math.exp(-seconds / RATE_TAU_SECONDS)) * (instant - previous.perSecond());
+        // Si otro hilo actualizó a la vez, su muestra vale igual
+        rate.compareAndSet(previous, new Rate(now, done, perSecond, previous.samples() + 1));
+        return perSecond;
+    }
+
+    /**
+     * Registra un listener que recibe una instantánea cada {@code interval}
+     * mientras haya un escaneo en marcha, y otra al terminar.
+     */
+    public void addListener(Listener listener, Duration interval) {
+        long millis = Math.max(10, interval.toMillis());
+        Subscription subscription = new Subscription(listener, millis);
+        listeners.add(subscription);
+        if (running) {
+            schedule(subscription);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        for (Subscription subscription : listeners) {
+            if (subscription.listener == listener) {
+                listeners.remove(subscription);
+                cancel(subscription);
+            }
+        }
+    }
+
+    private synchronized void schedule(Subscription subscription) {
+        cancel(subscription);
+        // Un addListener que llega mientras finish() cierra el hilo no debe crear otro
+        if (!running) return;
+        subscription.task = scheduler().scheduleAtFixedRate(
+                () -> deliver(subscription.listener, snapshot()),
+                0, subscription.intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void cancel(Subscription subscription) {
+        ScheduledFuture<?> task = subscription.task;
+        if (task != null) {
+            task.cancel(false);
+            subscription.task = null;
+        }
+    }
+
+    private static void deliver(Listener listener, Snapshot snapshot) {
+        try {
+            listener.onStats(snapshot);
+        } catch (RuntimeException e) {
+            logger.warning("Error en listener de estadísticas: " + e.getMessage());
+        }
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "scan-stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+        return scheduler;
+    }
+
+    private synchronized void stopScheduler() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
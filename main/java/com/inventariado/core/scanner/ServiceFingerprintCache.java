@@ -0,0 +1,236 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Caché LRU de detección de versiones: (puerto, protocolo, hash del banner) -&gt;
+ * producto, versión y CPE que resolvió "nmap -sV".
+ *
+ * Un parque de equipos idénticos devuelve el mismo banner en el mismo puerto,
+ * así que basta con sondear versiones una vez por banner distinto. Solo se
+ * guardan servicios con banner propio (sin banner no hay nada que distinga dos
+ * equipos) y cuyo resultado incluye producto o versión. Las entradas caducan
+ * tras {@code maxAge} para que una actualización que no cambie el banner se
+ * acabe detectando. La caché se guarda en disco entre ejecuciones.
+ */
+public class ServiceFingerprintCache {
+    private static final Logger logger = Logger.getLogger(ServiceFingerprintCache.class.getName());
+
+    public static final String DEFAULT_FILE = "service_fingerprints.json";
+    public static final int DEFAULT_CAPACITY = 16_384;
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(30);
+
+    // Campos de un servicio que dependen solo del software que responde
+    private static final List<String> CACHED_FIELDS = List.of(
+            "name", "product", "version", "extrainfo", "ostype", "tunnel", "cpe");
+
+    private static final Gson gson = new Gson();
+
+    private final Path file;
+    private final long maxAgeMillis;
+    private final Map<Key, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private boolean dirty;
+
+    private record Key(int port, String protocol, long bannerHash) {
+    }
+
+    private record Entry(Map<String, String> service, long storedAt) {
+    }
+
+    // Formato en disco: una lista de entradas, de la menos a la más usada
+    private static final class StoredEntry {
+        int port;
+        String protocol;
+        String banner;
+        Map<String, String> service;
+        long storedAt;
+    }
+
+    /**
+     * @param file Fichero de persistencia, o null para una caché solo en memoria
+     */
+    public ServiceFingerprintCache(Path file, int capacity, Duration maxAge) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacity);
+        }
+        this.file = file;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Caché persistida en {@link #DEFAULT_FILE} del directorio de trabajo.
+     */
+    public static ServiceFingerprintCache loadDefault() {
+        return load(Path.of(DEFAULT_FILE), DEFAULT_CAPACITY, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Abre la caché de un fichero; si no existe o no se puede leer empieza vacía.
+     */
+    public static ServiceFingerprintCache load(Path file, int capacity, Duration maxAge) {
+        ServiceFingerprintCache cache = new ServiceFingerprintCache(file, capacity, maxAge);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                StoredEntry[] stored = gson.fromJson(reader, StoredEntry[].class);
+                cache.restore(stored != null ? stored : new StoredEntry[0]);
+            } catch (IOException | JsonParseException e) {
+                logger.warning("No se pudo leer la caché de versiones " + file + ", se empieza vacía: " + e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    private void restore(StoredEntry[] stored) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            for (StoredEntry entry : stored) {
+                if (entry == null || entry.protocol == null || entry.banner == null || entry.service == null
+                        || now - entry.storedAt >= maxAgeMillis) {
+                    continue;
+                }
+                try {
+                    Key key = new Key(entry.port, entry.protocol, Long.parseUnsignedLong(entry.banner, 16));
+                    entries.put(key, new Entry(Map.copyOf(entry.service), entry.storedAt));
+                } catch (NumberFormatException | NullPointerException e) {
+                    // Entrada corrupta: ignorar
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Copia de los campos del servicio, o null si no hay entrada vigente
+     */
+    public Map<String, String> lookup(int port, String protocol, long bannerHash) {
+        Key key = new Key(port, protocol, bannerHash);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.storedAt < maxAgeMillis) {
+                hits.incrementAndGet();
+                return new HashMap<>(entry.service);
+            }
+            if (entry != null) {
+                entries.remove(key);
+                dirty = true;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Guarda el resultado de "nmap -sV" de un servicio si identificó producto o versión.
+     * @param service Mapa del servicio con las claves del parser de Nmap
+     */
+    public void store(int port, String protocol, long bannerHash, Map<String, Object> service) {
+        if (service.get("product") == null && service.get("version") == null) {
+            return;
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (String field : CACHED_FIELDS) {
+            Object value = service.get(field);
+            if (value != null) {
+                fields.put(field, value.toString());
+            }
+        }
+        Entry entry = new Entry(Map.copyOf(fields), System.currentTimeMillis());
+        synchronized (entries) {
+            entries.put(new Key(port, protocol, bannerHash), entry);
+            dirty = true;
+        }
+        stores.incrementAndGet();
+    }
+
+    /**
+     * Escribe la caché en su fichero si cambió desde la última vez.
+     */
+    public void save() {
+        if (file == null) return;
+        List<StoredEntry> snapshot;
+        synchronized (entries) {
+            if (!dirty) return;
+            snapshot = new ArrayList<>(entries.size());
+            for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+                StoredEntry stored = new StoredEntry();
+                stored.port = e.getKey().port();
+                stored.protocol = e.getKey().protocol();
+                stored.banner = Long.toHexString(e.getKey().bannerHash());
+                stored.service = e.getValue().service();
+                stored.storedAt = e.getValue().storedAt();
+                snapshot.add(stored);
+            }
+            dirty = false;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(snapshot, writer);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.warning("No se pudo guardar la caché de versiones en " + file + ": " + e.getMessage());
+            synchronized (entries) {
+                dirty = true;
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", size());
+        metrics.put("hits", h);
+        metrics.put("misses", m);
+        metrics.put("hit_rate", h + m > 0 ? (double) h / (h + m) : 0.0);
+        metrics.put("stores", stores.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,162 @@
+package com.inventariado.core.scanner;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Etapa que evita repetir la detección de versiones de Nmap en servicios ya
+ * vistos.
+ *
+ * Tras la pasada de puertos (sin "-sV") se lee el banner de cada servicio TCP
+ * abierto con {@link HostFingerprinter} y se busca en la
+ * {@link ServiceFingerprintCache}. Los aciertos se rellenan con method "cache";
+ * el resto de puertos pasa a una segunda invocación "nmap -sV" limitada a
+ * ellos, cuyo resultado se guarda en la caché con el banner leído.
+ *
+ * Las lecturas de banners van con el tope de conexiones por host y el
+ * limitador de ritmo de {@link HostFingerprinter}. Un host con más de
+ * {@link #MAX_BANNER_PORTS} candidatos (un tarpit que acepta todo) solo lee
+ * los primeros; el resto va directamente a "-sV".
+ */
+public class ServiceVersionStage {
+    static final int MAX_BANNER_PORTS = 32;
+
+    private final ServiceFingerprintCache cache;
+    private final HostFingerprinter grabber;
+    // Hash del banner de los puertos que fallaron en la caché, por host, hasta que Nmap los resuelva
+    private final Map<String, Map<Integer, Long>> pendingBanners = new ConcurrentHashMap<>();
+
+    private final LongAdder bannersGrabbed = new LongAdder();
+    private final LongAdder servicesFromCache = new LongAdder();
+    private final LongAdder servicesProbed = new LongAdder();
+    private final LongAdder portsOverBannerLimit = new LongAdder();
+
+    public ServiceVersionStage(ServiceFingerprintCache cache, HostFingerprinter grabber) {
+        this.cache = cache;
+        this.grabber = grabber;
+    }
+
+    /**
+     * Completa desde la caché los servicios TCP sin versión del dispositivo.
+     * @return Puertos que necesitan "nmap -sV", en orden ascendente
+     */
+    @SuppressWarnings("unchecked")
+    public SortedSet<Integer> apply(Map<String, Object> device) {
+        SortedSet<Integer> missed = new TreeSet<>();
+        if (!(device.get("services") instanceof Map<?, ?> services) || services.isEmpty()) {
+            return missed;
+        }
+        String host = (String) device.get("ip");
+
+        Map<Integer, Map<String, Object>> candidates = new TreeMap<>();
+        for (Map.Entry<?, ?> entry : services.entrySet()) {
+            if (entry.getKey() instanceof Integer port && entry.getValue() instanceof Map<?, ?> service
+                    && "tcp".equals(service.get("protocol"))
+                    && service.get("product") == null && service.get("version") == null) {
+                candidates.put(port, (Map<String, Object>) service);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return missed;
+        }
+
+        List<Integer> grabbed = new ArrayList<>(MAX_BANNER_PORTS);
+        for (int port : candidates.keySet()) {
+            if (grabbed.size() < MAX_BANNER_PORTS) {
+                grabbed.add(port);
+            } else {
+                missed.add(port);
+                portsOverBannerLimit.increment();
+            }
+        }
+        Map<Integer, String> banners;
+        try {
+            banners = grabber.probeAll(host, grabbed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            missed.addAll(grabbed);
+            return missed;
+        }
+
+        Map<Integer, Long> unresolved = new HashMap<>();
+        for (int port : grabbed) {
+            Map<String, Object> candidate = candidates.get(port);
+            String banner = banners.get(port);
+            if (banner == null || banner.isEmpty()) {
+                // Sin banner no hay forma de distinguir el servicio: que lo sondee Nmap
+                missed.add(port);
+                continue;
+            }
+            bannersGrabbed.increment();
+            long hash = HostFingerprinter.hash64(banner);
+            Map<String, String> cached = cache.lookup(port, "tcp", hash);
+            if (cached != null) {
+                candidate.putAll(cached);
+                candidate.put("method", "cache");
+                servicesFromCache.increment();
+            } else {
+                missed.add(port);
+                unresolved.put(port, hash);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            pendingBanners.put(host, unresolved);
+        }
+        return missed;
+    }
+
+    /**
+     * Copia al dispositivo lo que resolvió la pasada "-sV" y lo guarda en la caché.
+     * @param probed Host de la salida de Nmap de la segunda pasada
+     */
+    @SuppressWarnings("unchecked")
+    public void merge(Map<String, Object> device, Map<String, Object> probed) {
+        Map<Integer, Long> hashes = pendingBanners.remove((String) device.get("ip"));
+        if (!(device.get("services") instanceof Map<?, ?> services)
+                || !(probed.get("services") instanceof Map<?, ?> probedServices)) {
+            return;
+        }
+        for (Map.Entry<?, ?> entry : probedServices.entrySet()) {
+            if (!(services.get(entry.getKey()) instanceof Map<?, ?> target)
+                    || !(entry.getValue() instanceof Map<?, ?> result)) {
+                continue;
+            }
+            Map<String, Object> service = (Map<String, Object>) target;
+            for (Map.Entry<?, ?> field : result.entrySet()) {
+                String key = (String) field.getKey();
+                if (!key.equals("port") && !key.equals("state")) {
+                    service.put(key, field.getValue());
+                }
+            }
+            servicesProbed.increment();
+            Long hash = hashes != null ? hashes.get(entry.getKey()) : null;
+            if (hash != null) {
+                cache.store((Integer) entry.getKey(), "tcp", hash, (Map<String, Object>) result);
+            }
+        }
+    }
+
+    /**
+     * Descarta los banners pendientes de un host cuya segunda pasada no llegó a hacerse.
+     */
+    public void forget(String host) {
+        pendingBanners.remove(host);
+    }
+
+    /**
+     * Persiste la caché al terminar el escaneo.
+     */
+    public void save() {
+        cache.save();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(cache.getMetrics());
+        metrics.put("banners_grabbed", bannersGrabbed.sum());
+        metrics.put("services_from_cache", servicesFromCache.sum());
+        metrics.put("services_probed", servicesProbed.sum());
+        metrics.put("ports_over_banner_limit", portsOverBannerLimit.sum());
+        return metrics;
+    }
+}
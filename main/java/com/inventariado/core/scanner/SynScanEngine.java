@@ -0,0 +1,568 @@
+package com.inventariado.core.scanner;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import org.pcap4j.core.*;
+import org.pcap4j.util.LinkLayerAddress;
+
+/**
+ * Escáner SYN sin estado que construye las tramas TCP a mano y las envía con pcap4j.
+ *
+ * No mantiene un socket por sonda: el número de secuencia de cada SYN es una
+ * "cookie" derivada de (IP destino, puerto destino, secreto), así que una única
+ * captura basta para validar cualquier SYN/ACK o RST recibido (su ACK debe ser
+ * cookie + 1). El estado por objetivo se guarda en una tabla de direccionamiento
+ * abierto con claves int, gestionada solo por el hilo receptor.
+ *
+ * El emisor reparte los envíos en turno rotatorio, un puerto de cada objetivo
+ * activo por turno, para que un host no marque el ritmo de todo el lote. El
+ * limitador se consulta sin bloquear: si una /24 agota su presupuesto se pasa
+ * al objetivo siguiente.
+ *
+ * Las tramas se envían a la MAC del siguiente salto (normalmente el router),
+ * igual que hacen los escáneres sin estado tipo masscan. Requiere privilegios
+ * para captura y envío en crudo.
+ */
+public class SynScanEngine implements PortScanEngine {
+    private static final Logger logger = Logger.getLogger(SynScanEngine.class.getName());
+
+    private static final int DLT_EN10MB = 1;
+    private static final int ETH_HEADER = 14;
+    private static final int IP_HEADER = 20;
+    private static final int TCP_HEADER = 24; // 20 + opción MSS
+    private static final int FRAME_LENGTH = ETH_HEADER + IP_HEADER + TCP_HEADER;
+    private static final int SNAPLEN = 128;
+    private static final int READ_TIMEOUT_MILLIS = 10;
+    private static final long DEFAULT_LINGER_MILLIS = 2000;
+    private static final long THROTTLED_PARK_NANOS = 50_000;
+
+    private final PcapHandle sendHandle;
+    private final PcapHandle captureHandle;
+    private final byte[] sourceMac;
+    private final byte[] nextHopMac;
+    private final int sourceIp;
+    private final int sourcePort;
+    private final long secret;
+    private final ProbeRateLimiter rateLimiter;
+    private final long lingerNanos;
+
+    private final Queue<SynJob> registrations = new ConcurrentLinkedQueue<>();
+    private final LinkedBlockingQueue<SynJob> sendQueue = new LinkedBlockingQueue<>();
+    // Objetivos con todos sus SYN enviados, en el orden en que terminó el envío
+    private final Queue<SynJob> sendCompleted = new ConcurrentLinkedQueue<>();
+    private final Thread senderThread;
+    private final Thread receiverThread;
+    private volatile boolean running = true;
+
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder repliesMatched = new LongAdder();
+    private final LongAdder repliesRejected = new LongAdder();
+
+    /**
+     * @param interfaceName Interfaz de salida
+     * @param nextHopMac MAC del siguiente salto (router o el propio objetivo en la LAN)
+     * @param packetsPerSecond Ritmo máximo de envío de SYN (0 = sin límite)
+     */
+    public SynScanEngine(String interfaceName, byte[] nextHopMac, int packetsPerSecond)
+            throws PcapNativeException, NotOpenException {
+        // Ráfaga de 1 ms: el emisor no se bloquea y recoge los tokens acumulados al volver de cada pausa
+        this(interfaceName, nextHopMac, packetsPerSecond > 0
+                ? new ProbeRateLimiter(packetsPerSecond, 0, Math.max(1, packetsPerSecond / 1000)) : null);
+    }
+
+    /**
+     * @param interfaceName Interfaz de salida
+     * @param nextHopMac MAC del siguiente salto (router o el propio objetivo en la LAN)
+     * @param rateLimiter Limitador compartido con el resto del escaneo (null = sin límite)
+     */
+    public SynScanEngine(String interfaceName, byte[] nextHopMac, ProbeRateLimiter rateLimiter)
+            throws PcapNativeException, NotOpenException {
+        PcapNetworkInterface nif = Pcaps.getDevByName(interfaceName);
+        if (nif == null) {
+            throw new PcapNativeException("Interfaz no encontrada: " + interfaceName);
+        }
+        this.sourceMac = firstMac(nif);
+        this.sourceIp = firstIpv4(nif);
+        this.nextHopMac = nextHopMac.clone();
+        this.sourcePort = 40000 + new SecureRandom().nextInt(20000);
+        this.secret = new SecureRandom().nextLong();
+        this.rateLimiter = rateLimiter;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LINGER_MILLIS);
+
+        this.sendHandle = nif.openLive(SNAPLEN, PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS, READ_TIMEOUT_MILLIS);
+        try {
+            this.captureHandle = nif.openLive(SNAPLEN, PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS, READ_TIMEOUT_MILLIS);
+            // Solo respuestas dirigidas a nuestro puerto origen con SYN o RST
+            this.captureHandle.setFilter(
+                    "tcp and dst host " + HostRangeSet.toIpString(sourceIp) + " and dst port " + sourcePort
+                            + " and (tcp[tcpflags] & (tcp-syn|tcp-rst) != 0)",
+                    BpfProgram.BpfCompileMode.OPTIMIZE);
+        } catch (PcapNativeException | NotOpenException e) {
+            sendHandle.close();
+            throw e;
+        }
+        // Las tramas se construyen y se leen como Ethernet
+        int linkType = captureHandle.getDlt().value();
+        if (linkType != DLT_EN10MB) {
+            sendHandle.close();
+            captureHandle.close();
+            throw new PcapNativeException("Tipo de enlace no soportado en " + interfaceName + ": " + linkType);
+        }
+
+        this.receiverThread = new Thread(this::receiveLoop, "syn-scan-rx");
+        this.receiverThread.setDaemon(true);
+        this.senderThread = new Thread(this::sendLoop, "syn-scan-tx");
+        this.senderThread.setDaemon(true);
+        this.receiverThread.start();
+        this.senderThread.start();
+    }
+
+    @Override
+    public CompletableFuture<Map<Integer, Map<String, Object>>> scan(String host, int[] ports) throws IOException {
+        InetAddress address = InetAddress.getByName(host);
+        if (!(address instanceof Inet4Address)) {
+            throw new IOException("El escaneo SYN solo admite IPv4: " + host);
+        }
+        SynJob job = new SynJob(toInt(address.getAddress()), ports);
+        if (!running) {
+            job.future.completeExceptionally(new IOException("Motor de escaneo cerrado"));
+            return job.future;
+        }
+        registrations.add(job);
+        return job.future;
+    }
+
+    @Override
+    public String getName() {
+        return "syn";
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    public long getRepliesMatched() {
+        return repliesMatched.sum();
+    }
+
+    /**
+     * @return Respuestas descartadas por cookie inválida o sin objetivo registrado
+     */
+    public long getRepliesRejected() {
+        return repliesRejected.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        senderThread.interrupt();
+        try {
+            senderThread.join(1000);
+            receiverThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sendHandle.isOpen()) sendHandle.close();
+        if (captureHandle.isOpen()) captureHandle.close();
+    }
+
+    /**
+     * Estado de un objetivo. Los puertos abiertos solo los escribe el hilo receptor;
+     * el emisor solo marca el instante en que terminó de enviar.
+     */
+    private static final class SynJob {
+        final int ip;
+        final int[] ports;
+        final CompletableFuture<Map<Integer, Map<String, Object>>> future = new CompletableFuture<>();
+        int[] openPorts = new int[8];
+        int openCount;
+        // Siguiente puerto a enviar; solo lo usa el hilo emisor
+        int nextPort;
+        volatile long sendCompleteNanos;
+
+        SynJob(int ip, int[] ports) {
+            this.ip = ip;
+            this.ports = ports;
+        }
+
+        void addOpen(int port) {
+            for (int i = 0; i < openCount; i++) {
+                if (openPorts[i] == port) return;
+            }
+            if (openCount == openPorts.length) {
+                openPorts = Arrays.copyOf(openPorts, openCount * 2);
+            }
+            openPorts[openCount++] = port;
+        }
+
+        Map<Integer, Map<String, Object>> toServices() {
+            Map<Integer, Map<String, Object>> services = new HashMap<>();
+            for (int i = 0; i < openCount; i++) {
+                Map<String, Object> service = new HashMap<>(8);
+                service.put("port", openPorts[i]);
+                service.put("protocol", "tcp");
+                service.put("state", "open");
+                service.put("name", "unknown");
+                service.put("method", "syn");
+                services.put(openPorts[i], service);
+            }
+            return services;
+        }
+    }
+
+    // ---------------------------------------------------------------- envío
+
+    private void sendLoop() {
+        byte[] frame = new byte[FRAME_LENGTH];
+        writeTemplate(frame);
+        int ipId = 0;
+        // Objetivos con puertos pendientes; en cada turno sale un SYN de cada uno
+        List<SynJob> sending = new ArrayList<>();
+        int cursor = 0;
+
+        while (running) {
+            if (sending.isEmpty()) {
+                SynJob job;
+                try {
+                    job = sendQueue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (job == null) continue;
+                sending.add(job);
+            }
+            sendQueue.drainTo(sending);
+
+            boolean sent = false;
+            for (int turns = sending.size(); turns > 0 && running; turns--) {
+                if (cursor >= sending.size()) cursor = 0;
+                SynJob job = sending.get(cursor);
+                if (job.future.isDone() || job.nextPort >= job.ports.length) {
+                    // Quitar sin desplazar: el último ocupa su hueco y se atiende ahora
+                    sending.set(cursor, sending.get(sending.size() - 1));
+                    sending.remove(sending.size() - 1);
+                    job.sendCompleteNanos = System.nanoTime();
+                    sendCompleted.add(job);
+                    continue;
+                }
+                if (rateLimiter != null && !rateLimiter.tryAcquire(job.ip)) {
+                    // Sin tokens para este objetivo o su /24: pasar al siguiente
+                    cursor++;
+                    continue;
+                }
+                send(frame, job.ip, job.ports[job.nextPort++], ipId++);
+                sent = true;
+                cursor++;
+            }
+            if (!sent && !sending.isEmpty()) {
+                // Todos los objetivos sin presupuesto: esperar a que se repongan tokens
+                LockSupport.parkNanos(THROTTLED_PARK_NANOS);
+            }
+        }
+    }
+
+    private void send(byte[] frame, int dstIp, int dstPort, int ipId) {
+        writeProbe(frame, dstIp, dstPort, ipId);
+        try {
+            sendHandle.sendPacket(frame);
+            packetsSent.increment();
+        } catch (PcapNativeException | NotOpenException e) {
+            logger.warning("Error al enviar SYN a " + HostRangeSet.toIpString(dstIp) + ": " + e.getMessage());
+        }
+    }
+
+    // Cabeceras fijas: Ethernet, IPv4 y TCP con MSS; por sonda solo cambian destino, puerto y cookie
+    private void writeTemplate(byte[] f) {
+        System.arraycopy(nextHopMac, 0, f, 0, 6);
+        System.arraycopy(sourceMac, 0, f, 6, 6);
+        f[12] = 0x08;
+        f[13] = 0x00;
+
+        int ip = ETH_HEADER;
+        f[ip] = 0x45;
+        putShort(f, ip + 2, IP_HEADER + TCP_HEADER);
+        f[ip + 8] = 64;  // TTL
+        f[ip + 9] = 6;   // TCP
+        putInt(f, ip + 12, sourceIp);
+
+        int tcp = ETH_HEADER + IP_HEADER;
+        putShort(f, tcp, sourcePort);
+        f[tcp + 12] = (byte) ((TCP_HEADER / 4) << 4);
+        f[tcp + 13] = 0x02; // SYN
+        putShort(f, tcp + 14, 1024);
+        f[tcp + 20] = 0x02;
+        f[tcp + 21] = 0x04;
+        putShort(f, tcp + 22, 1460);
+    }
+
+    private void writeProbe(byte[] f, int dstIp, int dstPort, int ipId) {
+        int ip = ETH_HEADER;
+        int tcp = ETH_HEADER + IP_HEADER;
+
+        putShort(f, ip + 4, ipId & 0xFFFF);
+        putInt(f, ip + 16, dstIp);
+        putShort(f, ip + 10, 0);
+        putShort(f, ip + 10, checksum(f, ip, IP_HEADER, 0));
+
+        putShort(f, tcp + 2, dstPort);
+        putInt(f, tcp + 4, cookie(dstIp, dstPort));
+        putShort(f, tcp + 16, 0);
+        long pseudo = ((sourceIp >>> 16) & 0xFFFF) + (sourceIp & 0xFFFF)
+                + ((dstIp >>> 16) & 0xFFFF) + (dstIp & 0xFFFF) + 6 + TCP_HEADER;
+        putShort(f, tcp + 16, checksum(f, tcp, TCP_HEADER, pseudo));
+    }
+
+    private int cookie(int ip, int port) {
+        long x = ((long) ip << 16) ^ port ^ secret;
+        // Mezcla tipo SplitMix64
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (x ^ (x >>> 31));
+    }
+
+    // ---------------------------------------------------------------- recepción
+
+    private void receiveLoop() {
+        TargetTable table = new TargetTable(1024);
+        // La espera tras el envío es fija: el orden de fin de envío es el orden de vencimiento
+        ArrayDeque<SynJob> lingering = new ArrayDeque<>();
+
+        try {
+            while (running) {
+                SynJob job;
+                while ((job = registrations.poll()) != null) {
+                    if (table.get(job.ip) != null) {
+                        // Ya hay un escaneo en curso para esta IP: se atiende después
+                        registrations.add(job);
+                        break;
+                    }
+                    table.put(job.ip, job);
+                    sendQueue.add(job);
+                }
+
+                byte[] frame = captureHandle.getNextRawPacket();
+                if (frame != null) {
+                    onFrame(frame, table);
+                }
+
+                retireExpired(lingering, table);
+            }
+        } catch (NotOpenException e) {
+            if (running) {
+                logger.severe("Captura SYN cerrada inesperadamente");
+            }
+        } finally {
+            running = false;
+            IOException closed = new IOException("Motor de escaneo cerrado");
+            table.forEach(job -> job.future.completeExceptionally(closed));
+            SynJob job;
+            while ((job = registrations.poll()) != null) {
+                job.future.completeExceptionally(closed);
+            }
+        }
+    }
+
+    private void onFrame(byte[] f, TargetTable table) {
+        if (f.length < ETH_HEADER) return;
+        int offset = 12;
+        int etherType = getShort(f, offset);
+        if (etherType == 0x8100 && f.length >= 18) {
+            offset += 4;
+            etherType = getShort(f, offset);
+        }
+        int ip = offset + 2;
+        if (etherType != 0x0800 || f.length < ip + IP_HEADER || f[ip + 9] != 6) return;
+
+        int ihl = (f[ip] & 0x0F) * 4;
+        int tcp = ip + ihl;
+        if (f.length < tcp + 20) return;
+
+        int srcIp = getInt(f, ip + 12);
+        int srcPort = getShort(f, tcp);
+        int ack = getInt(f, tcp + 8);
+        int flags = f[tcp + 13] & 0x3F;
+
+        if (ack != cookie(srcIp, srcPort) + 1) {
+            repliesRejected.increment();
+            return;
+        }
+        SynJob job = table.get(srcIp);
+        if (job == null) {
+            repliesRejected.increment();
+            return;
+        }
+        repliesMatched.increment();
+        if ((flags & 0x12) == 0x12) {
+            job.addOpen(srcPort);
+        }
+        // RST: puerto cerrado, no requiere registro
+    }
+
+    // Solo mira la cabeza de la cola: coste constante por trama aunque haya miles de objetivos
+    private void retireExpired(ArrayDeque<SynJob> lingering, TargetTable table) {
+        SynJob job;
+        while ((job = sendCompleted.poll()) != null) {
+            lingering.add(job);
+        }
+        long now = System.nanoTime();
+        while ((job = lingering.peek()) != null && now - job.sendCompleteNanos >= lingerNanos) {
+            lingering.poll();
+            table.remove(job.ip);
+            if (!job.future.isDone()) {
+                job.future.complete(job.toServices());
+            }
+        }
+    }
+
+    /**
+     * Tabla de direccionamiento abierto (sondeo lineal) de IPv4 a objetivo.
+     * La clave 0 (0.0.0.0) marca hueco libre. Solo la usa el hilo receptor.
+     */
+    private static final class TargetTable {
+        private int[] keys;
+        private SynJob[] values;
+        private int size;
+
+        TargetTable(int capacity) {
+            int cap = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+            keys = new int[cap];
+            values = new SynJob[cap];
+        }
+
+        SynJob get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == key) return values[i];
+                if (k == 0) return null;
+            }
+        }
+
+        void put(int key, SynJob value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) size++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        // Borrado con desplazamiento hacia atrás para no dejar lápidas
+        void remove(int key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == 0) return;
+                i = (i + 1) & mask;
+            }
+            size--;
+            int hole = i;
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            keys[hole] = 0;
+            values[hole] = null;
+        }
+
+        void forEach(Consumer<SynJob> action) {
+            for (SynJob value : values) {
+                if (value != null) action.accept(value);
+            }
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            SynJob[] oldValues = values;
+            keys = new int[capacity];
+            values = new SynJob[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // ---------------------------------------------------------------- utilidades
+
+    private static int checksum(byte[] b, int offset, int length, long initial) {
+        long sum = initial;
+        for (int i = 0; i < length - 1; i += 2) {
+            sum += ((b[offset + i] & 0xFF) << 8) | (b[offset + i + 1] & 0xFF);
+        }
+        if ((length & 1) != 0) {
+            sum += (b[offset + length - 1] & 0xFF) << 8;
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int) (~sum & 0xFFFF);
+    }
+
+    private static void putShort(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 8);
+        b[offset + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    private static int getShort(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+
+    private static int getInt(byte[] b, int offset) {
+        return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16)
+                | ((b[offset + 2] & 0xFF) << 8) | (b[offset + 3] & 0xFF);
+    }
+
+    private static int toInt(byte[] address) {
+        return getInt(address, 0);
+    }
+
+    private static byte[] firstMac(PcapNetworkInterface nif) throws PcapNativeException {
+        for (LinkLayerAddress address : nif.getLinkLayerAddresses()) {
+            byte[] mac = address.getAddress();
+            if (mac != null && mac.length == 6) return mac;
+        }
+        throw new PcapNativeException("La interfaz no tiene dirección MAC: " + nif.getName());
+    }
+
+    private static int firstIpv4(PcapNetworkInterface nif) throws PcapNativeException {
+        for (PcapAddress address : nif.getAddresses()) {
+            if (address.getAddress() instanceof Inet4Address) {
+                return toInt(address.getAddress().getAddress());
+            }
+        }
+        throw new PcapNativeException("La interfaz no tiene dirección IPv4: " + nif.getName());
+    }
+}
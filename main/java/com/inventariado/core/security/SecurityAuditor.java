@@ -5,6 +5,10 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.logging.Logger;
 
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.Service;
+import com.inventariado.core.model.Services;
+
 /**
  * Clase para realizar auditorías de seguridad en la red.
  * Equivalente Java de security.py
@@ -71,41 +75,51 @@ public class SecurityAuditor {
 
     /**
      * Analiza la seguridad de un dispositivo.
-     * @param deviceData Mapa con los datos del dispositivo
+     * @param device Dispositivo a analizar
      * @return Mapa con los resultados del análisis
      */
-    public Map<String, Object> analyzeDevice(Map<String, Object> deviceData) {
+    public Map<String, Object> analyzeDevice(Device device) {
+        Map<String, Object> result = analyzeServices(device.services());
+        if (!result.containsKey("error")) {
+            result.put("device_ip", device.address());
+            result.put("device_hostname", device.hostname());
+        }
+        return result;
+    }
+
+    /**
+     * Analiza solo los servicios abiertos, para quien aún no ha construido el
+     * {@link Device} (el escáner antes de publicarlo).
+     * @return Mapa con risk_level, risk_score, vulnerabilities y recommendations
+     */
+    public Map<String, Object> analyzeServices(Services services) {
         try {
             List<Map<String, Object>> vulnerabilities = new ArrayList<>();
             int totalScore = 0;
 
-            @SuppressWarnings("unchecked")
-            Map<Integer, Map<String, Object>> services = (Map<Integer, Map<String, Object>>)
-                    deviceData.getOrDefault("services", new HashMap<>());
-
             // Analizar servicios inseguros
-            for (Map.Entry<Integer, Map<String, Object>> entry : services.entrySet()) {
-                int port = entry.getKey();
-                Map<String, Object> serviceInfo = entry.getValue();
+            for (int i = 0; i < services.size(); i++) {
+                int port = services.port(i);
+                Service serviceInfo = services.service(i);
 
                 if (insecureServices.containsKey(port)) {
                     Map<String, Object> vulnInfo = new HashMap<>(insecureServices.get(port));
                     vulnInfo.put("port", port);
-                    vulnInfo.put("service_version", serviceInfo.getOrDefault("version", "Unknown"));
-                    vulnInfo.put("service_product", serviceInfo.getOrDefault("product", "Unknown"));
+                    vulnInfo.put("service_version", orUnknown(serviceInfo.version()));
+                    vulnInfo.put("service_product", orUnknown(serviceInfo.product()));
 
                     vulnerabilities.add(vulnInfo);
                     totalScore += riskScores.get(vulnInfo.get("risk_level").toString());
                 }
                 // Verificar servicios HTTP sin SSL
-                else if ("http".equalsIgnoreCase(serviceInfo.get("name").toString()) && port != 443) {
+                else if ("http".equalsIgnoreCase(serviceInfo.name()) && port != 443 && !serviceInfo.isTls()) {
                     Map<String, Object> httpVuln = new HashMap<>();
                     httpVuln.put("name", "HTTP sin SSL");
                     httpVuln.put("port", port);
                     httpVuln.put("risk_level", "medium");
                     httpVuln.put("description", "Servicio web sin cifrado SSL/TLS");
-                    httpVuln.put("service_version", serviceInfo.getOrDefault("version", "Unknown"));
-                    httpVuln.put("service_product", serviceInfo.getOrDefault("product", "Unknown"));
+                    httpVuln.put("service_version", orUnknown(serviceInfo.version()));
+                    httpVuln.put("service_product", orUnknown(serviceInfo.product()));
 
                     vulnerabilities.add(httpVuln);
                     totalScore += riskScores.get("medium");
@@ -116,8 +130,6 @@ public class SecurityAuditor {
             String riskLevel = calculateRiskLevel(totalScore);
 
             Map<String, Object> result = new HashMap<>();
-            result.put("device_ip", deviceData.get("ip"));
-            result.put("device_hostname", deviceData.get("hostname"));
             result.put("scan_date", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
             result.put("risk_level", riskLevel);
             result.put("risk_score", totalScore);
@@ -134,6 +146,10 @@ public class SecurityAuditor {
         }
     }
 
+    private static String orUnknown(String value) {
+        return value != null ? value : "Unknown";
+    }
+
     private String calculateRiskLevel(int score) {
         if (score >= 30) {
             return "critical";
@@ -194,7 +210,7 @@ public class SecurityAuditor {
      * @param devices Lista de dispositivos a analizar
      * @return Mapa con el informe de seguridad
      */
-    public Map<String, Object> generateSecurityReport(List<Map<String, Object>> devices) {
+    public Map<String, Object> generateSecurityReport(List<Device> devices) {
         try {
             Map<String, Object> report = new HashMap<>();
             report.put("scan_date", LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
@@ -213,7 +229,7 @@ public class SecurityAuditor {
             Set<String> globalRecommendations = new HashSet<>();
 
             // Analizar cada dispositivo
-            for (Map<String, Object> device : devices) {
+            for (Device device : devices) {
                 Map<String, Object> deviceReport = analyzeDevice(device);
                 deviceReports.add(deviceReport);
 
@@ -0,0 +1,299 @@
+package com.inventariado.core.snmp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificación BER mínima para SNMP: solo los tipos que aparecen en mensajes
+ * v2c/v3 de GET, GETBULK y sus respuestas.
+ */
+final class Ber {
+    static final byte INTEGER = 0x02;
+    static final byte OCTET_STRING = 0x04;
+    static final byte NULL = 0x05;
+    static final byte OBJECT_ID = 0x06;
+    static final byte SEQUENCE = 0x30;
+    static final byte IP_ADDRESS = 0x40;
+    static final byte COUNTER32 = 0x41;
+    static final byte GAUGE32 = 0x42;
+    static final byte TIMETICKS = 0x43;
+    static final byte OPAQUE = 0x44;
+    static final byte COUNTER64 = 0x46;
+    static final byte NO_SUCH_OBJECT = (byte) 0x80;
+    static final byte NO_SUCH_INSTANCE = (byte) 0x81;
+    static final byte END_OF_MIB_VIEW = (byte) 0x82;
+
+    static final byte GET_REQUEST = (byte) 0xA0;
+    static final byte GET_NEXT_REQUEST = (byte) 0xA1;
+    static final byte RESPONSE = (byte) 0xA2;
+    static final byte GET_BULK_REQUEST = (byte) 0xA5;
+    static final byte REPORT = (byte) 0xA8;
+
+    private Ber() {
+    }
+
+    // --- Codificación ---
+
+    /**
+     * Búfer de escritura con los helpers TLV habituales.
+     */
+    static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        Writer tlv(byte tag, byte[] value) {
+            out.write(tag);
+            writeLength(value.length);
+            out.writeBytes(value);
+            return this;
+        }
+
+        Writer integer(long value) {
+            return tlv(INTEGER, encodeInteger(value));
+        }
+
+        Writer octets(byte[] value) {
+            return tlv(OCTET_STRING, value);
+        }
+
+        Writer nul() {
+            return tlv(NULL, new byte[0]);
+        }
+
+        Writer oid(Oid oid) {
+            return tlv(OBJECT_ID, encodeOid(oid));
+        }
+
+        Writer raw(byte[] encoded) {
+            out.writeBytes(encoded);
+            return this;
+        }
+
+        byte[] toBytes() {
+            return out.toByteArray();
+        }
+
+        /**
+         * @return El contenido escrito envuelto en un TLV con {@code tag}
+         */
+        byte[] wrap(byte tag) {
+            return new Writer().tlv(tag, toBytes()).toBytes();
+        }
+
+        private void writeLength(int length) {
+            if (length < 0x80) {
+                out.write(length);
+            } else if (length < 0x100) {
+                out.write(0x81);
+                out.write(length);
+            } else if (length < 0x10000) {
+                out.write(0x82);
+                out.write(length >> 8);
+                out.write(length);
+            } else {
+                out.write(0x83);
+                out.write(length >> 16);
+                out.write(length >> 8);
+                out.write(length);
+            }
+        }
+    }
+
+    static byte[] encodeInteger(long value) {
+        int size = 8;
+        // Quitar bytes de signo redundantes
+        while (size > 1) {
+            long top = value >> ((size - 1) * 8 - 1);
+            if (top != 0 && top != -1) break;
+            size--;
+        }
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[size - 1 - i] = (byte) (value >> (i * 8));
+        }
+        return bytes;
+    }
+
+    static byte[] encodeOid(Oid oid) {
+        int[] parts = oid.parts();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(parts.length + 4);
+        writeSubId(out, parts[0] * 40L + parts[1]);
+        for (int i = 2; i < parts.length; i++) {
+            writeSubId(out, Integer.toUnsignedLong(parts[i]));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeSubId(ByteArrayOutputStream out, long value) {
+        int groups = 1;
+        for (long v = value >>> 7; v != 0; v >>>= 7) groups++;
+        for (int g = groups - 1; g >= 0; g--) {
+            int b = (int) ((value >>> (g * 7)) & 0x7F);
+            out.write(g > 0 ? b | 0x80 : b);
+        }
+    }
+
+    // --- Decodificación ---
+
+    /**
+     * Lector secuencial sobre un mensaje recibido. Lanza
+     * {@link IllegalArgumentException} ante datos truncados o mal formados.
+     */
+    static final class Reader {
+        private final byte[] data;
+        private int pos;
+        private final int end;
+
+        Reader(byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        private Reader(byte[] data, int start, int end) {
+            this.data = data;
+            this.pos = start;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return pos < end;
+        }
+
+        byte peekTag() {
+            require(1);
+            return data[pos];
+        }
+
+        /**
+         * Entra en un TLV construido (secuencia o PDU) y devuelve un lector de su contenido.
+         */
+        Reader enter(byte expectedTag) {
+            int length = header(expectedTag);
+            Reader inner = new Reader(data, pos, pos + length);
+            pos += length;
+            return inner;
+        }
+
+        long readInteger() {
+            return decodeInteger(value(INTEGER));
+        }
+
+        byte[] readOctets() {
+            return value(OCTET_STRING);
+        }
+
+        /**
+         * @return Posición del contenido del siguiente OCTET STRING, sin consumirlo
+         */
+        int octetsValueOffset() {
+            int saved = pos;
+            header(OCTET_STRING);
+            int offset = pos;
+            pos = saved;
+            return offset;
+        }
+
+        Oid readOid() {
+            return decodeOid(value(OBJECT_ID));
+        }
+
+        VarBind readVarBind() {
+            Reader vb = enter(SEQUENCE);
+            Oid oid = vb.readOid();
+            byte tag = vb.peekTag();
+            vb.pos++;
+            int length = vb.readLength();
+            vb.require(length);
+            byte[] raw = java.util.Arrays.copyOfRange(vb.data, vb.pos, vb.pos + length);
+            Object value = switch (tag) {
+                case INTEGER, COUNTER32, GAUGE32, TIMETICKS, COUNTER64 -> {
+                    long v = decodeInteger(raw);
+                    // Los tipos de aplicación son sin signo
+                    if (tag != INTEGER && tag != COUNTER64) v &= 0xFFFFFFFFL;
+                    yield v;
+                }
+                case OCTET_STRING, IP_ADDRESS, OPAQUE -> raw;
+                case OBJECT_ID -> decodeOid(raw).toString();
+                default -> null;
+            };
+            return new VarBind(oid, tag, value);
+        }
+
+        private byte[] value(byte expectedTag) {
+            int length = header(expectedTag);
+            byte[] value = java.util.Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return value;
+        }
+
+        private int header(byte expectedTag) {
+            require(1);
+            byte tag = data[pos++];
+            if (tag != expectedTag) {
+                throw new IllegalArgumentException(String.format(
+                        "Etiqueta BER inesperada 0x%02x (se esperaba 0x%02x)", tag & 0xFF, expectedTag & 0xFF));
+            }
+            int length = readLength();
+            require(length);
+            return length;
+        }
+
+        private int readLength() {
+            require(1);
+            int first = data[pos++] & 0xFF;
+            if (first < 0x80) return first;
+            int bytes = first & 0x7F;
+            if (bytes == 0 || bytes > 3) {
+                throw new IllegalArgumentException("Longitud BER no soportada");
+            }
+            require(bytes);
+            int length = 0;
+            for (int i = 0; i < bytes; i++) {
+                length = (length << 8) | (data[pos++] & 0xFF);
+            }
+            return length;
+        }
+
+        private void require(int bytes) {
+            if (bytes < 0 || pos + bytes > end) {
+                throw new IllegalArgumentException("Mensaje BER truncado");
+            }
+        }
+    }
+
+    static long decodeInteger(byte[] bytes) {
+        if (bytes.length == 0 || bytes.length > 9) {
+            throw new IllegalArgumentException("Entero BER inválido");
+        }
+        long value = bytes[0]; // con signo
+        for (int i = 1; i < bytes.length; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    static Oid decodeOid(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("OID BER vacío");
+        }
+        List<Integer> parts = new ArrayList<>(bytes.length + 1);
+        long value = 0;
+        boolean first = true;
+        for (byte b : bytes) {
+            value = (value << 7) | (b & 0x7F);
+            if ((b & 0x80) == 0) {
+                if (first) {
+                    int x = (int) Math.min(2, value / 40);
+                    parts.add(x);
+                    parts.add((int) (value - x * 40L));
+                    first = false;
+                } else {
+                    parts.add((int) value);
+                }
+                value = 0;
+            }
+        }
+        int[] array = new int[parts.size()];
+        for (int i = 0; i < array.length; i++) array[i] = parts.get(i);
+        return Oid.of(array);
+    }
+}
@@ -0,0 +1,261 @@
+package com.inventariado.core.snmp;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Construcción y lectura de mensajes SNMP v2c (RFC 3416) y v3 (RFC 3412/3414).
+ */
+final class MessageCodec {
+    static final int MAX_MESSAGE_SIZE = 65507;
+
+    private static final byte FLAG_AUTH = 0x01;
+    private static final byte FLAG_PRIV = 0x02;
+    private static final byte FLAG_REPORTABLE = 0x04;
+    private static final int USM_SECURITY_MODEL = 3;
+    private static final byte[] EMPTY = new byte[0];
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Parámetros de seguridad de un mensaje v3 saliente. Sin claves se envía noAuthNoPriv.
+     */
+    static final class V3Params {
+        byte[] engineId = EMPTY;
+        int boots;
+        int time;
+        String user = "";
+        SnmpCredentials.AuthProtocol authProtocol = SnmpCredentials.AuthProtocol.NONE;
+        byte[] authKey;
+        byte[] privKey;
+        long salt;
+    }
+
+    static byte[] encodeV2c(String community, byte pduType, int requestId, int nonRepeaters, int maxRepetitions,
+                            List<Oid> oids) {
+        return new Ber.Writer()
+                .integer(1)
+                .octets(community.getBytes(StandardCharsets.UTF_8))
+                .raw(encodePdu(pduType, requestId, nonRepeaters, maxRepetitions, oids))
+                .wrap(Ber.SEQUENCE);
+    }
+
+    /**
+     * Codifica un mensaje v3; el msgID coincide con el request-id de la PDU.
+     */
+    static byte[] encodeV3(V3Params params, byte pduType, int requestId, int nonRepeaters, int maxRepetitions,
+                           List<Oid> oids) {
+        return encodeV3(params, requestId, encodePdu(pduType, requestId, nonRepeaters, maxRepetitions, oids));
+    }
+
+    /**
+     * Envuelve una PDU ya codificada en un mensaje v3 firmado y, si hay clave de cifrado, cifrado.
+     */
+    static byte[] encodeV3(V3Params params, int msgId, byte[] pdu) {
+        boolean auth = params.authKey != null;
+        boolean priv = auth && params.privKey != null;
+
+        byte[] scoped = new Ber.Writer()
+                .octets(params.engineId)
+                .octets(EMPTY)
+                .raw(pdu)
+                .wrap(Ber.SEQUENCE);
+        byte[] privParams = EMPTY;
+        byte[] scopedField;
+        if (priv) {
+            privParams = new byte[8];
+            for (int i = 0; i < 8; i++) privParams[i] = (byte) (params.salt >>> (56 - i * 8));
+            byte[] encrypted = Usm.aesCfb(true, params.privKey, params.boots, params.time, privParams, scoped);
+            scopedField = new Ber.Writer().octets(encrypted).toBytes();
+        } else {
+            scopedField = scoped;
+        }
+
+        byte flags = (byte) (FLAG_REPORTABLE | (auth ? FLAG_AUTH : 0) | (priv ? FLAG_PRIV : 0));
+        byte[] global = new Ber.Writer()
+                .integer(msgId)
+                .integer(MAX_MESSAGE_SIZE)
+                .octets(new byte[]{flags})
+                .integer(USM_SECURITY_MODEL)
+                .wrap(Ber.SEQUENCE);
+
+        byte[] secPrefix = new Ber.Writer()
+                .octets(params.engineId)
+                .integer(params.boots)
+                .integer(params.time)
+                .octets(params.user.getBytes(StandardCharsets.UTF_8))
+                .toBytes();
+        byte[] secInner = new Ber.Writer()
+                .raw(secPrefix)
+                .octets(auth ? new byte[Usm.AUTH_PARAMS_LENGTH] : EMPTY)
+                .octets(privParams)
+                .toBytes();
+        byte[] secSeq = new Ber.Writer().raw(secInner).wrap(Ber.SEQUENCE);
+        byte[] secField = new Ber.Writer().octets(secSeq).toBytes();
+
+        byte[] version = new Ber.Writer().integer(3).toBytes();
+        Ber.Writer body = new Ber.Writer().raw(version).raw(global).raw(secField).raw(scopedField);
+        int bodyLength = body.toBytes().length;
+        byte[] message = body.wrap(Ber.SEQUENCE);
+
+        if (auth) {
+            // Posición de msgAuthenticationParameters: se conoce por construcción
+            int offset = (message.length - bodyLength) + version.length + global.length
+                    + (secField.length - secSeq.length) + (secSeq.length - secInner.length)
+                    + secPrefix.length + 2;
+            byte[] mac = Usm.hmac96(params.authProtocol, params.authKey, message);
+            System.arraycopy(mac, 0, message, offset, mac.length);
+        }
+        return message;
+    }
+
+    private static byte[] encodePdu(byte pduType, int requestId, int nonRepeaters, int maxRepetitions,
+                                    List<Oid> oids) {
+        Ber.Writer bindings = new Ber.Writer();
+        for (Oid oid : oids) {
+            bindings.raw(new Ber.Writer().oid(oid).nul().wrap(Ber.SEQUENCE));
+        }
+        return new Ber.Writer()
+                .integer(requestId)
+                .integer(nonRepeaters)
+                .integer(maxRepetitions)
+                .raw(bindings.wrap(Ber.SEQUENCE))
+                .wrap(pduType);
+    }
+
+    /**
+     * Mensaje recibido. En v2c la PDU se decodifica de inmediato; en v3 solo la
+     * cabecera, y {@link #openV3} verifica y descifra una vez localizada la
+     * petición pendiente (y por tanto sus claves) a partir del msgID.
+     */
+    static final class Incoming {
+        private final byte[] data;
+        int version;
+        int id;
+        Pdu pdu;
+
+        // Solo v3
+        byte flags;
+        byte[] engineId;
+        int boots;
+        int time;
+        private int authOffset;
+        private byte[] authParams;
+        private byte[] privParams;
+        private byte[] encryptedScoped;
+        private Ber.Reader plainScoped;
+
+        private Incoming(byte[] data) {
+            this.data = data;
+        }
+
+        boolean isAuthenticated() {
+            return (flags & FLAG_AUTH) != 0;
+        }
+
+        /**
+         * Verifica el HMAC, descifra si procede y decodifica la PDU.
+         * @throws SnmpException si la autenticación o el descifrado fallan
+         */
+        Pdu openV3(SnmpCredentials.AuthProtocol authProtocol, byte[] authKey, byte[] privKey) throws SnmpException {
+            if (isAuthenticated()) {
+                if (authKey == null || authParams.length != Usm.AUTH_PARAMS_LENGTH) {
+                    throw new SnmpException("Respuesta autenticada sin clave local");
+                }
+                byte[] copy = data.clone();
+                java.util.Arrays.fill(copy, authOffset, authOffset + Usm.AUTH_PARAMS_LENGTH, (byte) 0);
+                if (!MessageDigest.isEqual(authParams, Usm.hmac96(authProtocol, authKey, copy))) {
+                    throw new SnmpException("Firma HMAC de la respuesta incorrecta");
+                }
+            }
+            Ber.Reader scoped;
+            if ((flags & FLAG_PRIV) != 0) {
+                if (privKey == null || privParams.length != 8) {
+                    throw new SnmpException("Respuesta cifrada sin clave de cifrado");
+                }
+                byte[] plain = Usm.aesCfb(false, privKey, boots, time, privParams, encryptedScoped);
+                scoped = new Ber.Reader(plain).enter(Ber.SEQUENCE);
+            } else {
+                scoped = plainScoped;
+            }
+            try {
+                scoped.readOctets();  // contextEngineID
+                scoped.readOctets();  // contextName
+                pdu = Pdu.read(scoped);
+            } catch (IllegalArgumentException e) {
+                throw new SnmpException("PDU v3 mal formada: " + e.getMessage());
+            }
+            return pdu;
+        }
+    }
+
+    /**
+     * Lee la cabecera de un datagrama recibido.
+     * @throws IllegalArgumentException si no es un mensaje SNMP válido
+     */
+    static Incoming parse(byte[] data) {
+        Incoming in = new Incoming(data);
+        Ber.Reader message = new Ber.Reader(data).enter(Ber.SEQUENCE);
+        in.version = (int) message.readInteger();
+        if (in.version == 0 || in.version == 1) {
+            message.readOctets(); // comunidad
+            in.pdu = Pdu.read(message);
+            in.id = in.pdu.requestId;
+            return in;
+        }
+        if (in.version != 3) {
+            throw new IllegalArgumentException("Versión SNMP no soportada: " + in.version);
+        }
+        Ber.Reader global = message.enter(Ber.SEQUENCE);
+        in.id = (int) global.readInteger();
+        global.readInteger();
+        byte[] flags = global.readOctets();
+        in.flags = flags.length > 0 ? flags[0] : 0;
+
+        int secOffset = message.octetsValueOffset();
+        byte[] sec = message.readOctets();
+        Ber.Reader usm = new Ber.Reader(sec).enter(Ber.SEQUENCE);
+        in.engineId = usm.readOctets();
+        in.boots = (int) usm.readInteger();
+        in.time = (int) usm.readInteger();
+        usm.readOctets(); // userName
+        in.authOffset = secOffset + usm.octetsValueOffset();
+        in.authParams = usm.readOctets();
+        in.privParams = usm.readOctets();
+
+        if ((in.flags & FLAG_PRIV) != 0) {
+            in.encryptedScoped = message.readOctets();
+        } else {
+            in.plainScoped = message.enter(Ber.SEQUENCE);
+        }
+        return in;
+    }
+
+    /**
+     * PDU decodificada de una respuesta o report.
+     */
+    static final class Pdu {
+        byte type;
+        int requestId;
+        int errorStatus;
+        int errorIndex;
+        final List<VarBind> varBinds = new ArrayList<>();
+
+        static Pdu read(Ber.Reader reader) {
+            Pdu pdu = new Pdu();
+            pdu.type = reader.peekTag();
+            Ber.Reader body = reader.enter(pdu.type);
+            pdu.requestId = (int) body.readInteger();
+            pdu.errorStatus = (int) body.readInteger();
+            pdu.errorIndex = (int) body.readInteger();
+            Ber.Reader list = body.enter(Ber.SEQUENCE);
+            while (list.hasMore()) {
+                pdu.varBinds.add(list.readVarBind());
+            }
+            return pdu;
+        }
+    }
+}
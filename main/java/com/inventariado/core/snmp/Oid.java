@@ -0,0 +1,104 @@
+package com.inventariado.core.snmp;
+
+import java.util.Arrays;
+
+/**
+ * Identificador de objeto SNMP inmutable ("1.3.6.1.2.1.1.1.0").
+ */
+public final class Oid implements Comparable<Oid> {
+    private final int[] parts;
+
+    private Oid(int[] parts) {
+        this.parts = parts;
+    }
+
+    public static Oid parse(String dotted) {
+        String text = dotted.startsWith(".") ? dotted.substring(1) : dotted;
+        String[] tokens = text.split("\\.");
+        if (tokens.length < 2) {
+            throw new IllegalArgumentException("OID inválido: " + dotted);
+        }
+        int[] parts = new int[tokens.length];
+        try {
+            for (int i = 0; i < tokens.length; i++) {
+                parts[i] = Integer.parseUnsignedInt(tokens[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("OID inválido: " + dotted);
+        }
+        return new Oid(parts);
+    }
+
+    static Oid of(int[] parts) {
+        return new Oid(parts);
+    }
+
+    int[] parts() {
+        return parts;
+    }
+
+    public int size() {
+        return parts.length;
+    }
+
+    /**
+     * @return Componente {@code index}; admite índices negativos desde el final
+     */
+    public int get(int index) {
+        return parts[index < 0 ? parts.length + index : index];
+    }
+
+    /**
+     * Añade componentes al final (p.ej. el índice de una fila de tabla).
+     */
+    public Oid append(int... suffix) {
+        int[] combined = Arrays.copyOf(parts, parts.length + suffix.length);
+        System.arraycopy(suffix, 0, combined, parts.length, suffix.length);
+        return new Oid(combined);
+    }
+
+    public boolean startsWith(Oid prefix) {
+        if (prefix.parts.length > parts.length) return false;
+        for (int i = 0; i < prefix.parts.length; i++) {
+            if (parts[i] != prefix.parts[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Componentes tras {@code prefix}, p.ej. el índice de fila de una columna
+     */
+    public int[] suffixAfter(Oid prefix) {
+        return Arrays.copyOfRange(parts, prefix.parts.length, parts.length);
+    }
+
+    @Override
+    public int compareTo(Oid other) {
+        int n = Math.min(parts.length, other.parts.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compareUnsigned(parts[i], other.parts[i]);
+            if (c != 0) return c;
+        }
+        return Integer.compare(parts.length, other.parts.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Oid other && Arrays.equals(parts, other.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(parts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(parts.length * 3);
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) sb.append('.');
+            sb.append(Integer.toUnsignedString(parts[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,627 @@
+package com.inventariado.core.snmp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cliente SNMP asíncrono v2c/v3 sobre un único {@link DatagramChannel} no bloqueante.
+ *
+ * Todas las peticiones de todos los hosts comparten el socket y un hilo de E/S
+ * que las multiplexa por request-id (en v3 el msgID coincide con el request-id),
+ * gestiona timeouts y reintentos con una cola de plazos y descarta respuestas que
+ * no llegan desde el destino de la petición. Los futuros se completan en hilos
+ * virtuales, así que lo que se encadene a ellos nunca bloquea el hilo de E/S.
+ *
+ * En v3 el primer mensaje a cada agente es un descubrimiento del engineID (USM);
+ * las peticiones de ese agente esperan a que termine y después se firman y cifran
+ * con las claves localizadas. Un report notInTimeWindow resincroniza el reloj del
+ * agente y reintenta la petición una vez.
+ */
+public class SnmpClient implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SnmpClient.class);
+
+    public static final int DEFAULT_PORT = 161;
+    public static final int DEFAULT_TIMEOUT_MILLIS = 1500;
+    public static final int DEFAULT_RETRIES = 1;
+
+    // Peticiones en vuelo como máximo; el resto espera en cola sin ocupar el socket
+    private static final int MAX_IN_FLIGHT = 4096;
+    private static final int BULK_MAX_REPETITIONS = 25;
+    // Varbinds por GETBULK al recorrer varias columnas a la vez
+    private static final int BULK_VARBINDS = 60;
+    // Tope de filas por recorrido, frente a agentes que devuelven tablas sin fin
+    private static final int MAX_WALK_ROWS = 10_000;
+    // Búfer de recepción amplio: miles de agentes pueden responder casi a la vez
+    private static final int RECEIVE_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private static final Oid USM_STATS = Oid.parse("1.3.6.1.6.3.15.1.1");
+    private static final int USM_NOT_IN_TIME_WINDOWS = 2;
+    private static final int USM_UNKNOWN_ENGINE_IDS = 4;
+    private static final String[] USM_REPORTS = {
+            "", "unsupportedSecLevels", "notInTimeWindows", "unknownUserNames",
+            "unknownEngineIDs", "wrongDigests", "decryptionErrors"
+    };
+
+    private final int timeoutMillis;
+    private final int retries;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Thread ioThread;
+    private final Executor callbackExecutor = Thread::startVirtualThread;
+    private final ConcurrentLinkedQueue<Request> submissions = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    // Estado del hilo de E/S
+    private final Map<Integer, Request> pending = new HashMap<>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(Deadline::at));
+    private final ArrayDeque<Request> backlog = new ArrayDeque<>();
+    private final ArrayDeque<Outbound> outbound = new ArrayDeque<>();
+    private final Map<InetSocketAddress, Engine> engines = new HashMap<>();
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MessageCodec.MAX_MESSAGE_SIZE);
+    private int nextRequestId = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE / 2);
+
+    private final AtomicLong requestsSent = new AtomicLong();
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong retransmissions = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong securityFailures = new AtomicLong();
+
+    public SnmpClient() throws IOException {
+        this(DEFAULT_TIMEOUT_MILLIS, DEFAULT_RETRIES);
+    }
+
+    /**
+     * @param timeoutMillis Espera por intento
+     * @param retries Reintentos tras el primer envío
+     */
+    public SnmpClient(int timeoutMillis, int retries) throws IOException {
+        if (timeoutMillis <= 0 || retries < 0) {
+            throw new IllegalArgumentException("Timeout o reintentos inválidos");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.retries = retries;
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_BYTES);
+        this.channel.bind(null);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+        this.ioThread = new Thread(this::ioLoop, "snmp-client");
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * GET de uno o varios OIDs en una sola PDU.
+     */
+    public CompletableFuture<List<VarBind>> get(InetSocketAddress target, SnmpCredentials credentials,
+                                                List<Oid> oids) {
+        return submit(new Request(target, credentials, Ber.GET_REQUEST, 0, 0, oids));
+    }
+
+    public CompletableFuture<List<VarBind>> getBulk(InetSocketAddress target, SnmpCredentials credentials,
+                                                    int nonRepeaters, int maxRepetitions, List<Oid> oids) {
+        return submit(new Request(target, credentials, Ber.GET_BULK_REQUEST, nonRepeaters, maxRepetitions, oids));
+    }
+
+    /**
+     * Recorre con GETBULK el subárbol bajo {@code root}.
+     */
+    public CompletableFuture<List<VarBind>> walk(InetSocketAddress target, SnmpCredentials credentials, Oid root) {
+        return walkColumns(target, credentials, List.of(root)).thenApply(columns -> columns.get(root));
+    }
+
+    /**
+     * Recorre varias columnas de una tabla en paralelo, pidiendo en cada GETBULK
+     * la siguiente tanda de filas de todas las columnas que no han terminado.
+     *
+     * @return Varbinds de cada columna, en orden
+     */
+    public CompletableFuture<Map<Oid, List<VarBind>>> walkColumns(InetSocketAddress target,
+                                                                  SnmpCredentials credentials, List<Oid> columns) {
+        Map<Oid, List<VarBind>> results = new LinkedHashMap<>();
+        Map<Oid, Oid> cursors = new HashMap<>();
+        for (Oid column : columns) {
+            results.put(column, new ArrayList<>());
+            cursors.put(column, column);
+        }
+        return walkStep(target, credentials, new ArrayList<>(columns), cursors, results);
+    }
+
+    private CompletableFuture<Map<Oid, List<VarBind>>> walkStep(InetSocketAddress target, SnmpCredentials credentials,
+                                                                List<Oid> active, Map<Oid, Oid> cursors,
+                                                                Map<Oid, List<VarBind>> results) {
+        if (active.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+        int maxRepetitions = Math.max(1, Math.min(BULK_MAX_REPETITIONS, BULK_VARBINDS / active.size()));
+        List<Oid> request = new ArrayList<>(active.size());
+        for (Oid column : active) request.add(cursors.get(column));
+
+        return getBulk(target, credentials, 0, maxRepetitions, request).thenCompose(varBinds -> {
+            int n = active.size();
+            Set<Oid> finished = new HashSet<>();
+            Set<Oid> advanced = new HashSet<>();
+            for (int k = 0; k < varBinds.size(); k++) {
+                Oid column = active.get(k % n);
+                if (finished.contains(column)) continue;
+                VarBind vb = varBinds.get(k);
+                List<VarBind> rows = results.get(column);
+                // Fin de columna, o agente que no avanza: se corta el recorrido
+                if (vb.isException() || !vb.getOid().startsWith(column)
+                        || vb.getOid().compareTo(cursors.get(column)) <= 0 || rows.size() >= MAX_WALK_ROWS) {
+                    finished.add(column);
+                    continue;
+                }
+                rows.add(vb);
+                cursors.put(column, vb.getOid());
+                advanced.add(column);
+            }
+            List<Oid> next = new ArrayList<>();
+            for (Oid column : active) {
+                if (!finished.contains(column) && advanced.contains(column)) next.add(column);
+            }
+            return walkStep(target, credentials, next, cursors, results);
+        });
+    }
+
+    /**
+     * @return Contadores del cliente para diagnóstico
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests_sent", requestsSent.get());
+        metrics.put("responses", responses.get());
+        metrics.put("retransmissions", retransmissions.get());
+        metrics.put("timeouts", timeouts.get());
+        metrics.put("discarded_datagrams", discarded.get());
+        metrics.put("security_failures", securityFailures.get());
+        return metrics;
+    }
+
+    /**
+     * @return Puerto local del socket, útil para depurar con un agente de pruebas
+     */
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<List<VarBind>> submit(Request request) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new SnmpException("Cliente SNMP cerrado"));
+        }
+        if (request.credentials.getVersion() == 3) {
+            // Derivar Ku aquí, fuera del hilo de E/S (cuesta un megabyte de hash la primera vez)
+            request.credentials.authKu();
+            request.credentials.privKu();
+        }
+        submissions.add(request);
+        selector.wakeup();
+        return request.future;
+    }
+
+    // --- Hilo de E/S ---
+
+    private void ioLoop() {
+        try {
+            while (!closed) {
+                long wait = 0;
+                Deadline next = deadlines.peek();
+                if (next != null) {
+                    wait = Math.max(1, (next.at() - System.nanoTime()) / 1_000_000);
+                }
+                selector.select(wait);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isReadable()) receiveAll();
+                    if (key.isValid() && key.isWritable()) flushOutbound();
+                }
+                selector.selectedKeys().clear();
+
+                Request submitted;
+                while ((submitted = submissions.poll()) != null) {
+                    dispatch(submitted);
+                }
+                expireDeadlines();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (!closed) {
+                logger.error("Error en el hilo de E/S SNMP: {}", e.getMessage(), e);
+            }
+        } finally {
+            closed = true;
+            shutdown();
+        }
+    }
+
+    private void dispatch(Request request) {
+        if (pending.size() >= MAX_IN_FLIGHT) {
+            backlog.add(request);
+            return;
+        }
+        if (request.credentials.getVersion() == 3 && !request.discovery) {
+            Engine engine = engines.get(request.target);
+            if (engine == null) {
+                engine = new Engine();
+                engines.put(request.target, engine);
+                Request discovery = Request.discovery(request.target, request.credentials);
+                engine.discovering = true;
+                engine.waiters.add(request);
+                dispatch(discovery);
+                return;
+            }
+            if (engine.discovering) {
+                engine.waiters.add(request);
+                return;
+            }
+            request.engine = engine;
+        }
+        if (request.requestId == 0) {
+            request.requestId = allocateRequestId();
+        }
+        pending.put(request.requestId, request);
+        transmit(request);
+    }
+
+    private void transmit(Request request) {
+        byte[] message;
+        try {
+            message = encode(request);
+        } catch (RuntimeException e) {
+            pending.remove(request.requestId);
+            fail(request, new SnmpException("No se pudo codificar la petición: " + e.getMessage()));
+            return;
+        }
+        request.sends++;
+        deadlines.add(new Deadline(System.nanoTime() + timeoutMillis * 1_000_000L, request, request.sends));
+        requestsSent.incrementAndGet();
+        Outbound datagram = new Outbound(request.target, ByteBuffer.wrap(message));
+        if (!outbound.isEmpty()) {
+            outbound.add(datagram);
+            return;
+        }
+        try {
+            if (channel.send(datagram.buffer, datagram.target) == 0) {
+                outbound.add(datagram);
+                channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            pending.remove(request.requestId);
+            fail(request, new SnmpException("Error enviando a " + request.target + ": " + e.getMessage()));
+        }
+    }
+
+    private void flushOutbound() throws IOException {
+        while (!outbound.isEmpty()) {
+            Outbound datagram = outbound.peek();
+            try {
+                if (channel.send(datagram.buffer, datagram.target) == 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                // El plazo de la petición se encargará de fallarla o reintentar
+                logger.debug("Error enviando datagrama SNMP a {}: {}", datagram.target, e.getMessage());
+            }
+            outbound.poll();
+        }
+        channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+    }
+
+    private byte[] encode(Request request) {
+        SnmpCredentials credentials = request.credentials;
+        if (credentials.getVersion() == 2) {
+            return MessageCodec.encodeV2c(credentials.getCommunity(), request.pduType, request.requestId,
+                    request.nonRepeaters, request.maxRepetitions, request.oids);
+        }
+        MessageCodec.V3Params params = new MessageCodec.V3Params();
+        if (!request.discovery) {
+            Engine engine = request.engine;
+            LocalKeys keys = engine.keysFor(credentials);
+            params.engineId = engine.engineId;
+            params.boots = engine.boots;
+            params.time = engine.currentTime();
+            params.user = credentials.getUser();
+            params.authProtocol = credentials.getAuthProtocol();
+            params.authKey = keys.authKey;
+            params.privKey = keys.privKey;
+            params.salt = engine.salt++;
+        }
+        return MessageCodec.encodeV3(params, request.pduType, request.requestId,
+                request.nonRepeaters, request.maxRepetitions, request.oids);
+    }
+
+    private void receiveAll() throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress from = channel.receive(receiveBuffer);
+            if (from == null) return;
+            receiveBuffer.flip();
+            byte[] data = new byte[receiveBuffer.remaining()];
+            receiveBuffer.get(data);
+            handleDatagram(from, data);
+        }
+    }
+
+    private void handleDatagram(SocketAddress from, byte[] data) {
+        MessageCodec.Incoming incoming;
+        try {
+            incoming = MessageCodec.parse(data);
+        } catch (IllegalArgumentException e) {
+            discarded.incrementAndGet();
+            logger.debug("Datagrama SNMP mal formado de {}: {}", from, e.getMessage());
+            return;
+        }
+        Request request = pending.get(incoming.id);
+        // Solo se acepta la respuesta desde el destino al que se envió la petición
+        if (request == null || !request.target.equals(from)) {
+            discarded.incrementAndGet();
+            return;
+        }
+        pending.remove(incoming.id);
+        responses.incrementAndGet();
+
+        if (incoming.version != 3) {
+            complete(request, incoming.pdu);
+            return;
+        }
+        if (request.discovery) {
+            completeDiscovery(request, incoming);
+            return;
+        }
+
+        Engine engine = request.engine;
+        LocalKeys keys = engine.keysFor(request.credentials);
+        MessageCodec.Pdu pdu;
+        try {
+            pdu = incoming.openV3(request.credentials.getAuthProtocol(), keys.authKey, keys.privKey);
+        } catch (SnmpException e) {
+            securityFailures.incrementAndGet();
+            fail(request, e);
+            return;
+        } catch (IllegalArgumentException e) {
+            fail(request, new SnmpException("Respuesta v3 mal formada: " + e.getMessage()));
+            return;
+        }
+        if (incoming.isAuthenticated()) {
+            engine.sync(incoming.boots, incoming.time);
+        }
+        if (pdu.type == Ber.REPORT) {
+            int report = usmReport(pdu);
+            if (report == USM_NOT_IN_TIME_WINDOWS && !request.resynced) {
+                engine.sync(incoming.boots, incoming.time);
+                request.resynced = true;
+                dispatch(request);
+                return;
+            }
+            securityFailures.incrementAndGet();
+            fail(request, new SnmpException("Report USM de " + request.target + ": "
+                    + (report > 0 && report < USM_REPORTS.length ? USM_REPORTS[report] : "desconocido")));
+            return;
+        }
+        complete(request, pdu);
+    }
+
+    private void completeDiscovery(Request discovery, MessageCodec.Incoming incoming) {
+        Engine engine = engines.get(discovery.target);
+        if (engine == null) return;
+        MessageCodec.Pdu pdu;
+        try {
+            pdu = incoming.openV3(SnmpCredentials.AuthProtocol.NONE, null, null);
+        } catch (SnmpException | IllegalArgumentException e) {
+            failEngine(discovery.target, engine, new SnmpException("Descubrimiento USM fallido: " + e.getMessage()));
+            return;
+        }
+        if (incoming.engineId == null || incoming.engineId.length == 0
+                || (pdu.type == Ber.REPORT && usmReport(pdu) != USM_UNKNOWN_ENGINE_IDS && usmReport(pdu) != 0)) {
+            failEngine(discovery.target, engine, new SnmpException("El agente no devolvió su engineID"));
+            return;
+        }
+        engine.engineId = incoming.engineId;
+        engine.sync(incoming.boots, incoming.time);
+        engine.discovering = false;
+        logger.debug("Agente SNMPv3 {} descubierto (engineBoots={}, engineTime={})",
+                discovery.target, incoming.boots, incoming.time);
+        List<Request> waiters = new ArrayList<>(engine.waiters);
+        engine.waiters.clear();
+        for (Request waiter : waiters) {
+            dispatch(waiter);
+        }
+    }
+
+    private void failEngine(InetSocketAddress target, Engine engine, SnmpException error) {
+        engines.remove(target);
+        for (Request waiter : engine.waiters) {
+            fail(waiter, error);
+        }
+        engine.waiters.clear();
+    }
+
+    private static int usmReport(MessageCodec.Pdu pdu) {
+        if (pdu.varBinds.isEmpty()) return 0;
+        Oid oid = pdu.varBinds.get(0).getOid();
+        return oid.startsWith(USM_STATS) && oid.size() > USM_STATS.size() ? oid.get(USM_STATS.size()) : 0;
+    }
+
+    private void expireDeadlines() {
+        long now = System.nanoTime();
+        Deadline expired;
+        while ((expired = deadlines.peek()) != null && expired.at() <= now) {
+            deadlines.poll();
+            Request request = expired.request();
+            // Entrada obsoleta: ya respondida o reenviada después con otro plazo
+            if (pending.get(request.requestId) != request || request.sends != expired.send()) continue;
+            if (request.attempts < retries) {
+                request.attempts++;
+                retransmissions.incrementAndGet();
+                transmit(request);
+                continue;
+            }
+            pending.remove(request.requestId);
+            timeouts.incrementAndGet();
+            SnmpException error = new SnmpException("Sin respuesta SNMP de " + request.target, true);
+            if (request.discovery) {
+                Engine engine = engines.get(request.target);
+                if (engine != null) failEngine(request.target, engine, error);
+            }
+            fail(request, error);
+        }
+        drainBacklog();
+    }
+
+    private void drainBacklog() {
+        while (!backlog.isEmpty() && pending.size() < MAX_IN_FLIGHT) {
+            dispatch(backlog.poll());
+        }
+    }
+
+    private void complete(Request request, MessageCodec.Pdu pdu) {
+        if (pdu.errorStatus != 0) {
+            fail(request, new SnmpException(String.format("El agente %s devolvió error-status %d (índice %d)",
+                    request.target, pdu.errorStatus, pdu.errorIndex)));
+            return;
+        }
+        List<VarBind> varBinds = pdu.varBinds;
+        callbackExecutor.execute(() -> request.future.complete(varBinds));
+        drainBacklog();
+    }
+
+    private void fail(Request request, SnmpException error) {
+        callbackExecutor.execute(() -> request.future.completeExceptionally(error));
+    }
+
+    private void shutdown() {
+        SnmpException error = new SnmpException("Cliente SNMP cerrado");
+        List<Request> abandoned = new ArrayList<>(pending.values());
+        abandoned.addAll(backlog);
+        for (Engine engine : engines.values()) abandoned.addAll(engine.waiters);
+        Request submitted;
+        while ((submitted = submissions.poll()) != null) abandoned.add(submitted);
+        for (Request request : abandoned) {
+            fail(request, error);
+        }
+        pending.clear();
+        backlog.clear();
+        engines.clear();
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error cerrando el socket SNMP: {}", e.getMessage());
+        }
+    }
+
+    private int allocateRequestId() {
+        int id;
+        do {
+            id = nextRequestId++ & Integer.MAX_VALUE;
+        } while (id == 0 || pending.containsKey(id));
+        return id;
+    }
+
+    // --- Estado ---
+
+    private static final class Request {
+        final InetSocketAddress target;
+        final SnmpCredentials credentials;
+        final byte pduType;
+        final int nonRepeaters;
+        final int maxRepetitions;
+        final List<Oid> oids;
+        final CompletableFuture<List<VarBind>> future = new CompletableFuture<>();
+        boolean discovery;
+        boolean resynced;
+        Engine engine;
+        int requestId;
+        int attempts;
+        int sends;
+
+        Request(InetSocketAddress target, SnmpCredentials credentials, byte pduType, int nonRepeaters,
+                int maxRepetitions, List<Oid> oids) {
+            this.target = Objects.requireNonNull(target, "target");
+            this.credentials = Objects.requireNonNull(credentials, "credentials");
+            this.pduType = pduType;
+            this.nonRepeaters = nonRepeaters;
+            this.maxRepetitions = maxRepetitions;
+            this.oids = List.copyOf(oids);
+        }
+
+        // GET vacío sin autenticar: el agente responde con un report que incluye su engineID
+        static Request discovery(InetSocketAddress target, SnmpCredentials credentials) {
+            Request request = new Request(target, credentials, Ber.GET_REQUEST, 0, 0, List.of());
+            request.discovery = true;
+            return request;
+        }
+    }
+
+    /**
+     * Agente SNMPv3 descubierto: engineID, reloj estimado y claves localizadas por credencial.
+     */
+    private static final class Engine {
+        byte[] engineId;
+        int boots;
+        int time;
+        long syncedAt;
+        long salt = ThreadLocalRandom.current().nextLong();
+        boolean discovering;
+        final List<Request> waiters = new ArrayList<>();
+        final Map<SnmpCredentials, LocalKeys> keys = new IdentityHashMap<>();
+
+        void sync(int boots, int time) {
+            this.boots = boots;
+            this.time = time;
+            this.syncedAt = System.nanoTime();
+        }
+
+        int currentTime() {
+            return time + (int) ((System.nanoTime() - syncedAt) / 1_000_000_000L);
+        }
+
+        LocalKeys keysFor(SnmpCredentials credentials) {
+            return keys.computeIfAbsent(credentials, c -> new LocalKeys(
+                    c.hasAuth() ? Usm.localize(c.getAuthProtocol(), c.authKu(), engineId) : null,
+                    c.hasPriv() ? Usm.localize(c.getAuthProtocol(), c.privKu(), engineId) : null));
+        }
+    }
+
+    private record LocalKeys(byte[] authKey, byte[] privKey) {
+    }
+
+    private record Deadline(long at, Request request, int send) {
+    }
+
+    private record Outbound(InetSocketAddress target, ByteBuffer buffer) {
+    }
+}
@@ -0,0 +1,121 @@
+package com.inventariado.core.snmp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Credenciales de acceso SNMP: comunidad v2c o usuario USM v3.
+ *
+ * En v3 las claves maestras (Ku) derivadas de las contraseñas se calculan una
+ * sola vez por credencial, ya que cuestan un megabyte de hash cada una; la
+ * localización por engineID la hace {@link SnmpClient} al descubrir cada agente.
+ */
+public final class SnmpCredentials {
+
+    public enum AuthProtocol { NONE, MD5, SHA }
+
+    /** Solo AES-128 (RFC 3826); DES está obsoleto y no se implementa */
+    public enum PrivProtocol { NONE, AES128 }
+
+    private final int version;
+    private final String community;
+    private final String user;
+    private final AuthProtocol authProtocol;
+    private final String authPassword;
+    private final PrivProtocol privProtocol;
+    private final String privPassword;
+
+    private volatile byte[] authKu;
+    private volatile byte[] privKu;
+
+    private SnmpCredentials(int version, String community, String user, AuthProtocol authProtocol,
+                            String authPassword, PrivProtocol privProtocol, String privPassword) {
+        this.version = version;
+        this.community = community;
+        this.user = user;
+        this.authProtocol = authProtocol;
+        this.authPassword = authPassword;
+        this.privProtocol = privProtocol;
+        this.privPassword = privPassword;
+    }
+
+    public static SnmpCredentials v2c(String community) {
+        if (community == null || community.isEmpty()) {
+            throw new IllegalArgumentException("Comunidad SNMP vacía");
+        }
+        return new SnmpCredentials(2, community, null, AuthProtocol.NONE, null, PrivProtocol.NONE, null);
+    }
+
+    /**
+     * @param authProtocol NONE para noAuthNoPriv
+     * @param privProtocol NONE para authNoPriv; exige autenticación
+     */
+    public static SnmpCredentials v3(String user, AuthProtocol authProtocol, String authPassword,
+                                     PrivProtocol privProtocol, String privPassword) {
+        Objects.requireNonNull(user, "user");
+        Objects.requireNonNull(authProtocol, "authProtocol");
+        Objects.requireNonNull(privProtocol, "privProtocol");
+        if (authProtocol == AuthProtocol.NONE && privProtocol != PrivProtocol.NONE) {
+            throw new IllegalArgumentException("El cifrado SNMPv3 requiere autenticación");
+        }
+        if (authProtocol != AuthProtocol.NONE && (authPassword == null || authPassword.length() < 8)) {
+            throw new IllegalArgumentException("La contraseña de autenticación SNMPv3 debe tener al menos 8 caracteres");
+        }
+        if (privProtocol != PrivProtocol.NONE && (privPassword == null || privPassword.length() < 8)) {
+            throw new IllegalArgumentException("La contraseña de cifrado SNMPv3 debe tener al menos 8 caracteres");
+        }
+        return new SnmpCredentials(3, null, user, authProtocol, authPassword, privProtocol, privPassword);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getCommunity() {
+        return community;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public AuthProtocol getAuthProtocol() {
+        return authProtocol;
+    }
+
+    public PrivProtocol getPrivProtocol() {
+        return privProtocol;
+    }
+
+    boolean hasAuth() {
+        return authProtocol != AuthProtocol.NONE;
+    }
+
+    boolean hasPriv() {
+        return privProtocol != PrivProtocol.NONE;
+    }
+
+    byte[] authKu() {
+        byte[] key = authKu;
+        if (key == null && hasAuth()) {
+            key = Usm.passwordToKey(authProtocol, authPassword.getBytes(StandardCharsets.UTF_8));
+            authKu = key;
+        }
+        return key;
+    }
+
+    // La clave de cifrado se deriva con el hash del protocolo de autenticación
+    byte[] privKu() {
+        byte[] key = privKu;
+        if (key == null && hasPriv()) {
+            key = Usm.passwordToKey(authProtocol, privPassword.getBytes(StandardCharsets.UTF_8));
+            privKu = key;
+        }
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return version == 2 ? "SNMPv2c" : "SNMPv3 " + user + " (" + authProtocol + "/" + privProtocol + ")";
+    }
+}
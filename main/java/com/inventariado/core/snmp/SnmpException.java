@@ -0,0 +1,28 @@
+package com.inventariado.core.snmp;
+
+import java.io.IOException;
+
+/**
+ * Error de una petición SNMP: timeout, error-status del agente o fallo de seguridad USM.
+ */
+public class SnmpException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean timeout;
+
+    public SnmpException(String message) {
+        this(message, false);
+    }
+
+    SnmpException(String message, boolean timeout) {
+        super(message);
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return true si el agente no respondió tras todos los reintentos
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+}
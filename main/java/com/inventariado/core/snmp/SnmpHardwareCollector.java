@@ -0,0 +1,308 @@
+package com.inventariado.core.snmp;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inventario de hardware por SNMP a partir de HOST-RESOURCES-MIB (CPU, memoria,
+ * almacenamiento) e IF-MIB (interfaces de red).
+ *
+ * Cada host cuesta un GET inicial (sysDescr, sysName, hrMemorySize), que sirve
+ * para descartar rápido los que no responden, y después cuatro recorridos GETBULK
+ * en paralelo. El resultado tiene la misma forma que el campo "hardware" del
+ * dispositivo: cpu, memory, storage y network_interfaces, más el estado de la
+ * consulta.
+ */
+public class SnmpHardwareCollector {
+    private static final Logger logger = LoggerFactory.getLogger(SnmpHardwareCollector.class);
+
+    public static final String STATUS_OK = "ok";
+    public static final String STATUS_PARTIAL = "partial";
+    public static final String STATUS_UNREACHABLE = "unreachable";
+    public static final String STATUS_ERROR = "error";
+
+    private static final Oid SYS_DESCR = Oid.parse("1.3.6.1.2.1.1.1.0");
+    private static final Oid SYS_NAME = Oid.parse("1.3.6.1.2.1.1.5.0");
+    private static final Oid HR_MEMORY_SIZE = Oid.parse("1.3.6.1.2.1.25.2.2.0");
+
+    private static final Oid HR_PROCESSOR_LOAD = Oid.parse("1.3.6.1.2.1.25.3.3.1.2");
+    private static final Oid HR_DEVICE_TYPE = Oid.parse("1.3.6.1.2.1.25.3.2.1.2");
+    private static final Oid HR_DEVICE_DESCR = Oid.parse("1.3.6.1.2.1.25.3.2.1.3");
+    private static final String HR_DEVICE_PROCESSOR = "1.3.6.1.2.1.25.3.1.3";
+
+    private static final Oid HR_STORAGE_TYPE = Oid.parse("1.3.6.1.2.1.25.2.3.1.2");
+    private static final Oid HR_STORAGE_DESCR = Oid.parse("1.3.6.1.2.1.25.2.3.1.3");
+    private static final Oid HR_STORAGE_UNITS = Oid.parse("1.3.6.1.2.1.25.2.3.1.4");
+    private static final Oid HR_STORAGE_SIZE = Oid.parse("1.3.6.1.2.1.25.2.3.1.5");
+    private static final Oid HR_STORAGE_USED = Oid.parse("1.3.6.1.2.1.25.2.3.1.6");
+    private static final String HR_STORAGE_RAM = "1.3.6.1.2.1.25.2.1.2";
+    private static final String HR_STORAGE_FIXED_DISK = "1.3.6.1.2.1.25.2.1.4";
+
+    private static final Oid IF_DESCR = Oid.parse("1.3.6.1.2.1.2.2.1.2");
+    private static final Oid IF_TYPE = Oid.parse("1.3.6.1.2.1.2.2.1.3");
+    private static final Oid IF_SPEED = Oid.parse("1.3.6.1.2.1.2.2.1.5");
+    private static final Oid IF_PHYS_ADDRESS = Oid.parse("1.3.6.1.2.1.2.2.1.6");
+    private static final Oid IF_ADMIN_STATUS = Oid.parse("1.3.6.1.2.1.2.2.1.7");
+    private static final Oid IF_OPER_STATUS = Oid.parse("1.3.6.1.2.1.2.2.1.8");
+    private static final Oid IF_NAME = Oid.parse("1.3.6.1.2.1.31.1.1.1.1");
+    private static final Oid IF_HIGH_SPEED = Oid.parse("1.3.6.1.2.1.31.1.1.1.15");
+
+    private static final String[] IF_STATUS = {"", "up", "down", "testing", "unknown", "dormant", "notPresent", "lowerLayerDown"};
+
+    private final SnmpClient client;
+    private final int port;
+
+    public SnmpHardwareCollector(SnmpClient client) {
+        this(client, SnmpClient.DEFAULT_PORT);
+    }
+
+    /**
+     * @param port Puerto de los agentes; distinto de 161 solo para pruebas con un agente local
+     */
+    public SnmpHardwareCollector(SnmpClient client, int port) {
+        this.client = client;
+        this.port = port;
+    }
+
+    /**
+     * Consulta el hardware de un host. El futuro nunca falla: si el agente no
+     * responde o la consulta falla se devuelve la estructura vacía con
+     * {@code status} "unreachable" o "error".
+     */
+    public CompletableFuture<Map<String, Object>> collect(String host, SnmpCredentials credentials) {
+        InetSocketAddress target = new InetSocketAddress(host, port);
+        if (target.isUnresolved()) {
+            return CompletableFuture.completedFuture(emptyHardware(STATUS_ERROR));
+        }
+        return client.get(target, credentials, List.of(SYS_DESCR, SYS_NAME, HR_MEMORY_SIZE))
+                .thenCompose(system -> collectTables(target, credentials, system))
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    boolean timeout = cause instanceof SnmpException e && e.isTimeout();
+                    if (!timeout) {
+                        logger.debug("Consulta SNMP fallida en {}: {}", host, cause.getMessage());
+                    }
+                    return emptyHardware(timeout ? STATUS_UNREACHABLE : STATUS_ERROR);
+                });
+    }
+
+    private CompletableFuture<Map<String, Object>> collectTables(InetSocketAddress target, SnmpCredentials credentials,
+                                                                 List<VarBind> system) {
+        AtomicBoolean partial = new AtomicBoolean();
+        CompletableFuture<Map<Oid, List<VarBind>>> processors =
+                walk(target, credentials, List.of(HR_PROCESSOR_LOAD), partial);
+        CompletableFuture<Map<Oid, List<VarBind>>> devices =
+                walk(target, credentials, List.of(HR_DEVICE_TYPE, HR_DEVICE_DESCR), partial);
+        CompletableFuture<Map<Oid, List<VarBind>>> storage = walk(target, credentials,
+                List.of(HR_STORAGE_TYPE, HR_STORAGE_DESCR, HR_STORAGE_UNITS, HR_STORAGE_SIZE, HR_STORAGE_USED), partial);
+        CompletableFuture<Map<Oid, List<VarBind>>> interfaces = walk(target, credentials,
+                List.of(IF_DESCR, IF_TYPE, IF_SPEED, IF_PHYS_ADDRESS, IF_ADMIN_STATUS, IF_OPER_STATUS), partial);
+        CompletableFuture<Map<Oid, List<VarBind>>> interfaceNames =
+                walk(target, credentials, List.of(IF_NAME, IF_HIGH_SPEED), partial);
+
+        return CompletableFuture.allOf(processors, devices, storage, interfaces, interfaceNames).thenApply(ignored -> {
+            Map<Integer, Map<Oid, VarBind>> storageRows = rows(storage.join());
+            long memoryKb = value(system, HR_MEMORY_SIZE);
+
+            Map<String, Object> hardware = new LinkedHashMap<>();
+            hardware.put("cpu", buildCpu(processors.join(), rows(devices.join())));
+            hardware.put("memory", buildMemory(memoryKb, storageRows));
+            hardware.put("storage", buildStorage(storageRows));
+            hardware.put("network_interfaces", buildInterfaces(rows(interfaces.join()), rows(interfaceNames.join())));
+            Map<String, Object> systemInfo = new LinkedHashMap<>();
+            systemInfo.put("description", text(system, SYS_DESCR));
+            systemInfo.put("name", text(system, SYS_NAME));
+            hardware.put("system", systemInfo);
+            hardware.put("source", "snmp");
+            hardware.put("status", partial.get() ? STATUS_PARTIAL : STATUS_OK);
+            return hardware;
+        });
+    }
+
+    // Un recorrido fallido deja su tabla vacía y marca el resultado como parcial
+    private CompletableFuture<Map<Oid, List<VarBind>>> walk(InetSocketAddress target, SnmpCredentials credentials,
+                                                            List<Oid> columns, AtomicBoolean partial) {
+        return client.walkColumns(target, credentials, columns).exceptionally(error -> {
+            partial.set(true);
+            return Collections.emptyMap();
+        });
+    }
+
+    /**
+     * Estructura de hardware sin datos, la misma que se usa cuando no hay SNMP.
+     */
+    public static Map<String, Object> emptyHardware(String status) {
+        Map<String, Object> hardware = new LinkedHashMap<>();
+        hardware.put("cpu", Collections.emptyMap());
+        hardware.put("memory", Collections.emptyMap());
+        hardware.put("storage", Collections.emptyList());
+        hardware.put("network_interfaces", Collections.emptyList());
+        if (status != null) {
+            hardware.put("status", status);
+        }
+        return hardware;
+    }
+
+    private static Map<String, Object> buildCpu(Map<Oid, List<VarBind>> processors,
+                                                Map<Integer, Map<Oid, VarBind>> devices) {
+        List<VarBind> loads = processors.getOrDefault(HR_PROCESSOR_LOAD, List.of());
+        if (loads.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> perCore = new ArrayList<>(loads.size());
+        long total = 0;
+        for (VarBind load : loads) {
+            perCore.add(load.toLong());
+            total += load.toLong();
+        }
+        String model = "";
+        for (Map<Oid, VarBind> device : devices.values()) {
+            VarBind type = device.get(HR_DEVICE_TYPE);
+            VarBind descr = device.get(HR_DEVICE_DESCR);
+            if (type != null && descr != null && HR_DEVICE_PROCESSOR.equals(type.toText())) {
+                model = descr.toText();
+                break;
+            }
+        }
+        Map<String, Object> cpu = new LinkedHashMap<>();
+        cpu.put("model", model);
+        // hrProcessorTable tiene una fila por procesador lógico
+        cpu.put("cores", loads.size());
+        cpu.put("threads", loads.size());
+        cpu.put("load_percent", (int) Math.round((double) total / loads.size()));
+        cpu.put("per_core_load", perCore);
+        return cpu;
+    }
+
+    private static Map<String, Object> buildMemory(long memoryKb, Map<Integer, Map<Oid, VarBind>> storageRows) {
+        long totalBytes = memoryKb * 1024;
+        long usedBytes = -1;
+        for (Map<Oid, VarBind> row : storageRows.values()) {
+            if (HR_STORAGE_RAM.equals(textOf(row.get(HR_STORAGE_TYPE)))) {
+                long units = longOf(row.get(HR_STORAGE_UNITS));
+                usedBytes = longOf(row.get(HR_STORAGE_USED)) * units;
+                if (totalBytes == 0) {
+                    totalBytes = longOf(row.get(HR_STORAGE_SIZE)) * units;
+                }
+                break;
+            }
+        }
+        if (totalBytes == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("total", formatBytes(totalBytes));
+        memory.put("total_bytes", totalBytes);
+        if (usedBytes >= 0) {
+            memory.put("used_bytes", usedBytes);
+            memory.put("usage_percent", percent(usedBytes, totalBytes));
+        }
+        return memory;
+    }
+
+    private static List<Map<String, Object>> buildStorage(Map<Integer, Map<Oid, VarBind>> storageRows) {
+        List<Map<String, Object>> storage = new ArrayList<>();
+        for (Map<Oid, VarBind> row : storageRows.values()) {
+            if (!HR_STORAGE_FIXED_DISK.equals(textOf(row.get(HR_STORAGE_TYPE)))) continue;
+            long units = longOf(row.get(HR_STORAGE_UNITS));
+            long size = longOf(row.get(HR_STORAGE_SIZE)) * units;
+            long used = longOf(row.get(HR_STORAGE_USED)) * units;
+            if (size <= 0) continue;
+            Map<String, Object> disk = new LinkedHashMap<>();
+            disk.put("description", textOf(row.get(HR_STORAGE_DESCR)));
+            disk.put("capacity", formatBytes(size));
+            disk.put("total_bytes", size);
+            disk.put("used_bytes", used);
+            disk.put("usage_percent", percent(used, size));
+            storage.add(disk);
+        }
+        return storage;
+    }
+
+    private static List<Map<String, Object>> buildInterfaces(Map<Integer, Map<Oid, VarBind>> ifRows,
+                                                             Map<Integer, Map<Oid, VarBind>> ifXRows) {
+        List<Map<String, Object>> interfaces = new ArrayList<>();
+        for (Map.Entry<Integer, Map<Oid, VarBind>> entry : ifRows.entrySet()) {
+            Map<Oid, VarBind> row = entry.getValue();
+            Map<Oid, VarBind> extended = ifXRows.getOrDefault(entry.getKey(), Map.of());
+            String name = textOf(extended.get(IF_NAME));
+            long highSpeed = longOf(extended.get(IF_HIGH_SPEED));
+            long speedMbps = highSpeed > 0 ? highSpeed : longOf(row.get(IF_SPEED)) / 1_000_000;
+
+            Map<String, Object> iface = new LinkedHashMap<>();
+            iface.put("index", entry.getKey());
+            iface.put("name", name.isEmpty() ? textOf(row.get(IF_DESCR)) : name);
+            iface.put("description", textOf(row.get(IF_DESCR)));
+            iface.put("type", (int) longOf(row.get(IF_TYPE)));
+            iface.put("mac", row.get(IF_PHYS_ADDRESS) != null ? row.get(IF_PHYS_ADDRESS).toMac() : "");
+            iface.put("speed_mbps", speedMbps);
+            iface.put("admin_status", status(longOf(row.get(IF_ADMIN_STATUS))));
+            iface.put("oper_status", status(longOf(row.get(IF_OPER_STATUS))));
+            interfaces.add(iface);
+        }
+        return interfaces;
+    }
+
+    /**
+     * Agrupa las columnas de una tabla de índice simple por número de fila.
+     */
+    private static Map<Integer, Map<Oid, VarBind>> rows(Map<Oid, List<VarBind>> columns) {
+        Map<Integer, Map<Oid, VarBind>> rows = new TreeMap<>();
+        for (Map.Entry<Oid, List<VarBind>> column : columns.entrySet()) {
+            for (VarBind vb : column.getValue()) {
+                int[] index = vb.getOid().suffixAfter(column.getKey());
+                if (index.length != 1) continue;
+                rows.computeIfAbsent(index[0], k -> new HashMap<>()).put(column.getKey(), vb);
+            }
+        }
+        return rows;
+    }
+
+    private static long value(List<VarBind> varBinds, Oid oid) {
+        for (VarBind vb : varBinds) {
+            if (vb.getOid().equals(oid) && !vb.isException()) return vb.toLong();
+        }
+        return 0;
+    }
+
+    private static String text(List<VarBind> varBinds, Oid oid) {
+        for (VarBind vb : varBinds) {
+            if (vb.getOid().equals(oid) && !vb.isException()) return vb.toText();
+        }
+        return "";
+    }
+
+    private static long longOf(VarBind vb) {
+        return vb != null ? vb.toLong() : 0;
+    }
+
+    private static String textOf(VarBind vb) {
+        return vb != null ? vb.toText() : "";
+    }
+
+    private static String status(long code) {
+        return code > 0 && code < IF_STATUS.length ? IF_STATUS[(int) code] : "unknown";
+    }
+
+    private static int percent(long part, long total) {
+        return total > 0 ? (int) Math.round(part * 100.0 / total) : 0;
+    }
+
+    private static String formatBytes(long bytes) {
+        String[] units = {"B", "KB", "MB", "GB", "TB", "PB"};
+        double value = bytes;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, unit == 0 ? "%.0f %s" : "%.1f %s", value, units[unit]);
+    }
+}
@@ -0,0 +1,97 @@
+package com.inventariado.core.snmp;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Primitivas del modelo de seguridad USM (RFC 3414 y RFC 3826): derivación y
+ * localización de claves, HMAC-96 y AES-128 en modo CFB.
+ */
+final class Usm {
+    static final int AUTH_PARAMS_LENGTH = 12;
+    private static final int PASSWORD_EXPANSION = 1024 * 1024;
+
+    private Usm() {
+    }
+
+    /**
+     * Convierte una contraseña en la clave maestra Ku (RFC 3414 A.2): hash de
+     * la contraseña repetida hasta ocupar un megabyte.
+     */
+    static byte[] passwordToKey(SnmpCredentials.AuthProtocol protocol, byte[] password) {
+        MessageDigest digest = digest(protocol);
+        byte[] block = new byte[64];
+        int index = 0;
+        for (int count = 0; count < PASSWORD_EXPANSION; count += block.length) {
+            for (int i = 0; i < block.length; i++) {
+                block[i] = password[index++ % password.length];
+            }
+            digest.update(block);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Localiza una clave maestra para un agente concreto: H(Ku ‖ engineID ‖ Ku).
+     */
+    static byte[] localize(SnmpCredentials.AuthProtocol protocol, byte[] ku, byte[] engineId) {
+        MessageDigest digest = digest(protocol);
+        digest.update(ku);
+        digest.update(engineId);
+        digest.update(ku);
+        return digest.digest();
+    }
+
+    /**
+     * @return Los primeros 12 bytes del HMAC de {@code message}
+     */
+    static byte[] hmac96(SnmpCredentials.AuthProtocol protocol, byte[] key, byte[] message) {
+        String algorithm = protocol == SnmpCredentials.AuthProtocol.MD5 ? "HmacMD5" : "HmacSHA1";
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(key, algorithm));
+            return Arrays.copyOf(mac.doFinal(message), AUTH_PARAMS_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC no disponible: " + algorithm, e);
+        }
+    }
+
+    /**
+     * Cifra o descifra con AES-128-CFB. El IV es engineBoots ‖ engineTime ‖ sal (RFC 3826 3.1.2.1).
+     */
+    static byte[] aesCfb(boolean encrypt, byte[] privKey, int boots, int time, byte[] salt, byte[] data) {
+        byte[] iv = new byte[16];
+        putInt(iv, 0, boots);
+        putInt(iv, 4, time);
+        System.arraycopy(salt, 0, iv, 8, Math.min(8, salt.length));
+        try {
+            Cipher cipher = Cipher.getInstance("AES/CFB/NoPadding");
+            cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE,
+                    new SecretKeySpec(privKey, 0, 16, "AES"), new IvParameterSpec(iv));
+            return cipher.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-CFB no disponible", e);
+        }
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static MessageDigest digest(SnmpCredentials.AuthProtocol protocol) {
+        try {
+            return MessageDigest.getInstance(protocol == SnmpCredentials.AuthProtocol.MD5 ? "MD5" : "SHA-1");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Hash no disponible: " + protocol, e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.inventariado.core.snmp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Par OID/valor de una respuesta SNMP. Los enteros, contadores, gauges y
+ * timeticks se guardan como long; las cadenas y direcciones como byte[].
+ */
+public final class VarBind {
+    private final Oid oid;
+    private final byte type;
+    private final Object value;
+
+    VarBind(Oid oid, byte type, Object value) {
+        this.oid = oid;
+        this.type = type;
+        this.value = value;
+    }
+
+    public Oid getOid() {
+        return oid;
+    }
+
+    /**
+     * @return true si el agente respondió noSuchObject, noSuchInstance o endOfMibView
+     */
+    public boolean isException() {
+        return type == Ber.NO_SUCH_OBJECT || type == Ber.NO_SUCH_INSTANCE || type == Ber.END_OF_MIB_VIEW;
+    }
+
+    public boolean isEndOfMib() {
+        return type == Ber.END_OF_MIB_VIEW;
+    }
+
+    public long toLong() {
+        return value instanceof Long l ? l : 0L;
+    }
+
+    /**
+     * @return El valor como texto; los bytes no imprimibles se descartan
+     */
+    public String toText() {
+        if (value instanceof byte[] bytes) {
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            return text.replaceAll("[\\p{Cntrl}&&[^\\t]]", "").trim();
+        }
+        return value != null ? String.valueOf(value) : "";
+    }
+
+    /**
+     * @return Bytes en formato MAC "aa:bb:cc:dd:ee:ff", o cadena vacía si no es una dirección física
+     */
+    public String toMac() {
+        if (!(value instanceof byte[] bytes) || bytes.length != 6) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(17);
+        for (int i = 0; i < bytes.length; i++) {
+            if (i > 0) sb.append(':');
+            sb.append(String.format("%02x", bytes[i]));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return oid + " = " + (isException() ? "sin valor" : toText());
+    }
+}
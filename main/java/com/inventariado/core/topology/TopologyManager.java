@@ -4,6 +4,10 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import com.inventariado.core.model.Device;
+import com.inventariado.core.model.Service;
+import com.inventariado.core.model.Services;
+import com.inventariado.core.oui.OuiRegistry;
 import org.json.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +21,7 @@ public class TopologyManager {
 
     private Map<String, Map<String, Object>> graph = new HashMap<>();
     private Map<String, Map<String, String>> deviceTypes = new HashMap<>();
+    private OuiRegistry vendors;
 
     public TopologyManager() {
 // Inicializar tipos de dispositivos con sus estilos
@@ -50,17 +55,25 @@ public class TopologyManager {
         ));
     }
 
+    /**
+
+     Sustituye la base de fabricantes MAC; por defecto se usa la compartida
+     */
+    public void setOuiRegistry(OuiRegistry registry) {
+        this.vendors = registry;
+    }
+
     /**
 
      Añade un dispositivo al grafo
      */
-    public void addDevice(Map<String, Object> deviceData) {
+    public void addDevice(Device deviceData) {
         try {
             String deviceType = determineDeviceType(deviceData);
             Map<String, String> style = deviceTypes.getOrDefault(deviceType, deviceTypes.get("unknown"));
             // Crear etiqueta con información relevante
-            String label = deviceData.getOrDefault("hostname", "") + "\n" +
-                    deviceData.getOrDefault("ip", "");
+            String label = (deviceData.hostname() != null ? deviceData.hostname() : "") + "\n" +
+                    deviceData.address();
 
             // Añadir nodo al grafo
             Map<String, Object> node = new HashMap<>();
@@ -69,7 +82,7 @@ public class TopologyManager {
             node.put("color", style.get("color"));
             node.put("shape", style.get("shape"));
 
-            graph.put((String) deviceData.get("ip"), node);
+            graph.put(deviceData.address(), node);
         } catch (Exception e) {
             logger.error("Error al añadir dispositivo a la topología: {}", e.getMessage());
         }
@@ -97,36 +110,33 @@ public class TopologyManager {
         }
     }
 
-    private String determineDeviceType(Map<String, Object> deviceData) {
-        Map<String, Object> services = (Map<String, Object>) deviceData.getOrDefault("services", new HashMap<>());
-        String osInfo = ((String) deviceData.getOrDefault("os", "")).toLowerCase();
+    private String determineDeviceType(Device deviceData) {
+        Services services = deviceData.services();
+        String osInfo = deviceData.os() != null ? deviceData.os().toLowerCase() : "";
         // Detectar router
-        if (services.keySet().stream().anyMatch(port ->
-                port.equals("23") || port.equals("53") || port.equals("67") || port.equals("68") || port.equals("161"))) {
+        if (services.contains(23) || services.contains(53) || services.contains(67) || services.contains(68)
+                || services.contains(161)) {
             return "router";
         }
 
         // Detectar switch
-        if (services.containsKey("161") || osInfo.contains("switch")) {
+        if (services.contains(161) || osInfo.contains("switch")) {
             return "switch";
         }
 
         // Detectar servidor
-        if (services.keySet().stream().anyMatch(port ->
-                port.equals("21") || port.equals("22") || port.equals("80") ||
-                        port.equals("443") || port.equals("3306") || port.equals("1433"))) {
+        if (services.contains(21) || services.contains(22) || services.contains(80) ||
+                services.contains(443) || services.contains(3306) || services.contains(1433)) {
             return "server";
         }
 
         // Detectar impresora
-        if (services.keySet().stream().anyMatch(port ->
-                port.equals("515") || port.equals("631") || port.equals("9100"))) {
+        if (services.contains(515) || services.contains(631) || services.contains(9100)) {
             return "printer";
         }
 
         // Detectar cámara
-        if (services.keySet().stream().anyMatch(port ->
-                port.equals("554") || port.equals("8000") || port.equals("8080") || port.equals("8081"))) {
+        if (services.contains(554) || services.contains(8000) || services.contains(8080) || services.contains(8081)) {
             return "camera";
         }
 
@@ -138,27 +148,42 @@ public class TopologyManager {
         return "unknown";
     }
 
-    private String createNodeTooltip(Map<String, Object> deviceData) {
+    private String createNodeTooltip(Device deviceData) {
         StringBuilder tooltip = new StringBuilder();
-        tooltip.append("<b>IP:</b> ").append(deviceData.getOrDefault("ip", "N/A")).append("<br>");
-        tooltip.append("<b>Hostname:</b> ").append(deviceData.getOrDefault("hostname", "N/A")).append("<br>");
-        tooltip.append("<b>MAC:</b> ").append(deviceData.getOrDefault("mac", "N/A")).append("<br>");
-        tooltip.append("<b>OS:</b> ").append(deviceData.getOrDefault("os", "N/A")).append("<br>");
-        tooltip.append("<b>Vendor:</b> ").append(deviceData.getOrDefault("vendor", "N/A")).append("<br>");
+        tooltip.append("<b>IP:</b> ").append(deviceData.address()).append("<br>");
+        tooltip.append("<b>Hostname:</b> ").append(orNotAvailable(deviceData.hostname())).append("<br>");
+        tooltip.append("<b>MAC:</b> ").append(orNotAvailable(deviceData.macAddress())).append("<br>");
+        tooltip.append("<b>OS:</b> ").append(orNotAvailable(deviceData.os())).append("<br>");
+        tooltip.append("<b>Vendor:</b> ").append(orNotAvailable(resolveVendor(deviceData))).append("<br>");
         // Añadir servicios
-        Map<String, Object> services = (Map<String, Object>) deviceData.getOrDefault("services", new HashMap<>());
+        Services services = deviceData.services();
         if (!services.isEmpty()) {
             tooltip.append("<b>Servicios:</b><br>");
-            for (Map.Entry<String, Object> entry : services.entrySet()) {
-                Map<String, Object> service = (Map<String, Object>) entry.getValue();
-                tooltip.append("- Puerto ").append(entry.getKey()).append(": ")
-                        .append(service.getOrDefault("name", "unknown")).append("<br>");
+            for (int i = 0; i < services.size(); i++) {
+                Service service = services.service(i);
+                tooltip.append("- Puerto ").append(services.port(i)).append(": ")
+                        .append(service.name() != null ? service.name() : "unknown").append("<br>");
             }
         }
 
         return tooltip.toString();
     }
 
+    private static String orNotAvailable(String value) {
+        return value != null ? value : "N/A";
+    }
+
+    // El fabricante puede venir del inventario o de Nmap y, si no, del prefijo de la MAC
+    private String resolveVendor(Device deviceData) {
+        if (deviceData.vendor() != null || !deviceData.hasMac()) {
+            return deviceData.vendor();
+        }
+        if (vendors == null) {
+            vendors = OuiRegistry.shared();
+        }
+        return vendors.lookup(deviceData.mac());
+    }
+
     /**
 
      Exporta la topología a un archivo JSON
@@ -3,7 +3,11 @@ package com.inventariado.ui;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.inventariado.core.model.Service;
+import com.inventariado.core.model.Services;
 import com.inventariado.core.scanner.NetworkScanner;
+import com.inventariado.core.scanner.ScanProfiles;
+import com.inventariado.core.scanner.ScanStats;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -28,6 +32,7 @@ import java.io.FileReader;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 
 public class NetworkScannerGUI extends Application {
@@ -52,11 +57,16 @@ public class NetworkScannerGUI extends Application {
     private ObservableList<Device> filteredResults = FXCollections.observableArrayList();
     private Device selectedDevice;
 
+    // Escaneo en curso, para que el botón Detener pueda cancelarlo
+    private volatile NetworkScanner activeScanner;
+    private volatile Task<Void> activeScanTask;
+
     // Form fields
     private TextField networkRangeField;
     private TextField searchFilterField;
     private CheckBox saveCredentialsCheck;
     private CheckBox riskAnalysisCheck;
+    private ComboBox<String> scanProfileCombo;
 
     // Credential fields
     private TextField sshUsernameField;
@@ -194,7 +204,13 @@ public class NetworkScannerGUI extends Application {
         saveCredentialsCheck = new CheckBox("Guardar credenciales");
         riskAnalysisCheck = new CheckBox("Realizar análisis de riesgo");
 
-        optionsBox.getChildren().addAll(saveCredentialsCheck, riskAnalysisCheck);
+        ScanProfiles profiles = ScanProfiles.loadDefault();
+        scanProfileCombo = new ComboBox<>(FXCollections.observableArrayList(profiles.getProfileNames()));
+        scanProfileCombo.setValue(profiles.getDefaultProfile().getName());
+        HBox profileBox = new HBox(5, new Label("Perfil:"), scanProfileCombo);
+        profileBox.setAlignment(Pos.CENTER_LEFT);
+
+        optionsBox.getChildren().addAll(profileBox, saveCredentialsCheck, riskAnalysisCheck);
         optionsPane.setContent(optionsBox);
 
         // Action buttons
@@ -530,79 +546,106 @@ public class NetworkScannerGUI extends Application {
         statusLabel.setText("Scanning...");
         progressBar.setProgress(0);
 
+        NetworkScanner scanner = new NetworkScanner();
+        scanner.setScanProfile(scanProfileCombo.getValue());
+
         Task<Void> scanTask = new Task<Void>() {
             @Override
             protected Void call() throws Exception {
-                NetworkScanner scanner = new NetworkScanner();
-                scanner.registerDeviceCallback(deviceInfo -> {
-                    Platform.runLater(() -> {
-                        Map<String, Object> macInfo = (Map<String, Object>) deviceInfo.getOrDefault("mac_info", Map.of());
-                        String mac = (String) macInfo.getOrDefault("mac", "Unknown");
-                        String vendor = (String) macInfo.getOrDefault("vendor", "Unknown");
-
-                        Device device = new Device(
-                                (String) deviceInfo.get("ip"),
-                                (String) deviceInfo.getOrDefault("hostname", "Unknown"),
-                                mac,
-                                vendor,
-                                (String) deviceInfo.getOrDefault("os_info", "Unknown"),
-                                String.join(", ", ((Map<String, Object>) deviceInfo.getOrDefault("services", Map.of())).keySet())
-                        );
-                        scanResults.add(device);
-                    });
-
+                scanner.registerDeviceCallback(found -> {
+                    // La fila de la tabla se construye en el hilo del escáner, no en el de JavaFX
+                    Device device = new Device(found);
+                    Platform.runLater(() -> scanResults.add(device));
                 });
 
-                // Start scan in background thread
-                Thread scanThread = new Thread(() -> {
-                    List<Map<String, Object>> devices = scanner.scanNetwork(
+                // El escáner envía el progreso; updateProgress/updateMessage ya pasan al hilo de JavaFX
+                ScanStats.Listener progress = stats -> {
+                    if (!stats.running()) return;
+                    updateProgress(stats.progress() / 100, 1);
+                    updateMessage(formatProgress(stats));
+                };
+                scanner.addStatsListener(progress, Duration.ofMillis(500));
+
+                List<com.inventariado.core.model.Device> devices;
+                try {
+                    devices = scanner.scanNetwork(
                             networkRange,
                             "-T4",
                             riskAnalysisCheck.isSelected(),
                             snmpCommunityField.getText()
                     );
-
-                    // Update progress
-                    updateProgress(1, 1);
-                    updateMessage("Scan completed. Found " + devices.size() + " devices");
-                });
-
-                scanThread.start();
-
-                // Update progress while scanning
-                while (scanThread.isAlive()) {
-                    updateProgress(scanner.getScanProgress() / 100, 1);
-                    updateMessage("Scanning... " + (int)scanner.getScanProgress() + "%");
-                    Thread.sleep(500);
+                } finally {
+                    // El escáner es de este escaneo: que no quede nada apuntando a la tarea
+                    scanner.removeStatsListener(progress);
                 }
 
+                // Update progress
+                updateProgress(1, 1);
+                updateMessage("Scan completed. Found " + devices.size() + " devices");
                 return null;
             }
         };
 
         scanTask.setOnSucceeded(e -> {
+            clearActiveScan(scanTask);
             scanButton.setDisable(false);
             stopButton.setDisable(true);
             filteredResults.setAll(scanResults);
         });
 
         scanTask.setOnCancelled(e -> {
+            clearActiveScan(scanTask);
             scanButton.setDisable(false);
             stopButton.setDisable(true);
+            statusLabel.textProperty().unbind();
             statusLabel.setText("Scan cancelled");
+            filteredResults.setAll(scanResults);
         });
 
+        scanTask.setOnFailed(e -> {
+            clearActiveScan(scanTask);
+            scanButton.setDisable(false);
+            stopButton.setDisable(true);
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Scan failed");
+            logger.error("Error durante el escaneo", scanTask.getException());
+        });
+
+        activeScanner = scanner;
+        activeScanTask = scanTask;
+
         progressBar.progressProperty().bind(scanTask.progressProperty());
         statusLabel.textProperty().bind(scanTask.messageProperty());
 
         new Thread(scanTask).start();
     }
 
+    private static String formatProgress(ScanStats.Snapshot stats) {
+        String eta = stats.etaSeconds() < 0 ? "--:--" : String.format("%02d:%02d",
+                (long) stats.etaSeconds() / 60, (long) stats.etaSeconds() % 60);
+        return String.format("Scanning... %d%% (%d/%d hosts, %d devices, %.1f hosts/s, ETA %s)",
+                (int) stats.progress(), stats.hostsDone(), stats.totalHosts(), stats.devicesFound(),
+                stats.ratePerSecond(), eta);
+    }
+
     private void stopScan() {
-        // Implement scan stopping logic
-        scanButton.setDisable(false);
+        NetworkScanner scanner = activeScanner;
+        Task<Void> scanTask = activeScanTask;
+        if (scanner == null || scanTask == null) {
+            stopButton.setDisable(true);
+            return;
+        }
         stopButton.setDisable(true);
-        statusLabel.setText("Escaneo detenido");
+        // Mata los procesos Nmap y corta las tareas; cancel() dispara setOnCancelled
+        scanner.stopScan();
+        scanTask.cancel();
+    }
+
+    private void clearActiveScan(Task<Void> scanTask) {
+        if (activeScanTask == scanTask) {
+            activeScanTask = null;
+            activeScanner = null;
+        }
     }
 
     private void exportToCsv() {
@@ -759,6 +802,39 @@ public class NetworkScannerGUI extends Application {
             this.services = parseServices(ports);
         }
 
+        public Device(com.inventariado.core.model.Device device) {
+            this.ip = device.address();
+            this.hostname = device.hostname() != null ? device.hostname() : "Unknown";
+            this.mac = device.hasMac() ? device.macAddress() : "Unknown";
+            this.vendor = device.vendor() != null ? device.vendor() : "Unknown";
+            this.os = device.os() != null ? device.os() : "Unknown";
+            this.ports = device.services().toString();
+            this.services = toServiceInfo(device.services());
+        }
+
+        // Mismo formato que parseServices, pero con el nombre y la versión que detectó el escáner
+        private Map<String, Map<String, String>> toServiceInfo(Services openPorts) {
+            Map<String, Map<String, String>> services = new HashMap<>();
+            for (int i = 0; i < openPorts.size(); i++) {
+                String port = String.valueOf(openPorts.port(i));
+                Service service = openPorts.service(i);
+                Map<String, String> serviceInfo = new HashMap<>();
+                serviceInfo.put("port", port);
+                serviceInfo.put("protocol", service.protocol());
+                if (service.name() != null) {
+                    serviceInfo.put("name", service.name());
+                }
+                if (service.product() != null) {
+                    serviceInfo.put("product", service.product());
+                }
+                if (service.version() != null) {
+                    serviceInfo.put("version", service.version());
+                }
+                services.put(port, serviceInfo);
+            }
+            return services;
+        }
+
         private Map<String, Map<String, String>> parseServices(String portsStr) {
             Map<String, Map<String, String>> services = new HashMap<>();
             if (portsStr != null && !portsStr.isEmpty()) {